@@ -4,20 +4,24 @@ import java.sql.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/* One unit of work against the admin database. The connection is borrowed from a pool on construction
+ * and handed back by close(), so creating an AdminDBMS per request costs no handshake once the pool is warm */
 public class AdminDBMS implements AutoCloseable {
     private static final Logger logger = LoggerFactory.getLogger(AdminDBMS.class);
+    private final ConnectionPool pool;
+    private final ConnectionPool.PooledConnection pooledConnection;
     private final Connection connection;
+    private boolean released = false;
 
     public AdminDBMS(String dbUrl, String dbUser, String dbPassword) throws SQLException {
-        try {
-            Class.forName("com.mysql.cj.jdbc.Driver");
-            logger.info("MySQL JDBC Driver loaded successfully.");
-        } catch (ClassNotFoundException e) {
-            logger.error("MySQL JDBC Driver not found", e);
-            throw new RuntimeException("MySQL JDBC Driver not found", e);
-        }
-        connection = DriverManager.getConnection(dbUrl, dbUser, dbPassword);
-        logger.info("Database connection established to URL: {}", dbUrl);
+        this(ConnectionPool.shared(dbUrl, dbUser, dbPassword));
+    }
+
+    public AdminDBMS(ConnectionPool pool) throws SQLException {
+        this.pool = pool;
+        pooledConnection = pool.borrow();
+        connection = pooledConnection.getConnection();
+        logger.debug("Database connection borrowed from pool: {}", pool);
     }
 
     public void createTable(String query) throws SQLException {
@@ -31,9 +35,16 @@ public class AdminDBMS implements AutoCloseable {
     public ResultSet executeQuery(String query) throws SQLException {
         logger.debug("Executing query: {}", query);
         Statement statement = connection.createStatement();
+        statement.closeOnCompletion();
         return statement.executeQuery(query);
     }
 
+    /* Runs a parameterized query through the connection's statement cache. Closing the result set is enough */
+    public ResultSet executeQuery(String query, Object... params) throws SQLException {
+        logger.debug("Executing prepared query: {}", query);
+        return bind(query, params).executeQuery();
+    }
+
     public int executeStatement(String query) throws SQLException {
         logger.debug("Executing update statement: {}", query);
         try (Statement statement = connection.createStatement()) {
@@ -43,13 +54,33 @@ public class AdminDBMS implements AutoCloseable {
         }
     }
 
+    public int executeStatement(String query, Object... params) throws SQLException {
+        logger.debug("Executing prepared update statement: {}", query);
+        int rowsAffected = bind(query, params).executeUpdate();
+        logger.info("Update statement executed. Rows affected: {}", rowsAffected);
+        return rowsAffected;
+    }
+
+    private PreparedStatement bind(String query, Object... params) throws SQLException {
+        PreparedStatement statement = pooledConnection.prepare(query);
+        for (int i = 0; i < params.length; ++i) {
+            statement.setObject(i + 1, params[i]);
+        }
+        return statement;
+    }
+
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
     @Override
     public void close() throws SQLException {
-        if (connection != null && !connection.isClosed()) {
-            connection.close();
-            logger.info("Database connection closed successfully.");
+        if (!released) {
+            released = true;
+            pool.release(pooledConnection);
+            logger.debug("Database connection returned to pool.");
         } else {
-            logger.debug("Attempted to close connection, but it was null or already closed.");
+            logger.debug("Attempted to close connection, but it was already returned to the pool.");
         }
     }
-}
\ No newline at end of file
+}
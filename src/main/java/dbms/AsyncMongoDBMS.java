@@ -0,0 +1,129 @@
+package dbms;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoCommandException;
+import com.mongodb.ServerApi;
+import com.mongodb.ServerApiVersion;
+import com.mongodb.client.model.CreateCollectionOptions;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+/* Write path on the reactive-streams driver. Every call returns at once with a stage that the
+ * driver completes when the server answers, so no thread waits for the round trip and the number
+ * of writes in flight is bounded by the connection pool rather than by the worker count.
+ * Reads and collection listing stay on MongoDBMS' synchronous client */
+public class AsyncMongoDBMS implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(AsyncMongoDBMS.class);
+    private static final int NAMESPACE_EXISTS = 48;
+
+    private final MongoClient mongoClient;
+
+    public AsyncMongoDBMS(String connectionString) {
+        Objects.requireNonNull(connectionString, "MongoDB connection string cannot be null.");
+
+        ServerApi serverApi = ServerApi.builder()
+                .version(ServerApiVersion.V1)
+                .build();
+
+        MongoClientSettings settings = MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(connectionString))
+                .serverApi(serverApi)
+                .build();
+
+        this.mongoClient = MongoClients.create(settings);
+        logger.info("Reactive MongoDB client initialized for connection string: {}", connectionString);
+    }
+
+    public CompletionStage<Void> insertOne(String dbName, String collectionName, Document document) {
+        return toStage(getDatabase(dbName).getCollection(collectionName).insertOne(document))
+                .thenApply(result -> null);
+    }
+
+    /* Unordered. Raw documents are piped to the wire without being encoded again */
+    @SuppressWarnings("unchecked")
+    public CompletionStage<Void> insertMany(String dbName, String collectionName, List<BsonDocument> documents) {
+        InsertManyOptions unordered = new InsertManyOptions().ordered(false);
+        MongoDatabase database = getDatabase(dbName);
+        Publisher<?> insert;
+        if (MongoDBMS.allRaw(documents)) {
+            List<? extends BsonDocument> raw = documents;
+            insert = database.getCollection(collectionName, RawBsonDocument.class)
+                    .insertMany((List<RawBsonDocument>) raw, unordered);
+        } else {
+            insert = database.getCollection(collectionName, BsonDocument.class).insertMany(documents, unordered);
+        }
+        return toStage(insert).thenApply(result -> null);
+    }
+
+    /* Completes with true if the collection was created, false if it already existed */
+    public CompletionStage<Boolean> createCollection(String dbName, String collectionName, CreateCollectionOptions options) {
+        return toStage(getDatabase(dbName).createCollection(collectionName, options))
+                .handle((result, error) -> {
+                    if (error == null) {
+                        return true;
+                    }
+                    Throwable cause = (error instanceof CompletionException) ? error.getCause() : error;
+                    if (cause instanceof MongoCommandException
+                            && ((MongoCommandException) cause).getErrorCode() == NAMESPACE_EXISTS) {
+                        return false;
+                    }
+                    throw new CompletionException(cause);
+                });
+    }
+
+    public MongoDatabase getDatabase(String dbName) {
+        return mongoClient.getDatabase(dbName);
+    }
+
+    @Override
+    public void close() {
+        mongoClient.close();
+        logger.info("Reactive MongoDB client closed.");
+    }
+
+    /* Completes with the last element the publisher emitted, or null if it emitted none */
+    static <T> CompletableFuture<T> toStage(Publisher<T> publisher) {
+        CompletableFuture<T> stage = new CompletableFuture<>();
+        publisher.subscribe(new Subscriber<T>() {
+            private T last;
+
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(T item) {
+                last = item;
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                stage.completeExceptionally(error);
+            }
+
+            @Override
+            public void onComplete() {
+                stage.complete(last);
+            }
+        });
+        return stage;
+    }
+}
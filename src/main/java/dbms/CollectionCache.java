@@ -0,0 +1,105 @@
+package dbms;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/* Remembers which (database, collection) pairs exist so the write path does not have to list a
+ * database's collections before every insert. A miss lists the database once and caches every
+ * collection it holds; entries expire after a TTL so collections dropped behind our back are noticed */
+public class CollectionCache {
+    private static final Logger logger = LoggerFactory.getLogger(CollectionCache.class);
+
+    private final Map<String, Long> expiryByNamespace = new ConcurrentHashMap<>();
+    private final Function<String, Collection<String>> collectionLister;
+    private final long ttlNanos;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public static final long DEFAULT_TTL_MINUTES = 10;
+
+    /* collectionLister returns the collection names of a database - one round trip to the server */
+    public CollectionCache(Function<String, Collection<String>> collectionLister, long ttl, TimeUnit unit) {
+        if (ttl <= 0) {
+            throw new IllegalArgumentException("TTL must be positive: " + ttl);
+        }
+        this.collectionLister = Objects.requireNonNull(collectionLister, "Collection lister cannot be null.");
+        this.ttlNanos = unit.toNanos(ttl);
+    }
+
+    public boolean exists(String dbName, String collectionName) {
+        Long expiresAt = expiryByNamespace.get(namespace(dbName, collectionName));
+        if (expiresAt != null && expiresAt - System.nanoTime() > 0) {
+            hits.increment();
+            return true;
+        }
+
+        misses.increment();
+        refresh(dbName);
+        return expiryByNamespace.containsKey(namespace(dbName, collectionName));
+    }
+
+    /* Lists the database and replaces what is cached for it */
+    public void refresh(String dbName) {
+        Collection<String> collectionNames = collectionLister.apply(dbName);
+        invalidateDatabase(dbName);
+        for (String collectionName : collectionNames) {
+            markExists(dbName, collectionName);
+        }
+        logger.debug("Cached {} collections of DB: {}", collectionNames.size(), dbName);
+    }
+
+    public void markExists(String dbName, String collectionName) {
+        expiryByNamespace.put(namespace(dbName, collectionName), System.nanoTime() + ttlNanos);
+    }
+
+    public void invalidate(String dbName, String collectionName) {
+        expiryByNamespace.remove(namespace(dbName, collectionName));
+        logger.info("Invalidated cached collection: {}", namespace(dbName, collectionName));
+    }
+
+    public void invalidateDatabase(String dbName) {
+        String prefix = dbName + ".";
+        expiryByNamespace.keySet().removeIf(namespace -> namespace.startsWith(prefix));
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /* Every hit is a listCollectionNames round trip that was not made */
+    public long getSavedRoundTrips() {
+        return getHits();
+    }
+
+    public double getHitRatio() {
+        long hitCount = getHits();
+        long total = hitCount + getMisses();
+        return (total == 0) ? 0 : (double) hitCount / total;
+    }
+
+    public int size() {
+        return expiryByNamespace.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CollectionCache{size=%d, hits=%d, misses=%d, hitRatio=%.3f}",
+                size(), getHits(), getMisses(), getHitRatio());
+    }
+
+    private static String namespace(String dbName, String collectionName) {
+        return dbName + "." + collectionName;
+    }
+}
@@ -0,0 +1,298 @@
+package dbms;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/* Bounded pool of JDBC connections. At most maxSize connections exist at a time; borrow() waits up to
+ * maxWait for one and then fails with SQLTransientConnectionException. Idle connections are handed out
+ * most-recently-used first, re-validated if they sat idle longer than the validation interval, and
+ * closed by a background sweep once idle longer than the idle timeout.
+ * Every pooled connection keeps an LRU cache of its prepared statements, so a query that a servlet runs
+ * on every request is parsed by the server once per connection instead of once per request */
+public class ConnectionPool implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionPool.class);
+
+    public static final int DEFAULT_MAX_SIZE = 10;
+    public static final long DEFAULT_MAX_WAIT_MILLIS = 5_000;
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    public static final long DEFAULT_VALIDATION_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 64;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private static final Map<String, ConnectionPool> sharedPools = new ConcurrentHashMap<>();
+
+    private final ConnectionFactory factory;
+    private final int maxSize;
+    private final long maxWaitNanos;
+    private final long idleTimeoutNanos;
+    private final long validationIntervalNanos;
+    private final int statementCacheSize;
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final ScheduledExecutorService evictor;
+    private final Histogram waitMicros = new Histogram("poolWaitMicros");
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+    private volatile boolean closed = false;
+
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection open() throws SQLException;
+    }
+
+    public ConnectionPool(ConnectionFactory factory) {
+        this(factory, DEFAULT_MAX_SIZE, DEFAULT_MAX_WAIT_MILLIS, DEFAULT_IDLE_TIMEOUT_MILLIS,
+                DEFAULT_VALIDATION_INTERVAL_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    public ConnectionPool(ConnectionFactory factory, int maxSize, long maxWait, long idleTimeout,
+                          long validationInterval, TimeUnit unit, int statementCacheSize) {
+        Objects.requireNonNull(factory, "Connection factory cannot be null.");
+        if (maxSize <= 0 || maxWait < 0 || idleTimeout <= 0 || validationInterval < 0 || statementCacheSize <= 0) {
+            throw new IllegalArgumentException("Invalid pool configuration: maxSize=" + maxSize + ", maxWait=" + maxWait +
+                    ", idleTimeout=" + idleTimeout + ", validationInterval=" + validationInterval +
+                    ", statementCacheSize=" + statementCacheSize);
+        }
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.maxWaitNanos = unit.toNanos(maxWait);
+        this.idleTimeoutNanos = unit.toNanos(idleTimeout);
+        this.validationIntervalNanos = unit.toNanos(validationInterval);
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        long sweepNanos = Math.max(idleTimeoutNanos / 2, TimeUnit.MILLISECONDS.toNanos(10));
+        this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        evictor.scheduleWithFixedDelay(this::evictIdle, sweepNanos, sweepNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /* One pool per URL and user for the lifetime of the JVM, shared by every servlet */
+    public static ConnectionPool shared(String dbUrl, String dbUser, String dbPassword) {
+        return sharedPools.computeIfAbsent(dbUrl + '\0' + dbUser, key -> {
+            loadDriver();
+            logger.info("Creating shared connection pool for URL: {}", dbUrl);
+            return new ConnectionPool(() -> DriverManager.getConnection(dbUrl, dbUser, dbPassword));
+        });
+    }
+
+    private static void loadDriver() {
+        try {
+            Class.forName("com.mysql.cj.jdbc.Driver");
+            logger.info("MySQL JDBC Driver loaded successfully.");
+        } catch (ClassNotFoundException e) {
+            logger.error("MySQL JDBC Driver not found", e);
+            throw new RuntimeException("MySQL JDBC Driver not found", e);
+        }
+    }
+
+    public PooledConnection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed.");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS)) {
+                throw new SQLTransientConnectionException("Timed out after " +
+                        TimeUnit.NANOSECONDS.toMillis(maxWaitNanos) + " ms waiting for one of " + maxSize + " connections.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a connection.", e);
+        }
+        waitMicros.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+
+        try {
+            PooledConnection pooled;
+            while ((pooled = idle.pollFirst()) != null) {
+                if (isUsable(pooled)) {
+                    return pooled;
+                }
+                discard(pooled);
+            }
+            pooled = new PooledConnection(factory.open());
+            openConnections.incrementAndGet();
+            return pooled;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /* Returns the connection to the pool, or closes it if it broke while borrowed */
+    public void release(PooledConnection pooled) {
+        try {
+            if (closed || pooled.connection.isClosed()) {
+                discard(pooled);
+            } else {
+                pooled.lastUsedNanos = System.nanoTime();
+                idle.offerFirst(pooled);
+            }
+        } catch (SQLException e) {
+            discard(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean isUsable(PooledConnection pooled) {
+        if (System.nanoTime() - pooled.lastUsedNanos < validationIntervalNanos) {
+            return true;
+        }
+        try {
+            return pooled.connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            logger.debug("Connection validation failed: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /* Idle connections are kept MRU first, so the ones past the timeout are at the tail */
+    private void evictIdle() {
+        logger.debug("{}", this);
+        long now = System.nanoTime();
+        Iterator<PooledConnection> oldestFirst = idle.descendingIterator();
+        while (oldestFirst.hasNext()) {
+            PooledConnection pooled = oldestFirst.next();
+            if (now - pooled.lastUsedNanos < idleTimeoutNanos) {
+                break;
+            }
+            if (idle.removeFirstOccurrence(pooled)) {
+                logger.debug("Evicting connection idle for {} ms.", TimeUnit.NANOSECONDS.toMillis(now - pooled.lastUsedNanos));
+                discard(pooled);
+            }
+        }
+    }
+
+    private void discard(PooledConnection pooled) {
+        openConnections.decrementAndGet();
+        pooled.closeQuietly();
+    }
+
+    public Histogram getWaitMicros() {
+        return waitMicros;
+    }
+
+    public int getActiveConnections() {
+        return maxSize - permits.availablePermits();
+    }
+
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    public int getOpenConnections() {
+        return openConnections.get();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getStatementCacheHits() {
+        return statementCacheHits.sum();
+    }
+
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.sum();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+        logger.info("Connection pool closed. Wait time: {}", waitMicros);
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPool{active=" + getActiveConnections() + ", idle=" + getIdleConnections() +
+                ", open=" + getOpenConnections() + ", maxSize=" + maxSize + ", waitMicros=" + waitMicros +
+                ", statementCacheHits=" + getStatementCacheHits() + ", statementCacheMisses=" + getStatementCacheMisses() + '}';
+    }
+
+    /* A connection owned by the pool. Only one thread uses it at a time, so its statement cache is unsynchronized */
+    public final class PooledConnection {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements;
+        private volatile long lastUsedNanos = System.nanoTime();
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+            this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                    if (size() <= statementCacheSize) {
+                        return false;
+                    }
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+            };
+        }
+
+        public Connection getConnection() {
+            return connection;
+        }
+
+        /* The returned statement belongs to the cache - callers close its result sets, not the statement */
+        public PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+            if (statement != null && !statement.isClosed()) {
+                statementCacheHits.increment();
+                statement.clearParameters();
+                return statement;
+            }
+            statementCacheMisses.increment();
+            statement = connection.prepareStatement(sql);
+            statements.put(sql, statement);
+            return statement;
+        }
+
+        private void closeQuietly() {
+            for (PreparedStatement statement : statements.values()) {
+                closeQuietly(statement);
+            }
+            statements.clear();
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                logger.debug("Error closing pooled connection: {}", e.getMessage());
+            }
+        }
+
+        private void closeQuietly(PreparedStatement statement) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                logger.debug("Error closing cached statement: {}", e.getMessage());
+            }
+        }
+    }
+}
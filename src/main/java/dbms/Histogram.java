@@ -0,0 +1,84 @@
+package dbms;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/* Lock-free histogram of non-negative values with power-of-two buckets - bucket 0 counts zeros and
+ * bucket i counts values in [2^(i-1), 2^i). Percentiles are therefore upper bounds accurate to a
+ * factor of two, which is plenty for latency and batch-size distributions and costs one atomic
+ * increment per sample */
+public class Histogram {
+    private static final int NUM_OF_BUCKETS = 64;
+
+    private final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(NUM_OF_BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public Histogram(String name) {
+        this.name = name;
+    }
+
+    public void record(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Histogram values must be non-negative: " + value);
+        }
+        buckets.incrementAndGet(NUM_OF_BUCKETS - Long.numberOfLeadingZeros(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long samples = getCount();
+        return (samples == 0) ? 0 : (double) getSum() / samples;
+    }
+
+    /* Upper bound of the bucket holding the given percentile (0 < percentile <= 100) */
+    public long getPercentile(double percentile) {
+        if (percentile <= 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be in (0, 100]: " + percentile);
+        }
+        long samples = 0;
+        for (int i = 0; i < NUM_OF_BUCKETS; ++i) {
+            samples += buckets.get(i);
+        }
+        long rank = (long) Math.ceil(samples * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < NUM_OF_BUCKETS; ++i) {
+            seen += buckets.get(i);
+            if (seen >= rank && seen > 0) {
+                return Math.min(upperBound(i), getMax());
+            }
+        }
+        return 0;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{count=%d, mean=%.1f, p50=%d, p99=%d, max=%d}",
+                name, getCount(), getMean(), getPercentile(50), getPercentile(99), getMax());
+    }
+
+    private static long upperBound(int bucket) {
+        return (bucket >= NUM_OF_BUCKETS - 1) ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+}
@@ -0,0 +1,183 @@
+package dbms;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonWriter;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.bson.io.BasicOutputBuffer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigInteger;
+import java.util.Map;
+
+/* Writes JSON straight into BSON. Either a Gson tree is walked into a BsonWriter, or the raw JSON
+ * text is streamed token by token without building a tree at all. Nested objects and arrays are
+ * kept. Numbers are typed from their literal without trial parsing: integers that fit become
+ * int32, then int64, everything else a double */
+public class JsonBsonCodec {
+    private static final int INITIAL_BUFFER_SIZE = 256;
+    private static final int MAX_SAFE_LONG_DIGITS = 18;
+
+    private JsonBsonCodec() {
+    }
+
+    public static RawBsonDocument toBson(JsonObject object) {
+        BasicOutputBuffer buffer = new BasicOutputBuffer(INITIAL_BUFFER_SIZE);
+        try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+            writeValue(writer, object);
+        }
+        return toRawDocument(buffer);
+    }
+
+    /* Streams one JSON object from the reader, never materializing a JsonObject */
+    public static RawBsonDocument fromJson(Reader json) throws IOException {
+        JsonReader reader = new JsonReader(json);
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            throw new JsonSyntaxException("Expected a JSON object but was " + reader.peek());
+        }
+        BasicOutputBuffer buffer = new BasicOutputBuffer(INITIAL_BUFFER_SIZE);
+        try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+            pipe(reader, writer);
+        }
+        return toRawDocument(buffer);
+    }
+
+    /* For code that still works with Document - nested objects become Documents, arrays Lists */
+    public static Document toDocument(JsonObject object) {
+        return toBson(object).decode(new DocumentCodec());
+    }
+
+    /* Wraps what a BsonBinaryWriter wrote into the buffer without copying it */
+    public static RawBsonDocument toRawDocument(BasicOutputBuffer buffer) {
+        return new RawBsonDocument(buffer.getInternalBuffer(), 0, buffer.getPosition());
+    }
+
+    /* Writes a value; inside a document the caller has already written its name */
+    public static void writeValue(BsonWriter writer, JsonElement element) {
+        if (element == null || element.isJsonNull()) {
+            writer.writeNull();
+        } else if (element.isJsonObject()) {
+            writer.writeStartDocument();
+            for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
+                writer.writeName(entry.getKey());
+                writeValue(writer, entry.getValue());
+            }
+            writer.writeEndDocument();
+        } else if (element.isJsonArray()) {
+            writer.writeStartArray();
+            for (JsonElement item : (JsonArray) element) {
+                writeValue(writer, item);
+            }
+            writer.writeEndArray();
+        } else {
+            JsonPrimitive primitive = element.getAsJsonPrimitive();
+            if (primitive.isBoolean()) {
+                writer.writeBoolean(primitive.getAsBoolean());
+            } else if (primitive.isNumber()) {
+                writeNumber(writer, primitive.getAsNumber());
+            } else {
+                writer.writeString(primitive.getAsString());
+            }
+        }
+    }
+
+    public static void writeNumber(BsonWriter writer, Number number) {
+        if (number instanceof Integer || number instanceof Short || number instanceof Byte) {
+            writer.writeInt32(number.intValue());
+        } else if (number instanceof Long) {
+            writer.writeInt64(number.longValue());
+        } else if (number instanceof Double || number instanceof Float) {
+            writer.writeDouble(number.doubleValue());
+        } else {
+            // parsed numbers (LazilyParsedNumber) keep their literal, as do BigInteger and BigDecimal
+            writeNumber(writer, number.toString());
+        }
+    }
+
+    public static void writeNumber(BsonWriter writer, String literal) {
+        if (!isIntegerLiteral(literal)) {
+            writer.writeDouble(Double.parseDouble(literal));
+            return;
+        }
+        int digits = literal.length() - (literal.charAt(0) == '-' ? 1 : 0);
+        if (digits <= MAX_SAFE_LONG_DIGITS) {
+            long value = Long.parseLong(literal);
+            if (value == (int) value) {
+                writer.writeInt32((int) value);
+            } else {
+                writer.writeInt64(value);
+            }
+            return;
+        }
+        BigInteger value = new BigInteger(literal);
+        if (value.bitLength() < Long.SIZE) {
+            writer.writeInt64(value.longValue());
+        } else {
+            writer.writeDouble(value.doubleValue());
+        }
+    }
+
+    private static boolean isIntegerLiteral(String literal) {
+        int length = literal.length();
+        int start = (length > 0 && literal.charAt(0) == '-') ? 1 : 0;
+        if (start == length) {
+            return false;
+        }
+        for (int i = start; i < length; ++i) {
+            char c = literal.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void pipe(JsonReader reader, BsonWriter writer) throws IOException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                reader.beginObject();
+                writer.writeStartDocument();
+                while (reader.hasNext()) {
+                    writer.writeName(reader.nextName());
+                    pipe(reader, writer);
+                }
+                reader.endObject();
+                writer.writeEndDocument();
+                break;
+            case BEGIN_ARRAY:
+                reader.beginArray();
+                writer.writeStartArray();
+                while (reader.hasNext()) {
+                    pipe(reader, writer);
+                }
+                reader.endArray();
+                writer.writeEndArray();
+                break;
+            case STRING:
+                writer.writeString(reader.nextString());
+                break;
+            case NUMBER:
+                // nextString() hands over the literal as written
+                writeNumber(writer, reader.nextString());
+                break;
+            case BOOLEAN:
+                writer.writeBoolean(reader.nextBoolean());
+                break;
+            case NULL:
+                reader.nextNull();
+                writer.writeNull();
+                break;
+            default:
+                throw new JsonSyntaxException("Unexpected JSON token: " + reader.peek());
+        }
+    }
+}
@@ -1,12 +1,23 @@
 package dbms;
 
-import com.google.gson.JsonPrimitive;
 import com.mongodb.*;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.CreateCollectionOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.TimeSeriesGranularity;
+import com.mongodb.client.model.TimeSeriesOptions;
+import org.bson.BsonDateTime;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
 
 import com.google.gson.JsonObject;
 
@@ -16,6 +27,11 @@ import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.Date;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,9 +40,62 @@ public class MongoDBMS implements AutoCloseable {
     private static final Logger logger = LoggerFactory.getLogger(MongoDBMS.class);
     private final MongoClient mongoClient;
     private static final Map<String, MongoDatabase> dbCache = new ConcurrentHashMap<>();
+    private final CollectionCache collectionCache;
+    private volatile UpdateBatcher updateBatcher;
+    private final StorageMode storageMode;
+    private final MongoNames names = new MongoNames();
+    private final WriteBackend writeBackend;
+    private final AsyncMongoDBMS asyncMongoDBMS; // null with the SYNC_DRIVER backend
+    private UpdateBatcher.Sink batchSink = this::insertBatch;
+    private UpdateBatcher.AsyncSink asyncBatchSink = this::insertBatchAsync;
+
+    private static final int NAMESPACE_NOT_FOUND = 26;
+    private static final int NAMESPACE_EXISTS = 48;
+    private static final int MIGRATION_BATCH_SIZE = 1000;
+
+    /* Where IoT updates are stored */
+    public enum StorageMode {
+        /* <product>_<version>_<iot_id>_updates - one plain collection per device */
+        COLLECTION_PER_DEVICE,
+        /* <product>_<version>_updates_ts - one time-series collection per product, iot_id as metaField */
+        TIME_SERIES
+    }
+
+    /* Which driver the IoT write path runs on */
+    public enum WriteBackend {
+        /* a thread waits for every round trip */
+        SYNC_DRIVER,
+        /* batched updates and device registrations are completed by the reactive-streams driver */
+        REACTIVE_DRIVER
+    }
 
     public MongoDBMS(String connectionString) {
+        this(connectionString, StorageMode.COLLECTION_PER_DEVICE);
+    }
+
+    public MongoDBMS(String connectionString, StorageMode storageMode) {
+        this(connectionString, CollectionCache.DEFAULT_TTL_MINUTES, TimeUnit.MINUTES, storageMode);
+    }
+
+    public MongoDBMS(String connectionString, long collectionCacheTtl, TimeUnit unit) {
+        this(connectionString, collectionCacheTtl, unit, StorageMode.COLLECTION_PER_DEVICE);
+    }
+
+    public MongoDBMS(String connectionString, long collectionCacheTtl, TimeUnit unit, StorageMode storageMode) {
+        this(connectionString, collectionCacheTtl, unit, storageMode, WriteBackend.SYNC_DRIVER);
+    }
+
+    public MongoDBMS(String connectionString, StorageMode storageMode, WriteBackend writeBackend) {
+        this(connectionString, CollectionCache.DEFAULT_TTL_MINUTES, TimeUnit.MINUTES, storageMode, writeBackend);
+    }
+
+    /* collectionCacheTtl - how long a collection is trusted to exist before its database is listed again.
+     * REACTIVE_DRIVER opens a second, reactive client for the write path */
+    public MongoDBMS(String connectionString, long collectionCacheTtl, TimeUnit unit, StorageMode storageMode,
+                     WriteBackend writeBackend) {
         Objects.requireNonNull(connectionString, "MongoDB connection string cannot be null.");
+        this.storageMode = Objects.requireNonNull(storageMode, "Storage mode cannot be null.");
+        this.writeBackend = Objects.requireNonNull(writeBackend, "Write backend cannot be null.");
 
         ServerApi serverApi = ServerApi.builder()
                 .version(ServerApiVersion.V1)
@@ -38,8 +107,76 @@ public class MongoDBMS implements AutoCloseable {
                 .build();
 
         this.mongoClient = MongoClients.create(settings);
+        this.collectionCache = new CollectionCache(
+                dbName -> getDatabase(dbName).listCollectionNames().into(new ArrayList<>()), collectionCacheTtl, unit);
+        this.asyncMongoDBMS = (writeBackend == WriteBackend.REACTIVE_DRIVER) ? new AsyncMongoDBMS(connectionString) : null;
+        this.updateBatcher = newUpdateBatcher(UpdateBatcher.DEFAULT_MAX_BATCH_SIZE, UpdateBatcher.DEFAULT_LINGER_MILLIS,
+                TimeUnit.MILLISECONDS, UpdateBatcher.DEFAULT_MAX_IN_FLIGHT);
         System.out.println("MongoDB client initialized for connection string: " + connectionString);
-        logger.info("MongoDB client initialized for connection string: {}", connectionString);
+        logger.info("MongoDB client initialized for connection string: {} (storage mode: {}, write backend: {})",
+                connectionString, storageMode, writeBackend);
+    }
+
+    /* Lists every company database once so the first writes after startup are already cache hits */
+    public void warmCollectionCache() {
+        try {
+            for (String dbName : mongoClient.listDatabaseNames()) {
+                if (!dbName.equals("admin") && !dbName.equals("local") && !dbName.equals("config")) {
+                    collectionCache.refresh(dbName);
+                }
+            }
+            logger.info("Collection cache warmed: {}", collectionCache);
+        } catch (MongoException e) {
+            System.err.println("Failed to warm collection cache: " + e.getMessage());
+            logger.warn("Failed to warm collection cache: {}", e.getMessage(), e);
+        }
+    }
+
+    /* Hit ratio and saved listCollectionNames round trips */
+    public CollectionCache getCollectionCache() {
+        return collectionCache;
+    }
+
+    /* Replaces the update batcher - the old one writes what it already holds before it is dropped */
+    public void configureUpdateBatching(int maxBatchSize, long linger, TimeUnit unit, int maxInFlight) {
+        UpdateBatcher previous = updateBatcher;
+        updateBatcher = newUpdateBatcher(maxBatchSize, linger, unit, maxInFlight);
+        previous.close();
+        logger.info("Update batching configured: maxBatchSize={}, linger={} {}, maxInFlight={}",
+                maxBatchSize, linger, unit, maxInFlight);
+    }
+
+    public UpdateBatcher getUpdateBatcher() {
+        return updateBatcher;
+    }
+
+    public StorageMode getStorageMode() {
+        return storageMode;
+    }
+
+    public WriteBackend getWriteBackend() {
+        return writeBackend;
+    }
+
+    /* Sends batched updates to the given sinks instead of the drivers - the write backend still picks
+     * which of the two is used. Lets the write path be measured against a stand-in server */
+    void replaceBatchSinks(UpdateBatcher.Sink sink, UpdateBatcher.AsyncSink asyncSink) {
+        batchSink = Objects.requireNonNull(sink, "Sink cannot be null.");
+        asyncBatchSink = Objects.requireNonNull(asyncSink, "Sink cannot be null.");
+        configureUpdateBatching(UpdateBatcher.DEFAULT_MAX_BATCH_SIZE, UpdateBatcher.DEFAULT_LINGER_MILLIS,
+                TimeUnit.MILLISECONDS, UpdateBatcher.DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /* With the reactive backend maxInFlight bounds concurrent batches without tying up a thread each */
+    private UpdateBatcher newUpdateBatcher(int maxBatchSize, long linger, TimeUnit unit, int maxInFlight) {
+        if (writeBackend == WriteBackend.REACTIVE_DRIVER) {
+            return UpdateBatcher.async(asyncBatchSink, maxBatchSize, linger, unit, maxInFlight);
+        }
+        return new UpdateBatcher(batchSink, maxBatchSize, linger, unit, maxInFlight);
+    }
+
+    public MongoNames getNames() {
+        return names;
     }
 
     public MongoDatabase getDatabase(String dbName) {
@@ -50,14 +187,12 @@ public class MongoDBMS implements AutoCloseable {
 
     public boolean registerCompanyDB(String companyName, String compId) {
         String fullCompanyName = companyName + "_" + compId;
-        String dbName = cleanNameForMongo(fullCompanyName);
+        String dbName = names.resolve(companyName, compId, null, null, null).getDatabase();
         logger.info("Attempting to register company DB for: {} (Cleaned DB Name: {})", fullCompanyName, dbName);
         try {
             MongoDatabase database = getDatabase(dbName);
 
-            boolean collectionExists = database.listCollectionNames().into(new ArrayList<>()).contains("metadata");
-            if (!collectionExists) {
-                database.createCollection("metadata");
+            if (createCollectionIfAbsent(database, dbName, "metadata")) {
                 System.out.println("Created 'metadata' collection in DB: " + dbName);
                 logger.info("Created 'metadata' collection in DB: {}", dbName);
                 MongoCollection<Document> metadataCollection = database.getCollection("metadata");
@@ -81,15 +216,14 @@ public class MongoDBMS implements AutoCloseable {
 
     public MongoCollection<Document> registerProductCollection(String companyName, String companyId, String productName, String version) {
         String fullCompanyName = companyName + "_" + companyId;
-        String dbName = cleanNameForMongo(fullCompanyName);
-        String collectionName = generateProductCollectionName(productName, version);
+        MongoNames.Names resolved = names.resolve(companyName, companyId, productName, version, null);
+        String dbName = resolved.getDatabase();
+        String collectionName = resolved.getProductCollection();
         logger.info("Attempting to register product collection: {} (v{}) for company: {} (DB: {})", productName, version, fullCompanyName, dbName);
         try {
             MongoDatabase database = getDatabase(dbName);
 
-            // check if the collection exists
-            if (!database.listCollectionNames().into(new ArrayList<>()).contains(collectionName)) {
-                database.createCollection(collectionName);
+            if (createCollectionIfAbsent(database, dbName, collectionName)) {
                 System.out.println("Created product collection: " + collectionName + " in DB: " + dbName);
                 logger.info("Created product collection: {} in DB: {}", collectionName, dbName);
 
@@ -116,20 +250,24 @@ public class MongoDBMS implements AutoCloseable {
         }
     }
 
-    private String generateIoTUpdateCollectionName(String prodName, String version, String iotId) {
-        // Example: apple_watch_3_0_iot-device-001_updates
-        return cleanNameForMongo(prodName + "_" + version + "_" + iotId + "_updates");
+    private static CreateCollectionOptions timeSeriesOptions() {
+        return new CreateCollectionOptions().timeSeriesOptions(
+                new TimeSeriesOptions("timestamp")
+                        .metaField("iot_id")
+                        .granularity(TimeSeriesGranularity.SECONDS));
     }
 
     public void createIoTUpdateCollection(String companyName, String compId, String prodName, String version, String iotId) throws IOException {
-        String dbName = cleanNameForMongo(companyName + "_" + compId);
-        String collectionName = generateIoTUpdateCollectionName(prodName, version, iotId);
+        MongoNames.Names resolved = names.resolve(companyName, compId, prodName, version, iotId);
+        String dbName = resolved.getDatabase();
+        String collectionName = resolved.getUpdateCollection(storageMode);
         logger.info("Attempting to create IoT update collection: {} for IoT: {} (DB: {})", collectionName, iotId, dbName);
 
         try {
             MongoDatabase database = getDatabase(dbName);
-            if (!database.listCollectionNames().into(new ArrayList<>()).contains(collectionName)) {
-                database.createCollection(collectionName);
+            CreateCollectionOptions options = (storageMode == StorageMode.TIME_SERIES)
+                    ? timeSeriesOptions() : new CreateCollectionOptions();
+            if (createCollectionIfAbsent(database, dbName, collectionName, options)) {
                 System.out.println("Created IoT update collection: " + collectionName + " in DB: " + dbName);
                 logger.info("Created IoT update collection: {} in DB: {}", collectionName, dbName);
             } else {
@@ -148,8 +286,9 @@ public class MongoDBMS implements AutoCloseable {
     }
 
     public Document registerIoTDevice(String companyName, String compId, String prodName, String version, String iotId, JsonObject extraData) {
-        String companyDbName = cleanNameForMongo(companyName + "_" + compId);
-        String productCollectionName = generateProductCollectionName(prodName, version);
+        MongoNames.Names resolved = names.resolve(companyName, compId, prodName, version, iotId);
+        String companyDbName = resolved.getDatabase();
+        String productCollectionName = resolved.getProductCollection();
         logger.info("Attempting to register IoT device: {} in collection: {} for company: {} (DB: {})", iotId, productCollectionName, companyName, companyDbName);
 
         Document iotDevice = null;
@@ -160,28 +299,14 @@ public class MongoDBMS implements AutoCloseable {
             MongoCollection<Document> productCollection = database.getCollection(productCollectionName);
 
             // check if the collection actually exists
-            if (!database.listCollectionNames().into(new ArrayList<>()).contains(productCollectionName)) {
+            if (!collectionCache.exists(companyDbName, productCollectionName)) {
                 String errorMessage = String.format("Error: Product collection '%s' does not exist for company '%s'. Register product first.", productCollectionName, companyDbName);
                 System.err.println(errorMessage);
                 logger.error(errorMessage);
                 return null;
             }
 
-            iotDevice = new Document("_id", iotId)
-                    .append("created_at", new Date())
-                    .append("company_id", compId)
-                    .append("company_name", companyName)
-                    .append("product_name", prodName)
-                    .append("product_version", version);
-
-            if (extraData != null && !extraData.entrySet().isEmpty()) {
-                Document extraFieldsDoc = convertJsonToDocument(extraData);
-                for (Map.Entry<String, Object> entry : extraFieldsDoc.entrySet()) {
-                    iotDevice.append(entry.getKey(), entry.getValue());
-                }
-                logger.debug("Appending extra data to IoT device document: {}", iotDevice);
-            }
-
+            iotDevice = newIoTDeviceDocument(companyName, compId, prodName, version, iotId, extraData);
             productCollection.insertOne(iotDevice);
             System.out.println("IoT device " + iotId + " successfully registered in collection " + productCollectionName + " for company " + companyDbName);
             logger.info("IoT device {} successfully registered in collection {} for company {}", iotId, productCollectionName, companyDbName);
@@ -192,6 +317,9 @@ public class MongoDBMS implements AutoCloseable {
                 System.err.println("IoT Device " + iotId + " already exists in MongoDB for company " + companyName + ", product " + prodName + " (v" + version + ").");
                 logger.warn("IoT Device {} already exists in MongoDB for company {}, product {} (v{}).", iotId, companyName, prodName, version);
             } else {
+                if (e.getCode() == NAMESPACE_NOT_FOUND) {
+                    collectionCache.invalidate(companyDbName, productCollectionName);
+                }
                 System.err.println("Error registering IoT device " + iotId + " in MongoDB: " + e.getMessage());
                 logger.error("Error registering IoT device {} in MongoDB: {}", iotId, e.getMessage(), e);
                 return null;
@@ -214,15 +342,103 @@ public class MongoDBMS implements AutoCloseable {
         return deviceAlreadyExists ? null : iotDevice;
     }
 
+    /* Same outcome as registerIoTDevice. With the reactive backend the calling thread only checks the
+     * collection cache; the insert and the update collection's creation complete on the driver */
+    public CompletionStage<Document> registerIoTDeviceAsync(String companyName, String compId, String prodName, String version, String iotId, JsonObject extraData) {
+        if (asyncMongoDBMS == null) {
+            return CompletableFuture.completedFuture(registerIoTDevice(companyName, compId, prodName, version, iotId, extraData));
+        }
+        MongoNames.Names resolved = names.resolve(companyName, compId, prodName, version, iotId);
+        String companyDbName = resolved.getDatabase();
+        String productCollectionName = resolved.getProductCollection();
+        String updateCollectionName = resolved.getUpdateCollection(storageMode);
+        logger.info("Attempting to register IoT device: {} in collection: {} for company: {} (DB: {})", iotId, productCollectionName, companyName, companyDbName);
+
+        boolean updateCollectionExists;
+        try {
+            if (!collectionCache.exists(companyDbName, productCollectionName)) {
+                String errorMessage = String.format("Error: Product collection '%s' does not exist for company '%s'. Register product first.", productCollectionName, companyDbName);
+                System.err.println(errorMessage);
+                logger.error(errorMessage);
+                return CompletableFuture.completedFuture(null);
+            }
+            updateCollectionExists = collectionCache.exists(companyDbName, updateCollectionName);
+        } catch (MongoException e) {
+            logger.error("Error registering IoT device {} in MongoDB: {}", iotId, e.getMessage(), e);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        Document iotDevice = newIoTDeviceDocument(companyName, compId, prodName, version, iotId, extraData);
+        return asyncMongoDBMS.insertOne(companyDbName, productCollectionName, iotDevice)
+                .handle((inserted, error) -> {
+                    if (error == null) {
+                        logger.info("IoT device {} successfully registered in collection {} for company {}", iotId, productCollectionName, companyDbName);
+                        return false;
+                    }
+                    Throwable cause = (error instanceof CompletionException) ? error.getCause() : error;
+                    if (cause.getMessage() != null && cause.getMessage().contains("E11000 duplicate key error")) {
+                        logger.warn("IoT Device {} already exists in MongoDB for company {}, product {} (v{}).", iotId, companyName, prodName, version);
+                        return true;
+                    }
+                    if (cause instanceof MongoException && ((MongoException) cause).getCode() == NAMESPACE_NOT_FOUND) {
+                        collectionCache.invalidate(companyDbName, productCollectionName);
+                    }
+                    throw new CompletionException(cause);
+                })
+                .thenCompose(deviceAlreadyExists -> {
+                    if (updateCollectionExists) {
+                        return CompletableFuture.completedFuture(deviceAlreadyExists);
+                    }
+                    CreateCollectionOptions options = (storageMode == StorageMode.TIME_SERIES)
+                            ? timeSeriesOptions() : new CreateCollectionOptions();
+                    return asyncMongoDBMS.createCollection(companyDbName, updateCollectionName, options)
+                            .handle((created, error) -> {
+                                if (error == null) {
+                                    collectionCache.markExists(companyDbName, updateCollectionName);
+                                } else {
+                                    logger.warn("Failed to ensure IoT update collection {} for device {}: {}", updateCollectionName, iotId, error.getMessage());
+                                }
+                                return deviceAlreadyExists;
+                            });
+                })
+                .handle((deviceAlreadyExists, error) -> {
+                    if (error != null) {
+                        System.err.println("Error registering IoT device " + iotId + " in MongoDB: " + error.getMessage());
+                        logger.error("Error registering IoT device {} in MongoDB: {}", iotId, error.getMessage(), error);
+                        return null;
+                    }
+                    return deviceAlreadyExists ? null : iotDevice;
+                });
+    }
+
+    private static Document newIoTDeviceDocument(String companyName, String compId, String prodName, String version, String iotId, JsonObject extraData) {
+        Document iotDevice = new Document("_id", iotId)
+                .append("created_at", new Date())
+                .append("company_id", compId)
+                .append("company_name", companyName)
+                .append("product_name", prodName)
+                .append("product_version", version);
+
+        if (extraData != null && !extraData.entrySet().isEmpty()) {
+            Document extraFieldsDoc = JsonBsonCodec.toDocument(extraData);
+            for (Map.Entry<String, Object> entry : extraFieldsDoc.entrySet()) {
+                iotDevice.append(entry.getKey(), entry.getValue());
+            }
+            logger.debug("Appending extra data to IoT device document: {}", iotDevice);
+        }
+        return iotDevice;
+    }
+
     public boolean updateIoTDevice(String companyName, String compId, String prodName, String version, String iotId, Document updateData) {
-        String companyDbName = cleanNameForMongo(companyName + "_" + compId);
-        String iotUpdateCollectionName = generateIoTUpdateCollectionName(prodName, version, iotId);
+        MongoNames.Names resolved = names.resolve(companyName, compId, prodName, version, iotId);
+        String companyDbName = resolved.getDatabase();
+        String iotUpdateCollectionName = resolved.getUpdateCollection(storageMode);
         logger.info("Attempting to log update for IoT device: {} in collection: {} for company: {} (DB: {})", iotId, iotUpdateCollectionName, companyName, companyDbName);
         try {
             MongoDatabase database = mongoClient.getDatabase(companyDbName);
             MongoCollection<Document> updatesCollection = database.getCollection(iotUpdateCollectionName);
 
-            if (!database.listCollectionNames().into(new ArrayList<>()).contains(iotUpdateCollectionName)) {
+            if (!collectionCache.exists(companyDbName, iotUpdateCollectionName)) {
                 System.err.println("Error: IoT update collection '" + iotUpdateCollectionName + "' not found for company '" + companyDbName + "'. Cannot log update for IoT device " + iotId + ". Ensure device is registered and its update collection created.");
                 logger.error("Error: IoT update collection '{}' not found for company '{}'. Cannot log update for IoT device {}. Ensure device is registered and its update collection created.", iotUpdateCollectionName, companyDbName, iotId);
                 return false;
@@ -232,6 +448,9 @@ public class MongoDBMS implements AutoCloseable {
                 updateData.append("timestamp", new Date());
                 logger.debug("Added timestamp to update data for IoT device {}: {}", iotId, updateData.getDate("timestamp"));
             }
+            if (storageMode == StorageMode.TIME_SERIES) {
+                updateData.putIfAbsent("iot_id", iotId);
+            }
 
             updatesCollection.insertOne(updateData);
             System.out.println("Logged update for IoT device " + iotId + " into collection: " + iotUpdateCollectionName + " in DB: " + companyDbName);
@@ -239,90 +458,221 @@ public class MongoDBMS implements AutoCloseable {
             return true;
 
         } catch (MongoException e) {
+            if (e.getCode() == NAMESPACE_NOT_FOUND) {
+                collectionCache.invalidate(companyDbName, iotUpdateCollectionName);
+            }
             System.err.println("Error logging update for IoT device " + iotId + " in MongoDB for company " + companyName + " (ID: " + compId + "): " + e.getMessage());
             logger.error("Error logging update for IoT device {} in MongoDB for company {} (ID: {}): {}", iotId, companyName, compId, e.getMessage(), e);
             return false;
         }
     }
 
-    @Override
-    public void close() {
-        if (mongoClient != null) {
-            mongoClient.close();
-            System.out.println("MongoDB client closed.");
-            logger.info("MongoDB client closed.");
-        } else {
-            logger.warn("Attempted to close MongoDB client, but it was null.");
+    /* Returns true if the collection was created by this call. Losing a creation race to
+     * another gateway (NamespaceExists) counts as the collection being there */
+    private boolean createCollectionIfAbsent(MongoDatabase database, String dbName, String collectionName) {
+        return createCollectionIfAbsent(database, dbName, collectionName, new CreateCollectionOptions());
+    }
+
+    private boolean createCollectionIfAbsent(MongoDatabase database, String dbName, String collectionName,
+                                             CreateCollectionOptions options) {
+        if (collectionCache.exists(dbName, collectionName)) {
+            return false;
+        }
+        try {
+            database.createCollection(collectionName, options);
+            collectionCache.markExists(dbName, collectionName);
+            return true;
+        } catch (MongoCommandException e) {
+            if (e.getErrorCode() != NAMESPACE_EXISTS) {
+                throw e;
+            }
+            collectionCache.markExists(dbName, collectionName);
+            return false;
         }
     }
 
-    private static Document convertJsonToDocument(JsonObject jsonObject) {
-        Document document = new Document();
-        logger.debug("Converting JsonObject to Document: {}", jsonObject.toString());
-        jsonObject.entrySet().forEach(entry -> {
-            String key = entry.getKey();
-            com.google.gson.JsonElement value = entry.getValue();
-
-            if (value.isJsonPrimitive()) {
-                JsonPrimitive primitive = value.getAsJsonPrimitive();
-                if (primitive.isBoolean()) {
-                    document.append(key, primitive.getAsBoolean());
-                    logger.trace("Appended boolean '{}': {}", key, primitive.getAsBoolean());
-                } else if (primitive.isNumber()) {
-                    try {
-                        document.append(key, primitive.getAsInt());
-                        logger.trace("Appended int '{}': {}", key, primitive.getAsInt());
-                    } catch (NumberFormatException e1) {
-                        try {
-                            document.append(key, primitive.getAsLong());
-                            logger.trace("Appended long '{}': {}", key, primitive.getAsLong());
-                        } catch (NumberFormatException e2) {
-                            try {
-                                document.append(key, primitive.getAsDouble());
-                                logger.trace("Appended double '{}': {}", key, primitive.getAsDouble());
-                            } catch (NumberFormatException e3) {
-                                document.append(key, primitive.getAsString());
-                                System.err.println("Warning: Could not parse number '" + primitive.getAsString() + "' for key '" + key + "' as int, long, or double. Stored as String.");
-                                logger.warn("Could not parse number '{}' for key '{}' as int, long, or double. Stored as String.", primitive.getAsString(), key);
-                            }
-                        }
-                    }
-                } else if (primitive.isString()) {
-                    document.append(key, primitive.getAsString());
-                    logger.trace("Appended string '{}': {}", key, primitive.getAsString());
-                } else if (primitive.isJsonNull()) {
-                    document.append(key, null);
-                    logger.trace("Appended null for key '{}'", key);
-                } else {
-                    document.append(key, primitive.getAsString());
-                    logger.trace("Appended primitive as string for key '{}': {}", key, primitive.getAsString());
+    /* Same checks as updateIoTDevice, but the insert is batched with other updates of the same
+     * device. Completes with true once the batch holding the update is acknowledged */
+    public CompletionStage<Boolean> updateIoTDeviceAsync(String companyName, String compId, String prodName, String version, String iotId, Document updateData) {
+        return updateIoTDeviceAsync(companyName, compId, prodName, version, iotId,
+                updateData.toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry()));
+    }
+
+    /* A RawBsonDocument, as JsonBsonCodec writes it, goes to the server as it is, without being
+     * encoded again. It is copied only if it lacks the timestamp or, in TIME_SERIES mode, the iot_id */
+    public CompletionStage<Boolean> updateIoTDeviceAsync(String companyName, String compId, String prodName, String version, String iotId, BsonDocument updateData) {
+        MongoNames.Names resolved = names.resolve(companyName, compId, prodName, version, iotId);
+        String companyDbName = resolved.getDatabase();
+        String iotUpdateCollectionName = resolved.getUpdateCollection(storageMode);
+        logger.debug("Queueing update for IoT device: {} in collection: {} for company: {} (DB: {})", iotId, iotUpdateCollectionName, companyName, companyDbName);
+        try {
+            if (!collectionCache.exists(companyDbName, iotUpdateCollectionName)) {
+                System.err.println("Error: IoT update collection '" + iotUpdateCollectionName + "' not found for company '" + companyDbName + "'. Cannot log update for IoT device " + iotId + ". Ensure device is registered and its update collection created.");
+                logger.error("Error: IoT update collection '{}' not found for company '{}'. Cannot log update for IoT device {}. Ensure device is registered and its update collection created.", iotUpdateCollectionName, companyDbName, iotId);
+                return CompletableFuture.completedFuture(false);
+            }
+        } catch (MongoException e) {
+            logger.error("Error logging update for IoT device {} in MongoDB for company {} (ID: {}): {}", iotId, companyName, compId, e.getMessage(), e);
+            return CompletableFuture.completedFuture(false);
+        }
+
+        boolean missingTimestamp = !updateData.containsKey("timestamp");
+        boolean missingIotId = storageMode == StorageMode.TIME_SERIES && !updateData.containsKey("iot_id");
+        if (missingTimestamp || missingIotId) {
+            BsonDocument completed = (updateData instanceof RawBsonDocument) ? new BsonDocument() : updateData;
+            if (completed != updateData) {
+                completed.putAll(updateData);
+            }
+            if (missingTimestamp) {
+                completed.append("timestamp", new BsonDateTime(System.currentTimeMillis()));
+            }
+            if (missingIotId) {
+                completed.append("iot_id", new BsonString(iotId));
+            }
+            updateData = completed;
+        }
+        return updateBatcher.add(companyDbName, iotUpdateCollectionName, updateData);
+    }
+
+    /* Newest first, from whichever collection the storage mode keeps the device's updates in */
+    public List<Document> findRecentUpdates(String companyName, String compId, String prodName, String version, String iotId, int limit) {
+        MongoNames.Names resolved = names.resolve(companyName, compId, prodName, version, iotId);
+        MongoCollection<Document> updatesCollection = getDatabase(resolved.getDatabase())
+                .getCollection(resolved.getUpdateCollection(storageMode));
+        Bson filter = (storageMode == StorageMode.TIME_SERIES) ? Filters.eq("iot_id", iotId) : new Document();
+        return updatesCollection.find(filter)
+                .sort(Sorts.descending("timestamp"))
+                .limit(limit)
+                .into(new ArrayList<>());
+    }
+
+    /* Copies a product's per-device update collections into its time-series collection and returns
+     * the number of documents copied. A device whose copy already matches its source is skipped and
+     * a partially copied one is copied again, so an interrupted migration can simply be re-run.
+     * With dropSource, a source collection is dropped once its copy holds as many documents */
+    public long migrateToTimeSeries(String companyName, String compId, String prodName, String version, boolean dropSource) {
+        MongoNames.Names resolved = names.resolve(companyName, compId, prodName, version, null);
+        String companyDbName = resolved.getDatabase();
+        String productCollectionName = resolved.getProductCollection();
+        String timeSeriesCollectionName = resolved.getTimeSeriesCollection();
+        logger.info("Migrating updates of product {} (v{}) in DB: {} into {}", prodName, version, companyDbName, timeSeriesCollectionName);
+
+        MongoDatabase database = getDatabase(companyDbName);
+        createCollectionIfAbsent(database, companyDbName, timeSeriesCollectionName, timeSeriesOptions());
+        MongoCollection<Document> target = database.getCollection(timeSeriesCollectionName);
+
+        long copied = 0;
+        // device documents carry the product fields, the product's metadata document does not
+        for (Document device : database.getCollection(productCollectionName)
+                .find(Filters.exists("product_name"))
+                .projection(new Document("_id", 1))) {
+            String iotId = device.get("_id").toString();
+            String sourceName = names.resolve(companyName, compId, prodName, version, iotId).getDeviceUpdateCollection();
+            if (!collectionCache.exists(companyDbName, sourceName)) {
+                continue;
+            }
+            MongoCollection<Document> source = database.getCollection(sourceName);
+
+            long sourceCount = source.countDocuments();
+            long targetCount = target.countDocuments(Filters.eq("iot_id", iotId));
+            if (targetCount != sourceCount) {
+                if (targetCount > 0) {
+                    target.deleteMany(Filters.eq("iot_id", iotId));
                 }
-            } else if (value.isJsonNull()) {
-                document.append(key, null);
-                logger.trace("Appended null for key '{}' (JsonNull)", key);
-            } else if (value.isJsonArray()) {
-                System.err.println("Warning: Skipping JSON Array for key: " + key);
-                logger.warn("Skipping JSON Array for key: {}", key);
-            } else if (value.isJsonObject()) {
-                System.err.println("Warning: Skipping nested JSON Object for key: " + key);
-                logger.warn("Skipping nested JSON Object for key: {}", key);
+                copied += copyUpdates(source, target, iotId);
+                targetCount = target.countDocuments(Filters.eq("iot_id", iotId));
             }
-        });
-        logger.debug("Finished converting JsonObject to Document. Result: {}", document);
-        return document;
+
+            if (dropSource && targetCount == sourceCount) {
+                source.drop();
+                collectionCache.invalidate(companyDbName, sourceName);
+            } else if (dropSource) {
+                logger.warn("Kept {} - copied {} of {} updates of IoT device {}", sourceName, targetCount, sourceCount, iotId);
+            }
+        }
+        System.out.println("Migrated " + copied + " updates into " + timeSeriesCollectionName + " in DB: " + companyDbName);
+        logger.info("Migrated {} updates into {} in DB: {}", copied, timeSeriesCollectionName, companyDbName);
+        return copied;
+    }
+
+    private static long copyUpdates(MongoCollection<Document> source, MongoCollection<Document> target, String iotId) {
+        InsertManyOptions unordered = new InsertManyOptions().ordered(false);
+        List<Document> batch = new ArrayList<>(MIGRATION_BATCH_SIZE);
+        long copied = 0;
+        for (Document update : source.find().batchSize(MIGRATION_BATCH_SIZE)) {
+            update.put("iot_id", iotId);
+            if (!(update.get("timestamp") instanceof Date)) {
+                // the time field is mandatory - fall back to when the update was inserted
+                Object id = update.get("_id");
+                update.put("timestamp", (id instanceof ObjectId) ? ((ObjectId) id).getDate() : new Date());
+            }
+            batch.add(update);
+            if (batch.size() == MIGRATION_BATCH_SIZE) {
+                target.insertMany(batch, unordered);
+                copied += batch.size();
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            target.insertMany(batch, unordered);
+            copied += batch.size();
+        }
+        return copied;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void insertBatch(String dbName, String collectionName, List<BsonDocument> documents) {
+        InsertManyOptions unordered = new InsertManyOptions().ordered(false);
+        try {
+            MongoDatabase database = getDatabase(dbName);
+            if (allRaw(documents)) {
+                // RawBsonDocumentCodec copies the bytes through, BsonDocumentCodec would walk every field
+                List<? extends BsonDocument> raw = documents;
+                database.getCollection(collectionName, RawBsonDocument.class)
+                        .insertMany((List<RawBsonDocument>) raw, unordered);
+            } else {
+                database.getCollection(collectionName, BsonDocument.class).insertMany(documents, unordered);
+            }
+            logger.debug("Logged {} updates into collection: {} in DB: {}", documents.size(), collectionName, dbName);
+        } catch (MongoException e) {
+            if (e.getCode() == NAMESPACE_NOT_FOUND) {
+                collectionCache.invalidate(dbName, collectionName);
+            }
+            throw e;
+        }
     }
 
-    private String cleanNameForMongo(String name) {
-        String cleaned = name.replaceAll("[^a-zA-Z0-9_.-]", "_")
-                .replaceAll("\\s+", "_")
-                .toLowerCase();
-        logger.debug("Cleaned name '{}' to '{}' for MongoDB", name, cleaned);
-        return cleaned;
+    private CompletionStage<Void> insertBatchAsync(String dbName, String collectionName, List<BsonDocument> documents) {
+        return asyncMongoDBMS.insertMany(dbName, collectionName, documents)
+                .whenComplete((ignored, error) -> {
+                    Throwable cause = (error instanceof CompletionException) ? error.getCause() : error;
+                    if (cause instanceof MongoException && ((MongoException) cause).getCode() == NAMESPACE_NOT_FOUND) {
+                        collectionCache.invalidate(dbName, collectionName);
+                    }
+                });
     }
 
-    private String generateProductCollectionName(String prodName, String version) {
-        String generatedName = cleanNameForMongo(prodName + "_" + version + "_iots");
-        logger.debug("Generated product collection name for product '{}' (v{}) as '{}'", prodName, version, generatedName);
-        return generatedName;
+    static boolean allRaw(List<BsonDocument> documents) {
+        for (BsonDocument document : documents) {
+            if (!(document instanceof RawBsonDocument)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        updateBatcher.close();
+        if (asyncMongoDBMS != null) {
+            asyncMongoDBMS.close();
+        }
+        if (mongoClient != null) {
+            mongoClient.close();
+            System.out.println("MongoDB client closed.");
+            logger.info("MongoDB client closed.");
+        } else {
+            logger.warn("Attempted to close MongoDB client, but it was null.");
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,198 @@
+package dbms;
+
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/* Resolves (company, company id, product, version, iot id) to the database and collection names
+ * MongoDBMS uses for them. Every update of a device used to concatenate and regex-sanitize the same
+ * strings again - here each tuple is sanitized once and its names are cached. The cache is bounded:
+ * past maxEntries an arbitrary entry is evicted, so a fleet larger than the cache only costs extra
+ * recomputation, never unbounded memory */
+public class MongoNames {
+    public static final int DEFAULT_MAX_ENTRIES = 100_000;
+
+    private final Map<Key, Names> namesByKey = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public MongoNames() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public MongoNames(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Max entries must be positive: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+    }
+
+    public Names resolve(String companyName, String compId, String prodName, String version, String iotId) {
+        Key key = new Key(companyName, compId, prodName, version, iotId);
+        Names names = namesByKey.get(key);
+        if (names != null) {
+            hits.increment();
+            return names;
+        }
+
+        misses.increment();
+        names = new Names(companyName, compId, prodName, version, iotId);
+        if (namesByKey.size() >= maxEntries) {
+            evictOne();
+        }
+        Names raced = namesByKey.putIfAbsent(key, names);
+        return (raced != null) ? raced : names;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        return namesByKey.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MongoNames{size=%d, hits=%d, misses=%d}", size(), getHits(), getMisses());
+    }
+
+    /* Same result as name.replaceAll("[^a-zA-Z0-9_.-]", "_").replaceAll("\\s+", "_").toLowerCase():
+     * every code point outside [a-zA-Z0-9_.-] becomes one '_' and the result is lower-cased.
+     * Names that are already clean are returned as they are, without allocating */
+    public static String sanitize(String name) {
+        int length = name.length();
+        int clean = 0;
+        while (clean < length && isCleanLowerCase(name.charAt(clean))) {
+            ++clean;
+        }
+        if (clean == length) {
+            return name;
+        }
+
+        // the Turkic locales lower-case 'I' to a dotless i - leave those to String.toLowerCase()
+        boolean asciiLowerCase = !isTurkic(Locale.getDefault());
+        StringBuilder sanitized = new StringBuilder(length).append(name, 0, clean);
+        for (int i = clean; i < length; ++i) {
+            char c = name.charAt(i);
+            if (isCleanLowerCase(c)) {
+                sanitized.append(c);
+            } else if (c >= 'A' && c <= 'Z') {
+                sanitized.append(asciiLowerCase ? (char) (c + ('a' - 'A')) : c);
+            } else {
+                // a surrogate pair is one code point, hence one '_'
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(name.charAt(i + 1))) {
+                    ++i;
+                }
+                sanitized.append('_');
+            }
+        }
+        return asciiLowerCase ? sanitized.toString() : sanitized.toString().toLowerCase();
+    }
+
+    private static boolean isCleanLowerCase(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_' || c == '.' || c == '-';
+    }
+
+    private static boolean isTurkic(Locale locale) {
+        String language = locale.getLanguage();
+        return language.equals("tr") || language.equals("az");
+    }
+
+    private void evictOne() {
+        Iterator<Key> keys = namesByKey.keySet().iterator();
+        if (keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    /* Every name a device's documents may live in. Fields whose inputs were not given are null */
+    public static class Names {
+        private final String database;
+        private final String productCollection;
+        private final String deviceUpdateCollection;
+        private final String timeSeriesCollection;
+
+        private Names(String companyName, String compId, String prodName, String version, String iotId) {
+            database = sanitize(companyName + "_" + compId);
+            boolean hasProduct = prodName != null && version != null;
+            // Example: apple_watch_3_0_iots
+            productCollection = hasProduct ? sanitize(prodName + "_" + version + "_iots") : null;
+            // Example: apple_watch_3_0_iot-device-001_updates
+            deviceUpdateCollection = (hasProduct && iotId != null)
+                    ? sanitize(prodName + "_" + version + "_" + iotId + "_updates") : null;
+            // Example: apple_watch_3_0_updates_ts
+            timeSeriesCollection = hasProduct ? sanitize(prodName + "_" + version + "_updates_ts") : null;
+        }
+
+        public String getDatabase() {
+            return database;
+        }
+
+        public String getProductCollection() {
+            return productCollection;
+        }
+
+        public String getDeviceUpdateCollection() {
+            return deviceUpdateCollection;
+        }
+
+        public String getTimeSeriesCollection() {
+            return timeSeriesCollection;
+        }
+
+        /* The collection a device's updates go to under the given storage mode */
+        public String getUpdateCollection(MongoDBMS.StorageMode storageMode) {
+            return (storageMode == MongoDBMS.StorageMode.TIME_SERIES) ? timeSeriesCollection : deviceUpdateCollection;
+        }
+    }
+
+    private static class Key {
+        private final String companyName;
+        private final String compId;
+        private final String prodName;
+        private final String version;
+        private final String iotId;
+        private final int hash;
+
+        private Key(String companyName, String compId, String prodName, String version, String iotId) {
+            this.companyName = companyName;
+            this.compId = compId;
+            this.prodName = prodName;
+            this.version = version;
+            this.iotId = iotId;
+            int h = Objects.hashCode(companyName);
+            h = 31 * h + Objects.hashCode(compId);
+            h = 31 * h + Objects.hashCode(prodName);
+            h = 31 * h + Objects.hashCode(version);
+            this.hash = 31 * h + Objects.hashCode(iotId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return hash == other.hash
+                    && Objects.equals(companyName, other.companyName)
+                    && Objects.equals(compId, other.compId)
+                    && Objects.equals(prodName, other.prodName)
+                    && Objects.equals(version, other.version)
+                    && Objects.equals(iotId, other.iotId);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package dbms;
+
+/* Command line entry point for MongoDBMS.migrateToTimeSeries. Reads MONGO_URI like the gateway.
+ * Usage: TimeSeriesMigration <company name> <company id> <product name> <product version> [--drop-source]
+ * Safe to re-run - devices already migrated are skipped */
+public class TimeSeriesMigration {
+    public static void main(String[] args) {
+        if (args.length < 4 || args.length > 5 || (args.length == 5 && !args[4].equals("--drop-source"))) {
+            System.err.println("Usage: TimeSeriesMigration <company name> <company id> <product name> <product version> [--drop-source]");
+            System.exit(1);
+        }
+        String connectionString = System.getenv("MONGO_URI");
+        if (connectionString == null) {
+            System.err.println("MONGO_URI is not set.");
+            System.exit(1);
+        }
+
+        boolean dropSource = args.length == 5;
+        try (MongoDBMS mongoDBMS = new MongoDBMS(connectionString, MongoDBMS.StorageMode.TIME_SERIES)) {
+            long copied = mongoDBMS.migrateToTimeSeries(args[0], args[1], args[2], args[3], dropSource);
+            System.out.println("Done: " + copied + " updates copied" + (dropSource ? ", migrated sources dropped." : "."));
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package dbms;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import org.bson.BsonDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/* Write-behind buffer for IoT update documents. Documents are grouped by target namespace and
+ * written as one unordered insertMany once a batch is full or its oldest document has waited for
+ * the linger time. The stage returned by add() completes only after the server acknowledged the
+ * batch, so a caller that answers from it never reports an update that was not written.
+ * At most maxInFlight batches are written concurrently - add() blocks when they are all busy,
+ * which pushes back on the producers instead of buffering without bound. Batches due to their linger
+ * time wait in a queue for a free slot instead, so the linger timer never blocks. A blocking Sink gets
+ * maxInFlight writer threads; an AsyncSink is called directly and holds no thread while the
+ * server works */
+public class UpdateBatcher implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(UpdateBatcher.class);
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+    public static final long DEFAULT_LINGER_MILLIS = 5;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+
+    private final AsyncSink sink;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final Map<Namespace, Batch> pending = new ConcurrentHashMap<>();
+    private final Queue<Batch> lingered = new ConcurrentLinkedQueue<>(); // due, waiting for a free slot
+    private final AtomicInteger lingerDrains = new AtomicInteger(0);
+    private final ReadWriteLock closing = new ReentrantReadWriteLock(); // add() reads, close() writes
+    private final ScheduledExecutorService lingerTimer;
+    private final ExecutorService writers; // only for a blocking Sink
+    private final Histogram flushLatencyMicros = new Histogram("flushLatencyMicros");
+    private final Histogram batchSizes = new Histogram("batchSize");
+    private volatile boolean closed = false;
+
+    /* Writes one batch into dbName.collectionName. A MongoBulkWriteException fails only the
+     * documents it reports, any other exception fails the whole batch */
+    @FunctionalInterface
+    public interface Sink {
+        void insertMany(String dbName, String collectionName, List<BsonDocument> documents);
+    }
+
+    /* Same contract as Sink, reported through the returned stage instead of by returning or throwing */
+    @FunctionalInterface
+    public interface AsyncSink {
+        CompletionStage<Void> insertMany(String dbName, String collectionName, List<BsonDocument> documents);
+    }
+
+    public UpdateBatcher(Sink sink) {
+        this(sink, DEFAULT_MAX_BATCH_SIZE, DEFAULT_LINGER_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    public UpdateBatcher(Sink sink, int maxBatchSize, long linger, TimeUnit unit, int maxInFlight) {
+        this(Objects.requireNonNull(sink, "Sink cannot be null."), null, maxBatchSize, linger, unit, maxInFlight);
+    }
+
+    /* Factories rather than constructors: a lambda would fit both sink types and be ambiguous */
+    public static UpdateBatcher async(AsyncSink sink) {
+        return async(sink, DEFAULT_MAX_BATCH_SIZE, DEFAULT_LINGER_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    public static UpdateBatcher async(AsyncSink sink, int maxBatchSize, long linger, TimeUnit unit, int maxInFlight) {
+        return new UpdateBatcher(null, Objects.requireNonNull(sink, "Sink cannot be null."), maxBatchSize, linger, unit, maxInFlight);
+    }
+
+    private UpdateBatcher(Sink blockingSink, AsyncSink asyncSink, int maxBatchSize, long linger, TimeUnit unit, int maxInFlight) {
+        if (maxBatchSize <= 0 || linger < 0 || maxInFlight <= 0) {
+            throw new IllegalArgumentException("Invalid batching configuration: maxBatchSize=" + maxBatchSize +
+                    ", linger=" + linger + ", maxInFlight=" + maxInFlight);
+        }
+        this.maxBatchSize = maxBatchSize;
+        this.lingerNanos = unit.toNanos(linger);
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.lingerTimer = Executors.newSingleThreadScheduledExecutor(runnable -> daemon(runnable, "update-batcher-linger"));
+        if (blockingSink != null) {
+            ExecutorService writerThreads = Executors.newFixedThreadPool(maxInFlight, runnable -> daemon(runnable, "update-batcher-writer"));
+            this.writers = writerThreads;
+            this.sink = (dbName, collectionName, documents) -> CompletableFuture.runAsync(
+                    () -> blockingSink.insertMany(dbName, collectionName, documents), writerThreads);
+        } else {
+            this.writers = null;
+            this.sink = asyncSink;
+        }
+    }
+
+    /* Completes with true once the document is written, false if the write failed */
+    public CompletionStage<Boolean> add(String dbName, String collectionName, BsonDocument document) {
+        Namespace namespace = new Namespace(dbName, collectionName);
+        CompletableFuture<Boolean> written = new CompletableFuture<>();
+        Batch[] full = new Batch[1];
+
+        /* close() cannot set closed between the check and the insert, so every batch it does not
+         * find pending is either already submitted or never created */
+        closing.readLock().lock();
+        try {
+            if (closed) {
+                return CompletableFuture.completedFuture(false);
+            }
+            pending.compute(namespace, (key, batch) -> {
+                if (batch == null) {
+                    batch = new Batch(key);
+                    scheduleLinger(batch);
+                }
+                batch.documents.add(document);
+                batch.results.add(written);
+                if (batch.documents.size() >= maxBatchSize) {
+                    full[0] = batch;
+                    return null;
+                }
+                return batch;
+            });
+            if (full[0] != null) {
+                submit(full[0]);
+            }
+        } finally {
+            closing.readLock().unlock();
+        }
+        return written;
+    }
+
+    /* Writes every pending batch without waiting for its linger time */
+    public void flush() {
+        for (Namespace namespace : pending.keySet()) {
+            Batch batch = pending.remove(namespace);
+            if (batch != null) {
+                submit(batch);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closing.writeLock().lock();
+        try {
+            closed = true;
+        } finally {
+            closing.writeLock().unlock();
+        }
+        lingerTimer.shutdownNow();
+        try {
+            // a linger task already running may still hand its batch over
+            lingerTimer.awaitTermination(1, TimeUnit.SECONDS);
+            flush();
+            // every permit back means every batch has been written - its results complete right after
+            if (!inFlight.tryAcquire(maxInFlight, 30, TimeUnit.SECONDS)) {
+                logger.warn("Update batcher closed with batches still being written.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Batch stranded;
+        while ((stranded = lingered.poll()) != null) {
+            stranded.completeAll(false);
+        }
+        if (writers != null) {
+            writers.shutdown();
+        }
+        logger.info("Update batcher closed: {}, {}", batchSizes, flushLatencyMicros);
+    }
+
+    public Histogram getFlushLatencyMicros() {
+        return flushLatencyMicros;
+    }
+
+    public Histogram getBatchSizes() {
+        return batchSizes;
+    }
+
+    public int getPendingBatches() {
+        return pending.size();
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    @Override
+    public String toString() {
+        return "UpdateBatcher{pending=" + getPendingBatches() + ", " + batchSizes + ", " + flushLatencyMicros + "}";
+    }
+
+    private void scheduleLinger(Batch batch) {
+        try {
+            lingerTimer.schedule(() -> {
+                // the batch may have filled up and been written already
+                if (pending.remove(batch.namespace, batch)) {
+                    lingered.add(batch);
+                    writeLingered();
+                }
+            }, lingerNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            /* closing - add() holds the read lock, so close() flushes this batch once it is inserted */
+        }
+    }
+
+    /* Blocks for a free slot - the producers of full batches are the ones pushed back on */
+    private void submit(Batch batch) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            batch.completeAll(false);
+            return;
+        }
+        write(batch);
+    }
+
+    /* Writes lingered batches while slots are free. Called again whenever a write completes, so a
+     * batch queued while every slot was taken is picked up by the write that frees one. One thread
+     * writes at a time - others only ask it for another pass - so a sink that completes at once
+     * does not recurse */
+    private void writeLingered() {
+        if (lingerDrains.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            while (!lingered.isEmpty() && inFlight.tryAcquire()) {
+                Batch batch = lingered.poll();
+                if (batch == null) {
+                    inFlight.release();
+                    break;
+                }
+                write(batch);
+            }
+            missed = lingerDrains.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void write(Batch batch) {
+        long start = System.nanoTime();
+        CompletionStage<Void> written;
+        try {
+            written = sink.insertMany(batch.namespace.dbName, batch.namespace.collectionName, batch.documents);
+        } catch (RuntimeException e) {
+            written = CompletableFuture.failedFuture(e);
+        }
+        written.whenComplete((ignored, error) -> {
+            // recorded first, so a caller woken by its result already sees the batch counted
+            flushLatencyMicros.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+            batchSizes.record(batch.documents.size());
+            /* The slot is freed before the results complete - their callbacks may add() again and
+             * block in submit() for a slot, which must not be the one this thread still holds */
+            inFlight.release();
+            try {
+                writeLingered();
+            } finally {
+                complete(batch, (error instanceof CompletionException) ? error.getCause() : error);
+            }
+        });
+    }
+
+    private void complete(Batch batch, Throwable error) {
+        if (error == null) {
+            batch.completeAll(true);
+        } else if (error instanceof MongoBulkWriteException) {
+            // unordered - everything the server did not report was written
+            MongoBulkWriteException bulkError = (MongoBulkWriteException) error;
+            Set<Integer> failed = new HashSet<>();
+            for (BulkWriteError writeError : bulkError.getWriteErrors()) {
+                failed.add(writeError.getIndex());
+            }
+            logger.error("{} of {} updates failed in {}: {}", failed.size(), batch.documents.size(),
+                    batch.namespace, bulkError.getMessage());
+            for (int i = 0; i < batch.results.size(); ++i) {
+                batch.results.get(i).complete(!failed.contains(i) && bulkError.getWriteConcernError() == null);
+            }
+        } else {
+            logger.error("Batch of {} updates failed in {}: {}", batch.documents.size(), batch.namespace,
+                    error.getMessage(), error);
+            batch.completeAll(false);
+        }
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static class Batch {
+        private final Namespace namespace;
+        private final List<BsonDocument> documents = new ArrayList<>();
+        private final List<CompletableFuture<Boolean>> results = new ArrayList<>();
+
+        private Batch(Namespace namespace) {
+            this.namespace = namespace;
+        }
+
+        private void completeAll(boolean written) {
+            for (CompletableFuture<Boolean> result : results) {
+                result.complete(written);
+            }
+        }
+    }
+
+    private static class Namespace {
+        private final String dbName;
+        private final String collectionName;
+
+        private Namespace(String dbName, String collectionName) {
+            this.dbName = dbName;
+            this.collectionName = collectionName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Namespace)) return false;
+            Namespace other = (Namespace) o;
+            return dbName.equals(other.dbName) && collectionName.equals(other.collectionName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(dbName, collectionName);
+        }
+
+        @Override
+        public String toString() {
+            return dbName + "." + collectionName;
+        }
+    }
+}
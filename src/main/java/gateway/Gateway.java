@@ -1,18 +1,42 @@
 package gateway;
 
 import gateway.RPS.RPS;
+import gateway.RPS.threadPool.TenantScheduler;
+import gateway.RPS.threadPool.ThreadPool;
 import gateway.connectionService.ConnectionService;
+import gateway.connectionService.server.GenericServer;
+import httpServer.GenericHttpServer;
 import mediator.Mediator;
 import plugAndPlay.PlugAndPlay;
 
 import java.io.IOException;
 
+/* Runs with the baseline threading unless told otherwise - each of the newer modes is opted into
+ * through its own environment variable, so they can be measured one at a time:
+ *   GATEWAY_SCHEDULING_MODE    SHARED_QUEUE | WORK_STEALING
+ *   GATEWAY_QUEUE_CAPACITY     bound of the worker queue (unbounded if unset)
+ *   GATEWAY_REJECTION_POLICY   what a full queue does - REJECT | CALLER_RUNS | DROP_OLDEST_LOW | BLOCK
+ *   GATEWAY_DISPATCH_MODE      ANY_WORKER | KEYED_LANES
+ *   GATEWAY_TENANT_CONCURRENCY commands released at a time by per company admission (off if unset)
+ *   GATEWAY_REACTORS           TCP reactor threads, least loaded first (0 - a single selector)
+ *   GATEWAY_HTTP_EXECUTOR      DISPATCHER | PLATFORM_POOL | VIRTUAL_THREADS
+ *   GATEWAY_HTTP_BACKLOG       accept backlog of the HTTP server (0 - the system default) */
 public class Gateway {
     public Gateway(int port, String ip) throws IOException {
-        RPS<String, ?, ?> rps = new RPS<>();
-        ConnectionService cs = new ConnectionService(rps);
+        ThreadPool pool = new ThreadPool(RPS.DEFAULT_NUM_THREADS,
+                envEnum("GATEWAY_SCHEDULING_MODE", ThreadPool.SchedulingMode.SHARED_QUEUE),
+                envInt("GATEWAY_QUEUE_CAPACITY", ThreadPool.UNBOUNDED),
+                envEnum("GATEWAY_REJECTION_POLICY", ThreadPool.RejectionPolicy.REJECT));
+        int tenantConcurrency = envInt("GATEWAY_TENANT_CONCURRENCY", 0);
+        RPS<String, ?, ?> rps = new RPS<>(pool, envEnum("GATEWAY_DISPATCH_MODE", RPS.DispatchMode.ANY_WORKER),
+                (tenantConcurrency > 0) ? new TenantScheduler(tenantConcurrency) : null);
+        ConnectionService cs = new ConnectionService(rps, envInt("GATEWAY_REACTORS", 0),
+                GenericServer.ReactorSelection.LEAST_LOADED);
         cs.registerTCP(port, ip);
-        cs.registerHTTP(port + 1, ip);
+        cs.registerHTTP(port + 1, ip,
+                envEnum("GATEWAY_HTTP_EXECUTOR", GenericHttpServer.ExecutorMode.DISPATCHER),
+                GenericHttpServer.DEFAULT_POOL_SIZE,
+                envInt("GATEWAY_HTTP_BACKLOG", GenericHttpServer.DEFAULT_BACKLOG));
 
         Mediator mediator = new Mediator(rps, rps.getMongoDBMS());
         String watchDirectory = "/home/roi-sasson/iot_plugins";
@@ -20,4 +44,14 @@ public class Gateway {
 
         cs.start();
     }
-}
\ No newline at end of file
+
+    private static <E extends Enum<E>> E envEnum(String name, E fallback) {
+        String value = System.getenv(name);
+        return (value == null) ? fallback : Enum.valueOf(fallback.getDeclaringClass(), value.trim().toUpperCase());
+    }
+
+    private static int envInt(String name, int fallback) {
+        String value = System.getenv(name);
+        return (value == null) ? fallback : Integer.parseInt(value.trim());
+    }
+}
\ No newline at end of file
@@ -1,10 +1,15 @@
 package gateway.RPS;
 
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import dbms.MongoDBMS;
 import gateway.RPS.command.Command;
+import gateway.RPS.command.CommandContext;
+import gateway.RPS.command.CommandHandler;
 import gateway.RPS.factory.Factory;
 import gateway.RPS.parser.JsonCommandParser;
+import gateway.RPS.threadPool.KeyedExecutor;
+import gateway.RPS.threadPool.TenantScheduler;
 import gateway.RPS.threadPool.ThreadPool;
 import gateway.connectionService.request.Request;
 import utils.Pair;
@@ -14,25 +19,77 @@ import gateway.RPS.command.RegisterProduct;
 import gateway.RPS.command.RegisterIoT;
 import gateway.RPS.command.UpdateIoT;
 
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 
 public class RPS<K, D, T> {
     private final ThreadPool pool;
+    private final DispatchMode dispatchMode;
+    private final KeyedExecutor lanes;
+    private final TenantScheduler tenants;
     private final JsonCommandParser jsonCommandParser = new JsonCommandParser();
-    private final Factory<String, Request, Command> factory = new Factory<>();
+    private final Factory<String, Request, CommandHandler> factory = new Factory<>();
     private MongoDBMS mongoDBMS;
 
-    private static final int DEFAULT_NUM_THREADS = 4;
+    public static final int DEFAULT_NUM_THREADS = 4;
+    public static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+    public static final long LANE_RESPONSE_TIMEOUT_SECONDS = 30;
+    private static final String[] LANE_KEY_FIELDS = {"iot_id", "company_id"};
+    public static final String NO_TENANT = ""; // the shared tenant of requests without a company_id
+
+    public enum DispatchMode {
+        ANY_WORKER,  // every command runs on whichever worker is free
+        KEYED_LANES  // commands of one device (iot_id), or of one company (company_id) for company level
+                     // commands, run one at a time in arrival order - different keys still run in parallel
+    }
 
     public RPS() {
         this(DEFAULT_NUM_THREADS);
     }
 
     public RPS(int numOfThreads) {
-        pool = new ThreadPool(numOfThreads);
+        this(numOfThreads, ThreadPool.SchedulingMode.SHARED_QUEUE);
+    }
+
+    /* WORK_STEALING keeps the command task a request's parse task submits on the same worker */
+    public RPS(int numOfThreads, ThreadPool.SchedulingMode schedulingMode) {
+        this(numOfThreads, schedulingMode, DispatchMode.ANY_WORKER);
+    }
+
+    public RPS(int numOfThreads, ThreadPool.SchedulingMode schedulingMode, DispatchMode dispatchMode) {
+        this(numOfThreads, schedulingMode, dispatchMode, null);
+    }
+
+    /* With a tenant scheduler, commands are admitted per company_id, fairly and up to each company's cap -
+     * null runs every command as soon as it is parsed */
+    public RPS(int numOfThreads, ThreadPool.SchedulingMode schedulingMode, DispatchMode dispatchMode,
+               TenantScheduler tenantScheduler) {
+        this(new ThreadPool(numOfThreads, schedulingMode), dispatchMode, tenantScheduler);
+    }
+
+    /* Takes over the pool - a pool with a bounded queue answers the requests it rejects with an error */
+    public RPS(ThreadPool pool, DispatchMode dispatchMode, TenantScheduler tenantScheduler) {
+        this.pool = pool;
+        this.dispatchMode = dispatchMode;
+        this.lanes = (dispatchMode == DispatchMode.KEYED_LANES) ? new KeyedExecutor(pool) : null;
+        this.tenants = tenantScheduler;
         // initializeFactoryCommands();
         try {
-            this.mongoDBMS = new MongoDBMS(System.getenv("MONGO_URI"));
+            String storageMode = System.getenv("MONGO_STORAGE_MODE");
+            String writeBackend = System.getenv("MONGO_WRITE_BACKEND");
+            this.mongoDBMS = new MongoDBMS(System.getenv("MONGO_URI"),
+                    (storageMode == null)
+                            ? MongoDBMS.StorageMode.COLLECTION_PER_DEVICE
+                            : MongoDBMS.StorageMode.valueOf(storageMode.trim().toUpperCase()),
+                    (writeBackend == null)
+                            ? MongoDBMS.WriteBackend.SYNC_DRIVER
+                            : MongoDBMS.WriteBackend.valueOf(writeBackend.trim().toUpperCase()));
+            mongoDBMS.warmCollectionCache();
             System.out.println("MongoDBMS initialized in RPS.");
         } catch (Exception e) {
             System.err.println("Failed to initialize MongoDBMS: " + e.getMessage());
@@ -40,31 +97,146 @@ public class RPS<K, D, T> {
     }
 
     public void handle(Request request) {
-        pool.execute(() -> {
-            JsonObject requestPayload = request.getJsonPayload();
+        handleAsync(request);
+    }
+
+    /* Completes with the response the command sent - the command may answer later from
+     * another thread, no worker waits for it */
+    public CompletionStage<JsonObject> handleAsync(Request request) {
+        submit(request);
+        return request.getResponse();
+    }
+
+    /* Like handleAsync, but answers with an error once the timeout passes - whatever part
+     * of the request is still queued by then (parse or command task) is dropped */
+    public CompletionStage<JsonObject> handleAsync(Request request, long timeout, TimeUnit unit) {
+        AtomicReference<CompletableFuture<?>> queuedTask = submit(request);
+        CompletableFuture.delayedExecutor(timeout, unit).execute(() -> {
+            if (!request.isAnswered()) {
+                queuedTask.get().cancel(false);
+                sendErrorResponse(request, "Request timed out after " + unit.toMillis(timeout) + " ms");
+            }
+        });
+        return request.getResponse();
+    }
+
+    /* Returns the request's latest task - the parse task, replaced by the command task once it is queued */
+    private AtomicReference<CompletableFuture<?>> submit(Request request) {
+        AtomicReference<CompletableFuture<?>> queuedTask = new AtomicReference<>();
+        if (dispatchMode == DispatchMode.KEYED_LANES) {
+            // parsed on the calling thread - the key must be known before a worker could reorder the request
+            dispatch(request, queuedTask);
+            queuedTask.compareAndSet(null, CompletableFuture.completedFuture(null)); // answered while parsing
+            return queuedTask;
+        }
+        CompletableFuture<?> parseTask;
+        try {
+            parseTask = pool.submitAsync(() -> dispatch(request, queuedTask), ThreadPool.TaskPriority.MEDIUM);
+        } catch (RejectedExecutionException e) {
+            sendErrorResponse(request, "Request rejected: " + e.getMessage());
+            queuedTask.set(CompletableFuture.completedFuture(null));
+            return queuedTask;
+        }
+        queuedTask.compareAndSet(null, parseTask); // the parse task may already have queued the command
+        return queuedTask;
+    }
+
+    private Void dispatch(Request request, AtomicReference<CompletableFuture<?>> queuedTask) {
+        JsonObject requestPayload = request.getJsonPayload();
 
-            try {
-                Pair<String, JsonObject> parsedCommand = jsonCommandParser.parse(requestPayload);
+        try {
+            Pair<String, JsonObject> parsedCommand = jsonCommandParser.parse(requestPayload);
 
-                Command command = factory.create(parsedCommand.getKey(), request);
+            CommandHandler handler = factory.create(parsedCommand.getKey(), request);
 
-                if (command != null) {
-                    pool.execute(command::execute);
+            if (handler != null) {
+                CommandContext context = new CommandContext(parsedCommand.getKey(), parsedCommand.getValue(), mongoDBMS);
+                CompletableFuture<?> commandTask;
+                if (tenants != null) {
+                    try {
+                        commandTask = tenants.submit(tenantOf(context.getCommandData()),
+                                () -> submitCommand(request, handler, context));
+                    } catch (RejectedExecutionException e) {
+                        sendErrorResponse(request, e.getMessage());
+                        return null;
+                    }
                 } else {
-                    String errorMsg = "Unknown command: '" + parsedCommand.getKey() + "'";
-                    sendErrorResponse(request, errorMsg);
+                    commandTask = submitCommand(request, handler, context);
                 }
-            } catch (IllegalArgumentException e) {
-                System.err.println("RPS illegal argument: " + e.getMessage());
-                sendErrorResponse(request, "Invalid request: " + e.getMessage());
-            } catch (Exception e) {
-                System.err.println("RPS internal error: " + e.getMessage());
-                String errorMsg = "Internal server error: " + e.getMessage();
+                queuedTask.set(commandTask);
+                commandTask.whenComplete((ignored, error) -> {
+                    if (error instanceof RejectedExecutionException) {
+                        sendErrorResponse(request, "Request rejected: " + error.getMessage());
+                    } else if (error != null && !(error instanceof CancellationException)) {
+                        System.err.println("RPS command failed: " + error.getMessage());
+                        sendErrorResponse(request, "Internal server error: " + error.getMessage());
+                    }
+                });
+            } else {
+                String errorMsg = "Unknown command: '" + parsedCommand.getKey() + "'";
                 sendErrorResponse(request, errorMsg);
             }
+        } catch (IllegalArgumentException e) {
+            System.err.println("RPS illegal argument: " + e.getMessage());
+            sendErrorResponse(request, "Invalid request: " + e.getMessage());
+        } catch (RejectedExecutionException e) {
+            sendErrorResponse(request, "Request rejected: " + e.getMessage());
+        } catch (Exception e) {
+            System.err.println("RPS internal error: " + e.getMessage());
+            String errorMsg = "Internal server error: " + e.getMessage();
+            sendErrorResponse(request, errorMsg);
+        }
+        return null;
+    }
+
+    private CompletableFuture<?> submitCommand(Request request, CommandHandler handler, CommandContext context) {
+        Object key = (lanes != null) ? laneKey(context.getCommandData()) : null;
+        if (key == null) {
+            CompletableFuture<?> task = pool.submitAsync(() -> {
+                handler.handle(request, context);
+                return null;
+            }, ThreadPool.TaskPriority.MEDIUM);
+            if (tenants == null) {
+                return task;
+            }
+            // the tenant's slot is held until the command answered, like a lane - not just until its handler returned
+            CompletableFuture<?> answered = task.thenCompose(ignored -> request.getResponse().toCompletableFuture()
+                    .completeOnTimeout(null, LANE_RESPONSE_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            answered.whenComplete((ignored, error) -> {
+                if (error instanceof CancellationException) {
+                    task.cancel(false); // timed out - drop the command if it is still queued
+                }
+            });
+            return answered;
+        }
+        // the lane moves on once the command answered - the async write backend answers only after its write,
+        // and a command that never answers holds its lane for LANE_RESPONSE_TIMEOUT_SECONDS at most
+        return lanes.submit(key, () -> {
+            handler.handle(request, context);
+            return request.getResponse().toCompletableFuture()
+                    .completeOnTimeout(null, LANE_RESPONSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
         });
     }
 
+    /* Device commands are ordered per device, company level commands per company */
+    private static Object laneKey(JsonObject commandData) {
+        if (commandData == null) {
+            return null;
+        }
+        for (String field : LANE_KEY_FIELDS) {
+            JsonElement value = commandData.get(field);
+            if (value != null && value.isJsonPrimitive()) {
+                return field + ":" + value.getAsString();
+            }
+        }
+        return null;
+    }
+
+    private static String tenantOf(JsonObject commandData) {
+        JsonElement companyId = (commandData == null) ? null : commandData.get("company_id");
+        return (companyId != null && companyId.isJsonPrimitive()) ? companyId.getAsString() : NO_TENANT;
+    }
+
     private void sendErrorResponse(Request request, String errorMsg) {
         try {
             JsonObject errorResponseJson = new JsonObject();
@@ -78,17 +250,40 @@ public class RPS<K, D, T> {
     }
 
     public void initializeFactoryCommands() {
-        factory.add("Register Company", request -> new RegisterCompany(request, mongoDBMS));
-        factory.add("Register Product", request -> new RegisterProduct(request, mongoDBMS));
-        factory.add("Register IoT", request -> new RegisterIoT(request, mongoDBMS));
-        factory.add("Update IoT", request -> new UpdateIoT(request, mongoDBMS));
+        addHandler("Register Company", new RegisterCompany());
+        addHandler("Register Product", new RegisterProduct());
+        addHandler("Register IoT", new RegisterIoT());
+        addHandler("Update IoT", new UpdateIoT());
     }
 
+    /* Per-request contract: the function builds a new Command for every request */
     public void addCommand(String key, Function<Request, ? extends Command> value) {
-        this.factory.add(key, value);
+        this.factory.addInstance(key, (request, context) -> value.apply(request).execute());
+    }
+
+    /* Shared contract: the one handler serves every request */
+    public void addHandler(String key, CommandHandler handler) {
+        this.factory.addInstance(key, handler);
+    }
+
+    /* True while the pool's queue is full - the servers stop reading requests until it drained */
+    public boolean isSaturated() {
+        return pool.isSaturated();
+    }
+
+    public ThreadPool getThreadPool() {
+        return pool;
+    }
+
+    public TenantScheduler getTenantScheduler() {
+        return tenants;
+    }
+
+    public DispatchMode getDispatchMode() {
+        return dispatchMode;
     }
 
     public MongoDBMS getMongoDBMS() {
         return mongoDBMS;
     }
-}
\ No newline at end of file
+}
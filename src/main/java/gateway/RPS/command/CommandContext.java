@@ -0,0 +1,31 @@
+package gateway.RPS.command;
+
+import com.google.gson.JsonObject;
+import dbms.MongoDBMS;
+
+/* What RPS already knows about a request when it dispatches it: the command name and data it parsed
+ * from the payload, so handlers do not parse again, and the gateway's MongoDBMS (null if it failed
+ * to initialize) */
+public class CommandContext {
+    private final String commandName;
+    private final JsonObject commandData;
+    private final MongoDBMS mongoDBMS;
+
+    public CommandContext(String commandName, JsonObject commandData, MongoDBMS mongoDBMS) {
+        this.commandName = commandName;
+        this.commandData = commandData;
+        this.mongoDBMS = mongoDBMS;
+    }
+
+    public String getCommandName() {
+        return commandName;
+    }
+
+    public JsonObject getCommandData() {
+        return commandData;
+    }
+
+    public MongoDBMS getMongoDBMS() {
+        return mongoDBMS;
+    }
+}
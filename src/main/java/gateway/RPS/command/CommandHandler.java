@@ -0,0 +1,10 @@
+package gateway.RPS.command;
+
+import gateway.connectionService.request.Request;
+
+/* Stateless command contract - one instance is registered and shared by every worker thread, so an
+ * implementation keeps per-request state in locals, never in fields. Command stays for plugins that
+ * build one object per request */
+public interface CommandHandler {
+    void handle(Request request, CommandContext context);
+}
@@ -2,7 +2,6 @@ package gateway.RPS.command;
 
 import com.google.gson.JsonObject;
 import dbms.MongoDBMS;
-import gateway.RPS.parser.JsonCommandParser;
 import gateway.connectionService.request.Request;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,41 +9,30 @@ import org.slf4j.LoggerFactory;
 import java.util.HashMap;
 import java.util.Map;
 
-public class RegisterCompany implements Command {
+public class RegisterCompany implements CommandHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(RegisterCompany.class);
 
-    private final Request request;
-    private final JsonCommandParser jsonCommandParser = new JsonCommandParser();
-    private final MongoDBMS mongoDBMS;
-
     private static final String COMMAND_NAME = "RegisterCompany";
 
-    public RegisterCompany(Request request, MongoDBMS mongoDBMS) {
-        this.request = request;
-        this.mongoDBMS = mongoDBMS;
-    }
+    private static final String[] MANDATORY_FIELDS = {"company_name", "company_id"};
+    private static final String[] MISSING_FIELD_MESSAGES = {
+            "Error: 'company_name' is missing from registration data.",
+            "Error: 'company_id' is missing from registration data."
+    };
 
     @Override
-    public void execute() {
+    public void handle(Request request, CommandContext context) {
         String companyName;
         String compId;
         JsonObject responseJson = new JsonObject();
+        MongoDBMS mongoDBMS = context.getMongoDBMS();
 
         try {
-            JsonObject fullRequestPayload = request.getJsonPayload();
-            logger.debug("Received payload for {}: {}", COMMAND_NAME, fullRequestPayload);
-
-            JsonObject commandData = jsonCommandParser.parse(fullRequestPayload).getValue();
-            logger.debug("Parsed command data: {}", commandData);
-
-            String[] mandatoryFields = {"company_name", "company_id"};
-            String[] errorMessages = {
-                    "Error: 'company_name' is missing from registration data.",
-                    "Error: 'company_id' is missing from registration data."
-            };
+            JsonObject commandData = context.getCommandData();
+            logger.debug("Parsed command data for {}: {}", COMMAND_NAME, commandData);
 
-            Map<String, String> extractedFields = extractAllMandatoryFields(commandData, mandatoryFields, errorMessages, responseJson);
+            Map<String, String> extractedFields = extractAllMandatoryFields(commandData, MANDATORY_FIELDS, MISSING_FIELD_MESSAGES, responseJson);
             if (extractedFields == null) {
                 logger.warn("Mandatory fields extraction failed for {}. Sending error response.", COMMAND_NAME);
                 return;
@@ -62,7 +50,7 @@ public class RegisterCompany implements Command {
                 return;
             }
 
-            registerCompanyInMongo(companyName, compId, responseJson);
+            registerCompanyInMongo(mongoDBMS, companyName, compId, responseJson);
 
         } catch (IllegalArgumentException e) {
             String errMsg = "Invalid request format: " + e.getMessage();
@@ -106,7 +94,7 @@ public class RegisterCompany implements Command {
         return fields;
     }
 
-    private void registerCompanyInMongo(String companyName, String compId, JsonObject responseJson) {
+    private void registerCompanyInMongo(MongoDBMS mongoDBMS, String companyName, String compId, JsonObject responseJson) {
         String fullDbName = companyName + "_" + compId;
         logger.info("Attempting to register company DB for: {} (ID: {}). Full DB Name: {}", companyName, compId, fullDbName);
         boolean success = mongoDBMS.registerCompanyDB(companyName, compId);
@@ -134,4 +122,4 @@ public class RegisterCompany implements Command {
         responseJson.addProperty("message", message);
         System.err.println(message);
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -2,7 +2,6 @@ package gateway.RPS.command;
 
 import com.google.gson.JsonObject;
 import dbms.MongoDBMS;
-import gateway.RPS.parser.JsonCommandParser;
 import gateway.connectionService.request.Request;
 import org.bson.Document;
 import org.slf4j.Logger;
@@ -10,23 +9,26 @@ import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
-public class RegisterIoT implements Command {
+public class RegisterIoT implements CommandHandler {
     private static final Logger logger = LoggerFactory.getLogger(RegisterIoT.class);
 
-    private final Request request;
-    private final JsonCommandParser jsonCommandParser = new JsonCommandParser();
-    private final MongoDBMS mongoDBMS;
-
     private static final String COMMAND_NAME = "RegisterIoT";
 
-    public RegisterIoT(Request request, MongoDBMS mongoDBMS) {
-        this.request = request;
-        this.mongoDBMS = mongoDBMS;
-    }
+    private static final String[] MANDATORY_FIELDS = {"iot_id", "company_id", "company_name", "product_name", "product_version"};
+    private static final String[] MISSING_FIELD_MESSAGES = {
+            "Error: 'iot_id' is missing from IoT registration data.",
+            "Error: 'company_id' is missing from IoT registration data. It's required for database identification.",
+            "Error: 'company_name' is missing from IoT registration data.",
+            "Error: 'product_name' is missing from IoT registration data.",
+            "Error: 'product_version' is missing from IoT registration data."
+    };
+    private static final Set<String> EXCLUDED_FIELDS = Set.of(
+            "iot_id", "company_id", "company_name", "product_name", "product_version", "command");
 
     @Override
-    public void execute() {
+    public void handle(Request request, CommandContext context) {
         String iotId;
         String prodName;
         String version;
@@ -34,24 +36,14 @@ public class RegisterIoT implements Command {
         String compId;
         JsonObject responseJson = new JsonObject();
         JsonObject extraData = new JsonObject();
+        boolean answeredWhenWritten = false;
+        MongoDBMS mongoDBMS = context.getMongoDBMS();
 
         try {
-            JsonObject fullRequestPayload = request.getJsonPayload();
-            logger.debug("Received payload for {}: {}", COMMAND_NAME, fullRequestPayload);
-
-            JsonObject commandData = jsonCommandParser.parse(fullRequestPayload).getValue();
-            logger.debug("Parsed command data: {}", commandData);
-
-            String[] mandatoryFields = {"iot_id", "company_id", "company_name", "product_name", "product_version"};
-            String[] errorMessages = {
-                    "Error: 'iot_id' is missing from IoT registration data.",
-                    "Error: 'company_id' is missing from IoT registration data. It's required for database identification.",
-                    "Error: 'company_name' is missing from IoT registration data.",
-                    "Error: 'product_name' is missing from IoT registration data.",
-                    "Error: 'product_version' is missing from IoT registration data."
-            };
-
-            Map<String, String> extractedFields = extractAllMandatoryFields(commandData, mandatoryFields, errorMessages, responseJson);
+            JsonObject commandData = context.getCommandData();
+            logger.debug("Parsed command data for {}: {}", COMMAND_NAME, commandData);
+
+            Map<String, String> extractedFields = extractAllMandatoryFields(commandData, MANDATORY_FIELDS, MISSING_FIELD_MESSAGES, responseJson);
             if (extractedFields == null) {
                 logger.warn("Mandatory fields extraction failed for {}", COMMAND_NAME);
                 return;
@@ -65,7 +57,7 @@ public class RegisterIoT implements Command {
             logger.debug("Extracted mandatory fields: iotId='{}', compId='{}', companyName='{}', prodName='{}', version='{}'",
                     iotId, compId, companyName, prodName, version);
 
-            populateExtraData(commandData, extraData, mandatoryFields);
+            populateExtraData(commandData, extraData);
             if (!extraData.entrySet().isEmpty()) {
                 logger.debug("Extracted extra data: {}", extraData);
             }
@@ -78,7 +70,8 @@ public class RegisterIoT implements Command {
                 return;
             }
 
-            logIoTDeviceRegistration(iotId, compId, companyName, prodName, version, extraData, responseJson);
+            logIoTDeviceRegistration(request, mongoDBMS, iotId, compId, companyName, prodName, version, extraData);
+            answeredWhenWritten = true;
 
         } catch (IllegalArgumentException e) {
             String errMsg = "Invalid request format: " + e.getMessage();
@@ -91,11 +84,17 @@ public class RegisterIoT implements Command {
             logger.error("{} execution error: {}", COMMAND_NAME, e.getMessage(), e);
             System.err.println(COMMAND_NAME + " execution error: " + e.getMessage());
         } finally {
-            request.sendResponse(responseJson);
-            logger.info("Sent response for {}: {}", COMMAND_NAME, responseJson);
+            if (!answeredWhenWritten) {
+                sendResponse(request, responseJson);
+            }
         }
     }
 
+    private void sendResponse(Request request, JsonObject responseJson) {
+        request.sendResponse(responseJson);
+        logger.info("Sent response for {}: {}", COMMAND_NAME, responseJson);
+    }
+
     private Map<String, String> extractAllMandatoryFields(JsonObject commandData, String[] mandatoryFields, String[] errorMessages, JsonObject responseJson) {
         Map<String, String> fields = new HashMap<>();
         for (int i = 0; i < mandatoryFields.length; i++) {
@@ -122,26 +121,35 @@ public class RegisterIoT implements Command {
         return fields;
     }
 
-    private void populateExtraData(JsonObject commandData, JsonObject extraData, String[] mandatoryFields) {
-        Map<String, Boolean> mandatoryFieldMap = new HashMap<>();
-        for (String fieldName : mandatoryFields) {
-            mandatoryFieldMap.put(fieldName, true);
-        }
-        mandatoryFieldMap.put("command", true);
-
+    private void populateExtraData(JsonObject commandData, JsonObject extraData) {
         for (Map.Entry<String, com.google.gson.JsonElement> entry : commandData.entrySet()) {
-            if (!mandatoryFieldMap.containsKey(entry.getKey())) {
+            if (!EXCLUDED_FIELDS.contains(entry.getKey())) {
                 extraData.add(entry.getKey(), entry.getValue());
             }
         }
     }
 
-    private void logIoTDeviceRegistration(String iotId, String compId, String companyName, String prodName, String version, JsonObject extraData, JsonObject responseJson) {
+    /* Answers from the completion callback - with the reactive backend no worker waits for the insert */
+    private void logIoTDeviceRegistration(Request request, MongoDBMS mongoDBMS, String iotId, String compId, String companyName, String prodName, String version, JsonObject extraData) {
         logger.info("Attempting to register IoT device: {} for company '{}' (ID: '{}'), product '{}' (v'{}') with extra data: {}",
                 iotId, companyName, compId, prodName, version, extraData);
 
-        Document registeredDevice = mongoDBMS.registerIoTDevice(companyName, compId, prodName, version, iotId, extraData);
+        mongoDBMS.registerIoTDeviceAsync(companyName, compId, prodName, version, iotId, extraData)
+                .whenComplete((registeredDevice, error) -> {
+                    JsonObject responseJson = new JsonObject();
+                    if (error != null) {
+                        String errMsg = "Internal error processing request: " + error.getMessage();
+                        sendErrorResponse(errMsg, responseJson);
+                        logger.error("{} execution error: {}", COMMAND_NAME, error.getMessage(), error);
+                    } else {
+                        buildResponse(registeredDevice, iotId, compId, companyName, prodName, version, extraData, responseJson);
+                    }
+                    sendResponse(request, responseJson);
+                });
+    }
 
+    private void buildResponse(Document registeredDevice, String iotId, String compId, String companyName, String prodName,
+                               String version, JsonObject extraData, JsonObject responseJson) {
         if (registeredDevice != null) {
             logger.info("IoT device '{}' registered successfully in MongoDB for company '{}' (ID: '{}'), product '{}' (v'{}').",
                     iotId, companyName, compId, prodName, version);
@@ -172,4 +180,4 @@ public class RegisterIoT implements Command {
         responseJson.addProperty("message", message);
         System.err.println(message);
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -2,7 +2,6 @@ package gateway.RPS.command;
 
 import com.google.gson.JsonObject;
 import dbms.MongoDBMS;
-import gateway.RPS.parser.JsonCommandParser;
 import gateway.connectionService.request.Request;
 import org.bson.Document;
 import com.mongodb.client.MongoCollection;
@@ -12,45 +11,34 @@ import org.slf4j.LoggerFactory;
 import java.util.HashMap;
 import java.util.Map;
 
-public class RegisterProduct implements Command {
+public class RegisterProduct implements CommandHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(RegisterProduct.class);
 
-    private final Request request;
-    private final JsonCommandParser jsonCommandParser = new JsonCommandParser();
-    private final MongoDBMS mongoDBMS;
-
     private static final String COMMAND_NAME = "RegisterProduct";
 
-    public RegisterProduct(Request request, MongoDBMS mongoDBMS) {
-        this.request = request;
-        this.mongoDBMS = mongoDBMS;
-    }
+    private static final String[] MANDATORY_FIELDS = {"company_name", "company_id", "product_name", "product_version"};
+    private static final String[] MISSING_FIELD_MESSAGES = {
+            "Error: 'company_name' is missing from registration data.",
+            "Error: 'company_id' is missing from registration data. This is now required.",
+            "Error: 'product_name' is missing or empty.",
+            "Error: 'product_version' is missing or empty."
+    };
 
     @Override
-    public void execute() {
+    public void handle(Request request, CommandContext context) {
         String companyName;
         String companyId;
         String prodName;
         String version;
         JsonObject responseJson = new JsonObject();
+        MongoDBMS mongoDBMS = context.getMongoDBMS();
 
         try {
-            JsonObject fullRequestPayload = request.getJsonPayload();
-            logger.debug("Received payload for {}: {}", COMMAND_NAME, fullRequestPayload);
-
-            JsonObject commandData = jsonCommandParser.parse(fullRequestPayload).getValue();
-            logger.debug("Parsed command data: {}", commandData);
-
-            String[] mandatoryFields = {"company_name", "company_id", "product_name", "product_version"};
-            String[] errorMessages = {
-                    "Error: 'company_name' is missing from registration data.",
-                    "Error: 'company_id' is missing from registration data. This is now required.",
-                    "Error: 'product_name' is missing or empty.",
-                    "Error: 'product_version' is missing or empty."
-            };
+            JsonObject commandData = context.getCommandData();
+            logger.debug("Parsed command data for {}: {}", COMMAND_NAME, commandData);
 
-            Map<String, String> extractedFields = extractAllMandatoryFields(commandData, mandatoryFields, errorMessages, responseJson);
+            Map<String, String> extractedFields = extractAllMandatoryFields(commandData, MANDATORY_FIELDS, MISSING_FIELD_MESSAGES, responseJson);
             if (extractedFields == null) {
                 logger.warn("Mandatory fields extraction failed for {}", COMMAND_NAME);
                 return;
@@ -71,7 +59,7 @@ public class RegisterProduct implements Command {
                 return;
             }
 
-            logProductRegistration(companyName, companyId, prodName, version, responseJson);
+            logProductRegistration(mongoDBMS, companyName, companyId, prodName, version, responseJson);
 
         } catch (IllegalArgumentException e) {
             String errMsg = "Invalid request format: " + e.getMessage();
@@ -114,7 +102,7 @@ public class RegisterProduct implements Command {
         return fields;
     }
 
-    private void logProductRegistration(String companyName, String companyId, String prodName, String version, JsonObject responseJson) {
+    private void logProductRegistration(MongoDBMS mongoDBMS, String companyName, String companyId, String prodName, String version, JsonObject responseJson) {
         logger.info("Attempting to register product collection: {} (v{}) for company: {} (ID: {}) in MongoDB.",
                 prodName, version, companyName, companyId);
         MongoCollection<Document> productCollection = mongoDBMS.registerProductCollection(companyName, companyId, prodName, version);
@@ -144,4 +132,4 @@ public class RegisterProduct implements Command {
         responseJson.addProperty("message", message);
         System.err.println(message);
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
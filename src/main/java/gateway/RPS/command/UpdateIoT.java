@@ -2,56 +2,64 @@ package gateway.RPS.command;
 
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonPrimitive;
+import dbms.JsonBsonCodec;
 import dbms.MongoDBMS;
-import gateway.RPS.parser.JsonCommandParser;
 import gateway.connectionService.request.Request;
-import org.bson.Document;
+import org.bson.BsonBinaryWriter;
+import org.bson.RawBsonDocument;
+import org.bson.io.BasicOutputBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Date;
+import java.time.Instant;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 
-public class UpdateIoT implements Command {
+public class UpdateIoT implements CommandHandler {
     private static final Logger logger = LoggerFactory.getLogger(UpdateIoT.class);
 
-    private final Request request;
-    private final JsonCommandParser jsonCommandParser = new JsonCommandParser();
-    private final MongoDBMS mongoDBMS;
-
     private static final String COMMAND_NAME = "UpdateIoT";
-
-    public UpdateIoT(Request request, MongoDBMS mongoDBMS) {
-        this.request = request;
-        this.mongoDBMS = mongoDBMS;
-    }
+    private static final int INITIAL_DOCUMENT_SIZE = 256;
+
+    private static final String[] MANDATORY_FIELDS = {"iot_id", "company_name", "company_id", "product_name", "product_version"};
+    private static final String[] MISSING_FIELD_MESSAGES = {
+            "Error: 'iot_id' is missing from IoT update data.",
+            "Error: 'company_name' is missing from IoT update data.",
+            "Error: 'company_id' is missing from IoT update data. This is now required.",
+            "Error: 'product_name' is missing from IoT update data, cannot locate device update collection.",
+            "Error: 'product_version' is missing from IoT update data, cannot locate device update collection."
+    };
+    // the timestamp is always the gateway's
+    private static final Set<String> EXCLUDED_FIELDS = Set.of(
+            "command", "iot_id", "company_name", "product_name", "product_version", "company_id", "timestamp");
 
     @Override
-    public void execute() {
+    public void handle(Request request, CommandContext context) {
         JsonObject responseJson = new JsonObject();
-        Document updateDataDocument = new Document();
+        Map<String, String> identity = new LinkedHashMap<>();
+        boolean answeredWhenWritten = false;
+        MongoDBMS mongoDBMS = context.getMongoDBMS();
 
         try {
-            JsonObject fullRequestPayload = request.getJsonPayload();
-            logger.debug("Received payload for {}: {}", COMMAND_NAME, fullRequestPayload);
-
-            JsonObject commandData = jsonCommandParser.parse(fullRequestPayload).getValue();
-            logger.debug("Parsed command data: {}", commandData);
+            JsonObject commandData = context.getCommandData();
+            logger.debug("Parsed command data for {}: {}", COMMAND_NAME, commandData);
 
-            if (!extractMandatoryFields(commandData, updateDataDocument, responseJson)) {
+            if (!extractMandatoryFields(commandData, identity, responseJson)) {
                 logger.warn("Mandatory fields extraction failed for {}. Sending error response.", COMMAND_NAME);
                 request.sendResponse(responseJson);
                 return;
             }
 
-            appendDynamicFields(commandData, updateDataDocument);
-            updateDataDocument.append("timestamp", new Date());
-            logger.debug("Constructed update document: {}", updateDataDocument.toJson());
+            long timestamp = System.currentTimeMillis();
+            RawBsonDocument updateDocument = buildUpdateDocument(identity, commandData, timestamp);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Constructed update document: {}", updateDocument.toJson());
+            }
 
-            if (updateDataDocument.size() <= 6) {
+            if (updateDocument.size() <= MANDATORY_FIELDS.length + 1) {
                 logger.warn("No specific update fields (like status, firmwareVersion, or custom data) provided for IoT device {}. Only logging identity and timestamp.",
-                        updateDataDocument.getString("iot_id"));
+                        identity.get("iot_id"));
             }
 
             if (mongoDBMS == null) {
@@ -62,7 +70,8 @@ public class UpdateIoT implements Command {
                 return;
             }
 
-            logIoTDeviceUpdate(updateDataDocument, responseJson);
+            logIoTDeviceUpdate(request, mongoDBMS, identity, commandData, timestamp, updateDocument);
+            answeredWhenWritten = true;
 
         } catch (IllegalArgumentException e) {
             String errMsg = "Invalid request format: " + e.getMessage();
@@ -73,28 +82,25 @@ public class UpdateIoT implements Command {
             sendErrorResponse(errMsg, responseJson);
             logger.error("{} execution error: {}", COMMAND_NAME, e.getMessage(), e);
         } finally {
-            if (responseJson.keySet().isEmpty()) {
-                String errMsg = "An unexpected error occurred and no specific response was generated.";
-                sendErrorResponse(errMsg, responseJson);
-                logger.error(errMsg);
+            if (!answeredWhenWritten) {
+                sendResponse(request, responseJson);
             }
-            request.sendResponse(responseJson);
-            logger.info("Sent response for {}: {}", COMMAND_NAME, responseJson);
         }
     }
 
-    private boolean extractMandatoryFields(JsonObject commandData, Document updateDataDocument, JsonObject responseJson) {
-        String[] mandatoryFields = {"iot_id", "company_name", "company_id", "product_name", "product_version"};
-        String[] errorMessages = {
-                "Error: 'iot_id' is missing from IoT update data.",
-                "Error: 'company_name' is missing from IoT update data.",
-                "Error: 'company_id' is missing from IoT update data. This is now required.",
-                "Error: 'product_name' is missing from IoT update data, cannot locate device update collection.",
-                "Error: 'product_version' is missing from IoT update data, cannot locate device update collection."
-        };
-
-        for (int i = 0; i < mandatoryFields.length; i++) {
-            String field = mandatoryFields[i];
+    private void sendResponse(Request request, JsonObject responseJson) {
+        if (responseJson.keySet().isEmpty()) {
+            String errMsg = "An unexpected error occurred and no specific response was generated.";
+            sendErrorResponse(errMsg, responseJson);
+            logger.error(errMsg);
+        }
+        request.sendResponse(responseJson);
+        logger.info("Sent response for {}: {}", COMMAND_NAME, responseJson);
+    }
+
+    private boolean extractMandatoryFields(JsonObject commandData, Map<String, String> identity, JsonObject responseJson) {
+        for (int i = 0; i < MANDATORY_FIELDS.length; i++) {
+            String field = MANDATORY_FIELDS[i];
             if (commandData.has(field)) {
                 String value = commandData.get(field).getAsString().trim();
                 if (value.isEmpty()) {
@@ -103,87 +109,71 @@ public class UpdateIoT implements Command {
                     logger.warn(specificErrMsg);
                     return false;
                 }
-                updateDataDocument.append(field, value);
+                identity.put(field, value);
             } else {
-                sendErrorResponse(errorMessages[i], responseJson);
-                logger.warn(errorMessages[i]);
+                sendErrorResponse(MISSING_FIELD_MESSAGES[i], responseJson);
+                logger.warn(MISSING_FIELD_MESSAGES[i]);
                 return false;
             }
         }
         return true;
     }
 
-    private void appendDynamicFields(JsonObject commandData, Document updateDataDocument) {
-        String[] excludedFields = {"command", "iot_id", "company_name", "product_name", "product_version", "company_id"};
-
-        for (Map.Entry<String, JsonElement> entry : commandData.entrySet()) {
-            String key = entry.getKey();
-            boolean isExcluded = false;
-            for (String excludedField : excludedFields) {
-                if (key.equals(excludedField)) {
-                    isExcluded = true;
-                    break;
-                }
-            }
-
-            if (!isExcluded) {
-                JsonElement value = entry.getValue();
-                if (value.isJsonPrimitive()) {
-                    handleJsonPrimitive(key, value.getAsJsonPrimitive(), updateDataDocument);
-                } else if (value.isJsonNull()) {
-                    updateDataDocument.append(key, null);
-                    logger.debug("Appended null value for key: {}", key);
-                } else if (value.isJsonArray()) {
-                    logger.warn("Skipping JSON Array for key: {} in {} command. Arrays are not supported for direct appending.", key, COMMAND_NAME);
-                } else if (value.isJsonObject()) {
-                    logger.warn("Skipping nested JSON Object for key: {} in {} command. Nested objects are not supported for direct appending.", key, COMMAND_NAME);
-                }
+    /* Identity fields, then every other field of the command data - nested objects and arrays
+     * included - then the server-side timestamp, written straight into BSON */
+    private static RawBsonDocument buildUpdateDocument(Map<String, String> identity, JsonObject commandData, long timestamp) {
+        BasicOutputBuffer buffer = new BasicOutputBuffer(INITIAL_DOCUMENT_SIZE);
+        try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+            writer.writeStartDocument();
+            for (Map.Entry<String, String> field : identity.entrySet()) {
+                writer.writeString(field.getKey(), field.getValue());
             }
-        }
-    }
-
-    private void handleJsonPrimitive(String key, JsonPrimitive primitive, Document updateDataDocument) {
-        if (primitive.isBoolean()) {
-            updateDataDocument.append(key, primitive.getAsBoolean());
-            logger.trace("Appended boolean '{}' for key: {}", primitive.getAsBoolean(), key);
-        } else if (primitive.isNumber()) {
-            try {
-                updateDataDocument.append(key, primitive.getAsInt());
-                logger.trace("Appended integer '{}' for key: {}", primitive.getAsInt(), key);
-            } catch (NumberFormatException e1) {
-                try {
-                    updateDataDocument.append(key, primitive.getAsLong());
-                    logger.trace("Appended long '{}' for key: {}", primitive.getAsLong(), key);
-                } catch (NumberFormatException e2) {
-                    try {
-                        updateDataDocument.append(key, primitive.getAsDouble());
-                        logger.trace("Appended double '{}' for key: {}", primitive.getAsDouble(), key);
-                    } catch (NumberFormatException e3) {
-                        updateDataDocument.append(key, primitive.getAsString());
-                        logger.warn("Could not parse number '{}' for key '{}' as int, long, or double in {}. Stored as String.", primitive.getAsString(), key, COMMAND_NAME);
-                    }
+            for (Map.Entry<String, JsonElement> entry : commandData.entrySet()) {
+                if (!EXCLUDED_FIELDS.contains(entry.getKey())) {
+                    writer.writeName(entry.getKey());
+                    JsonBsonCodec.writeValue(writer, entry.getValue());
                 }
             }
-        } else if (primitive.isString()) {
-            updateDataDocument.append(key, primitive.getAsString());
-            logger.trace("Appended string '{}' for key: {}", primitive.getAsString(), key);
-        } else {
-            updateDataDocument.append(key, primitive.getAsString());
-            logger.debug("Appended primitive '{}' for key: {} as String (default).", primitive.getAsString(), key);
+            writer.writeDateTime("timestamp", timestamp);
+            writer.writeEndDocument();
         }
+        return JsonBsonCodec.toRawDocument(buffer);
     }
 
-    private void logIoTDeviceUpdate(Document updateDataDocument, JsonObject responseJson) {
-        String iotId = updateDataDocument.getString("iot_id");
-        String companyName = updateDataDocument.getString("company_name");
-        String compId = updateDataDocument.getString("company_id");
-        String prodName = updateDataDocument.getString("product_name");
-        String version = updateDataDocument.getString("product_version");
+    /* The insert is write-behind batched - the response is sent once the batch holding the update
+     * is acknowledged, from the batcher's writer thread rather than this worker */
+    private void logIoTDeviceUpdate(Request request, MongoDBMS mongoDBMS, Map<String, String> identity, JsonObject commandData, long timestamp,
+                                    RawBsonDocument updateDocument) {
+        String iotId = identity.get("iot_id");
+        String companyName = identity.get("company_name");
+        String compId = identity.get("company_id");
+        String prodName = identity.get("product_name");
+        String version = identity.get("product_version");
 
         logger.info("Attempting to log IoT device update for '{}' for company '{}' (ID: '{}'), product '{}' (v'{}').",
                 iotId, companyName, compId, prodName, version);
 
-        boolean logged = mongoDBMS.updateIoTDevice(companyName, compId, prodName, version, iotId, updateDataDocument);
+        mongoDBMS.updateIoTDeviceAsync(companyName, compId, prodName, version, iotId, updateDocument)
+                .whenComplete((logged, error) -> {
+                    JsonObject responseJson = new JsonObject();
+                    if (error != null) {
+                        String errMsg = "Internal error processing request: " + error.getMessage();
+                        sendErrorResponse(errMsg, responseJson);
+                        logger.error("{} execution error: {}", COMMAND_NAME, error.getMessage(), error);
+                    } else {
+                        buildResponse(logged, identity, commandData, timestamp, responseJson);
+                    }
+                    sendResponse(request, responseJson);
+                });
+    }
+
+    private void buildResponse(boolean logged, Map<String, String> identity, JsonObject commandData, long timestamp,
+                               JsonObject responseJson) {
+        String iotId = identity.get("iot_id");
+        String companyName = identity.get("company_name");
+        String compId = identity.get("company_id");
+        String prodName = identity.get("product_name");
+        String version = identity.get("product_version");
 
         if (logged) {
             logger.info("IoT device '{}' update logged successfully for company '{}' (ID: '{}'), product '{}' (v'{}') in MongoDB!",
@@ -191,26 +181,16 @@ public class UpdateIoT implements Command {
             responseJson.addProperty("status", "success");
             responseJson.addProperty("command", COMMAND_NAME);
 
-            // add all fields from the document to the JSON response
-            for (String key : updateDataDocument.keySet()) {
-                if (!key.equals("command")) {
-                    Object value = updateDataDocument.get(key);
-                    if (value instanceof String) {
-                        responseJson.addProperty(key, (String) value);
-                    } else if (value instanceof Number) {
-                        responseJson.addProperty(key, (Number) value);
-                    } else if (value instanceof Boolean) {
-                        responseJson.addProperty(key, (Boolean) value);
-                    } else if (value instanceof Date) {
-                        responseJson.addProperty(key, ((Date) value).toInstant().toString());
-                    } else if (value == null) {
-                        responseJson.addProperty(key, (String) null);
-                    } else {
-                        responseJson.addProperty(key, value.toString());
-                        logger.warn("Converting non-primitive/non-date type for key '{}' to string in response: {}", key, value.getClass().getName());
-                    }
+            // echo the logged document: identity, the update fields as sent, the timestamp
+            for (Map.Entry<String, String> field : identity.entrySet()) {
+                responseJson.addProperty(field.getKey(), field.getValue());
+            }
+            for (Map.Entry<String, JsonElement> entry : commandData.entrySet()) {
+                if (!EXCLUDED_FIELDS.contains(entry.getKey())) {
+                    responseJson.add(entry.getKey(), entry.getValue());
                 }
             }
+            responseJson.addProperty("timestamp", Instant.ofEpochMilli(timestamp).toString());
             responseJson.addProperty("message", "Update logged for IoT device " + iotId + "!");
         } else {
             String errorMsg = "Failed to log update for IoT device " + iotId + " for company " + companyName + " (ID: " + compId + "), product " + prodName + " (v" + version + ") in MongoDB. Ensure device and its update collection exist.";
@@ -227,4 +207,4 @@ public class UpdateIoT implements Command {
             logger.error(message);
         }
     }
-}
\ No newline at end of file
+}
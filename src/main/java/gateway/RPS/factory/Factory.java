@@ -1,18 +1,36 @@
 package gateway.RPS.factory;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
+/* Products are either created per call from a function, or registered once with addInstance and
+ * shared by every caller. Keys may be added while other threads create (plugins load at runtime) */
 public class Factory<K, D, T> {
-    private final Map<K, Function<D, ? extends T>> map = new HashMap<>();
+    private final Map<K, Function<D, ? extends T>> map = new ConcurrentHashMap<>();
+    private final Map<K, T> instances = new ConcurrentHashMap<>();
 
     public T create(K key, D data) {
-        return (key != null && map.containsKey(key)) ? map.get(key).apply(data) : null;
+        if (key == null) {
+            return null;
+        }
+        T instance = instances.get(key);
+        if (instance != null) {
+            return instance;
+        }
+        Function<D, ? extends T> func = map.get(key);
+        return (func != null) ? func.apply(data) : null;
     }
 
     public void add(K key, Function<D, ? extends T> func) {
+        instances.remove(key);
         map.put(key, func);
         System.out.println(key + " command added");
     }
-}
\ No newline at end of file
+
+    public void addInstance(K key, T instance) {
+        map.remove(key);
+        instances.put(key, instance);
+        System.out.println(key + " command added");
+    }
+}
\ No newline at end of file
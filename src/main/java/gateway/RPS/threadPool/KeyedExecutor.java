@@ -0,0 +1,155 @@
+package gateway.RPS.threadPool;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/* Runs tasks with the same key one after another, in submission order, on a shared executor.
+ * Every key gets its own lane while it has work - a lane is created on the first submit and
+ * dropped once drained, so unrelated keys never wait behind each other. A task returns a stage
+ * and the next task of its key starts only once that stage completes, without holding a worker
+ * meanwhile. A lane runs one task per turn and then queues behind the other lanes again, so a
+ * key that falls behind delays only itself */
+public class KeyedExecutor {
+    private final Executor executor;
+    private final Map<Object, Lane> lanes = new ConcurrentHashMap<>();
+    private final AtomicInteger queuedTasks = new AtomicInteger(0);
+
+    public KeyedExecutor(@NotNull Executor executor) {
+        this.executor = executor;
+    }
+
+    /* The returned future completes like the task's stage. Cancelling it before the task
+     * started drops the task and lets the key's next task run */
+    public <T> CompletableFuture<T> submit(@NotNull Object key, @NotNull Supplier<? extends CompletionStage<T>> task) {
+        Entry<T> entry = new Entry<>(task);
+        Lane[] created = new Lane[1];
+        lanes.compute(key, (k, lane) -> {
+            if (lane == null) {
+                lane = new Lane();
+                created[0] = lane;
+            }
+            lane.waiting.addLast(entry);
+            queuedTasks.incrementAndGet();
+            return lane;
+        });
+        if (created[0] != null) {
+            advance(key, created[0]);
+        }
+        return entry.result;
+    }
+
+    /* Tasks waiting behind a running task of their key */
+    public int getQueuedTasks() {
+        return queuedTasks.get();
+    }
+
+    /* Keys with a running task */
+    public int getActiveKeys() {
+        return lanes.size();
+    }
+
+    /* Hands the key's next task to the executor, or drops the lane if none is waiting. Called once per
+     * finished task. A single frame advances a lane at a time - a task that finishes while it does, say
+     * one run on the caller or whose stage is already complete, only asks it for another pass - and
+     * tasks that are cancelled or rejected are skipped in the same loop, so a long lane never recurses */
+    private void advance(Object key, Lane lane) {
+        if (lane.advances.getAndIncrement() != 0) {
+            return;
+        }
+        boolean drained = false;
+        try {
+            int missed = 1;
+            do {
+                Entry<?> entry;
+                while ((entry = poll(key, lane)) != null && !dispatch(key, lane, entry)) {
+                    // cancelled while waiting or refused by the executor - nothing runs, try the next
+                }
+                missed = lane.advances.addAndGet(-missed);
+            } while (missed != 0);
+            drained = true;
+        } finally {
+            if (!drained) {
+                // often called from a stage callback, which would swallow the error - keep the lane advanceable
+                lane.advances.set(0);
+            }
+        }
+    }
+
+    /* Returns false if the entry will not run, so the lane moves on without waiting for it */
+    private boolean dispatch(Object key, Lane lane, Entry<?> entry) {
+        if (entry.result.isDone()) { // cancelled while waiting
+            return false;
+        }
+        try {
+            executor.execute(() -> run(key, lane, entry));
+            return true;
+        } catch (Throwable e) { // rejected, or anything else the executor throws
+            entry.result.completeExceptionally(e);
+            return false;
+        }
+    }
+
+    private <T> void run(Object key, Lane lane, Entry<T> entry) {
+        if (entry.result.isDone()) { // cancelled while queued in the executor
+            advance(key, lane);
+            return;
+        }
+        CompletionStage<T> stage;
+        try {
+            stage = Objects.requireNonNull(entry.task.get(), "Task returned no stage.");
+        } catch (Throwable e) {
+            entry.result.completeExceptionally(e);
+            advance(key, lane);
+            return;
+        }
+        stage.whenComplete((value, error) -> {
+            if (error != null) {
+                entry.result.completeExceptionally(error);
+            } else {
+                entry.result.complete(value);
+            }
+            advance(key, lane);
+        });
+    }
+
+    /* The key's next waiting task, or null after dropping its drained lane */
+    private Entry<?> poll(Object key, Lane expected) {
+        Entry<?>[] next = new Entry<?>[1];
+        lanes.compute(key, (k, lane) -> {
+            if (lane != expected) { // already dropped, and maybe replaced by a new lane of the key
+                return lane;
+            }
+            Entry<?> waiting = lane.waiting.pollFirst();
+            if (waiting == null) {
+                return null;
+            }
+            queuedTasks.decrementAndGet();
+            next[0] = waiting;
+            return lane;
+        });
+        return next[0];
+    }
+
+    private static class Lane {
+        private final ArrayDeque<Entry<?>> waiting = new ArrayDeque<>(); // only touched inside lanes.compute for its key
+        private final AtomicInteger advances = new AtomicInteger(0);
+    }
+
+    private static class Entry<T> {
+        private final Supplier<? extends CompletionStage<T>> task;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        private Entry(Supplier<? extends CompletionStage<T>> task) {
+            this.task = task;
+        }
+    }
+}
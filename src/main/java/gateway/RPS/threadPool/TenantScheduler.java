@@ -0,0 +1,223 @@
+package gateway.RPS.threadPool;
+
+import dbms.Histogram;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/* Admits tasks of many tenants fairly. At most maxConcurrent tasks are released at a time - enough to
+ * keep the workers busy - and the rest wait in one FIFO queue per tenant. The next task is picked by
+ * deficit round-robin: every tenant with queued tasks gets a turn in which it may release as many
+ * tasks as its weight, so a tenant flooding its queue gets its share and no more, and the others'
+ * tasks are not stuck behind its backlog. A tenant holding maxRequests tasks (queued and released
+ * but not completed) is rejected until some complete. Tenant names come from the clients, so a tenant
+ * is forgotten, counters and all, once it has nothing queued or in flight - unless setQuota configured it */
+public class TenantScheduler {
+    public static final int DEFAULT_WEIGHT = 1;
+    public static final int DEFAULT_MAX_REQUESTS_PER_TENANT = 256;
+
+    private final int maxConcurrent;
+    private final int defaultMaxRequests;
+    private final Map<String, Tenant> tenants = new HashMap<>();  // guarded by this
+    private final ArrayDeque<Tenant> round = new ArrayDeque<>();  // tenants with queued tasks, guarded by this
+    private int released = 0;                                     // guarded by this
+    private final AtomicInteger drainRequests = new AtomicInteger(0);
+
+    public TenantScheduler(int maxConcurrent) {
+        this(maxConcurrent, DEFAULT_MAX_REQUESTS_PER_TENANT);
+    }
+
+    public TenantScheduler(int maxConcurrent, int defaultMaxRequests) {
+        if (maxConcurrent <= 0 || defaultMaxRequests <= 0) {
+            throw new IllegalArgumentException("Concurrency and request cap must be positive: "
+                    + maxConcurrent + ", " + defaultMaxRequests);
+        }
+        this.maxConcurrent = maxConcurrent;
+        this.defaultMaxRequests = defaultMaxRequests;
+    }
+
+    /* A tenant of weight 3 releases three tasks per round where a tenant of weight 1 releases one */
+    public synchronized void setQuota(@NotNull String tenant, int weight, int maxRequests) {
+        if (weight <= 0 || maxRequests <= 0) {
+            throw new IllegalArgumentException("Weight and request cap must be positive: " + weight + ", " + maxRequests);
+        }
+        Tenant state = tenant(tenant);
+        state.weight = weight;
+        state.maxRequests = maxRequests;
+        state.configured = true;
+    }
+
+    /* The task is started once released and counts against its tenant until its stage completes.
+     * Cancelling the returned future drops the task if still queued, or cancels its stage otherwise.
+     * Throws RejectedExecutionException if the tenant is at its cap */
+    public CompletableFuture<Void> submit(@NotNull String tenant, @NotNull Supplier<? extends CompletionStage<?>> task) {
+        Entry entry;
+        synchronized (this) {
+            Tenant state = tenant(tenant);
+            if (state.queue.size() + state.inFlight >= state.maxRequests) {
+                ++state.rejected;
+                throw new RejectedExecutionException("Too many requests for tenant '" + tenant + "': "
+                        + state.maxRequests + " already queued or in flight");
+            }
+            entry = new Entry(state, task);
+            state.queue.addLast(entry);
+            if (state.queue.size() == 1) {
+                state.deficit = state.weight;
+                round.addLast(state);
+            }
+        }
+        drain();
+        return entry.result;
+    }
+
+    public synchronized List<String> getTenants() {
+        return new ArrayList<>(tenants.keySet());
+    }
+
+    public synchronized int getQueueDepth(String tenant) {
+        Tenant state = tenants.get(tenant);
+        return (state == null) ? 0 : state.queue.size();
+    }
+
+    public synchronized int getInFlight(String tenant) {
+        Tenant state = tenants.get(tenant);
+        return (state == null) ? 0 : state.inFlight;
+    }
+
+    public synchronized long getRejected(String tenant) {
+        Tenant state = tenants.get(tenant);
+        return (state == null) ? 0 : state.rejected;
+    }
+
+    /* Time the tenant's tasks spent queued before being released */
+    public synchronized Histogram getWaitMicros(String tenant) {
+        Tenant state = tenants.get(tenant);
+        return (state == null) ? null : state.waitMicros;
+    }
+
+    private Tenant tenant(String tenant) {
+        return tenants.computeIfAbsent(tenant, name -> new Tenant(name, defaultMaxRequests));
+    }
+
+    /* Releases tasks while there is room. A single thread releases at a time - others that call in while
+     * it does only ask it for another pass - so a task whose stage completes right away does not recurse */
+    private void drain() {
+        if (drainRequests.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            Entry entry;
+            while ((entry = release()) != null) {
+                start(entry);
+            }
+            missed = drainRequests.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private synchronized Entry release() {
+        if (released >= maxConcurrent) {
+            return null;
+        }
+        while (!round.isEmpty()) {
+            Tenant tenant = round.peekFirst();
+            if (tenant.deficit < 1) { // turn over, back of the round with the next turn's quantum
+                round.pollFirst();
+                tenant.deficit += tenant.weight;
+                round.addLast(tenant);
+                continue;
+            }
+            Entry entry = tenant.queue.pollFirst();
+            --tenant.deficit;
+            if (tenant.queue.isEmpty()) {
+                round.pollFirst();
+                tenant.deficit = 0;
+            }
+            ++tenant.inFlight;
+            ++released;
+            tenant.waitMicros.record((System.nanoTime() - entry.submittedNanos) / 1_000);
+            return entry;
+        }
+        return null;
+    }
+
+    private void start(Entry entry) {
+        if (entry.result.isDone()) { // cancelled while queued
+            complete(entry);
+            return;
+        }
+        CompletionStage<?> stage;
+        try {
+            stage = entry.task.get();
+        } catch (Throwable e) {
+            entry.result.completeExceptionally(e);
+            complete(entry);
+            return;
+        }
+        entry.result.whenComplete((ignored, error) -> {
+            if (error instanceof CancellationException) {
+                stage.toCompletableFuture().cancel(false);
+            }
+        });
+        stage.whenComplete((ignored, error) -> {
+            if (error != null) {
+                entry.result.completeExceptionally(error);
+            } else {
+                entry.result.complete(null);
+            }
+            complete(entry);
+        });
+    }
+
+    private void complete(Entry entry) {
+        synchronized (this) {
+            --entry.tenant.inFlight;
+            --released;
+            Tenant tenant = entry.tenant;
+            if (!tenant.configured && tenant.queue.isEmpty() && tenant.inFlight == 0) {
+                tenants.remove(tenant.name, tenant);
+            }
+        }
+        drain();
+    }
+
+    private static class Tenant {
+        private final ArrayDeque<Entry> queue = new ArrayDeque<>();
+        private final String name;
+        private final Histogram waitMicros;
+        private boolean configured = false; // by setQuota - kept while idle
+        private int weight = DEFAULT_WEIGHT;
+        private int maxRequests;
+        private int deficit = 0;
+        private int inFlight = 0;
+        private long rejected = 0;
+
+        private Tenant(String name, int maxRequests) {
+            this.name = name;
+            this.maxRequests = maxRequests;
+            this.waitMicros = new Histogram("tenantWaitMicros[" + name + "]");
+        }
+    }
+
+    private static class Entry {
+        private final Tenant tenant;
+        private final Supplier<? extends CompletionStage<?>> task;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+        private final long submittedNanos = System.nanoTime();
+
+        private Entry(Tenant tenant, Supplier<? extends CompletionStage<?>> task) {
+            this.tenant = tenant;
+            this.task = task;
+        }
+    }
+}
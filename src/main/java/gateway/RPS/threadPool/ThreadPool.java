@@ -5,13 +5,17 @@
  *****************************************/
 package gateway.RPS.threadPool;
 
-import gateway.RPS.threadPool.waitablePQ.WaitablePQ1;
+import gateway.RPS.threadPool.waitablePQ.WaitableLevelPQ;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Range;
 
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -19,14 +23,31 @@ import java.util.concurrent.locks.ReentrantLock;
  /* Manages a pool of threads to execute tasks */
 public class ThreadPool implements Executor {
      private final AtomicInteger numOfThreads;
-     private final WaitablePQ1<Task<?>> taskQueue = new WaitablePQ1<>();
+     private final WaitableLevelPQ<Task<?>> taskQueue =
+             new WaitableLevelPQ<>(InternalTaskPriority.values().length, task -> task.TaskPriority.ordinal());
      private final Semaphore pausedTasks = new Semaphore(0);
      private final Lock lock = new ReentrantLock(false);
      private final Condition condition = lock.newCondition();
      private volatile boolean isShuttingDown = false;
+     private final SchedulingMode schedulingMode;
+     private final List<WorkerThread> workers = new CopyOnWriteArrayList<>();
+     private final AtomicInteger idleWorkers = new AtomicInteger(0);
+     private final AtomicInteger pendingWakeUps = new AtomicInteger(0);
+     private final AtomicLong steals = new AtomicLong(0);
+     private final int queueCapacity;
+     private final RejectionPolicy rejectionPolicy;
+     private final long blockTimeoutNanos;
+     private final Semaphore queueSlots;
+     private volatile boolean saturated = false;
+     private final AtomicLong rejected = new AtomicLong(0);
+     private final AtomicLong dropped = new AtomicLong(0);
+     private final AtomicLong ranOnCaller = new AtomicLong(0);
 
      private static final int MIN_VALUE = 1;
      private static final int MAX_VALUE = Integer.MAX_VALUE;
+     private static final long IDLE_WAIT_MILLIS = 100;
+     public static final int UNBOUNDED = Integer.MAX_VALUE;
+     public static final long DEFAULT_BLOCK_TIMEOUT_MILLIS = 100;
 
      public enum TaskPriority {
          HIGH(InternalTaskPriority.HIGH),
@@ -40,19 +61,54 @@ public class ThreadPool implements Executor {
          }
      }
 
+     /* Where tasks submitted from inside a worker (a task that submits a follow up task) are queued */
+     public enum SchedulingMode {
+         SHARED_QUEUE,   // every task goes through the shared priority queue
+         WORK_STEALING   // onto the submitting worker's own deques, idle workers steal from the others
+     }
+
+     /* What happens to a task submitted while queueCapacity tasks are already queued */
+     public enum RejectionPolicy {
+         CALLER_RUNS,     // the submitting thread runs the task itself, which slows down the producer
+         REJECT,          // RejectedExecutionException
+         DROP_OLDEST_LOW, // the oldest queued LOW task is dropped to make room - rejected if there is none
+         BLOCK            // waits up to the block timeout for room, then rejected. Workers of the pool never wait
+     }
+
      public ThreadPool(@Range(from = MIN_VALUE, to = MAX_VALUE) int numOfThreads) {
+         this(numOfThreads, SchedulingMode.SHARED_QUEUE);
+     }
+
+     public ThreadPool(@Range(from = MIN_VALUE, to = MAX_VALUE) int numOfThreads, @NotNull SchedulingMode schedulingMode) {
+         this(numOfThreads, schedulingMode, UNBOUNDED, RejectionPolicy.REJECT);
+     }
+
+     public ThreadPool(@Range(from = MIN_VALUE, to = MAX_VALUE) int numOfThreads, @NotNull SchedulingMode schedulingMode,
+                       @Range(from = MIN_VALUE, to = MAX_VALUE) int queueCapacity, @NotNull RejectionPolicy rejectionPolicy) {
+         this(numOfThreads, schedulingMode, queueCapacity, rejectionPolicy, DEFAULT_BLOCK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+     }
+
+     /* queueCapacity bounds the submitted tasks no worker has started yet - internal tasks (pause,
+      * shutdown, resizing) are never counted or rejected */
+     public ThreadPool(@Range(from = MIN_VALUE, to = MAX_VALUE) int numOfThreads, @NotNull SchedulingMode schedulingMode,
+                       @Range(from = MIN_VALUE, to = MAX_VALUE) int queueCapacity, @NotNull RejectionPolicy rejectionPolicy,
+                       long blockTimeout, TimeUnit unit) {
+         if (queueCapacity < MIN_VALUE) {
+             throw new IllegalArgumentException("Queue capacity must be positive: " + queueCapacity);
+         }
          this.numOfThreads = new AtomicInteger(numOfThreads);
+         this.schedulingMode = schedulingMode;
+         this.queueCapacity = queueCapacity;
+         this.rejectionPolicy = rejectionPolicy;
+         this.blockTimeoutNanos = unit.toNanos(blockTimeout);
+         this.queueSlots = new Semaphore(queueCapacity);
          initializeThreads();
      }
 
      @Override
      public void execute(@NotNull Runnable command) {
          checkShutdown();
-         try {
-             taskQueue.enqueue(new Task<>(Executors.callable(command)));
-         } catch (InterruptedException e) {
-             // IGNORE CATCH
-         }
+         schedule(new Task<>(Executors.callable(command)));
      }
 
      public <T> Future<T> submit(Runnable runnable, TaskPriority TaskPriority) {
@@ -66,11 +122,7 @@ public class ThreadPool implements Executor {
      public <T> Future<T> submit(@NotNull Callable<T> callable, TaskPriority TaskPriority) {
          checkShutdown();
          Task<T> task = new Task<>(callable, TaskPriority.value);
-         try {
-             taskQueue.enqueue(task);
-         } catch (InterruptedException e) {
-             // IGNORE CATCH
-         }
+         schedule(task);
          return task.future;
      }
 
@@ -78,6 +130,23 @@ public class ThreadPool implements Executor {
          return submit(callable, TaskPriority.MEDIUM);
      }
 
+     /* Non blocking variant of submit - the stage completes with the callable's result or exception.
+      * Cancelling the stage (toCompletableFuture().cancel) removes the task if it is still queued */
+     public <T> CompletableFuture<T> submitAsync(@NotNull Callable<T> callable, TaskPriority TaskPriority) {
+         checkShutdown();
+         Task<T> task = new Task<>(callable, TaskPriority.value);
+         CompletableFuture<T> completion = task.completeWith(new CompletableFuture<>());
+         schedule(task);
+         return completion;
+     }
+
+     /* Like submitAsync, but the stage fails with a TimeoutException once the timeout passes
+      * and the task is dropped if no worker picked it up by then */
+     public <T> CompletableFuture<T> submitAsync(@NotNull Callable<T> callable, TaskPriority TaskPriority,
+                                                 long timeout, TimeUnit unit) {
+         return submitAsync(callable, TaskPriority).orTimeout(timeout, unit);
+     }
+
      public synchronized void setNumOfThreads(@Range(from = MIN_VALUE, to = MAX_VALUE) int numOfThreads) {
          checkShutdown();
 
@@ -85,11 +154,7 @@ public class ThreadPool implements Executor {
          this.numOfThreads.set(numOfThreads);
          if (difference > 0) {
              for (int i = 0; i < difference; ++i) {
-                 try {
-                     taskQueue.enqueue(new PoisonPillTask(InternalTaskPriority.KILL_THREAD));
-                 } catch (InterruptedException e) {
-                     // IGNORE CATCH
-                 }
+                 taskQueue.enqueue(new PoisonPillTask(InternalTaskPriority.KILL_THREAD));
              }
          } else {
              for (int i = 0; i < Math.abs(difference); ++i) {
@@ -101,11 +166,7 @@ public class ThreadPool implements Executor {
      /* Pauses the execution of new tasks by blocking worker threads */
      public void pause() {
          for (int i = 0; i < numOfThreads.get(); i++) {
-             try {
-                 taskQueue.enqueue(new PauseTask());
-             } catch (InterruptedException e) {
-                 // IGNORE CATCH
-             }
+             taskQueue.enqueue(new PauseTask());
          }
      }
 
@@ -121,11 +182,7 @@ public class ThreadPool implements Executor {
          resume(); // ensure paused threads receive the shutdown signal
 
          for (int i = 0; i < numOfThreads.get(); i++) {
-             try {
-                 taskQueue.enqueue(new PoisonPillTask(InternalTaskPriority.SHUTDOWN));
-             } catch (InterruptedException e) {
-                 // IGNORE CATCH
-             }
+             taskQueue.enqueue(new PoisonPillTask(InternalTaskPriority.SHUTDOWN));
          }
      }
 
@@ -153,6 +210,173 @@ public class ThreadPool implements Executor {
          return numOfThreads.get();
      }
 
+     public SchedulingMode getSchedulingMode() {
+         return schedulingMode;
+     }
+
+     /* Number of tasks a worker took from another worker's deques */
+     public long getStealCount() {
+         return steals.get();
+     }
+
+     public int getQueueCapacity() {
+         return queueCapacity;
+     }
+
+     public RejectionPolicy getRejectionPolicy() {
+         return rejectionPolicy;
+     }
+
+     /* Submitted tasks no worker has started yet */
+     public int getQueuedTasks() {
+         return queueCapacity - queueSlots.availablePermits();
+     }
+
+     /* Set once the queue fills up, cleared once it drained to half of its capacity */
+     public boolean isSaturated() {
+         return saturated;
+     }
+
+     public long getRejectedCount() {
+         return rejected.get();
+     }
+
+     public long getDroppedCount() {
+         return dropped.get();
+     }
+
+     public long getCallerRunsCount() {
+         return ranOnCaller.get();
+     }
+
+     private void schedule(Task<?> task) {
+         if (!admit(task)) {
+             return; // already ran on the calling thread
+         }
+         WorkerThread worker = currentWorker();
+         if (worker == null) {
+             taskQueue.enqueue(task);
+             return;
+         }
+         worker.localTasks.get(task.TaskPriority.ordinal()).addLast(task);
+         // a worker blocked on the shared queue would not notice - wake one up to steal it
+         int idle = idleWorkers.get();
+         if (idle > 0 && pendingWakeUps.incrementAndGet() <= idle) {
+             taskQueue.enqueue(new WakeUpTask());
+         } else if (idle > 0) {
+             pendingWakeUps.decrementAndGet();
+         }
+     }
+
+     /* Takes a queue slot for the task, or applies the rejection policy if there is none - returns
+      * false if the task already ran on the calling thread */
+     private boolean admit(Task<?> task) {
+         if (queueSlots.tryAcquire()) {
+             task.holdsSlot.set(true);
+             updateSaturation();
+             return true;
+         }
+         saturated = true;
+         switch (rejectionPolicy) {
+             case CALLER_RUNS:
+                 ranOnCaller.incrementAndGet();
+                 runOnCaller(task);
+                 return false;
+             case DROP_OLDEST_LOW:
+                 if (dropOldestLow(task)) {
+                     return true;
+                 }
+                 break;
+             case BLOCK:
+                 if (isWorkerOfThisPool()) {
+                     break; // the worker would wait for its own pool to drain
+                 }
+                 try {
+                     if (queueSlots.tryAcquire(blockTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                         task.holdsSlot.set(true);
+                         updateSaturation();
+                         return true;
+                     }
+                 } catch (InterruptedException e) {
+                     Thread.currentThread().interrupt();
+                 }
+                 break;
+             case REJECT:
+                 break;
+         }
+         rejected.incrementAndGet();
+         throw new RejectedExecutionException("ThreadPool queue is full (" + queueCapacity + " tasks)");
+     }
+
+     private void runOnCaller(Task<?> task) {
+         try {
+             task.start();
+         } catch (RuntimeException e) {
+             System.out.println("Error executing task: " + e.getMessage());
+         } catch (InterruptedException e) {
+             Thread.currentThread().interrupt();
+         }
+     }
+
+     /* The dropped task hands its queue slot to the new one */
+     private boolean dropOldestLow(Task<?> replacement) {
+         int low = InternalTaskPriority.LOW.ordinal();
+         Task<?> victim = taskQueue.pollLevel(low);
+         // a snapshot - workers leave the list while setNumOfThreads shrinks the pool
+         for (WorkerThread worker : workers) {
+             if (victim != null) {
+                 break;
+             }
+             victim = worker.localTasks.get(low).pollFirst();
+         }
+         if (victim == null) {
+             return false;
+         }
+         // a queued task holds its slot, so it is handed over - never released and taken twice
+         boolean handedOver = victim.holdsSlot.getAndSet(false);
+         replacement.holdsSlot.set(handedOver || queueSlots.tryAcquire());
+         victim.drop();
+         dropped.incrementAndGet();
+         return true;
+     }
+
+     /* Called once a task left the queue, to a worker or by being cancelled */
+     private void releaseSlot(Task<?> task) {
+         if (task.holdsSlot.getAndSet(false)) { // exactly one caller gives the slot back
+             queueSlots.release();
+             updateSaturation();
+         }
+     }
+
+     private void updateSaturation() {
+         if (queueCapacity == UNBOUNDED) {
+             return;
+         }
+         int queued = getQueuedTasks();
+         if (queued >= queueCapacity) {
+             saturated = true;
+         } else if (saturated && queued <= queueCapacity / 2) {
+             saturated = false;
+         }
+     }
+
+     private boolean isWorkerOfThisPool() {
+         Thread current = Thread.currentThread();
+         return current instanceof WorkerThread && ((WorkerThread) current).getPool() == this;
+     }
+
+     /* The calling worker of this pool when work stealing is on, null otherwise */
+     private WorkerThread currentWorker() {
+         if (schedulingMode != SchedulingMode.WORK_STEALING) {
+             return null;
+         }
+         Thread current = Thread.currentThread();
+         if (current instanceof WorkerThread && ((WorkerThread) current).getPool() == this) {
+             return (WorkerThread) current;
+         }
+         return null;
+     }
+
      private void checkShutdown() {
          if (isShuttingDown) {
              throw new RejectedExecutionException("ThreadPool is shutting down and cannot accept new tasks.");
@@ -181,6 +405,10 @@ public class ThreadPool implements Executor {
          private final FutureIMP<T> future = new FutureIMP<>();
          private final Callable<T> callable;
          private InternalTaskPriority TaskPriority = InternalTaskPriority.MEDIUM; // default TaskPriority
+         private CompletableFuture<T> completion = null; // only set for tasks submitted with submitAsync
+         // counted against queueCapacity until it leaves the queue - set and cleared from the submitter,
+         // the dropping thread and the worker, hence atomic
+         private final AtomicBoolean holdsSlot = new AtomicBoolean(false);
 
          public Task(Callable<T> callable, InternalTaskPriority TaskPriority) {
              this(callable);
@@ -196,15 +424,41 @@ public class ThreadPool implements Executor {
              return Integer.compare(o.TaskPriority.ordinal(), this.TaskPriority.ordinal());
          }
 
+         /* Links a CompletableFuture to this task - a cancel or timeout of it takes the task off the queue */
+         CompletableFuture<T> completeWith(CompletableFuture<T> completion) {
+             this.completion = completion;
+             completion.whenComplete((value, error) -> {
+                 if (error instanceof CancellationException || error instanceof TimeoutException) {
+                     future.cancel(false);
+                 }
+             });
+             return completion;
+         }
+
+         /* Taken off a full queue to make room - get() throws CancellationException, an async stage
+          * fails with RejectedExecutionException */
+         void drop() {
+             future.markCancelled();
+             if (completion != null) {
+                 completion.completeExceptionally(new RejectedExecutionException("Task dropped, ThreadPool queue is full"));
+             }
+         }
+
          /* throws InterruptedException if the thread executing this task is interrupted */
          public void start() throws InterruptedException {
-             if (future.isCancelled) {
+             if (future.isCancelled || (completion != null && completion.isDone())) {
                  return;
              }
              try {
                  T value = this.callable.call();
                  this.future.setResult(value);
+                 if (completion != null) {
+                     completion.complete(value);
+                 }
              } catch (Exception e) {
+                 if (completion != null) {
+                     completion.completeExceptionally(e);
+                 }
                  throw new RuntimeException(e);
              }
          }
@@ -262,16 +516,26 @@ public class ThreadPool implements Executor {
                      return false;
                  }
 
-                 try {
-                     boolean removedFromQueue = taskQueue.remove(Task.this);
+                 boolean removedFromQueue = taskQueue.remove(Task.this);
+                 // a snapshot - workers leave the list while setNumOfThreads shrinks the pool
+                 for (WorkerThread worker : workers) {
                      if (removedFromQueue) {
-                         isCancelled = true;
-                         notifyAll();
+                         break;
                      }
-                     return removedFromQueue;
-                 } catch (InterruptedException e) {
-                     Thread.currentThread().interrupt();
-                     return false;
+                     removedFromQueue = worker.localTasks.get(TaskPriority.ordinal()).remove(Task.this);
+                 }
+                 if (removedFromQueue) {
+                     isCancelled = true;
+                     notifyAll();
+                     releaseSlot(Task.this);
+                 }
+                 return removedFromQueue;
+             }
+
+             synchronized void markCancelled() {
+                 if (!isDone) {
+                     isCancelled = true;
+                     notifyAll();
                  }
              }
 
@@ -289,7 +553,7 @@ public class ThreadPool implements Executor {
 
      /* Represents the internal priority levels for tasks */
      private enum InternalTaskPriority {
-         SHUTDOWN, LOW, MEDIUM, HIGH, KILL_THREAD, IMMEDIATELY
+         WAKE_UP, SHUTDOWN, LOW, MEDIUM, HIGH, KILL_THREAD, IMMEDIATELY
      }
 
      private abstract class SystemTask extends Task<Object> {
@@ -304,6 +568,19 @@ public class ThreadPool implements Executor {
          }
      }
 
+     /* Wakes a worker blocked on the shared queue so it looks for tasks to steal - lowest
+      * level, so a busy worker only picks it up once there is nothing else to run */
+     private class WakeUpTask extends SystemTask {
+         WakeUpTask() {
+             super(InternalTaskPriority.WAKE_UP);
+         }
+
+         @Override
+         public void start() {
+             pendingWakeUps.decrementAndGet();
+         }
+     }
+
      private class PauseTask extends SystemTask {
          PauseTask() {
              super(InternalTaskPriority.IMMEDIATELY);
@@ -321,8 +598,45 @@ public class ThreadPool implements Executor {
 
      /* Represents a worker thread that executes tasks from the task queue */
      private class WorkerThread extends Thread {
+         /* Tasks submitted by this worker, one deque per priority - the owner works LIFO on
+          * the tail (the task it just created is the hottest in cache), thieves take the head.
+          * Only allocated in WORK_STEALING mode */
+         private final List<ConcurrentLinkedDeque<Task<?>>> localTasks;
+
+         WorkerThread() {
+             if (schedulingMode == SchedulingMode.WORK_STEALING) {
+                 localTasks = new ArrayList<>(InternalTaskPriority.values().length);
+                 for (int i = 0; i < InternalTaskPriority.values().length; ++i) {
+                     localTasks.add(new ConcurrentLinkedDeque<>());
+                 }
+             } else {
+                 localTasks = null;
+             }
+         }
+
+         ThreadPool getPool() {
+             return ThreadPool.this;
+         }
+
          @Override
          public void run() {
+             if (localTasks == null) {
+                 runTasks();
+                 decrementThreadCount();
+                 return;
+             }
+
+             workers.add(this);
+             try {
+                 runTasks();
+             } finally {
+                 workers.remove(this);
+                 handOverLocalTasks();
+                 decrementThreadCount();
+             }
+         }
+
+         private void runTasks() {
              while (!isShuttingDown) {
                  Task<?> task = getNextTask();
                  if (task == null) {
@@ -337,25 +651,70 @@ public class ThreadPool implements Executor {
                  }
                  executeTask(task);
              }
-             decrementThreadCount();
          }
 
+         /* Parks on the queue until a task arrives - the timeout only bounds how long
+          * a worker can miss the shutdown flag, pause and poison pills arrive as tasks */
          private Task<?> getNextTask() {
-             lock.lock();
              try {
-                 if (!taskQueue.isEmpty()) {
-                     return taskQueue.dequeue();
+                 if (schedulingMode == SchedulingMode.SHARED_QUEUE) {
+                     return taskQueue.dequeue(IDLE_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+                 }
+
+                 Task<?> task = findTask();
+                 if (task != null) {
+                     return task;
+                 }
+                 idleWorkers.incrementAndGet();
+                 try {
+                     task = findTask(); // re-check - a task pushed just before we became idle sent no wake up
+                     return (task != null) ? task : taskQueue.dequeue(IDLE_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+                 } finally {
+                     idleWorkers.decrementAndGet();
                  }
-                 return null;
              } catch (InterruptedException e) {
                  Thread.currentThread().interrupt();
                  return null;
-             } finally {
-                 lock.unlock();
+             }
+         }
+
+         /* Highest priority first: for every level the shared queue wins if it holds a higher
+          * level, then this worker's deque, then the other workers' deques.
+          * System tasks above the user levels (pause, kill) always come first */
+         private Task<?> findTask() throws InterruptedException {
+             Task<?> shared = taskQueue.peek();
+             int sharedLevel = (shared != null) ? shared.TaskPriority.ordinal() : -1;
+
+             for (int level = InternalTaskPriority.HIGH.ordinal(); level >= InternalTaskPriority.LOW.ordinal(); --level) {
+                 if (sharedLevel > level) {
+                     return taskQueue.dequeue(0, TimeUnit.MILLISECONDS);
+                 }
+                 Task<?> task = localTasks.get(level).pollLast();
+                 if (task != null) {
+                     return task;
+                 }
+                 for (WorkerThread victim : workers) {
+                     if (victim != this && (task = victim.localTasks.get(level).pollFirst()) != null) {
+                         steals.incrementAndGet();
+                         return task;
+                     }
+                 }
+             }
+             return (sharedLevel >= 0) ? taskQueue.dequeue(0, TimeUnit.MILLISECONDS) : null;
+         }
+
+         /* Tasks still on this worker's deques go to the shared queue so they are not lost */
+         private void handOverLocalTasks() {
+             for (ConcurrentLinkedDeque<Task<?>> deque : localTasks) {
+                 Task<?> task;
+                 while ((task = deque.pollFirst()) != null) {
+                     taskQueue.enqueue(task);
+                 }
              }
          }
 
          private void executeTask(Task<?> task) {
+             releaseSlot(task);
              try {
                  task.start();
              } catch (RuntimeException e) {
@@ -377,4 +736,4 @@ public class ThreadPool implements Executor {
              }
          }
      }
- }
\ No newline at end of file
+ }
\ No newline at end of file
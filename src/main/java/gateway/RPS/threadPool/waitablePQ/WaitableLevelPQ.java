@@ -0,0 +1,134 @@
+package gateway.RPS.threadPool.waitablePQ;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
+
+/* Waitable priority queue for a small fixed number of priority levels - one lock-free FIFO
+ * queue per level, dequeue scans from the highest level down. Elements of the same level
+ * come out in insertion order. Producers and consumers never share a lock: the only
+ * coordination is a semaphore counting the queued elements */
+public class WaitableLevelPQ<E> {
+    private final List<Queue<E>> levels; // index is the level
+    private final ToIntFunction<? super E> levelOf;
+    private final Semaphore elementsAvailable = new Semaphore(0);
+    private final AtomicInteger size = new AtomicInteger(0);
+    /* permits already taken by a consumer for an element that remove() took from under it */
+    private final AtomicInteger removedPermits = new AtomicInteger(0);
+
+    /* levelOf maps an element to 0..numOfLevels - 1, a higher level is dequeued first */
+    public WaitableLevelPQ(int numOfLevels, ToIntFunction<? super E> levelOf) {
+        if (numOfLevels < 1) {
+            throw new IllegalArgumentException("Number of levels must be positive: " + numOfLevels);
+        }
+        this.levelOf = levelOf;
+        levels = new ArrayList<>(numOfLevels);
+        for (int i = 0; i < numOfLevels; ++i) {
+            levels.add(new ConcurrentLinkedQueue<>());
+        }
+    }
+
+    public void enqueue(E element) {
+        levels.get(levelOf(element)).add(element);
+        size.incrementAndGet();
+        elementsAvailable.release(); // signal that an element is available
+    }
+
+    public E dequeue() throws InterruptedException {
+        while (true) {
+            elementsAvailable.acquire(); // blocking - wait for an element
+            E element = take();
+            if (element != null) {
+                return element;
+            }
+        }
+    }
+
+    /* Waits at most timeout for an element, returns null if none arrived */
+    public E dequeue(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (true) {
+            if (!elementsAvailable.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return null;
+            }
+            E element = take();
+            if (element != null) {
+                return element;
+            }
+        }
+    }
+
+    public boolean remove(E element) {
+        if (!levels.get(levelOf(element)).remove(element)) {
+            return false;
+        }
+        size.decrementAndGet();
+        if (!elementsAvailable.tryAcquire()) {
+            // a consumer already holds the permit of this element - it has to give it up
+            removedPermits.incrementAndGet();
+        }
+        return true;
+    }
+
+    /* Takes the oldest element of one level without waiting, or returns null if the level is empty */
+    public E pollLevel(int level) {
+        E element = levels.get(level).poll();
+        if (element == null) {
+            return null;
+        }
+        size.decrementAndGet();
+        if (!elementsAvailable.tryAcquire()) {
+            removedPermits.incrementAndGet(); // as in remove() - a consumer holds this element's permit
+        }
+        return element;
+    }
+
+    public E peek() {
+        for (int i = levels.size() - 1; i >= 0; --i) {
+            E element = levels.get(i).peek();
+            if (element != null) {
+                return element;
+            }
+        }
+        return null;
+    }
+
+    public boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    /* Called holding a permit - returns the element it stands for, or null if remove() took it */
+    private E take() {
+        while (true) {
+            for (int i = levels.size() - 1; i >= 0; --i) {
+                E element = levels.get(i).poll();
+                if (element != null) {
+                    size.decrementAndGet();
+                    return element;
+                }
+            }
+            int removed = removedPermits.get();
+            if (removed > 0 && removedPermits.compareAndSet(removed, removed - 1)) {
+                return null;
+            }
+            Thread.onSpinWait(); // remove() has taken the element but not yet settled its permit
+        }
+    }
+
+    private int levelOf(E element) {
+        int level = levelOf.applyAsInt(element);
+        if (level < 0 || level >= levels.size()) {
+            throw new IllegalArgumentException("Level out of range: " + level);
+        }
+        return level;
+    }
+}
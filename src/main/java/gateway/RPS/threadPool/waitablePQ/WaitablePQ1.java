@@ -7,6 +7,7 @@ package gateway.RPS.threadPool.waitablePQ;
 
 import java.util.PriorityQueue;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 public class WaitablePQ1<E extends Comparable<E>> {
     private final PriorityQueue<E> pq = new PriorityQueue<>();
@@ -35,6 +36,19 @@ public class WaitablePQ1<E extends Comparable<E>> {
         }
     }
 
+    /* Waits at most timeout for an element, returns null if none arrived */
+    public E dequeue(long timeout, TimeUnit unit) throws InterruptedException {
+        if (!elementsAvailable.tryAcquire(timeout, unit)) {
+            return null;
+        }
+        writeLock.acquire();
+        try {
+            return pq.poll();
+        } finally {
+            writeLock.release();
+        }
+    }
+
     public boolean remove(E element) throws InterruptedException {
         writeLock.acquire();
         try {
@@ -98,4 +112,4 @@ public class WaitablePQ1<E extends Comparable<E>> {
             readLock.release();
         }
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -4,8 +4,12 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.google.gson.JsonSyntaxException;
 import gateway.RPS.RPS;
+import gateway.connectionService.buffer.BufferPool;
+import gateway.connectionService.codec.FrameCodec;
 import gateway.connectionService.iConnection.IConnection;
 import gateway.connectionService.iConnection.IConnectionHTTP;
+import gateway.connectionService.iConnection.IConnectionJson;
+import gateway.connectionService.iConnection.IConnectionTCP;
 import gateway.connectionService.request.Request;
 import gateway.connectionService.server.GenericServer;
 import gateway.connectionService.server.Handler;
@@ -17,7 +21,9 @@ import httpServer.Pair;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 public class ConnectionService {
     private final GenericServer tcpUdpServer;
@@ -31,37 +37,16 @@ public class ConnectionService {
             Method.GET, new Pair(
                     connection -> {
                         try {
-                            ByteBuffer buffer = connection.receive();
-                            if (buffer == null) return false;
-                            String rawMessage = new String(buffer.array(), 0, buffer.limit(), StandardCharsets.UTF_8);
-                            JsonObject jsonPayload;
-                            try {
-                                jsonPayload = JsonParser.parseString(rawMessage).getAsJsonObject();
-                            } catch (JsonSyntaxException | IllegalStateException e) {
-                                JsonObject errorResponse = new JsonObject();
-                                errorResponse.addProperty("status", "error");
-                                errorResponse.addProperty("message", "Invalid JSON format or not an object in GET query: " + e.getMessage());
-                                connection.send(ByteBuffer.wrap(errorResponse.toString().getBytes(StandardCharsets.UTF_8)));
-                                return false;
-                            }
+                            JsonObject jsonPayload = readJson(connection, "GET query");
+                            if (jsonPayload == null) return false;
                             if (!jsonPayload.has("command")) {
-                                JsonObject errorResponse = new JsonObject();
-                                errorResponse.addProperty("status", "error");
-                                errorResponse.addProperty("message", "Missing 'command' in GET request.");
-                                connection.send(ByteBuffer.wrap(errorResponse.toString().getBytes(StandardCharsets.UTF_8)));
+                                sendError(connection, "Missing 'command' in GET request.");
                                 return false;
                             }
                             return true;
                         } catch (IOException e) {
                             System.err.println("GET Validator I/O error: " + e.getMessage());
-                            try {
-                                JsonObject errorResponse = new JsonObject();
-                                errorResponse.addProperty("status", "error");
-                                errorResponse.addProperty("message", "Internal validator error: " + e.getMessage());
-                                connection.send(ByteBuffer.wrap(errorResponse.toString().getBytes(StandardCharsets.UTF_8)));
-                            } catch (IOException innerE) {
-                                /* ignore */
-                            }
+                            sendValidatorError(connection, e);
                             return false;
                         }
                     },
@@ -76,37 +61,16 @@ public class ConnectionService {
             Method.POST, new Pair(
                     connection -> {
                         try {
-                            ByteBuffer buffer = connection.receive();
-                            if (buffer == null) return false;
-                            String rawMessage = new String(buffer.array(), 0, buffer.limit(), StandardCharsets.UTF_8);
-                            JsonObject jsonPayload;
-                            try {
-                                jsonPayload = JsonParser.parseString(rawMessage).getAsJsonObject();
-                            } catch (JsonSyntaxException | IllegalStateException e) {
-                                JsonObject errorResponse = new JsonObject();
-                                errorResponse.addProperty("status", "error");
-                                errorResponse.addProperty("message", "Invalid JSON format or not an object in POST body: " + e.getMessage());
-                                connection.send(ByteBuffer.wrap(errorResponse.toString().getBytes(StandardCharsets.UTF_8)));
-                                return false;
-                            }
+                            JsonObject jsonPayload = readJson(connection, "POST body");
+                            if (jsonPayload == null) return false;
                             if (!jsonPayload.has("command") || !jsonPayload.has("data") || !jsonPayload.get("data").isJsonObject()) {
-                                JsonObject errorResponse = new JsonObject();
-                                errorResponse.addProperty("status", "error");
-                                errorResponse.addProperty("message", "Missing 'command' or 'data' (or 'data' not object) in POST request.");
-                                connection.send(ByteBuffer.wrap(errorResponse.toString().getBytes(StandardCharsets.UTF_8)));
+                                sendError(connection, "Missing 'command' or 'data' (or 'data' not object) in POST request.");
                                 return false;
                             }
                             return true;
                         } catch (IOException e) {
                             System.err.println("POST Validator I/O error: " + e.getMessage());
-                            try {
-                                JsonObject errorResponse = new JsonObject();
-                                errorResponse.addProperty("status", "error");
-                                errorResponse.addProperty("message", "Internal validator error: " + e.getMessage());
-                                connection.send(ByteBuffer.wrap(errorResponse.toString().getBytes(StandardCharsets.UTF_8)));
-                            } catch (IOException innerE) {
-                                /* ignore */
-                            }
+                            sendValidatorError(connection, e);
                             return false;
                         }
                     },
@@ -121,6 +85,14 @@ public class ConnectionService {
 
     public ConnectionService(RPS<String, ?, ?> rps) throws IOException {
         tcpUdpServer = new GenericServer(handler);
+        tcpUdpServer.setOverloadSignal(rps::isSaturated);
+        this.rps = rps;
+    }
+
+    public ConnectionService(RPS<String, ?, ?> rps, int numOfReactors,
+                             GenericServer.ReactorSelection reactorSelection) throws IOException {
+        tcpUdpServer = new GenericServer(handler, numOfReactors, reactorSelection);
+        tcpUdpServer.setOverloadSignal(rps::isSaturated);
         this.rps = rps;
     }
 
@@ -137,11 +109,71 @@ public class ConnectionService {
         httpServer.addRoute("/iots", callbacks);
     }
 
+    public void registerHTTP(int port, String ip, GenericHttpServer.ExecutorMode executorMode, int poolSize, int backlog) {
+        httpServer = new GenericHttpServer(ip, port, executorMode, poolSize, backlog);
+        httpServer.addRoute("/iots", callbacks);
+    }
+
     public void start() {
         new Thread(() -> httpServer.start()).start();
         tcpUdpServer.start();
     }
 
+    public void setBufferPool(BufferPool bufferPool) {
+        tcpUdpServer.setBufferPool(bufferPool);
+    }
+
+    public BufferPool getBufferPool() {
+        return tcpUdpServer.getBufferPool();
+    }
+
+    public void setWriteHighWaterMark(long writeHighWaterMark) {
+        tcpUdpServer.setWriteHighWaterMark(writeHighWaterMark);
+    }
+
+    public void setFrameCodec(Supplier<FrameCodec> codecFactory) {
+        tcpUdpServer.setFrameCodec(codecFactory);
+    }
+
+    public List<GenericServer.ReactorStats> getReactorStats() {
+        return tcpUdpServer.getReactorStats();
+    }
+
+    /* Returns the request payload, or null after sending an error response. HTTP connections hand
+     * over the object HttpRequestHandler already parsed, so only other transports are parsed here */
+    private static JsonObject readJson(IConnection connection, String source) throws IOException {
+        if (connection instanceof IConnectionJson) {
+            return ((IConnectionJson) connection).receiveJson();
+        }
+        ByteBuffer buffer = connection.receive();
+        if (buffer == null) return null;
+        try {
+            return JsonParser.parseString(BufferPool.decodeUtf8(buffer)).getAsJsonObject();
+        } catch (JsonSyntaxException | IllegalStateException e) {
+            sendError(connection, "Invalid JSON format or not an object in " + source + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void sendError(IConnection connection, String message) throws IOException {
+        JsonObject errorResponse = new JsonObject();
+        errorResponse.addProperty("status", "error");
+        errorResponse.addProperty("message", message);
+        if (connection instanceof IConnectionJson) {
+            ((IConnectionJson) connection).sendJson(errorResponse);
+        } else {
+            connection.send(ByteBuffer.wrap(errorResponse.toString().getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    private static void sendValidatorError(IConnection connection, IOException e) {
+        try {
+            sendError(connection, "Internal validator error: " + e.getMessage());
+        } catch (IOException innerE) {
+            /* ignore */
+        }
+    }
+
     private class ConnectionHandler implements Handler {
         @Override
         public JsonObject onReceive(IConnection connection) {
@@ -174,47 +206,63 @@ public class ConnectionService {
         @Override
         public void handle(IConnection connection, JsonObject message) {
             try {
-                if (message == null) {
+                if (message == null && connection instanceof IConnectionJson) {
+                    // already parsed and validated by the HTTP callbacks
+                    try {
+                        rps.handle(new Request(connection, handler, ((IConnectionJson) connection).receiveJson()));
+                    } catch (Exception e) {
+                        System.err.println("ConnectionProtocol: Error processing request in RPS: " + e.getMessage());
+                        sendError(connection, "Error processing request: " + e.getMessage());
+                    }
+                } else if (message == null) {
                     ByteBuffer buffer = connection.receive();
-                    if (buffer != null) {
-                        String rawMessage = new String(buffer.array(), 0, buffer.limit(), StandardCharsets.UTF_8);
-                        JsonObject jsonPayload;
+                    while (buffer != null) {
                         try {
-                            jsonPayload = JsonParser.parseString(rawMessage).getAsJsonObject();
-                        } catch (JsonSyntaxException e) {
-                            System.err.println("ConnectionProtocol: Invalid JSON format received: " +
-                                    rawMessage + " Error: " + e.getMessage());
-                            String errorMsg = "Error: Invalid JSON format. Please send valid JSON.\n";
-                            connection.send(ByteBuffer.wrap(errorMsg.getBytes(StandardCharsets.UTF_8)));
-                            return;
-                        } catch (IllegalStateException e) {
-                            System.err.println("ConnectionProtocol: JSON payload is not a JSON object: " +
-                                    rawMessage + " Error: " + e.getMessage());
-                            String errorMsg = "Error: JSON payload must be a JSON object\n";
-                            connection.send(ByteBuffer.wrap(errorMsg.getBytes(StandardCharsets.UTF_8)));
-                            return;
-                        }
-
-                        try {
-                            rps.handle(new Request(connection, handler, jsonPayload));
-                        } catch (Exception e) {
-                            System.err.println("ConnectionProtocol: Error processing request in RPS: " + e.getMessage());
-                            String errorMsg = "Error processing request: " + e.getMessage() + "\n";
-                            connection.send(ByteBuffer.wrap(errorMsg.getBytes(StandardCharsets.UTF_8)));
+                            handleFrame(connection, buffer);
+                        } finally {
+                            connection.release(buffer);
                         }
+                        // a stream connection may hold several pipelined frames from one read
+                        buffer = (connection instanceof IConnectionTCP) ? connection.receive() : null;
                     }
+                } else if (connection instanceof IConnectionJson) {
+                    ((IConnectionJson) connection).sendJson(message);
                 } else {
-                    String responseString = message.toString();
-                    responseString += "\n";
-                    connection.send(ByteBuffer.wrap(responseString.getBytes(StandardCharsets.UTF_8)));
+                    BufferPool bufferPool = tcpUdpServer.getBufferPool();
+                    connection.sendLeased(bufferPool.encodeUtf8(message.toString() + "\n"), bufferPool);
                 }
             } catch (IOException e) {
+                /* Responses are sent from worker threads too - closing the connection is left to its
+                 * reactor, which sees the closed channel on its next read */
                 System.err.println("Connection error: " + e.getMessage());
-                try {
-                    connection.receive();
-                } catch (IOException ignore) {
-                    /* ignore */
-                }
+            }
+        }
+
+        private void handleFrame(IConnection connection, ByteBuffer buffer) throws IOException {
+            String rawMessage = BufferPool.decodeUtf8(buffer);
+            JsonObject jsonPayload;
+            try {
+                jsonPayload = JsonParser.parseString(rawMessage).getAsJsonObject();
+            } catch (JsonSyntaxException e) {
+                System.err.println("ConnectionProtocol: Invalid JSON format received: " +
+                        rawMessage + " Error: " + e.getMessage());
+                String errorMsg = "Error: Invalid JSON format. Please send valid JSON.\n";
+                connection.send(ByteBuffer.wrap(errorMsg.getBytes(StandardCharsets.UTF_8)));
+                return;
+            } catch (IllegalStateException e) {
+                System.err.println("ConnectionProtocol: JSON payload is not a JSON object: " +
+                        rawMessage + " Error: " + e.getMessage());
+                String errorMsg = "Error: JSON payload must be a JSON object\n";
+                connection.send(ByteBuffer.wrap(errorMsg.getBytes(StandardCharsets.UTF_8)));
+                return;
+            }
+
+            try {
+                rps.handle(new Request(connection, handler, jsonPayload));
+            } catch (Exception e) {
+                System.err.println("ConnectionProtocol: Error processing request in RPS: " + e.getMessage());
+                String errorMsg = "Error processing request: " + e.getMessage() + "\n";
+                connection.send(ByteBuffer.wrap(errorMsg.getBytes(StandardCharsets.UTF_8)));
             }
         }
     }
@@ -0,0 +1,228 @@
+package gateway.connectionService.buffer;
+
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/* Size classed pool of direct ByteBuffers.
+ * Every thread (reactor or worker) keeps a small private cache per size class in front of
+ * a shared free list, so the lease/release pair on a single thread touches no shared state.
+ * Once a thread is gone and its cache collected, the cached buffers move to the shared lists,
+ * so they stay counted in directBytes and can still be leased.
+ * A leased buffer must be released exactly once, and must not be used after release. */
+public class BufferPool {
+    private static final int[] SIZE_CLASSES = {1024, 4 * 1024, 16 * 1024, 64 * 1024};
+    private static final ThreadLocal<CharsetEncoder> UTF8_ENCODER =
+            ThreadLocal.withInitial(StandardCharsets.UTF_8::newEncoder);
+    private static final ThreadLocal<byte[]> UTF8_SCRATCH = ThreadLocal.withInitial(() -> new byte[1024]);
+    private static final int MAX_SCRATCH_SIZE = 64 * 1024;
+    private static final Cleaner CACHE_CLEANER = Cleaner.create();
+    private static volatile BufferPool defaultPool;
+
+    private final List<Queue<ByteBuffer>> sharedFreeLists; // one per size class
+    private final ThreadLocal<LocalCache> localCaches;
+    private final int localCacheSize;
+    private final long maxDirectBytes;
+
+    private final AtomicLong directBytes = new AtomicLong(0);
+    private final AtomicLong outstandingBytes = new AtomicLong(0);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder heapFallbacks = new LongAdder();
+
+    public static final int DEFAULT_LOCAL_CACHE_SIZE = 32;
+    public static final long UNLIMITED = 0;
+
+    public BufferPool() {
+        this(UNLIMITED, DEFAULT_LOCAL_CACHE_SIZE);
+    }
+
+    /* maxDirectBytes - hard cap on off-heap memory owned by the pool (UNLIMITED for no cap).
+     * Leases that would exceed it get a heap buffer instead */
+    public BufferPool(long maxDirectBytes, int localCacheSize) {
+        this.maxDirectBytes = maxDirectBytes;
+        this.localCacheSize = localCacheSize;
+        List<Queue<ByteBuffer>> shared = new ArrayList<>(SIZE_CLASSES.length);
+        for (int i = 0; i < SIZE_CLASSES.length; ++i) {
+            shared.add(new ConcurrentLinkedQueue<>());
+        }
+        sharedFreeLists = shared;
+        localCaches = ThreadLocal.withInitial(() -> {
+            List<ArrayDeque<ByteBuffer>> caches = new ArrayList<>(SIZE_CLASSES.length);
+            for (int i = 0; i < SIZE_CLASSES.length; ++i) {
+                caches.add(new ArrayDeque<>(localCacheSize));
+            }
+            LocalCache cache = new LocalCache(caches);
+            // the action holds the deques but not the holder, so it runs once the thread dropped it
+            CACHE_CLEANER.register(cache, () -> {
+                for (int i = 0; i < caches.size(); ++i) {
+                    shared.get(i).addAll(caches.get(i));
+                }
+            });
+            return cache;
+        });
+    }
+
+    /* Process wide pool used by connections that were not given one explicitly */
+    public static BufferPool getDefault() {
+        if (defaultPool == null) {
+            synchronized (BufferPool.class) {
+                if (defaultPool == null) {
+                    defaultPool = new BufferPool();
+                }
+            }
+        }
+        return defaultPool;
+    }
+
+    /* Returns a cleared buffer with at least size bytes of capacity */
+    public ByteBuffer lease(int size) {
+        int sizeClass = sizeClassOf(size);
+        if (sizeClass == -1) {
+            misses.increment();
+            outstandingBytes.addAndGet(size);
+            return ByteBuffer.allocate(size); // larger than any class - not pooled
+        }
+
+        ByteBuffer buffer = localCaches.get().caches.get(sizeClass).pollLast();
+        if (buffer == null) {
+            buffer = sharedFreeLists.get(sizeClass).poll();
+        }
+
+        if (buffer != null) {
+            hits.increment();
+            buffer.clear();
+        } else {
+            misses.increment();
+            buffer = allocate(SIZE_CLASSES[sizeClass]);
+        }
+        outstandingBytes.addAndGet(buffer.capacity());
+        return buffer;
+    }
+
+    public void release(ByteBuffer buffer) {
+        if (buffer == null) {
+            return;
+        }
+        outstandingBytes.addAndGet(-buffer.capacity());
+
+        int sizeClass = exactSizeClassOf(buffer.capacity());
+        if (!buffer.isDirect() || sizeClass == -1) {
+            return; // heap fallbacks and oversized buffers are left to the GC
+        }
+
+        ArrayDeque<ByteBuffer> localCache = localCaches.get().caches.get(sizeClass);
+        if (localCache.size() < localCacheSize) {
+            localCache.addLast(buffer);
+        } else {
+            sharedFreeLists.get(sizeClass).offer(buffer);
+        }
+    }
+
+    /* Encodes text as UTF-8 into a leased buffer, ready for reading - release it when done */
+    public ByteBuffer encodeUtf8(String text) {
+        CharsetEncoder encoder = UTF8_ENCODER.get();
+        ByteBuffer buffer = lease((int) (text.length() * encoder.maxBytesPerChar()) + 1);
+        encoder.reset();
+        encoder.encode(CharBuffer.wrap(text), buffer, true);
+        encoder.flush(buffer);
+        buffer.flip();
+        return buffer;
+    }
+
+    /* Decodes the readable bytes as UTF-8 without moving the buffer's position. Direct buffers go
+     * through a per thread scratch array, so only the String itself is allocated */
+    public static String decodeUtf8(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + buffer.position(),
+                    buffer.remaining(), StandardCharsets.UTF_8);
+        }
+        int length = buffer.remaining();
+        byte[] bytes = UTF8_SCRATCH.get();
+        if (bytes.length < length) {
+            bytes = new byte[length];
+            if (length <= MAX_SCRATCH_SIZE) {
+                UTF8_SCRATCH.set(bytes);
+            }
+        }
+        buffer.duplicate().get(bytes, 0, length);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getHeapFallbacks() {
+        return heapFallbacks.sum();
+    }
+
+    /* Bytes currently leased and not yet released */
+    public long getOutstandingBytes() {
+        return outstandingBytes.get();
+    }
+
+    /* Off-heap bytes owned by the pool - leased plus cached */
+    public long getDirectBytes() {
+        return directBytes.get();
+    }
+
+    @Override
+    public String toString() {
+        return "BufferPool{hits=" + getHits() + ", misses=" + getMisses() +
+                ", heapFallbacks=" + getHeapFallbacks() + ", outstandingBytes=" + getOutstandingBytes() +
+                ", directBytes=" + getDirectBytes() + "}";
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        while (true) {
+            long current = directBytes.get();
+            if (maxDirectBytes != UNLIMITED && current + capacity > maxDirectBytes) {
+                heapFallbacks.increment();
+                return ByteBuffer.allocate(capacity);
+            }
+            if (directBytes.compareAndSet(current, current + capacity)) {
+                return ByteBuffer.allocateDirect(capacity);
+            }
+        }
+    }
+
+    private static class LocalCache {
+        private final List<ArrayDeque<ByteBuffer>> caches; // one per size class
+
+        private LocalCache(List<ArrayDeque<ByteBuffer>> caches) {
+            this.caches = caches;
+        }
+    }
+
+    private static int sizeClassOf(int size) {
+        for (int i = 0; i < SIZE_CLASSES.length; ++i) {
+            if (size <= SIZE_CLASSES[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int exactSizeClassOf(int capacity) {
+        for (int i = 0; i < SIZE_CLASSES.length; ++i) {
+            if (capacity == SIZE_CLASSES[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
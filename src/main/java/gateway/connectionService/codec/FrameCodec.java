@@ -0,0 +1,31 @@
+package gateway.connectionService.codec;
+
+import gateway.connectionService.buffer.BufferPool;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/* Splits a TCP byte stream into messages and frames outgoing messages the same way.
+ * An instance belongs to a single connection, so implementations may keep decode state */
+public interface FrameCodec {
+    /* Looks for one complete frame starting at the buffer's position.
+     * On success returns the frame payload as a view of the buffer - valid only until the buffer's
+     * bytes are overwritten or moved - and advances the position past the frame,
+     * otherwise returns null - the position may still move past bytes that carry no frame.
+     * throws IOException if the stream can never produce a valid frame */
+    ByteBuffer decode(ByteBuffer buffer) throws IOException;
+
+    ByteBuffer encode(ByteBuffer payload);
+
+    /* Frames the payload into a buffer leased from the pool, or returns the payload itself if it
+     * needs no framing - so the caller releases the result only when it is not the payload */
+    default ByteBuffer encode(ByteBuffer payload, BufferPool pool) {
+        ByteBuffer framed = encode(payload);
+        if (framed == payload) {
+            return payload;
+        }
+        ByteBuffer leased = pool.lease(framed.remaining());
+        leased.put(framed).flip();
+        return leased;
+    }
+}
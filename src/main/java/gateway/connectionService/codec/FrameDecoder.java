@@ -0,0 +1,134 @@
+package gateway.connectionService.codec;
+
+import gateway.connectionService.buffer.BufferPool;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/* Per connection accumulation buffer - bytes from consecutive reads are appended here
+ * until the codec can cut complete frames out of them. Frames are views of this buffer,
+ * so a frame is only valid until the next append or read */
+public class FrameDecoder {
+    private final FrameCodec codec;
+    private final int initialSize;
+    private final int maxBufferSize;
+    private final BufferPool bufferPool; // null - the buffer lives on the heap
+    private ByteBuffer accumulated; // write mode - [readIndex, position) holds undecoded bytes
+    private int readIndex = 0;
+
+    public static final int DEFAULT_INITIAL_SIZE = 4096;
+    public static final int DEFAULT_MAX_BUFFER_SIZE = 2 * 1024 * 1024;
+    private static final int MIN_READ_SPACE = 1024;
+
+    public FrameDecoder(FrameCodec codec) {
+        this(codec, DEFAULT_INITIAL_SIZE, DEFAULT_MAX_BUFFER_SIZE);
+    }
+
+    public FrameDecoder(FrameCodec codec, int initialSize, int maxBufferSize) {
+        this(codec, initialSize, maxBufferSize, null);
+    }
+
+    /* The buffer is leased from the pool - release() hands it back once the connection is gone */
+    public FrameDecoder(FrameCodec codec, BufferPool bufferPool) {
+        this(codec, DEFAULT_INITIAL_SIZE, DEFAULT_MAX_BUFFER_SIZE, bufferPool);
+    }
+
+    private FrameDecoder(FrameCodec codec, int initialSize, int maxBufferSize, BufferPool bufferPool) {
+        this.codec = codec;
+        this.initialSize = initialSize;
+        this.maxBufferSize = maxBufferSize;
+        this.bufferPool = bufferPool;
+        accumulated = allocate(initialSize);
+    }
+
+    /* throws IOException if the undecoded bytes would grow past the maximum buffer size */
+    public void append(ByteBuffer data) throws IOException {
+        makeRoom(data.remaining());
+        accumulated.put(data);
+    }
+
+    /* Reads from the channel straight into the buffer - returns what the channel's read returned.
+     * throws IOException if the undecoded bytes already fill the maximum buffer size */
+    public int readFrom(ReadableByteChannel channel) throws IOException {
+        if (accumulated.remaining() < MIN_READ_SPACE) {
+            makeRoom(Math.min(MIN_READ_SPACE, maxBufferSize - bufferedBytes()));
+        }
+        if (!accumulated.hasRemaining()) {
+            throw new IOException("Undecoded data exceeds maximum buffer size of " + maxBufferSize + " bytes");
+        }
+        return channel.read(accumulated);
+    }
+
+    /* Returns the next complete frame, or null if more bytes are needed */
+    public ByteBuffer nextFrame() throws IOException {
+        if (readIndex == accumulated.position()) {
+            return null;
+        }
+
+        ByteBuffer view = accumulated.duplicate();
+        view.limit(accumulated.position()).position(readIndex);
+        ByteBuffer frame = codec.decode(view);
+        readIndex = view.position();
+        if (readIndex == accumulated.position()) {
+            accumulated.clear(); // the bytes stay in place, so the frame is still readable
+            readIndex = 0;
+        }
+        return frame;
+    }
+
+    public int bufferedBytes() {
+        return accumulated.position() - readIndex;
+    }
+
+    public FrameCodec getCodec() {
+        return codec;
+    }
+
+    /* Returns a pooled buffer - a decoder used again afterwards starts over with a new one */
+    public void release() {
+        if (bufferPool != null) {
+            bufferPool.release(accumulated);
+            accumulated = ByteBuffer.allocate(0);
+            readIndex = 0;
+        }
+    }
+
+    private void makeRoom(int required) throws IOException {
+        if (accumulated.remaining() < required) {
+            compact();
+        }
+        if (accumulated.remaining() < required) {
+            grow(accumulated.position() + required);
+        }
+    }
+
+    private void compact() {
+        if (readIndex > 0) {
+            accumulated.flip().position(readIndex);
+            accumulated.compact();
+            readIndex = 0;
+        }
+    }
+
+    private void grow(int required) throws IOException {
+        if (required > maxBufferSize) {
+            throw new IOException("Undecoded data exceeds maximum buffer size of " + maxBufferSize + " bytes");
+        }
+        int newCapacity = Math.max(accumulated.capacity(), initialSize);
+        while (newCapacity < required) {
+            newCapacity *= 2;
+        }
+        ByteBuffer larger = allocate(Math.min(newCapacity, maxBufferSize));
+        accumulated.flip();
+        larger.put(accumulated);
+        if (bufferPool != null) {
+            bufferPool.release(accumulated);
+        }
+        accumulated = larger;
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        return (bufferPool == null) ? ByteBuffer.allocate(capacity) : bufferPool.lease(capacity);
+    }
+}
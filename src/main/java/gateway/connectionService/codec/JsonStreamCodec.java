@@ -0,0 +1,109 @@
+package gateway.connectionService.codec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/* Concatenated JSON values with no delimiter - the wire format of clients that write one JSON object
+ * per send and expect nothing else. A frame ends where its outermost object or array closes, so
+ * objects split over reads or glued together in one read are still cut apart, and whitespace between
+ * them (including the '\n' of newline delimited clients) is skipped. Bytes that do not start an object
+ * or array run up to the next '{', '[' or line end, or to the end of what was read so far, and are
+ * handed on as a frame of their own - so the client gets the usual invalid JSON error at once, as it
+ * did before framing. Responses are sent as they are */
+public class JsonStreamCodec implements FrameCodec {
+    private final int maxFrameLength;
+    // scan state of the frame starting at the buffer's position, kept while it is incomplete
+    private int scannedBytes = 0;
+    private int depth = 0;
+    private boolean inString = false;
+    private boolean escaped = false;
+
+    public static final int DEFAULT_MAX_FRAME_LENGTH = 1024 * 1024;
+
+    public JsonStreamCodec() {
+        this(DEFAULT_MAX_FRAME_LENGTH);
+    }
+
+    public JsonStreamCodec(int maxFrameLength) {
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    @Override
+    public ByteBuffer decode(ByteBuffer buffer) throws IOException {
+        if (scannedBytes == 0) {
+            while (buffer.hasRemaining() && isWhitespace(buffer.get(buffer.position()))) {
+                buffer.position(buffer.position() + 1);
+            }
+            if (!buffer.hasRemaining()) {
+                return null;
+            }
+        }
+
+        int start = buffer.position();
+        byte first = buffer.get(start);
+        int end = (first == '{' || first == '[') ? scanValue(buffer, start) : scanGarbage(buffer, start);
+        if (end == -1) {
+            scannedBytes = buffer.limit() - start;
+            if (scannedBytes > maxFrameLength) {
+                throw new IOException("Frame exceeds maximum length of " + maxFrameLength + " bytes");
+            }
+            return null;
+        }
+
+        scannedBytes = 0;
+        depth = 0;
+        inString = false;
+        escaped = false;
+        buffer.position(end);
+        return view(buffer, start, end - start);
+    }
+
+    @Override
+    public ByteBuffer encode(ByteBuffer payload) {
+        return payload;
+    }
+
+    /* Returns the index just past the closing bracket, or -1 if the value is not complete yet */
+    private int scanValue(ByteBuffer buffer, int start) {
+        for (int i = start + scannedBytes; i < buffer.limit(); ++i) {
+            byte current = buffer.get(i);
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (current == '\\') {
+                    escaped = true;
+                } else if (current == '"') {
+                    inString = false;
+                }
+            } else if (current == '"') {
+                inString = true;
+            } else if (current == '{' || current == '[') {
+                ++depth;
+            } else if ((current == '}' || current == ']') && --depth == 0) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /* Never waits for more bytes - a bare "hello" or 42 must not sit unanswered until the frame limit */
+    private static int scanGarbage(ByteBuffer buffer, int start) {
+        for (int i = start + 1; i < buffer.limit(); ++i) {
+            byte current = buffer.get(i);
+            if (current == '{' || current == '[' || current == '\n') {
+                return i;
+            }
+        }
+        return buffer.limit();
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private static ByteBuffer view(ByteBuffer source, int offset, int length) {
+        ByteBuffer frame = source.duplicate();
+        frame.limit(offset + length).position(offset);
+        return frame.slice();
+    }
+}
@@ -0,0 +1,57 @@
+package gateway.connectionService.codec;
+
+import gateway.connectionService.buffer.BufferPool;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/* Every frame starts with a 4 byte big-endian payload length */
+public class LengthPrefixedCodec implements FrameCodec {
+    private final int maxFrameLength;
+
+    public static final int HEADER_LENGTH = Integer.BYTES;
+    public static final int DEFAULT_MAX_FRAME_LENGTH = 1024 * 1024;
+
+    public LengthPrefixedCodec() {
+        this(DEFAULT_MAX_FRAME_LENGTH);
+    }
+
+    public LengthPrefixedCodec(int maxFrameLength) {
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    @Override
+    public ByteBuffer decode(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < HEADER_LENGTH) {
+            return null;
+        }
+
+        int start = buffer.position();
+        int length = buffer.getInt(start);
+        if (length < 0 || length > maxFrameLength) {
+            throw new IOException("Invalid frame length " + length + " (maximum is " + maxFrameLength + ")");
+        }
+        if (buffer.remaining() < HEADER_LENGTH + length) {
+            return null;
+        }
+
+        ByteBuffer frame = buffer.duplicate();
+        frame.limit(start + HEADER_LENGTH + length).position(start + HEADER_LENGTH);
+        buffer.position(start + HEADER_LENGTH + length);
+        return frame.slice();
+    }
+
+    @Override
+    public ByteBuffer encode(ByteBuffer payload) {
+        ByteBuffer framed = ByteBuffer.allocate(HEADER_LENGTH + payload.remaining());
+        framed.putInt(payload.remaining()).put(payload).flip();
+        return framed;
+    }
+
+    @Override
+    public ByteBuffer encode(ByteBuffer payload, BufferPool pool) {
+        ByteBuffer framed = pool.lease(HEADER_LENGTH + payload.remaining());
+        framed.putInt(payload.remaining()).put(payload.duplicate()).flip();
+        return framed;
+    }
+}
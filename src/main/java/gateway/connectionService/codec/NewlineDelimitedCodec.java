@@ -0,0 +1,85 @@
+package gateway.connectionService.codec;
+
+import gateway.connectionService.buffer.BufferPool;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/* One JSON message per line - '\n' terminates a frame, an optional '\r' before it is dropped.
+ * Clients have to terminate every message - a line still open after maxFrameLength bytes fails the
+ * decode, which closes the connection. Opt in through setFrameCodec, JsonStreamCodec is the default */
+public class NewlineDelimitedCodec implements FrameCodec {
+    private final int maxFrameLength;
+    private int scannedBytes = 0; // bytes after the position already known to hold no delimiter
+
+    private static final byte DELIMITER = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+    public static final int DEFAULT_MAX_FRAME_LENGTH = 1024 * 1024;
+
+    public NewlineDelimitedCodec() {
+        this(DEFAULT_MAX_FRAME_LENGTH);
+    }
+
+    public NewlineDelimitedCodec(int maxFrameLength) {
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    @Override
+    public ByteBuffer decode(ByteBuffer buffer) throws IOException {
+        while (true) {
+            int start = buffer.position();
+            int delimiterIndex = -1;
+            for (int i = start + scannedBytes; i < buffer.limit(); ++i) {
+                if (buffer.get(i) == DELIMITER) {
+                    delimiterIndex = i;
+                    break;
+                }
+            }
+
+            if (delimiterIndex == -1) {
+                scannedBytes = buffer.remaining();
+                if (scannedBytes > maxFrameLength) {
+                    throw new IOException("Frame exceeds maximum length of " + maxFrameLength + " bytes");
+                }
+                return null;
+            }
+
+            scannedBytes = 0;
+            int end = delimiterIndex;
+            if (end > start && buffer.get(end - 1) == CARRIAGE_RETURN) {
+                --end;
+            }
+            buffer.position(delimiterIndex + 1);
+
+            if (end > start) { // skip blank lines
+                return view(buffer, start, end - start);
+            }
+        }
+    }
+
+    @Override
+    public ByteBuffer encode(ByteBuffer payload) {
+        if (payload.hasRemaining() && payload.get(payload.limit() - 1) == DELIMITER) {
+            return payload;
+        }
+        ByteBuffer framed = ByteBuffer.allocate(payload.remaining() + 1);
+        framed.put(payload).put(DELIMITER).flip();
+        return framed;
+    }
+
+    @Override
+    public ByteBuffer encode(ByteBuffer payload, BufferPool pool) {
+        if (payload.hasRemaining() && payload.get(payload.limit() - 1) == DELIMITER) {
+            return payload;
+        }
+        ByteBuffer framed = pool.lease(payload.remaining() + 1);
+        framed.put(payload.duplicate()).put(DELIMITER).flip();
+        return framed;
+    }
+
+    private static ByteBuffer view(ByteBuffer source, int offset, int length) {
+        ByteBuffer frame = source.duplicate();
+        frame.limit(offset + length).position(offset);
+        return frame.slice();
+    }
+}
@@ -1,9 +1,25 @@
 package gateway.connectionService.iConnection;
 
+import gateway.connectionService.buffer.BufferPool;
+
 import java.io.IOException;
 import java.nio.ByteBuffer;
 
 public interface IConnection {
     void send(ByteBuffer buffer) throws IOException;
     ByteBuffer receive() throws IOException;
-}
\ No newline at end of file
+
+    /* Hands back a buffer returned by receive() once the caller is done with it */
+    default void release(ByteBuffer buffer) {
+    }
+
+    /* Sends a buffer leased from pool and takes ownership of it - the caller must not touch or
+     * release it afterwards. Connections that queue their writes keep it instead of copying it */
+    default void sendLeased(ByteBuffer buffer, BufferPool pool) throws IOException {
+        try {
+            send(buffer);
+        } finally {
+            pool.release(buffer);
+        }
+    }
+}
\ No newline at end of file
@@ -4,12 +4,13 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.google.gson.JsonSyntaxException;
 import com.sun.net.httpserver.HttpExchange;
+import gateway.connectionService.buffer.BufferPool;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 
-public class IConnectionHTTP implements IConnection {
+public class IConnectionHTTP implements IConnectionJson {
     private final HttpExchange exchange;
     private final JsonObject requestPayload;
 
@@ -18,6 +19,17 @@ public class IConnectionHTTP implements IConnection {
         this.requestPayload = requestPayload;
     }
 
+    @Override
+    public JsonObject receiveJson() {
+        return requestPayload;
+    }
+
+    /* Typed response path - the body is serialized once and needs no validation parse */
+    @Override
+    public void sendJson(JsonObject response) throws IOException {
+        write(200, "application/json", (response.toString() + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
     @Override
     public ByteBuffer receive() {
         if (requestPayload != null) {
@@ -29,7 +41,7 @@ public class IConnectionHTTP implements IConnection {
 
     @Override
     public void send(ByteBuffer buffer) throws IOException {
-        String responseString = new String(buffer.array(), 0, buffer.limit(), StandardCharsets.UTF_8);
+        String responseString = BufferPool.decodeUtf8(buffer);
         int statusCode = 200;
         String contentType = "application/json";
 
@@ -42,8 +54,10 @@ public class IConnectionHTTP implements IConnection {
         }
         responseString += "\n";
 
-        byte[] responseBytes = responseString.getBytes(StandardCharsets.UTF_8);
+        write(statusCode, contentType, responseString.getBytes(StandardCharsets.UTF_8));
+    }
 
+    private void write(int statusCode, String contentType, byte[] responseBytes) throws IOException {
         exchange.getResponseHeaders().set("Content-Type", contentType);
         exchange.sendResponseHeaders(statusCode, responseBytes.length);
 
@@ -51,4 +65,4 @@ public class IConnectionHTTP implements IConnection {
             os.write(responseBytes);
         }
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
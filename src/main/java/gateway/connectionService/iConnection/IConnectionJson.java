@@ -0,0 +1,12 @@
+package gateway.connectionService.iConnection;
+
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+
+/* A connection whose transport already hands over parsed JSON (HTTP) - lets the gateway skip the
+ * bytes -> string -> JsonObject round trip on the way in and the validation parse on the way out */
+public interface IConnectionJson extends IConnection {
+    JsonObject receiveJson();
+    void sendJson(JsonObject response) throws IOException;
+}
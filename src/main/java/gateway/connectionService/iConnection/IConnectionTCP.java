@@ -1,31 +1,246 @@
 package gateway.connectionService.iConnection;
 
+import gateway.connectionService.buffer.BufferPool;
+import gateway.connectionService.codec.FrameCodec;
+import gateway.connectionService.codec.FrameDecoder;
+import gateway.connectionService.codec.JsonStreamCodec;
+
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class IConnectionTCP implements IConnection {
     private final SocketChannel socketChannel;
+    private final FrameCodec codec;
+    private final FrameDecoder decoder;
+    private final BufferPool bufferPool;
+    private boolean readInCurrentEvent = false;
+
+    private final Queue<ByteBuffer> writeQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicLong queuedBytes = new AtomicLong(0);
+    private final Object interestLock = new Object();
+    private volatile SelectionKey key;
+    private long highWaterMark = DEFAULT_HIGH_WATER_MARK;
+    private boolean readPaused = false;
+    private boolean readsSuspended = false; // by the server while the workers are saturated
+
+    private static final int MAX_GATHER = 16;
+    public static final long DEFAULT_HIGH_WATER_MARK = 1024 * 1024;
 
     public IConnectionTCP(SocketChannel socketChannel) {
+        this(socketChannel, new JsonStreamCodec());
+    }
+
+    public IConnectionTCP(SocketChannel socketChannel, FrameCodec codec) {
+        this(socketChannel, codec, BufferPool.getDefault());
+    }
+
+    public IConnectionTCP(SocketChannel socketChannel, FrameCodec codec, BufferPool bufferPool) {
         this.socketChannel = socketChannel;
+        this.codec = codec;
+        this.decoder = new FrameDecoder(codec, bufferPool);
+        this.bufferPool = bufferPool;
     }
 
+    /* Binds the connection to the selection key of its owning reactor. Until this is called
+     * send() writes synchronously, afterwards it only queues and the reactor flushes */
+    public void attach(SelectionKey key, long highWaterMark) {
+        if (highWaterMark <= 0) {
+            throw new IllegalArgumentException("High water mark must be positive: " + highWaterMark);
+        }
+        this.highWaterMark = highWaterMark;
+        this.key = key;
+    }
+
+    /* Safe to call from any thread - the frame is copied into a pooled buffer and queued,
+     * the owning reactor writes it once the socket is writable */
     @Override
     public void send(ByteBuffer buffer) throws IOException {
-        socketChannel.write(buffer);
+        ByteBuffer framed = codec.encode(buffer, bufferPool);
+        if (key == null) {
+            writeNow(framed, framed != buffer);
+            return;
+        }
+        if (framed == buffer) { // the caller keeps its buffer
+            framed = bufferPool.lease(buffer.remaining());
+            framed.put(buffer).flip();
+        }
+        queue(framed);
     }
 
+    /* Like send(), but queues the buffer itself instead of a copy - the connection releases it */
     @Override
-    public ByteBuffer receive() throws IOException {
-        ByteBuffer buffer = ByteBuffer.allocate(1024);
+    public void sendLeased(ByteBuffer buffer, BufferPool pool) throws IOException {
+        if (pool != bufferPool) {
+            IConnection.super.sendLeased(buffer, pool);
+            return;
+        }
+        ByteBuffer framed = codec.encode(buffer, bufferPool);
+        if (framed != buffer) {
+            bufferPool.release(buffer);
+        }
+        if (key == null) {
+            writeNow(framed, true);
+            return;
+        }
+        queue(framed);
+    }
 
+    private void writeNow(ByteBuffer framed, boolean leased) throws IOException {
         try {
-            int readBytes = socketChannel.read(buffer);
+            while (framed.hasRemaining()) {
+                socketChannel.write(framed);
+            }
+        } finally {
+            if (leased) {
+                bufferPool.release(framed);
+            }
+        }
+    }
+
+    /* Takes ownership of the leased frame. The reactor cancels the key before discardPending(), which
+     * drains under the same lock - so a frame queued here is either flushed or released by it */
+    private void queue(ByteBuffer framed) throws IOException {
+        synchronized (interestLock) {
+            if (!socketChannel.isOpen() || !key.isValid()) {
+                bufferPool.release(framed);
+                throw new IOException("Connection is closed");
+            }
+
+            writeQueue.add(framed);
+            long pending = queuedBytes.addAndGet(framed.remaining());
+            int ops;
+            try {
+                ops = key.interestOps() | SelectionKey.OP_WRITE;
+                if (pending > highWaterMark && !readPaused) {
+                    // client is not keeping up with its responses - stop reading its requests
+                    readPaused = true;
+                    ops &= ~SelectionKey.OP_READ;
+                }
+                key.interestOps(ops);
+            } catch (CancelledKeyException e) {
+                // cancelled since the check - discardPending() releases the frame once it gets the lock
+                throw new IOException("Connection is closed", e);
+            }
+        }
+        key.selector().wakeup();
+    }
+
+    /* Called by the owning reactor when the socket is writable. Gathers up to MAX_GATHER queued
+     * responses into one write, and drops OP_WRITE once the queue is drained */
+    public void flush() throws IOException {
+        ByteBuffer[] batch = new ByteBuffer[MAX_GATHER];
+        while (true) {
+            int count = 0;
+            for (ByteBuffer pending : writeQueue) {
+                if (count == MAX_GATHER) {
+                    break;
+                }
+                batch[count++] = pending;
+            }
+            if (count == 0) {
+                break;
+            }
+
+            long written = socketChannel.write(batch, 0, count);
+            queuedBytes.addAndGet(-written);
+            for (int i = 0; i < count && !batch[i].hasRemaining(); ++i) {
+                bufferPool.release(writeQueue.poll());
+            }
+            if (batch[count - 1].hasRemaining()) {
+                break; // socket buffer is full - wait for the next OP_WRITE
+            }
+        }
+
+        synchronized (interestLock) {
+            if (!key.isValid()) {
+                return;
+            }
+            int ops = key.interestOps();
+            if (writeQueue.isEmpty()) {
+                ops &= ~SelectionKey.OP_WRITE;
+            }
+            if (readPaused && queuedBytes.get() <= highWaterMark / 2) {
+                readPaused = false;
+                if (!readsSuspended) {
+                    ops |= SelectionKey.OP_READ;
+                }
+            }
+            key.interestOps(ops);
+        }
+    }
+
+    /* Bytes accepted by send() that have not reached the socket yet */
+    public long getQueuedBytes() {
+        return queuedBytes.get();
+    }
+
+    public boolean isReadPaused() {
+        synchronized (interestLock) {
+            return readPaused;
+        }
+    }
+
+    /* Stops or resumes reading independently of the write high water mark - reading resumes
+     * only once neither holds it back. Called by the owning reactor */
+    public void suspendReads(boolean suspend) {
+        synchronized (interestLock) {
+            if (readsSuspended == suspend || key == null || !key.isValid()) {
+                return;
+            }
+            readsSuspended = suspend;
+            if (suspend) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            } else if (!readPaused) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+            }
+        }
+    }
+
+    public boolean isReadSuspended() {
+        synchronized (interestLock) {
+            return readsSuspended;
+        }
+    }
+
+    /* Returns queued responses and the read buffer to the pool once the channel is gone */
+    public void discardPending() {
+        synchronized (interestLock) {
+            ByteBuffer pending;
+            while ((pending = writeQueue.poll()) != null) {
+                queuedBytes.addAndGet(-pending.remaining());
+                bufferPool.release(pending);
+            }
+        }
+        decoder.release();
+    }
+
+    /* Returns one complete frame per call. The socket is read at most once per readiness event:
+     * frames left over from that read are returned by the following calls, and null marks the
+     * end of the event - so callers should keep calling until they get null. A frame is a view of
+     * the connection's read buffer and is only valid until the next call */
+    @Override
+    public ByteBuffer receive() throws IOException {
+        try {
+            ByteBuffer frame = decoder.nextFrame();
+            if (frame != null) {
+                return frame;
+            }
+            if (readInCurrentEvent) {
+                readInCurrentEvent = false;
+                return null;
+            }
+
+            int readBytes = decoder.readFrom(socketChannel);
             if (readBytes == -1) {
                 // client disconnected
                 System.out.println("Client disconnected: " + socketChannel.getRemoteAddress());
-                socketChannel.close();
+                close();
                 return null;
             }
 
@@ -34,12 +249,18 @@ public class IConnectionTCP implements IConnection {
                 return null;
             }
 
-            buffer.flip();
-            return buffer;
+            frame = decoder.nextFrame();
+            readInCurrentEvent = (frame != null);
+            return frame;
         } catch (IOException e) {
             System.err.println("Error receiving data: " + e.getMessage());
-            socketChannel.close();
+            close();
             return null;
         }
     }
+
+    private void close() throws IOException {
+        socketChannel.close();
+        discardPending();
+    }
 }
@@ -1,5 +1,7 @@
 package gateway.connectionService.iConnection;
 
+import gateway.connectionService.buffer.BufferPool;
+
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
@@ -7,10 +9,18 @@ import java.nio.channels.DatagramChannel;
 
 public class IConnectionUDP implements IConnection {
     private final DatagramChannel datagramChannel;
+    private final BufferPool bufferPool;
     private InetSocketAddress clientAddress;
 
+    private static final int MAX_DATAGRAM_SIZE = 64 * 1024;
+
     public IConnectionUDP(DatagramChannel datagramChannel) {
+        this(datagramChannel, BufferPool.getDefault());
+    }
+
+    public IConnectionUDP(DatagramChannel datagramChannel, BufferPool bufferPool) {
         this.datagramChannel = datagramChannel;
+        this.bufferPool = bufferPool;
     }
 
     @Override
@@ -24,18 +34,27 @@ public class IConnectionUDP implements IConnection {
 
     @Override
     public ByteBuffer receive() throws IOException {
-        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        ByteBuffer buffer = bufferPool.lease(MAX_DATAGRAM_SIZE);
 
-        buffer.clear();
-        clientAddress = (InetSocketAddress)datagramChannel.receive(buffer);
+        try {
+            clientAddress = (InetSocketAddress) datagramChannel.receive(buffer);
+        } catch (IOException e) {
+            bufferPool.release(buffer);
+            throw e;
+        }
         if (clientAddress == null) {
+            bufferPool.release(buffer);
             return null;
         }
 
         buffer.flip();
-        String message = new String(buffer.array(), 0, buffer.limit());
-        System.out.println("IConnectionUDP: Received from client: " + message);
+        System.out.println("IConnectionUDP: Received from client: " + BufferPool.decodeUtf8(buffer));
 
         return buffer;
     }
-}
\ No newline at end of file
+
+    @Override
+    public void release(ByteBuffer buffer) {
+        bufferPool.release(buffer);
+    }
+}
\ No newline at end of file
@@ -5,11 +5,16 @@ import gateway.connectionService.iConnection.IConnection;
 import gateway.connectionService.server.Handler;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class Request {
     private final IConnection connection;
     private final Handler handler;
     private final JsonObject message;
+    private final AtomicBoolean answered = new AtomicBoolean(false);
+    private final CompletableFuture<JsonObject> response = new CompletableFuture<>();
 
     public Request(IConnection connection, Handler handler, JsonObject message) {
         this.connection = connection;
@@ -21,11 +26,29 @@ public class Request {
         return message;
     }
 
+    /* Only the first response is sent - a command answering after the request timed out is ignored */
     public void sendResponse(JsonObject message) {
+        if (!answered.compareAndSet(false, true)) {
+            System.err.println("Request: response already sent, dropping " + message);
+            return;
+        }
         try {
             handler.send(connection, message);
         } catch (IOException e) {
             System.err.println("Request: send response failed");
+        } finally {
+            // whatever the send did, the request is answered - its lane and tenant slot move on
+            response.complete(message);
         }
     }
+
+    /* Completes with the response once it was sent - may be on a different thread than the one
+     * that ran the command (a command can answer from an async database callback) */
+    public CompletionStage<JsonObject> getResponse() {
+        return response.minimalCompletionStage();
+    }
+
+    public boolean isAnswered() {
+        return answered.get();
+    }
 }
@@ -1,6 +1,9 @@
 package gateway.connectionService.server;
 
 import com.google.gson.JsonObject;
+import gateway.connectionService.buffer.BufferPool;
+import gateway.connectionService.codec.FrameCodec;
+import gateway.connectionService.codec.JsonStreamCodec;
 import gateway.connectionService.iConnection.IConnection;
 import gateway.connectionService.iConnection.IConnectionTCP;
 import gateway.connectionService.iConnection.IConnectionUDP;
@@ -8,22 +11,71 @@ import gateway.connectionService.iConnection.IConnectionUDP;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.channels.*;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class GenericServer {
     private final Handler handler;
     private final Selector selector;
     private final Map<Integer, String> tcpPortsToIps;
     private final Map<Integer, String> udpPortsToIps;
+    private final List<Reactor> reactors;
+    private final ReactorSelection reactorSelection;
+    private final AtomicInteger nextReactor = new AtomicInteger(0);
+    private Supplier<FrameCodec> codecFactory = JsonStreamCodec::new; // what clients without framing send
+    private BufferPool bufferPool = BufferPool.getDefault();
+    private long writeHighWaterMark = IConnectionTCP.DEFAULT_HIGH_WATER_MARK;
+    private volatile BooleanSupplier overloadSignal = null;
+    private boolean readsSuspended = false; // on the acceptor's selector, only touched by its thread
+    private final AtomicLong readSuspensions = new AtomicLong(0);
 
+    public static final int DEFAULT_NUM_OF_REACTORS = Runtime.getRuntime().availableProcessors();
+    public static final long OVERLOAD_RECHECK_MILLIS = 10;
+
+    /* How the acceptor picks the reactor that will own a newly accepted connection */
+    public enum ReactorSelection {
+        ROUND_ROBIN,
+        LEAST_LOADED
+    }
+
+    /* Single selector mode - accept, TCP reads and UDP receives all run on the thread that calls start() */
     public GenericServer(Handler handler) throws IOException {
+        this(handler, 0, ReactorSelection.ROUND_ROBIN);
+    }
+
+    public GenericServer(Handler handler, ReactorSelection reactorSelection) throws IOException {
+        this(handler, DEFAULT_NUM_OF_REACTORS, reactorSelection);
+    }
+
+    /* Multi reactor mode - the thread that calls start() only accepts (and serves UDP),
+     * every accepted TCP connection is handed to one of numOfReactors selector threads */
+    public GenericServer(Handler handler, int numOfReactors, ReactorSelection reactorSelection) throws IOException {
+        if (numOfReactors < 0) {
+            throw new IllegalArgumentException("Number of reactors cannot be negative: " + numOfReactors);
+        }
         this.handler = handler;
+        this.reactorSelection = reactorSelection;
         selector = Selector.open();
         tcpPortsToIps = new HashMap<>();
         udpPortsToIps = new HashMap<>();
+
+        List<Reactor> reactorList = new ArrayList<>(numOfReactors);
+        for (int i = 0; i < numOfReactors; ++i) {
+            reactorList.add(new Reactor("reactor-" + i));
+        }
+        reactors = Collections.unmodifiableList(reactorList);
     }
 
     public void registerTCP(int port, String ip) {
@@ -36,23 +88,56 @@ public class GenericServer {
         System.out.println("UDP port " + port + " registered");
     }
 
-    @SuppressWarnings("unchecked")
+    /* Framing used for TCP connections accepted from now on - one codec instance per connection */
+    public void setFrameCodec(Supplier<FrameCodec> codecFactory) {
+        this.codecFactory = Objects.requireNonNull(codecFactory, "Codec factory cannot be null.");
+    }
+
+    /* Pool that TCP and UDP connections lease their read buffers from */
+    public void setBufferPool(BufferPool bufferPool) {
+        this.bufferPool = Objects.requireNonNull(bufferPool, "Buffer pool cannot be null.");
+    }
+
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    /* Queued response bytes above which a TCP client is no longer read from, until half of them are flushed */
+    public void setWriteHighWaterMark(long writeHighWaterMark) {
+        if (writeHighWaterMark <= 0) {
+            throw new IllegalArgumentException("High water mark must be positive: " + writeHighWaterMark);
+        }
+        this.writeHighWaterMark = writeHighWaterMark;
+    }
+
+    public long getWriteHighWaterMark() {
+        return writeHighWaterMark;
+    }
+
+    /* While the signal is on no connection is read from - unread requests stay in the clients' TCP
+     * windows instead of piling up in the worker queue. Checked after every select, and every
+     * OVERLOAD_RECHECK_MILLIS while reads are suspended */
+    public void setOverloadSignal(BooleanSupplier overloadSignal) {
+        this.overloadSignal = overloadSignal;
+    }
+
+    /* Times a selector stopped reading because of the overload signal */
+    public long getReadSuspensions() {
+        return readSuspensions.get();
+    }
+
     public void start() {
         startTcpListeners();
         startUdpListeners();
+        startReactors();
         System.out.println("Server started, waiting for connections...");
 
         while (true) {
             try {
-                if (selector.select() > 0) {
-                    Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
-                    while (iterator.hasNext()) {
-                        SelectionKey key = iterator.next();
-                        iterator.remove();
-                        if (key.isValid() && key.attachment() != null) {
-                            ((Consumer<SelectionKey>) key.attachment()).accept(key);
-                        }
-                    }
+                int selected = readsSuspended ? selector.select(OVERLOAD_RECHECK_MILLIS) : selector.select();
+                readsSuspended = applyOverloadSignal(selector, readsSuspended);
+                if (selected > 0) {
+                    dispatchSelectedKeys(selector);
                 }
             } catch (IOException e) {
                 System.err.println("Error in server loop: " + e.getMessage());
@@ -60,6 +145,59 @@ public class GenericServer {
         }
     }
 
+    /* Snapshot of the per reactor counters - empty in single selector mode */
+    public List<ReactorStats> getReactorStats() {
+        List<ReactorStats> stats = new ArrayList<>(reactors.size());
+        for (Reactor reactor : reactors) {
+            stats.add(new ReactorStats(reactor.name, reactor.acceptCount.get(),
+                    reactor.readCount.get(), reactor.getLoad()));
+        }
+        return stats;
+    }
+
+    public int getNumOfReactors() {
+        return reactors.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void dispatchSelectedKeys(Selector selector) {
+        Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+        while (iterator.hasNext()) {
+            SelectionKey key = iterator.next();
+            iterator.remove();
+            if (key.isValid() && key.attachment() != null) {
+                ((Consumer<SelectionKey>) key.attachment()).accept(key);
+            }
+        }
+    }
+
+    /* Returns whether reads on the selector are suspended now */
+    private boolean applyOverloadSignal(Selector selector, boolean suspended) {
+        BooleanSupplier signal = overloadSignal;
+        boolean suspend = (signal != null) && signal.getAsBoolean();
+        if (suspend != suspended) {
+            if (suspend) {
+                readSuspensions.incrementAndGet();
+            }
+            for (SelectionKey key : selector.keys()) {
+                suspendReads(key, suspend);
+            }
+        }
+        return suspend;
+    }
+
+    private void suspendReads(SelectionKey key, boolean suspend) {
+        if (!key.isValid() || !(key.attachment() instanceof ReadHandler)) {
+            return; // the accept keys - connections are still accepted
+        }
+        IConnection connection = ((ReadHandler) key.attachment()).connection;
+        if (connection instanceof IConnectionTCP) {
+            ((IConnectionTCP) connection).suspendReads(suspend);
+        } else {
+            key.interestOps(suspend ? 0 : SelectionKey.OP_READ);
+        }
+    }
+
     private void startTcpListeners() {
         for (Map.Entry<Integer, String> entry : tcpPortsToIps.entrySet()) {
             int port = entry.getKey();
@@ -89,7 +227,7 @@ public class GenericServer {
                 datagramChannel.bind(new InetSocketAddress(ip, port));
                 datagramChannel.configureBlocking(false);
                 SelectionKey key = datagramChannel.register(selector, SelectionKey.OP_READ);
-                key.attach(new ReadHandler(new IConnectionUDP(datagramChannel)));
+                key.attach(new ReadHandler(new IConnectionUDP(datagramChannel, bufferPool), null));
                 System.out.println("UDP server running on port " + port + "...");
             } catch (IOException e) {
                 System.err.println("Failed to start UDP listener on port " + port + ": " + e.getMessage());
@@ -98,6 +236,46 @@ public class GenericServer {
         }
     }
 
+    private void startReactors() {
+        for (Reactor reactor : reactors) {
+            Thread reactorThread = new Thread(reactor, reactor.name);
+            reactorThread.start();
+        }
+        if (!reactors.isEmpty()) {
+            System.out.println(reactors.size() + " reactors started (" + reactorSelection + ")");
+        }
+    }
+
+    private Reactor nextReactor() {
+        if (reactorSelection == ReactorSelection.LEAST_LOADED) {
+            Reactor leastLoaded = reactors.get(0);
+            for (Reactor reactor : reactors) {
+                if (reactor.getLoad() < leastLoaded.getLoad()) {
+                    leastLoaded = reactor;
+                }
+            }
+            return leastLoaded;
+        }
+        return reactors.get(Math.floorMod(nextReactor.getAndIncrement(), reactors.size()));
+    }
+
+    private void registerConnection(Selector target, SocketChannel socketChannel, Reactor owner) throws IOException {
+        IConnectionTCP connection = new IConnectionTCP(socketChannel, codecFactory.get(), bufferPool);
+        SelectionKey clientKey = socketChannel.register(target, SelectionKey.OP_READ);
+        connection.attach(clientKey, writeHighWaterMark);
+        clientKey.attach(new ReadHandler(connection, owner));
+        if ((owner != null) ? owner.readsSuspended : readsSuspended) {
+            connection.suspendReads(true);
+        }
+
+        if (handler.onAccept(connection)) {
+            System.out.println("Connection accepted: " + socketChannel.getRemoteAddress());
+        } else {
+            System.out.println("Connection rejected: " + socketChannel.getRemoteAddress());
+            socketChannel.close();
+        }
+    }
+
     private class AcceptHandler implements Consumer<SelectionKey> {
         @Override
         public void accept(SelectionKey key) {
@@ -106,15 +284,10 @@ public class GenericServer {
                 SocketChannel socketChannel = serverChannel.accept();
                 if (socketChannel != null) {
                     socketChannel.configureBlocking(false);
-                    IConnection connection = new IConnectionTCP(socketChannel);
-                    SelectionKey clientKey = socketChannel.register(selector, SelectionKey.OP_READ);
-                    clientKey.attach(new ReadHandler(connection));
-
-                    if (handler.onAccept(connection)) {
-                        System.out.println("Connection accepted: " + socketChannel.getRemoteAddress());
+                    if (reactors.isEmpty()) {
+                        registerConnection(selector, socketChannel, null);
                     } else {
-                        System.out.println("Connection rejected: " + socketChannel.getRemoteAddress());
-                        socketChannel.close();
+                        nextReactor().assign(socketChannel);
                     }
                 }
             } catch (IOException e) {
@@ -131,17 +304,28 @@ public class GenericServer {
 
     private class ReadHandler implements Consumer<SelectionKey> {
         private final IConnection connection;
+        private final Reactor owner;
 
-        public ReadHandler(IConnection connection) {
+        public ReadHandler(IConnection connection, Reactor owner) {
             this.connection = connection;
+            this.owner = owner;
         }
 
         @Override
         public void accept(SelectionKey key) {
             try {
-                JsonObject msg = handler.onReceive(connection);
-                if (msg != null) {
-                    handler.send(connection, msg);
+                if (key.isWritable() && connection instanceof IConnectionTCP) {
+                    ((IConnectionTCP) connection).flush();
+                }
+                // the key may have been selected before its reads were suspended
+                if (key.isValid() && key.isReadable() && (key.interestOps() & SelectionKey.OP_READ) != 0) {
+                    if (owner != null) {
+                        owner.readCount.incrementAndGet();
+                    }
+                    JsonObject msg = handler.onReceive(connection);
+                    if (msg != null) {
+                        handler.send(connection, msg);
+                    }
                 }
             } catch (IOException e) {
                 System.err.println("Error handling read: " + e.getMessage());
@@ -151,7 +335,108 @@ public class GenericServer {
                 } catch (IOException closeErr) {
                     System.err.println("Error closing channel: " + closeErr.getMessage());
                 }
+                if (connection instanceof IConnectionTCP) {
+                    ((IConnectionTCP) connection).discardPending();
+                }
+            }
+        }
+    }
+
+    /* Owns a selector and serves reads for the connections the acceptor assigns to it */
+    private class Reactor implements Runnable {
+        private final String name;
+        private final Selector reactorSelector;
+        private final Queue<SocketChannel> pendingChannels = new ConcurrentLinkedQueue<>();
+        private final AtomicLong acceptCount = new AtomicLong(0);
+        private final AtomicLong readCount = new AtomicLong(0);
+        private volatile int registeredConnections = 0;
+        private boolean readsSuspended = false; // only touched by the reactor thread
+
+        Reactor(String name) throws IOException {
+            this.name = name;
+            reactorSelector = Selector.open();
+        }
+
+        /* Called from the acceptor thread - registration happens on the reactor thread */
+        void assign(SocketChannel socketChannel) {
+            pendingChannels.add(socketChannel);
+            acceptCount.incrementAndGet();
+            reactorSelector.wakeup();
+        }
+
+        int getLoad() {
+            return registeredConnections + pendingChannels.size();
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    if (readsSuspended) {
+                        reactorSelector.select(OVERLOAD_RECHECK_MILLIS);
+                    } else {
+                        reactorSelector.select();
+                    }
+                    readsSuspended = applyOverloadSignal(reactorSelector, readsSuspended);
+                    registerPendingChannels();
+                    dispatchSelectedKeys(reactorSelector);
+                    registeredConnections = reactorSelector.keys().size();
+                } catch (IOException e) {
+                    System.err.println("Error in " + name + " loop: " + e.getMessage());
+                }
             }
         }
+
+        private void registerPendingChannels() {
+            SocketChannel socketChannel;
+            while ((socketChannel = pendingChannels.poll()) != null) {
+                try {
+                    registerConnection(reactorSelector, socketChannel, this);
+                } catch (IOException e) {
+                    System.err.println(name + ": failed to register connection: " + e.getMessage());
+                    try {
+                        socketChannel.close();
+                    } catch (IOException closeErr) {
+                        System.err.println("Error closing channel: " + closeErr.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    /* Read only view of a reactor's counters */
+    public static class ReactorStats {
+        private final String name;
+        private final long accepted;
+        private final long reads;
+        private final int connections;
+
+        ReactorStats(String name, long accepted, long reads, int connections) {
+            this.name = name;
+            this.accepted = accepted;
+            this.reads = reads;
+            this.connections = connections;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getAccepted() {
+            return accepted;
+        }
+
+        public long getReads() {
+            return reads;
+        }
+
+        public int getConnections() {
+            return connections;
+        }
+
+        @Override
+        public String toString() {
+            return name + "{accepted=" + accepted + ", reads=" + reads + ", connections=" + connections + "}";
+        }
     }
-}
\ No newline at end of file
+}
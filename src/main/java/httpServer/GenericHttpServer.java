@@ -1,22 +1,66 @@
 package httpServer;
 
 import com.sun.net.httpserver.HttpServer;
+import gateway.RPS.threadPool.ThreadPool;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class GenericHttpServer {
     private final HttpServer httpServer;
     private final InetSocketAddress address;
+    private final Executor executor;
+    private final ExecutorMode executorMode;
+
+    public static final int DEFAULT_BACKLOG = 0; // 0 - the system default
+    public static final int DEFAULT_POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+
+    /* Which threads run the exchanges (validator and controller work included) */
+    public enum ExecutorMode {
+        DISPATCHER,         // the server's single dispatcher thread
+        PLATFORM_POOL,      // a fixed size ThreadPool
+        VIRTUAL_THREADS     // a virtual thread per exchange - falls back to PLATFORM_POOL before JDK 21
+    }
 
     public GenericHttpServer(String ip, int port) {
+        this(ip, port, ExecutorMode.DISPATCHER, DEFAULT_POOL_SIZE, DEFAULT_BACKLOG);
+    }
+
+    public GenericHttpServer(String ip, int port, ExecutorMode executorMode) {
+        this(ip, port, executorMode, DEFAULT_POOL_SIZE, DEFAULT_BACKLOG);
+    }
+
+    /* poolSize is only used by PLATFORM_POOL (and by VIRTUAL_THREADS when it falls back) */
+    public GenericHttpServer(String ip, int port, ExecutorMode executorMode, int poolSize, int backlog) {
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("Pool size must be positive: " + poolSize);
+        }
+        if (backlog < 0) {
+            throw new IllegalArgumentException("Backlog cannot be negative: " + backlog);
+        }
         try {
             address = new InetSocketAddress(ip, port);
-            httpServer = HttpServer.create(new InetSocketAddress(ip, port), 0);
+            httpServer = HttpServer.create(new InetSocketAddress(ip, port), backlog);
         } catch (IOException e) {
             throw new RuntimeException("HTTP Server create failed");
         }
+
+        Executor virtualThreads = (executorMode == ExecutorMode.VIRTUAL_THREADS) ? createVirtualThreadExecutor() : null;
+        if (virtualThreads != null) {
+            this.executorMode = ExecutorMode.VIRTUAL_THREADS;
+            executor = virtualThreads;
+        } else if (executorMode == ExecutorMode.DISPATCHER) {
+            this.executorMode = ExecutorMode.DISPATCHER;
+            executor = null;
+        } else {
+            this.executorMode = ExecutorMode.PLATFORM_POOL;
+            executor = new ThreadPool(poolSize);
+        }
+        httpServer.setExecutor(executor);
     }
 
     public void addRoute(String url, Map<Method, Pair> callbacks) {
@@ -27,6 +71,35 @@ public class GenericHttpServer {
     public void start() {
         httpServer.start();
         System.out.println("HTTP Server started at http://" +
-                address.getHostName() + ":" + address.getPort());
+                address.getHostName() + ":" + address.getPort() + " (" + executorMode + ")");
+    }
+
+    /* Stops accepting exchanges, waits up to delaySeconds for the current ones and releases the executor */
+    public void stop(int delaySeconds) {
+        httpServer.stop(delaySeconds);
+        if (executor instanceof ThreadPool) {
+            ((ThreadPool) executor).shutDown();
+        } else if (executor instanceof ExecutorService) {
+            ((ExecutorService) executor).shutdown();
+        }
+    }
+
+    /* The mode actually in use - VIRTUAL_THREADS may have fallen back to PLATFORM_POOL */
+    public ExecutorMode getExecutorMode() {
+        return executorMode;
+    }
+
+    public InetSocketAddress getAddress() {
+        return httpServer.getAddress();
+    }
+
+    /* Looked up reflectively so the code still compiles and runs on the JDK 11 target */
+    private static Executor createVirtualThreadExecutor() {
+        try {
+            return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            System.out.println("Virtual threads are not available on this JDK, using a platform pool");
+            return null;
+        }
     }
 }
@@ -1,8 +1,9 @@
 package httpServer;
 
-import com.google.gson.Gson;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import gateway.connectionService.iConnection.IConnection;
@@ -12,12 +13,12 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
 public class HttpRequestHandler implements HttpHandler {
     private final Map<Method, Pair> callbacks;
-    private final Gson gson = new Gson();
 
     private static final int BAD_REQUEST_CODE = 400;
     private static final int METHOD_NOT_ALLOWED_CODE = 405;
@@ -79,7 +80,6 @@ public class HttpRequestHandler implements HttpHandler {
     }
 
     private JsonObject buildRequestObject(Method method, HttpExchange exchange) throws IOException {
-        JsonObject request = new JsonObject();
         JsonObject queryParams = createQueryJson(exchange);
 
         try {
@@ -95,11 +95,12 @@ public class HttpRequestHandler implements HttpHandler {
                     sendErrorResponse(exchange, BAD_REQUEST_CODE, "Invalid JSON body");
                     return null;
                 }
-                bodyParams.entrySet().forEach(entry -> request.add(entry.getKey(), entry.getValue()));
+                // the parsed body becomes the request object itself, query parameters are merged into it
+                queryParams.entrySet().forEach(entry -> bodyParams.add(entry.getKey(), entry.getValue()));
+                return bodyParams;
             }
 
-            queryParams.entrySet().forEach(entry -> request.add(entry.getKey(), entry.getValue()));
-            return request;
+            return queryParams;
 
         } catch (JsonParseException e) {
             sendErrorResponse(exchange, BAD_REQUEST_CODE, "Invalid JSON body");
@@ -144,22 +145,14 @@ public class HttpRequestHandler implements HttpHandler {
         return request;
     }
 
+    /* Parses straight off the request stream - the body is never materialized as a String */
     private JsonObject createBodyJson(HttpExchange exchange) throws IOException {
-        StringBuilder body = new StringBuilder();
-        String line;
-
-        try (InputStreamReader in = new InputStreamReader(exchange.getRequestBody());
-             BufferedReader reader = new BufferedReader(in)) {
-            while ((line = reader.readLine()) != null) {
-                body.append(line);
-            }
-        }
-
-        try {
-            return gson.fromJson(body.toString(), JsonObject.class);
+        try (Reader reader = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+            JsonElement body = JsonParser.parseReader(reader);
+            return body.isJsonObject() ? body.getAsJsonObject() : null;
         } catch (JsonParseException e) {
             return null;
         }
     }
 
-}
\ No newline at end of file
+}
\ No newline at end of file
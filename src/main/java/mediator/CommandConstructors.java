@@ -0,0 +1,172 @@
+package mediator;
+
+import dbms.MongoDBMS;
+import gateway.RPS.command.Command;
+import gateway.RPS.command.CommandHandler;
+import gateway.connectionService.request.Request;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/* Turns a plugin command class into the Function<Request, Command> the RPS factory calls per request.
+ * The constructor is picked once, in the order (Request, MongoDBMS), (Request), (), and bound through
+ * LambdaMetafactory - the result is a plain lambda like the ones RPS.initializeFactoryCommands registers
+ * for the built-in commands, so the JIT can inline the constructor call. If the class cannot be spun
+ * (e.g. its loader hides it from a full-privilege lookup) a MethodHandle is used instead */
+public final class CommandConstructors {
+    enum Strategy {REFLECTIVE, METHOD_HANDLE, LAMBDA_METAFACTORY}
+
+    private enum Shape {
+        REQUEST_AND_DBMS(Request.class, MongoDBMS.class),
+        REQUEST(Request.class),
+        NO_ARGS();
+
+        private final Class<?>[] parameterTypes;
+
+        Shape(Class<?>... parameterTypes) {
+            this.parameterTypes = parameterTypes;
+        }
+    }
+
+    private CommandConstructors() {
+    }
+
+    /* Throws IllegalArgumentException if the class is not a Command or has none of the supported constructors */
+    public static Function<Request, Command> compile(Class<?> commandClass, MongoDBMS mongoDBMS) {
+        try {
+            return compile(commandClass, mongoDBMS, Strategy.LAMBDA_METAFACTORY);
+        } catch (IllegalStateException e) {
+            System.err.println("Falling back to a method handle for " + commandClass.getName() + ": " + e.getMessage());
+            return compile(commandClass, mongoDBMS, Strategy.METHOD_HANDLE);
+        }
+    }
+
+    /* Handlers are stateless, so a plugin CommandHandler is created once through its public no-arg
+     * constructor and shared by every request. Returns null if the class is not a CommandHandler */
+    public static CommandHandler instantiateHandler(Class<?> handlerClass) {
+        if (!CommandHandler.class.isAssignableFrom(handlerClass)) {
+            return null;
+        }
+        try {
+            return (CommandHandler) handlerClass.getConstructor().newInstance();
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("Command handler " + handlerClass.getName() + " needs a public no-arg constructor", e);
+        } catch (InvocationTargetException | InstantiationException | IllegalAccessException e) {
+            throw new IllegalArgumentException("Failed to instantiate command handler: " + handlerClass.getName(), e);
+        }
+    }
+
+    static Function<Request, Command> compile(Class<?> commandClass, MongoDBMS mongoDBMS, Strategy strategy) {
+        if (!Command.class.isAssignableFrom(commandClass)) {
+            throw new IllegalArgumentException(commandClass.getName() + " does not implement " + Command.class.getName());
+        }
+        for (Shape shape : Shape.values()) {
+            Constructor<?> constructor;
+            try {
+                constructor = commandClass.getConstructor(shape.parameterTypes);
+            } catch (NoSuchMethodException e) {
+                continue;
+            }
+            switch (strategy) {
+                case REFLECTIVE:
+                    return reflective(constructor, shape, mongoDBMS);
+                case METHOD_HANDLE:
+                    return methodHandle(constructor, shape, mongoDBMS);
+                case LAMBDA_METAFACTORY:
+                    return lambda(constructor, shape, mongoDBMS);
+            }
+        }
+        throw new IllegalArgumentException("No suitable constructor found for command class: " + commandClass.getName() +
+                " expecting (Request, MongoDBMS), (Request) or default.");
+    }
+
+    private static Function<Request, Command> reflective(Constructor<?> constructor, Shape shape, MongoDBMS mongoDBMS) {
+        return request -> {
+            try {
+                switch (shape) {
+                    case REQUEST_AND_DBMS:
+                        return (Command) constructor.newInstance(request, mongoDBMS);
+                    case REQUEST:
+                        return (Command) constructor.newInstance(request);
+                    default:
+                        return (Command) constructor.newInstance();
+                }
+            } catch (InvocationTargetException | InstantiationException | IllegalAccessException e) {
+                throw new RuntimeException("Failed to instantiate command: " + constructor.getDeclaringClass().getName(), e);
+            }
+        };
+    }
+
+    private static Function<Request, Command> methodHandle(Constructor<?> constructor, Shape shape, MongoDBMS mongoDBMS) {
+        MethodHandle handle;
+        try {
+            handle = MethodHandles.publicLookup().unreflectConstructor(constructor);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot access constructor of " + constructor.getDeclaringClass().getName(), e);
+        }
+        switch (shape) {
+            case REQUEST_AND_DBMS:
+                MethodHandle bound = MethodHandles.insertArguments(handle, 1, mongoDBMS)
+                        .asType(MethodType.methodType(Command.class, Request.class));
+                return request -> invoke(bound, request);
+            case REQUEST:
+                MethodHandle typed = handle.asType(MethodType.methodType(Command.class, Request.class));
+                return request -> invoke(typed, request);
+            default:
+                MethodHandle noArgs = MethodHandles.dropArguments(handle, 0, Request.class)
+                        .asType(MethodType.methodType(Command.class, Request.class));
+                return request -> invoke(noArgs, request);
+        }
+    }
+
+    private static Command invoke(MethodHandle handle, Request request) {
+        try {
+            return (Command) handle.invokeExact(request);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException("Failed to instantiate command", e);
+        }
+    }
+
+    /* LambdaMetafactory captures leading arguments only, and MongoDBMS is the trailing one - so the
+     * two-argument constructor becomes a BiFunction and the DBMS is bound by an ordinary lambda */
+    @SuppressWarnings("unchecked")
+    private static Function<Request, Command> lambda(Constructor<?> constructor, Shape shape, MongoDBMS mongoDBMS) {
+        Class<?> commandClass = constructor.getDeclaringClass();
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(commandClass, MethodHandles.lookup());
+            MethodHandle handle = lookup.unreflectConstructor(constructor);
+            switch (shape) {
+                case REQUEST_AND_DBMS:
+                    BiFunction<Request, MongoDBMS, Command> create = (BiFunction<Request, MongoDBMS, Command>) spin(lookup, handle,
+                            BiFunction.class, "apply", MethodType.methodType(Object.class, Object.class, Object.class));
+                    return request -> create.apply(request, mongoDBMS);
+                case REQUEST:
+                    return (Function<Request, Command>) spin(lookup, handle,
+                            Function.class, "apply", MethodType.methodType(Object.class, Object.class));
+                default:
+                    Supplier<Command> supplier = (Supplier<Command>) spin(lookup, handle,
+                            Supplier.class, "get", MethodType.methodType(Object.class));
+                    return request -> supplier.get();
+            }
+        } catch (Throwable e) {
+            throw new IllegalStateException("Cannot spin a constructor lambda for " + commandClass.getName() + ": " + e, e);
+        }
+    }
+
+    private static Object spin(MethodHandles.Lookup lookup, MethodHandle constructor, Class<?> functionalInterface,
+                               String methodName, MethodType erasedSignature) throws Throwable {
+        CallSite site = LambdaMetafactory.metafactory(lookup, methodName, MethodType.methodType(functionalInterface),
+                erasedSignature, constructor, constructor.type());
+        return site.getTarget().invoke();
+    }
+}
@@ -2,12 +2,12 @@ package mediator;
 
 import gateway.RPS.RPS;
 import gateway.RPS.command.Command;
+import gateway.RPS.command.CommandHandler;
 import gateway.connectionService.request.Request;
 import dbms.MongoDBMS;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 import java.util.List;
+import java.util.function.Function;
 
 public class Mediator {
     private final RPS<String, ?, ?> rps;
@@ -18,34 +18,24 @@ public class Mediator {
         this.mongoDBMS = mongoDBMS;
     }
 
+    /* Constructors are resolved and bound here, once per class, not per request. CommandHandler
+     * classes are instantiated here once and shared */
     public void add(List<Class<?>> commandClasses) {
         for (Class<?> commandClass : commandClasses) {
             String commandName = getCommandNameFromClass(commandClass.getSimpleName());
-            this.rps.addCommand(commandName, (request) -> {
-                try {
-                    try {
-                        Constructor<?> constructor = commandClass.getConstructor(Request.class, MongoDBMS.class);
-                        return (Command) constructor.newInstance(request, mongoDBMS);
-                    } catch (NoSuchMethodException e1) {
-                        try {
-                            Constructor<?> constructor = commandClass.getConstructor(Request.class);
-                            return (Command) constructor.newInstance(request);
-                        } catch (NoSuchMethodException e2) {
-                            try {
-                                Constructor<?> constructor = commandClass.getConstructor();
-                                return (Command) constructor.newInstance();
-                            } catch (NoSuchMethodException e3) {
-                                System.err.println("No suitable constructor found for command class: " + commandClass.getName() +
-                                        " expecting (Request, MongoDBMS), (Request) or default.");
-                                throw new RuntimeException("No suitable constructor found for command class. " + e3);
-                            }
-                        }
-                    }
-                } catch (InvocationTargetException | InstantiationException | IllegalAccessException e) {
-                    System.err.println("Error instantiating command " + commandClass.getName() + ": " + e.getMessage());
-                    throw new RuntimeException("Failed to instantiate command: " + commandClass.getName(), e);
+            Function<Request, Command> create;
+            try {
+                CommandHandler handler = CommandConstructors.instantiateHandler(commandClass);
+                if (handler != null) {
+                    this.rps.addHandler(commandName, handler);
+                    continue;
                 }
-            });
+                create = CommandConstructors.compile(commandClass, mongoDBMS);
+            } catch (IllegalArgumentException e) {
+                System.err.println("Skipping command class " + commandClass.getName() + ": " + e.getMessage());
+                continue;
+            }
+            this.rps.addCommand(commandName, create);
         }
     }
 
@@ -62,4 +52,4 @@ public class Mediator {
         }
         return className.replace("Command", "").replaceAll("([A-Z])", " $1").trim();
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -174,7 +174,7 @@ public class AddContactServlet extends HttpServlet {
     private void addContactToDatabase(Map<String, String> params, int compId) throws SQLException {
         logger.info("Attempting to add contact '{}' to database for company ID {}.", params.get("contact_name"), compId);
         try (AdminDBMS dbms = new AdminDBMS(DB_URL, DB_USER, DB_PASSWORD)) {
-            try (ResultSet rs = dbms.executeQuery(String.format("SELECT COUNT(*) FROM Companies WHERE comp_id = %d", compId))) {
+            try (ResultSet rs = dbms.executeQuery("SELECT COUNT(*) FROM Companies WHERE comp_id = ?", compId)) {
                 if (rs.next() && rs.getInt(1) == 0) {
                     logger.error("Company with ID {} does not exist. Cannot add contact.", compId);
                     throw new SQLException("Company with ID " + compId + " does not exist.");
@@ -182,18 +182,18 @@ public class AddContactServlet extends HttpServlet {
                 logger.debug("Company ID {} confirmed to exist in database.", compId);
             }
 
-            String insertContactQuery = String.format(
-                    "INSERT INTO Contacts (comp_id, name, email, phone_number, linkedin_account) VALUES (%d, '%s', '%s', '%s', '%s')",
-                    compId, params.get("contact_name"), params.get("email"), params.get("phone"), params.get("linkedin")
-            );
+            String insertContactQuery =
+                    "INSERT INTO Contacts (comp_id, name, email, phone_number, linkedin_account) VALUES (?, ?, ?, ?, ?)";
             logger.debug("Executing insert contact query: {}", insertContactQuery);
-            int rowsInserted = dbms.executeStatement(insertContactQuery);
+            int rowsInserted = dbms.executeStatement(insertContactQuery,
+                    compId, params.get("contact_name"), params.get("email"), params.get("phone"), params.get("linkedin"));
 
             if (rowsInserted == 0) {
                 logger.error("Failed to add contact '{}' for company ID {}. No rows affected.", params.get("contact_name"), compId);
                 throw new SQLException("Failed to add contact. No rows affected.");
             }
             logger.debug("Contact rows inserted: {}", rowsInserted);
+            ListingCache.CONTACTS.invalidate(compId);
         }
     }
 
@@ -203,4 +203,4 @@ public class AddContactServlet extends HttpServlet {
         System.out.println("AddContactServlet destroyed.");
         logger.info("AddContactServlet destroyed.");
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -18,21 +18,40 @@ import java.util.Date;
 
 public class AuthService {
     private static final Logger logger = LoggerFactory.getLogger(AuthService.class);
-    private static final SecretKey jwtSecretKey;
     private static final long TOKEN_VALIDITY_SECONDS = 30 * 60;
+    private static final JwtClaimsCache claimsCache = new JwtClaimsCache();
+    private static volatile SigningKey signingKey;
 
     static {
         String secretString = System.getenv("JWT_SECRET_KEY");
         if (secretString != null && !secretString.isEmpty()) {
-            jwtSecretKey = Keys.hmacShaKeyFor(secretString.getBytes(StandardCharsets.UTF_8));
+            signingKey = new SigningKey(Keys.hmacShaKeyFor(secretString.getBytes(StandardCharsets.UTF_8)));
             logger.info("JWT Secret Key loaded from environment variable.");
         } else {
-            jwtSecretKey = Keys.secretKeyFor(SignatureAlgorithm.HS256);
+            signingKey = new SigningKey(Keys.secretKeyFor(SignatureAlgorithm.HS256));
             logger.warn("JWT_SECRET_KEY environment variable not set. Generating a new random key. " +
                     "This is NOT recommended for production environments as tokens will be invalidated on server restart.");
         }
     }
 
+    /* The key together with the parser built for it, so neither is rebuilt per request */
+    private static final class SigningKey {
+        private final SecretKey key;
+        private final JwtParser parser;
+
+        private SigningKey(SecretKey key) {
+            this.key = key;
+            this.parser = Jwts.parser().verifyWith(key).build();
+        }
+    }
+
+    /* Tokens signed with the previous key stop validating, including the ones already in the claims cache */
+    public static void rotateSigningKey(SecretKey newKey) {
+        signingKey = new SigningKey(newKey);
+        claimsCache.clear();
+        logger.info("JWT signing key rotated.");
+    }
+
     public static String generateJwtToken(String email, String userId, int companyId, String companyName) {
         Instant now = Instant.now();
         Date expirationDate = Date.from(now.plusSeconds(TOKEN_VALIDITY_SECONDS));
@@ -44,7 +63,7 @@ public class AuthService {
                 .claim("company_name", companyName)
                 .setIssuedAt(Date.from(now))
                 .setExpiration(expirationDate)
-                .signWith(jwtSecretKey, SignatureAlgorithm.HS256)
+                .signWith(signingKey.key, SignatureAlgorithm.HS256)
                 .compact();
 
         logger.debug("Generated JWT for user: {}", email);
@@ -71,11 +90,7 @@ public class AuthService {
         }
 
         try {
-            Claims claims = Jwts.parser()
-                    .verifyWith(jwtSecretKey)
-                    .build()
-                    .parseSignedClaims(jwtToken)
-                    .getPayload();
+            Claims claims = verifyAndGetClaims(jwtToken);
 
             logger.debug("JWT validated successfully for subject: {}", claims.getSubject());
             return claims;
@@ -91,6 +106,23 @@ public class AuthService {
         }
     }
 
+    /* Signature and expiration are checked once per token; repeat requests of a session are served from
+     * the claims cache until the token expires or the key is rotated */
+    static Claims verifyAndGetClaims(String jwtToken) {
+        SigningKey key = signingKey;
+        Claims claims = claimsCache.get(jwtToken, key, System.currentTimeMillis());
+        if (claims != null) {
+            return claims;
+        }
+        claims = key.parser.parseSignedClaims(jwtToken).getPayload();
+        claimsCache.put(jwtToken, claims, key);
+        return claims;
+    }
+
+    static JwtClaimsCache getClaimsCache() {
+        return claimsCache;
+    }
+
     public static void setAuthCookie(HttpServletResponse response, String jwtToken, HttpServletRequest request) {
         StringBuilder cookieHeader = new StringBuilder("authToken=");
         cookieHeader.append(jwtToken);
@@ -122,4 +154,4 @@ public class AuthService {
         response.getWriter().write(message);
         logger.warn("Authentication failure: {}", message);
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -184,10 +184,10 @@ public class CompanyServlet extends HttpServlet {
         boolean isAuthenticated = false;
 
         try (AdminDBMS dbms = new AdminDBMS(DB_URL, DB_USER, DB_PASSWORD)) {
-            String queryUser = String.format("SELECT u.user_id, u.password_hash, u.comp_id, c.name FROM Users u JOIN Companies c ON u.comp_id = c.comp_id WHERE u.email = '%s'", email);
+            String queryUser = "SELECT u.user_id, u.password_hash, u.comp_id, c.name FROM Users u JOIN Companies c ON u.comp_id = c.comp_id WHERE u.email = ?";
             logger.debug("Executing user lookup query: {}", queryUser);
 
-            try (ResultSet rs = dbms.executeQuery(queryUser)) {
+            try (ResultSet rs = dbms.executeQuery(queryUser, email)) {
                 if (rs.next()) {
                     userIdFromDb = String.valueOf(rs.getInt("user_id"));
                     userPasswordHash = rs.getString("password_hash");
@@ -251,4 +251,4 @@ public class CompanyServlet extends HttpServlet {
         System.out.println("CompanyServlet destroyed.");
         logger.info("CompanyServlet destroyed.");
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
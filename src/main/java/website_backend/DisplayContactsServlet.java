@@ -7,7 +7,6 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -52,26 +51,32 @@ public class DisplayContactsServlet extends HttpServlet {
         }
 
         response.setContentType("application/json;charset=UTF-8");
-        PrintWriter out = response.getWriter();
-        List<Contact> contacts;
+        ListingCache.Listing listing;
 
         try {
-            contacts = fetchContactsFromDatabase(compId);
-            String jsonResponse = gson.toJson(contacts);
-            out.print(jsonResponse);
-            System.out.println("Sent contacts JSON: " + jsonResponse);
-            logger.info("Successfully sent contacts JSON for company ID {}: {}", compId, jsonResponse);
+            listing = ListingCache.CONTACTS.get(compId, () -> gson.toJson(fetchContactsFromDatabase(compId)));
         } catch (SQLException e) {
             System.err.println("Database error fetching contacts for company " + compId + ": " + e.getMessage());
             logger.error("Database error fetching contacts for company {}: {}", compId, e.getMessage(), e);
             sendErrorResponse(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "{\"error\": \"Database error: " + e.getMessage() + "\"}");
+            return;
         } catch (Exception e) {
             System.err.println("Unexpected error in DisplayContactsServlet: " + e.getMessage());
             logger.error("Unexpected error in DisplayContactsServlet: {}", e.getMessage(), e);
             sendErrorResponse(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "{\"error\": \"Unexpected server error: " + e.getMessage() + "\"}");
-        } finally {
-            out.flush();
+            return;
+        }
+
+        response.setHeader("ETag", listing.getETag());
+        response.setHeader("Cache-Control", "no-cache");
+        if (ListingCache.matches(request.getHeader("If-None-Match"), listing.getETag())) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            logger.debug("Contacts for company ID {} not modified, ETag {}", compId, listing.getETag());
+            return;
         }
+        response.setContentLength(listing.getBody().length);
+        response.getOutputStream().write(listing.getBody());
+        logger.info("Successfully sent contacts JSON for company ID {}, ETag {}", compId, listing.getETag());
     }
 
     private int parseCompanyId(String compIdStr) {
@@ -98,13 +103,11 @@ public class DisplayContactsServlet extends HttpServlet {
         List<Contact> contacts = new ArrayList<>();
         logger.info("Fetching contacts from database for company ID: {}", compId);
         try (AdminDBMS dbms = new AdminDBMS(DB_URL, DB_USER, DB_PASSWORD)) {
-            String selectContactsQuery = String.format(
-                    "SELECT name, email, phone_number, linkedin_account FROM Contacts WHERE comp_id = %d", compId
-            );
+            String selectContactsQuery = "SELECT name, email, phone_number, linkedin_account FROM Contacts WHERE comp_id = ?";
             System.out.println("Executing query: " + selectContactsQuery);
             logger.debug("Executing query: {}", selectContactsQuery);
 
-            try (ResultSet rs = dbms.executeQuery(selectContactsQuery)) {
+            try (ResultSet rs = dbms.executeQuery(selectContactsQuery, compId)) {
                 while (rs.next()) {
                     String name = rs.getString("name");
                     String email = rs.getString("email");
@@ -145,4 +148,4 @@ public class DisplayContactsServlet extends HttpServlet {
             this.linkedin_account = linkedin_account;
         }
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
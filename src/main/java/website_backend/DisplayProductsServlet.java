@@ -7,7 +7,6 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -52,26 +51,32 @@ public class DisplayProductsServlet extends HttpServlet {
         }
 
         response.setContentType("application/json;charset=UTF-8");
-        PrintWriter out = response.getWriter();
-        List<Product> products;
+        ListingCache.Listing listing;
 
         try {
-            products = fetchProductsFromDatabase(compId);
-            String jsonResponse = gson.toJson(products);
-            out.print(jsonResponse);
-            System.out.println("Sent products JSON: " + jsonResponse);
-            logger.info("Successfully sent products JSON for company ID {}: {}", compId, jsonResponse);
+            listing = ListingCache.PRODUCTS.get(compId, () -> gson.toJson(fetchProductsFromDatabase(compId)));
         } catch (SQLException e) {
             System.err.println("Database error fetching products for company " + compId + ": " + e.getMessage());
             logger.error("Database error fetching products for company {}: {}", compId, e.getMessage(), e);
             sendErrorResponse(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "{\"error\": \"Database error: " + e.getMessage() + "\"}");
+            return;
         } catch (Exception e) {
             System.err.println("Unexpected error in DisplayProductsServlet: " + e.getMessage());
             logger.error("Unexpected error in DisplayProductsServlet: {}", e.getMessage(), e);
             sendErrorResponse(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "{\"error\": \"Unexpected server error: " + e.getMessage() + "\"}");
-        } finally {
-            out.flush();
+            return;
+        }
+
+        response.setHeader("ETag", listing.getETag());
+        response.setHeader("Cache-Control", "no-cache");
+        if (ListingCache.matches(request.getHeader("If-None-Match"), listing.getETag())) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            logger.debug("Products for company ID {} not modified, ETag {}", compId, listing.getETag());
+            return;
         }
+        response.setContentLength(listing.getBody().length);
+        response.getOutputStream().write(listing.getBody());
+        logger.info("Successfully sent products JSON for company ID {}, ETag {}", compId, listing.getETag());
     }
 
     private int parseCompanyId(String compIdStr) {
@@ -98,13 +103,11 @@ public class DisplayProductsServlet extends HttpServlet {
         List<Product> products = new ArrayList<>();
         logger.info("Fetching products from database for company ID: {}", compId);
         try (AdminDBMS dbms = new AdminDBMS(DB_URL, DB_USER, DB_PASSWORD)) {
-            String selectProductsQuery = String.format(
-                    "SELECT name, version FROM Products WHERE comp_id = %d", compId
-            );
+            String selectProductsQuery = "SELECT name, version FROM Products WHERE comp_id = ?";
             System.out.println("Executing query: " + selectProductsQuery);
             logger.debug("Executing query: {}", selectProductsQuery);
 
-            try (ResultSet rs = dbms.executeQuery(selectProductsQuery)) {
+            try (ResultSet rs = dbms.executeQuery(selectProductsQuery, compId)) {
                 while (rs.next()) {
                     String name = rs.getString("name");
                     String version = rs.getString("version");
@@ -139,4 +142,4 @@ public class DisplayProductsServlet extends HttpServlet {
             this.version = version;
         }
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,282 @@
+package website_backend;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/* Outbound queue of registration notifications to the gateway. Servlets enqueue and return at once; the
+ * notifier posts at most maxInFlight requests at a time through one shared HttpClient, so connections to
+ * the gateway are reused instead of opened per registration.
+ * Notifications are keyed - a notification whose key is still queued replaces the queued payload instead
+ * of taking another slot. The gateway accepts one command per request, so coalescing is as far as batching
+ * goes. Connection failures, 5xx and 429 are retried with jittered exponential backoff up to maxAttempts;
+ * other statuses are final. The queue is bounded: enqueue() rejects a new key once capacity notifications
+ * are queued, in flight or waiting for a retry */
+public class GatewayNotifier implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(GatewayNotifier.class);
+
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+    public static final int DEFAULT_MAX_ATTEMPTS = 8;
+    public static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 250;
+    public static final long DEFAULT_MAX_BACKOFF_MILLIS = 30_000;
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+    private static final Map<String, GatewayNotifier> sharedNotifiers = new ConcurrentHashMap<>();
+
+    private final Transport transport;
+    private final int capacity;
+    private final int maxInFlight;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final ScheduledExecutorService retryTimer;
+    private final Map<String, Notification> pending = new LinkedHashMap<>(); // guarded by this
+    private int inFlight = 0; // guarded by this
+    private int backingOff = 0; // guarded by this
+    private boolean closed = false; // guarded by this
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /* Posts one payload and completes with the response status */
+    @FunctionalInterface
+    public interface Transport {
+        CompletableFuture<Integer> post(String payload);
+    }
+
+    public GatewayNotifier(String gatewayUrl) {
+        this(httpTransport(gatewayUrl), DEFAULT_CAPACITY, DEFAULT_MAX_IN_FLIGHT, DEFAULT_MAX_ATTEMPTS,
+                DEFAULT_INITIAL_BACKOFF_MILLIS, DEFAULT_MAX_BACKOFF_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public GatewayNotifier(Transport transport, int capacity, int maxInFlight, int maxAttempts,
+                           long initialBackoff, long maxBackoff, TimeUnit unit) {
+        if (capacity <= 0 || maxInFlight <= 0 || maxAttempts <= 0 || initialBackoff <= 0 || maxBackoff < initialBackoff) {
+            throw new IllegalArgumentException("Invalid notifier configuration: capacity=" + capacity +
+                    ", maxInFlight=" + maxInFlight + ", maxAttempts=" + maxAttempts +
+                    ", initialBackoff=" + initialBackoff + ", maxBackoff=" + maxBackoff);
+        }
+        this.transport = transport;
+        this.capacity = capacity;
+        this.maxInFlight = maxInFlight;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = unit.toMillis(initialBackoff);
+        this.maxBackoffMillis = unit.toMillis(maxBackoff);
+        this.retryTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "gateway-notifier-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /* One notifier, and so one HttpClient, per gateway URL for the lifetime of the JVM */
+    public static GatewayNotifier shared(String gatewayUrl) {
+        return sharedNotifiers.computeIfAbsent(gatewayUrl, GatewayNotifier::new);
+    }
+
+    private static Transport httpTransport(String gatewayUrl) {
+        URI gateway = URI.create(gatewayUrl);
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(CONNECT_TIMEOUT)
+                .build();
+        return payload -> {
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(gateway)
+                    .timeout(REQUEST_TIMEOUT)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(payload))
+                    .build();
+            return client.sendAsync(request, HttpResponse.BodyHandlers.ofString()).thenApply(response -> {
+                logger.info("Response from Gateway server - Status: {}, Body: {}", response.statusCode(), response.body());
+                return response.statusCode();
+            });
+        };
+    }
+
+    /* Returns false if the queue is full or the notifier is closed */
+    public boolean enqueue(String key, String payload) {
+        synchronized (this) {
+            if (closed) {
+                return false;
+            }
+            Notification queued = pending.get(key);
+            if (queued != null) {
+                queued.payload = payload;
+                coalesced.increment();
+                logger.debug("Coalesced gateway notification {}", key);
+                return true;
+            }
+            if (pending.size() + inFlight + backingOff >= capacity) {
+                rejected.increment();
+                logger.error("Gateway notification queue is full ({}), dropping {}", capacity, key);
+                return false;
+            }
+            pending.put(key, new Notification(key, payload));
+        }
+        dispatch();
+        return true;
+    }
+
+    private void dispatch() {
+        List<Notification> toSend = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Notification> queued = pending.values().iterator();
+            while (inFlight < maxInFlight && queued.hasNext()) {
+                toSend.add(queued.next());
+                queued.remove();
+                ++inFlight;
+            }
+        }
+        for (Notification notification : toSend) {
+            send(notification);
+        }
+    }
+
+    private void send(Notification notification) {
+        ++notification.attempts;
+        CompletableFuture<Integer> response;
+        try {
+            response = transport.post(notification.payload);
+        } catch (RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        response.whenComplete((status, error) -> onResponse(notification, status, error));
+    }
+
+    private void onResponse(Notification notification, Integer status, Throwable error) {
+        boolean retry = false;
+        synchronized (this) {
+            --inFlight;
+            if (error == null && status >= 200 && status < 300) {
+                delivered.increment();
+                logger.info("Gateway notification {} delivered.", notification.key);
+            } else if (isTransient(status, error) && notification.attempts < maxAttempts && !closed) {
+                ++backingOff;
+                retry = true;
+            } else {
+                failed.increment();
+                logger.error("Gateway notification {} failed after {} attempt(s): {}", notification.key, notification.attempts,
+                        (error != null) ? error.toString() : "status " + status);
+            }
+        }
+        if (retry) {
+            long delay = backoffMillis(notification.attempts);
+            retried.increment();
+            logger.warn("Gateway notification {} attempt {} failed ({}), retrying in {} ms", notification.key,
+                    notification.attempts, (error != null) ? error.toString() : "status " + status, delay);
+            retryTimer.schedule(() -> requeue(notification), delay, TimeUnit.MILLISECONDS);
+        }
+        dispatch();
+    }
+
+    private static boolean isTransient(Integer status, Throwable error) {
+        return error != null || status >= 500 || status == 429;
+    }
+
+    /* initialBackoff * 2^(attempts-1), capped, with the upper half jittered so retries from many
+     * registrations do not hit a recovering gateway in lockstep */
+    private long backoffMillis(int attempts) {
+        long ceiling = initialBackoffMillis << Math.min(attempts - 1, 30);
+        if (ceiling <= 0 || ceiling > maxBackoffMillis) {
+            ceiling = maxBackoffMillis;
+        }
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+    }
+
+    private void requeue(Notification notification) {
+        synchronized (this) {
+            if (closed) {
+                return; // counted as failed by close()
+            }
+            --backingOff;
+            // a newer notification under the same key supersedes this one
+            if (pending.putIfAbsent(notification.key, notification) != null) {
+                coalesced.increment();
+            }
+        }
+        dispatch();
+    }
+
+    /* Notifications queued, in flight or waiting for a retry */
+    public synchronized int getQueueDepth() {
+        return pending.size() + inFlight + backingOff;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public long getDelivered() {
+        return delivered.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public long getRetried() {
+        return retried.sum();
+    }
+
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    @Override
+    public void close() {
+        int dropped;
+        synchronized (this) {
+            closed = true;
+            dropped = pending.size() + backingOff;
+            failed.add(dropped);
+            pending.clear();
+            backingOff = 0;
+        }
+        retryTimer.shutdownNow();
+        logger.info("Gateway notifier closed, {} undelivered notification(s) dropped. {}", dropped, this);
+    }
+
+    @Override
+    public String toString() {
+        return "GatewayNotifier{queueDepth=" + getQueueDepth() + ", inFlight=" + getInFlight() +
+                ", delivered=" + getDelivered() + ", failed=" + getFailed() + ", retried=" + getRetried() +
+                ", coalesced=" + getCoalesced() + ", rejected=" + getRejected() + '}';
+    }
+
+    /* Touched by one thread at a time: the enqueuer, then the sender, then the retry timer */
+    private static final class Notification {
+        private final String key;
+        private volatile String payload;
+        private volatile int attempts = 0;
+
+        private Notification(String key, String payload) {
+            this.key = key;
+            this.payload = payload;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package website_backend;
+
+import io.jsonwebtoken.Claims;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/* Claims of tokens whose signature was already verified, keyed by the SHA-256 of the token so raw
+ * bearer tokens are never kept as map keys. An entry is served only while the token is unexpired and
+ * only for the signing key it was verified with - after a key rotation every entry misses and the token
+ * is verified again against the new key. Bounded: past maxEntries expired entries are swept, and if
+ * none were expired an arbitrary entry is evicted */
+public class JwtClaimsCache {
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public JwtClaimsCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public JwtClaimsCache(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Max entries must be positive: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+    }
+
+    /* Returns the cached claims, or null if the token must be verified */
+    public Claims get(String token, Object verificationKey, long nowMillis) {
+        String digest = digest(token);
+        Entry entry = entries.get(digest);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (entry.verificationKey != verificationKey || nowMillis >= entry.expiresAtMillis) {
+            entries.remove(digest, entry);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.claims;
+    }
+
+    /* Tokens without an expiration are not cached - they would never leave the cache on their own */
+    public void put(String token, Claims claims, Object verificationKey) {
+        Date expiration = claims.getExpiration();
+        if (expiration == null) {
+            return;
+        }
+        if (entries.size() >= maxEntries) {
+            evict(System.currentTimeMillis());
+        }
+        entries.put(digest(token), new Entry(claims, expiration.getTime(), verificationKey));
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private void evict(long nowMillis) {
+        entries.values().removeIf(entry -> nowMillis >= entry.expiresAtMillis);
+        Iterator<String> iterator = entries.keySet().iterator();
+        if (entries.size() >= maxEntries && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static final class Entry {
+        private final Claims claims;
+        private final long expiresAtMillis;
+        private final Object verificationKey;
+
+        private Entry(Claims claims, long expiresAtMillis, Object verificationKey) {
+            this.claims = claims;
+            this.expiresAtMillis = expiresAtMillis;
+            this.verificationKey = verificationKey;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package website_backend;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/* Read-through cache of serialized per-company listings. A page view that hits the cache costs neither a
+ * query nor a Gson pass, and the ETag lets a browser that already holds the listing revalidate it with a
+ * 304 instead of downloading it again. Writers invalidate the company's entry after they insert.
+ * A load that races with an invalidation is returned to its caller but not cached, so a listing read
+ * before an insert can never be served after it */
+public class ListingCache {
+    private static final Logger logger = LoggerFactory.getLogger(ListingCache.class);
+
+    public static final int DEFAULT_MAX_ENTRIES = 1024;
+
+    public static final ListingCache PRODUCTS = new ListingCache("products", DEFAULT_MAX_ENTRIES);
+    public static final ListingCache CONTACTS = new ListingCache("contacts", DEFAULT_MAX_ENTRIES);
+
+    private final String name;
+    private final Map<Integer, Listing> entries;
+    private final AtomicLong invalidations = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @FunctionalInterface
+    public interface Loader {
+        String load() throws SQLException;
+    }
+
+    public ListingCache(String name, int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Max entries must be positive: " + maxEntries);
+        }
+        this.name = name;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Listing> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public Listing get(int compId, Loader loader) throws SQLException {
+        synchronized (entries) {
+            Listing cached = entries.get(compId);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+        }
+        misses.increment();
+        long invalidationsBefore = invalidations.get();
+        Listing loaded = new Listing(loader.load());
+        synchronized (entries) {
+            if (invalidations.get() == invalidationsBefore) {
+                entries.put(compId, loaded);
+            } else {
+                logger.debug("Not caching {} listing for company {}: invalidated while loading.", name, compId);
+            }
+        }
+        return loaded;
+    }
+
+    public void invalidate(int compId) {
+        synchronized (entries) {
+            invalidations.incrementAndGet();
+            entries.remove(compId);
+        }
+        logger.debug("Invalidated {} listing for company {}.", name, compId);
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /* True if an If-None-Match header names the given entity tag. Weak comparison, as RFC 9110 requires for it */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*")) {
+                return true;
+            }
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "ListingCache{name=" + name + ", size=" + size() + ", hits=" + getHits() + ", misses=" + getMisses() + '}';
+    }
+
+    /* A listing serialized once, with the strong entity tag of its bytes */
+    public static final class Listing {
+        private final byte[] body;
+        private final String etag;
+
+        private Listing(String json) {
+            this.body = json.getBytes(StandardCharsets.UTF_8);
+            this.etag = '"' + digest(body) + '"';
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public String getETag() {
+            return etag;
+        }
+
+        private static String digest(byte[] body) {
+            try {
+                byte[] hash = MessageDigest.getInstance("SHA-256").digest(body);
+                return Base64.getUrlEncoder().withoutPadding().encodeToString(hash).substring(0, 22);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+        }
+    }
+}
@@ -7,10 +7,6 @@ import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.sql.SQLException;
 import java.sql.ResultSet;
 import java.time.LocalDate;
@@ -182,29 +178,28 @@ public class RegisterCompanyServlet extends HttpServlet {
 
         try (AdminDBMS dbms = new AdminDBMS(DB_URL, DB_USER, DB_PASSWORD)) {
 
-            String checkEmailQuery = String.format("SELECT email FROM Contacts WHERE email = '%s'", params.get("email"));
-            try (ResultSet rs = dbms.executeQuery(checkEmailQuery)) {
+            String checkEmailQuery = "SELECT email FROM Contacts WHERE email = ?";
+            try (ResultSet rs = dbms.executeQuery(checkEmailQuery, params.get("email"))) {
                 if (rs.next()) {
                     logger.warn("Registration failed: Email '{}' already exists.", params.get("email"));
                     throw new SQLException("Email already registered.");
                 }
             }
 
-            String checkCompanyNameQuery = String.format("SELECT name FROM Companies WHERE name = '%s'", params.get("company_name"));
-            try (ResultSet rs = dbms.executeQuery(checkCompanyNameQuery)) {
+            String checkCompanyNameQuery = "SELECT name FROM Companies WHERE name = ?";
+            try (ResultSet rs = dbms.executeQuery(checkCompanyNameQuery, params.get("company_name"))) {
                 if (rs.next()) {
                     logger.warn("Registration failed: Company name '{}' already exists.", params.get("company_name"));
                     throw new SQLException("Company name already registered.");
                 }
             }
 
-            String insertCompanyQuery = String.format(
-                    "INSERT INTO Companies (name, password, cc_number, cc_expiration_date, cc_charge_date, cvc) VALUES ('%s', '%s', '%s', '%s', CURDATE(), '%s')",
-                    params.get("company_name"), plainPassword, params.get("card_number"), expDate.format(DateTimeFormatter.ISO_LOCAL_DATE), params.get("cvc")
-            );
+            String insertCompanyQuery =
+                    "INSERT INTO Companies (name, password, cc_number, cc_expiration_date, cc_charge_date, cvc) VALUES (?, ?, ?, ?, CURDATE(), ?)";
             logger.debug("Executing company insert query: {}", insertCompanyQuery);
 
-            int companyRowsInserted = dbms.executeStatement(insertCompanyQuery);
+            int companyRowsInserted = dbms.executeStatement(insertCompanyQuery,
+                    params.get("company_name"), plainPassword, params.get("card_number"), expDate.format(DateTimeFormatter.ISO_LOCAL_DATE), params.get("cvc"));
             if (companyRowsInserted == 0) {
                 logger.error("Failed to insert company data for {}. No rows affected.", params.get("company_name"));
                 throw new SQLException("Failed to insert company data. No rows affected.");
@@ -222,25 +217,22 @@ public class RegisterCompanyServlet extends HttpServlet {
                 throw new SQLException("Failed to retrieve generated company ID after insert.");
             }
 
-            String insertContactQuery = String.format(
-                    "INSERT INTO Contacts (comp_id, name, email, phone_number, linkedin_account) VALUES (%d, '%s', '%s', '%s', '%s')",
-                    compId, params.get("contact_name"), params.get("email"), params.get("phone"), params.get("linkedin")
-            );
+            String insertContactQuery =
+                    "INSERT INTO Contacts (comp_id, name, email, phone_number, linkedin_account) VALUES (?, ?, ?, ?, ?)";
             logger.debug("Executing contact insert query: {}", insertContactQuery);
 
-            int contactRowsInserted = dbms.executeStatement(insertContactQuery);
+            int contactRowsInserted = dbms.executeStatement(insertContactQuery,
+                    compId, params.get("contact_name"), params.get("email"), params.get("phone"), params.get("linkedin"));
             if (contactRowsInserted == 0) {
                 logger.error("Failed to insert contact data for company ID {}. No rows affected.", compId);
                 throw new SQLException("Failed to insert contact data. No rows affected.");
             }
             logger.debug("Contact rows inserted: {}", contactRowsInserted);
+            ListingCache.CONTACTS.invalidate(compId);
 
-            String insertUserQuery = String.format(
-                    "INSERT INTO Users (email, password_hash, comp_id) VALUES ('%s', '%s', %d)",
-                    params.get("email"), hashedPassword, compId
-            );
+            String insertUserQuery = "INSERT INTO Users (email, password_hash, comp_id) VALUES (?, ?, ?)";
             logger.debug("Executing user insert query: {}", insertUserQuery);
-            int userRowsInserted = dbms.executeStatement(insertUserQuery);
+            int userRowsInserted = dbms.executeStatement(insertUserQuery, params.get("email"), hashedPassword, compId);
 
             if (userRowsInserted == 0) {
                 logger.error("Failed to insert user data for email {}. No rows affected.", params.get("email"));
@@ -267,39 +259,18 @@ public class RegisterCompanyServlet extends HttpServlet {
     }
 
     private void sendRegistrationToGateway(int compId, String companyName) {
-        HttpClient client = HttpClient.newHttpClient();
-
         String jsonPayload = String.format(
                 "{\"command\": \"Register Company\", \"data\": {\"company_id\": %d, \"company_name\": \"%s\"}}",
                 compId, companyName
         );
 
-        System.out.println("Sending to 5006: " + GATEWAY_SERVER_API_URL + " with payload: " + jsonPayload);
-        logger.info("Sending company registration to Gateway server {}: Payload: {}", GATEWAY_SERVER_API_URL, jsonPayload);
-
-        HttpRequest requestToSecondServer = HttpRequest.newBuilder()
-                .uri(URI.create(GATEWAY_SERVER_API_URL))
-                .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(jsonPayload))
-                .build();
-
-        try {
-            HttpResponse<String> secondServerResponse = client.send(requestToSecondServer, HttpResponse.BodyHandlers.ofString());
-            System.out.println("Response from 5006 server - Status: " + secondServerResponse.statusCode() + ", Body: " + secondServerResponse.body());
-            logger.info("Response from Gateway server - Status: {}, Body: {}", secondServerResponse.statusCode(), secondServerResponse.body());
-
-            if (secondServerResponse.statusCode() != HttpServletResponse.SC_OK &&
-                    secondServerResponse.statusCode() != HttpServletResponse.SC_CREATED) {
-                System.err.println("Second server (5006) returned non-OK/Created status: " + secondServerResponse.statusCode() + " - " + secondServerResponse.body());
-                logger.error("Gateway server returned non-success status: {} - {}", secondServerResponse.statusCode(), secondServerResponse.body());
-            } else {
-                logger.info("Company registration successfully sent to Gateway server.");
-            }
+        System.out.println("Queueing for 5006: " + GATEWAY_SERVER_API_URL + " with payload: " + jsonPayload);
+        logger.info("Queueing company registration for Gateway server {}: Payload: {}", GATEWAY_SERVER_API_URL, jsonPayload);
 
-        } catch (IOException | InterruptedException e) {
-            System.err.println("Failed to send data to 5006 server: " + e.getMessage());
-            logger.error("Failed to send data to Gateway server: {}", e.getMessage(), e);
-            Thread.currentThread().interrupt();
+        GatewayNotifier notifier = GatewayNotifier.shared(GATEWAY_SERVER_API_URL);
+        if (!notifier.enqueue("Register Company:" + compId, jsonPayload)) {
+            System.err.println("Gateway notification queue rejected company registration: " + notifier);
+            logger.error("Gateway notification queue rejected company registration: {}", notifier);
         }
     }
 
@@ -309,4 +280,4 @@ public class RegisterCompanyServlet extends HttpServlet {
         System.out.println("RegisterServlet destroyed.");
         logger.info("RegisterServlet destroyed.");
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -9,10 +9,6 @@ import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.annotation.MultipartConfig;
 
 import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.sql.SQLException;
 import java.sql.ResultSet;
 import java.util.HashMap;
@@ -149,7 +145,7 @@ public class RegisterProductServlet extends HttpServlet {
         logger.info("Attempting to register product '{}' (v{}) in database for company ID {}.",
                 params.get("product_name"), params.get("version"), compId);
         try (AdminDBMS dbms = new AdminDBMS(DB_URL, DB_USER, DB_PASSWORD)) {
-            try (ResultSet rs = dbms.executeQuery(String.format("SELECT COUNT(*) FROM Companies WHERE comp_id = %d", compId))) {
+            try (ResultSet rs = dbms.executeQuery("SELECT COUNT(*) FROM Companies WHERE comp_id = ?", compId)) {
                 if (rs.next() && rs.getInt(1) == 0) {
                     logger.error("Company with ID {} does not exist in the database.", compId);
                     throw new SQLException("Company with ID " + compId + " does not exist.");
@@ -157,12 +153,9 @@ public class RegisterProductServlet extends HttpServlet {
                 logger.debug("Company ID {} confirmed to exist in database.", compId);
             }
 
-            String insertProductQuery = String.format(
-                    "INSERT INTO Products (comp_id, name, version) VALUES (%d, '%s', '%s')",
-                    compId, params.get("product_name"), params.get("version")
-            );
+            String insertProductQuery = "INSERT INTO Products (comp_id, name, version) VALUES (?, ?, ?)";
             logger.debug("Executing product insert query: {}", insertProductQuery);
-            int rowsInserted = dbms.executeStatement(insertProductQuery);
+            int rowsInserted = dbms.executeStatement(insertProductQuery, compId, params.get("product_name"), params.get("version"));
 
             if (rowsInserted == 0) {
                 logger.error("Failed to register product '{}' (v{}) for company ID {}. No rows affected.",
@@ -170,43 +163,23 @@ public class RegisterProductServlet extends HttpServlet {
                 throw new SQLException("Failed to register product. No rows affected.");
             }
             logger.debug("Product rows inserted: {}", rowsInserted);
+            ListingCache.PRODUCTS.invalidate(compId);
         }
     }
 
     private void sendProductRegistrationToGateway(int companyId, String companyName, String productName, String version) {
-        HttpClient client = HttpClient.newHttpClient();
-
         String jsonPayload = String.format(
                 "{\"command\": \"Register Product\", \"data\": {\"company_id\": \"%s\", \"company_name\": \"%s\", \"product_name\": \"%s\", \"product_version\": \"%s\"}}",
                 companyId, companyName, productName, version
         );
 
-        System.out.println("Sending to 5006: " + GATEWAY_SERVER_API_URL + " with payload: " + jsonPayload);
-        logger.info("Sending product registration to Gateway server {}: Payload: {}", GATEWAY_SERVER_API_URL, jsonPayload);
-
-        HttpRequest requestToSecondServer = HttpRequest.newBuilder()
-                .uri(URI.create(GATEWAY_SERVER_API_URL))
-                .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(jsonPayload))
-                .build();
-
-        try {
-            HttpResponse<String> secondServerResponse = client.send(requestToSecondServer, HttpResponse.BodyHandlers.ofString());
-            System.out.println("Response from 5006 server - Status: " + secondServerResponse.statusCode() + ", Body: " + secondServerResponse.body());
-            logger.info("Response from Gateway server - Status: {}, Body: {}", secondServerResponse.statusCode(), secondServerResponse.body());
-
-            if (secondServerResponse.statusCode() != HttpServletResponse.SC_OK &&
-                    secondServerResponse.statusCode() != HttpServletResponse.SC_CREATED) {
-                System.err.println("Second server (5006) returned non-OK/Created status: " + secondServerResponse.statusCode() + " - " + secondServerResponse.body());
-                logger.error("Gateway server returned non-success status: {} - {}", secondServerResponse.statusCode(), secondServerResponse.body());
-            } else {
-                logger.info("Product registration successfully sent to Gateway server.");
-            }
+        System.out.println("Queueing for 5006: " + GATEWAY_SERVER_API_URL + " with payload: " + jsonPayload);
+        logger.info("Queueing product registration for Gateway server {}: Payload: {}", GATEWAY_SERVER_API_URL, jsonPayload);
 
-        } catch (IOException | InterruptedException e) {
-            System.err.println("Failed to send data to 5006 server: " + e.getMessage());
-            logger.error("Failed to send data to Gateway server: {}", e.getMessage(), e);
-            Thread.currentThread().interrupt();
+        GatewayNotifier notifier = GatewayNotifier.shared(GATEWAY_SERVER_API_URL);
+        if (!notifier.enqueue("Register Product:" + companyId + ":" + productName + ":" + version, jsonPayload)) {
+            System.err.println("Gateway notification queue rejected product registration: " + notifier);
+            logger.error("Gateway notification queue rejected product registration: {}", notifier);
         }
     }
 
@@ -230,4 +203,4 @@ public class RegisterProductServlet extends HttpServlet {
         System.out.println("RegisterProductServlet destroyed.");
         logger.info("RegisterProductServlet destroyed.");
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
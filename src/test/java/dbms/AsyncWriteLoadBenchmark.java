@@ -0,0 +1,164 @@
+package dbms;
+
+import com.google.gson.JsonObject;
+import gateway.RPS.RPS;
+import gateway.RPS.command.CommandContext;
+import gateway.RPS.command.UpdateIoT;
+import gateway.connectionService.iConnection.IConnection;
+import gateway.connectionService.request.Request;
+import gateway.connectionService.server.Handler;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/* Load benchmark for the IoT update path: Update IoT requests go through RPS and UpdateIoT into
+ * MongoDBMS' update batcher, once per write backend, and each is counted when its response arrives.
+ * Without MONGO_URI the batches go to a stand-in server - a blocking sink for SYNC_DRIVER and an
+ * asynchronous one for REACTIVE_DRIVER, both answering after the same latency. With it, they go to a
+ * scratch company database that is dropped afterwards.
+ * Usage: AsyncWriteLoadBenchmark [commands] [stand-in latency ms] */
+public class AsyncWriteLoadBenchmark {
+    private static final String COMPANY_NAME = "bench_async_load";
+    private static final String COMPANY_ID = "1";
+    private static final String PRODUCT_NAME = "sensor";
+    private static final String PRODUCT_VERSION = "1";
+    private static final int DEVICES = 100;
+    private static final String UNUSED_URI = "mongodb://localhost:1/?serverSelectionTimeoutMS=1000";
+
+    private static final IConnection NO_CONNECTION = new IConnection() {
+        @Override
+        public void send(ByteBuffer buffer) {
+        }
+
+        @Override
+        public ByteBuffer receive() {
+            return null;
+        }
+    };
+
+    private static final Handler NO_CLIENT = new Handler() {
+        @Override
+        public JsonObject onReceive(IConnection connection) {
+            return null;
+        }
+
+        @Override
+        public boolean onAccept(IConnection connection) {
+            return true;
+        }
+
+        @Override
+        public void send(IConnection connection, JsonObject message) {
+        }
+    };
+
+    public static void main(String[] args) throws Exception {
+        int commands = (args.length > 0) ? Integer.parseInt(args[0]) : 20_000;
+        long latencyMillis = (args.length > 1) ? Long.parseLong(args[1]) : 5;
+        String connectionString = System.getenv("MONGO_URI");
+
+        ScheduledExecutorService server = Executors.newScheduledThreadPool(1);
+        UpdateBatcher.Sink blockingStandIn = (dbName, collectionName, documents) -> {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        UpdateBatcher.AsyncSink asyncStandIn = (dbName, collectionName, documents) -> {
+            CompletableFuture<Void> acknowledged = new CompletableFuture<>();
+            server.schedule(() -> acknowledged.complete(null), latencyMillis, TimeUnit.MILLISECONDS);
+            return acknowledged;
+        };
+        System.out.printf("%s, %d workers, %d devices%n", (connectionString == null)
+                ? "stand-in server, " + latencyMillis + " ms per batch" : connectionString,
+                RPS.DEFAULT_NUM_THREADS, DEVICES);
+
+        for (MongoDBMS.WriteBackend backend : MongoDBMS.WriteBackend.values()) {
+            try (MongoDBMS mongoDBMS = new MongoDBMS((connectionString == null) ? UNUSED_URI : connectionString,
+                    MongoDBMS.StorageMode.COLLECTION_PER_DEVICE, backend)) {
+                if (connectionString == null) {
+                    mongoDBMS.replaceBatchSinks(blockingStandIn, asyncStandIn);
+                }
+                prepareDevices(mongoDBMS, connectionString == null);
+                RPS<String, ?, ?> rps = new RPS<>(RPS.DEFAULT_NUM_THREADS);
+                UpdateIoT updateIoT = new UpdateIoT();
+                rps.addHandler("Update IoT", (request, context) -> updateIoT.handle(request,
+                        new CommandContext(context.getCommandName(), context.getCommandData(), mongoDBMS)));
+
+                run(rps, commands / 10); // warm-up
+                report(backend.name(), rps, commands, mongoDBMS.getUpdateBatcher());
+                rps.getThreadPool().shutDown();
+                if (connectionString != null) {
+                    mongoDBMS.getDatabase(mongoDBMS.getNames().resolve(COMPANY_NAME, COMPANY_ID, PRODUCT_NAME,
+                            PRODUCT_VERSION, device(0)).getDatabase()).drop();
+                }
+            }
+        }
+        server.shutdownNow();
+    }
+
+    /* With the stand-in every update collection is only marked as existing, no server is asked */
+    private static void prepareDevices(MongoDBMS mongoDBMS, boolean standIn) throws Exception {
+        for (int i = 0; i < DEVICES; ++i) {
+            if (standIn) {
+                MongoNames.Names names = mongoDBMS.getNames().resolve(COMPANY_NAME, COMPANY_ID, PRODUCT_NAME,
+                        PRODUCT_VERSION, device(i));
+                mongoDBMS.getCollectionCache().markExists(names.getDatabase(),
+                        names.getUpdateCollection(mongoDBMS.getStorageMode()));
+            } else {
+                mongoDBMS.createIoTUpdateCollection(COMPANY_NAME, COMPANY_ID, PRODUCT_NAME, PRODUCT_VERSION, device(i));
+            }
+        }
+    }
+
+    private static void report(String name, RPS<String, ?, ?> rps, int commands, UpdateBatcher batcher)
+            throws InterruptedException {
+        long start = System.nanoTime();
+        int failed = run(rps, commands);
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%s: %,d commands/s, %d failed, %s%n",
+                name, commands * 1_000_000_000L / elapsed, failed, batcher.getBatchSizes());
+    }
+
+    /* Returns how many commands were answered with an error */
+    private static int run(RPS<String, ?, ?> rps, int commands) throws InterruptedException {
+        CountDownLatch answered = new CountDownLatch(commands);
+        AtomicInteger failed = new AtomicInteger();
+        for (int i = 0; i < commands; ++i) {
+            rps.handleAsync(new Request(NO_CONNECTION, NO_CLIENT, update(i))).whenComplete((response, error) -> {
+                if (error != null || !"success".equals(response.get("status").getAsString())) {
+                    failed.incrementAndGet();
+                }
+                answered.countDown();
+            });
+        }
+        if (!answered.await(5, TimeUnit.MINUTES)) {
+            throw new IllegalStateException(answered.getCount() + " commands never answered");
+        }
+        return failed.get();
+    }
+
+    private static JsonObject update(int sequence) {
+        JsonObject data = new JsonObject();
+        data.addProperty("iot_id", device(sequence % DEVICES));
+        data.addProperty("company_name", COMPANY_NAME);
+        data.addProperty("company_id", COMPANY_ID);
+        data.addProperty("product_name", PRODUCT_NAME);
+        data.addProperty("product_version", PRODUCT_VERSION);
+        data.addProperty("seq", sequence);
+        JsonObject payload = new JsonObject();
+        payload.addProperty("command", "Update IoT");
+        payload.add("data", data);
+        return payload;
+    }
+
+    private static String device(int index) {
+        return "device-" + index;
+    }
+}
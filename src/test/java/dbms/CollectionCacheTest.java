@@ -0,0 +1,88 @@
+package dbms;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CollectionCacheTest {
+    private final Map<String, List<String>> server = new ConcurrentHashMap<>();
+    private final AtomicInteger listCalls = new AtomicInteger();
+
+    private CollectionCache newCache(long ttl, TimeUnit unit) {
+        return new CollectionCache(dbName -> {
+            listCalls.incrementAndGet();
+            return server.getOrDefault(dbName, List.of());
+        }, ttl, unit);
+    }
+
+    @Test
+    void testMissListsDatabaseOnceThenHits() {
+        server.put("acme_1", List.of("metadata", "watch_1_0_iots", "watch_1_0_dev1_updates"));
+        CollectionCache cache = newCache(1, TimeUnit.MINUTES);
+
+        assertTrue(cache.exists("acme_1", "watch_1_0_dev1_updates"));
+        assertTrue(cache.exists("acme_1", "metadata"));
+        assertTrue(cache.exists("acme_1", "watch_1_0_iots"));
+
+        assertEquals(1, listCalls.get());
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(2, cache.getSavedRoundTrips());
+        assertEquals(2.0 / 3, cache.getHitRatio(), 1e-9);
+    }
+
+    @Test
+    void testUnknownCollectionIsNotCached() {
+        server.put("acme_1", List.of("metadata"));
+        CollectionCache cache = newCache(1, TimeUnit.MINUTES);
+
+        assertFalse(cache.exists("acme_1", "missing"));
+        assertFalse(cache.exists("acme_1", "missing"));
+        assertEquals(2, listCalls.get());
+    }
+
+    @Test
+    void testMarkExistsAndInvalidate() {
+        CollectionCache cache = newCache(1, TimeUnit.MINUTES);
+        cache.markExists("acme_1", "created");
+        assertTrue(cache.exists("acme_1", "created"));
+        assertEquals(0, listCalls.get());
+
+        cache.invalidate("acme_1", "created");
+        assertFalse(cache.exists("acme_1", "created"));
+        assertEquals(1, listCalls.get());
+    }
+
+    @Test
+    void testRefreshDropsCollectionsThatAreGone() {
+        server.put("acme_1", List.of("a", "b"));
+        server.put("other_2", List.of("a"));
+        CollectionCache cache = newCache(1, TimeUnit.MINUTES);
+        cache.refresh("acme_1");
+        cache.refresh("other_2");
+        assertEquals(3, cache.size());
+
+        server.put("acme_1", List.of("a"));
+        cache.refresh("acme_1");
+        assertEquals(2, cache.size());
+        assertTrue(cache.exists("other_2", "a"));
+    }
+
+    @Test
+    void testEntriesExpire() throws InterruptedException {
+        server.put("acme_1", List.of("metadata"));
+        CollectionCache cache = newCache(20, TimeUnit.MILLISECONDS);
+
+        assertTrue(cache.exists("acme_1", "metadata"));
+        Thread.sleep(50);
+        server.put("acme_1", List.of());
+        assertFalse(cache.exists("acme_1", "metadata"), "an expired entry must be checked against the server again");
+        assertEquals(2, listCalls.get());
+    }
+}
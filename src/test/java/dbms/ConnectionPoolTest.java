@@ -0,0 +1,171 @@
+package dbms;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectionPoolTest {
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    /* Connection stand-in that counts what the pool does with it */
+    private static class FakeConnection {
+        final AtomicBoolean closed = new AtomicBoolean();
+        final AtomicBoolean valid = new AtomicBoolean(true);
+        final AtomicInteger validations = new AtomicInteger();
+        final AtomicInteger prepared = new AtomicInteger();
+        final List<AtomicBoolean> statementsClosed = new ArrayList<>();
+
+        Connection proxy() {
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                    (self, method, args) -> {
+                        switch (method.getName()) {
+                            case "close":
+                                closed.set(true);
+                                return null;
+                            case "isClosed":
+                                return closed.get();
+                            case "isValid":
+                                validations.incrementAndGet();
+                                return valid.get();
+                            case "prepareStatement":
+                                prepared.incrementAndGet();
+                                return statement();
+                            default:
+                                throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+        }
+
+        private PreparedStatement statement() {
+            AtomicBoolean statementClosed = new AtomicBoolean();
+            statementsClosed.add(statementClosed);
+            return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                    (self, method, args) -> {
+                        switch (method.getName()) {
+                            case "close":
+                                statementClosed.set(true);
+                                return null;
+                            case "isClosed":
+                                return statementClosed.get();
+                            case "clearParameters":
+                                return null;
+                            default:
+                                throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+        }
+    }
+
+    private static ConnectionPool pool(List<FakeConnection> opened, int maxSize, long maxWaitMillis,
+                                       long idleTimeoutMillis, long validationIntervalMillis, int statementCacheSize) {
+        return new ConnectionPool(() -> {
+            FakeConnection connection = new FakeConnection();
+            synchronized (opened) {
+                opened.add(connection);
+            }
+            return connection.proxy();
+        }, maxSize, maxWaitMillis, idleTimeoutMillis, validationIntervalMillis, TimeUnit.MILLISECONDS, statementCacheSize);
+    }
+
+    @Test
+    void testReleasedConnectionIsReused() throws SQLException {
+        List<FakeConnection> opened = new ArrayList<>();
+        try (ConnectionPool pool = pool(opened, 2, 100, HOUR_MILLIS, HOUR_MILLIS, 8)) {
+            for (int i = 0; i < 5; ++i) {
+                try (AdminDBMS dbms = new AdminDBMS(pool)) {
+                    assertEquals(1, pool.getActiveConnections());
+                }
+            }
+            assertEquals(1, opened.size());
+            assertEquals(0, pool.getActiveConnections());
+            assertEquals(1, pool.getIdleConnections());
+            assertEquals(5, pool.getWaitMicros().getCount());
+        }
+        assertTrue(opened.get(0).closed.get());
+    }
+
+    @Test
+    void testBorrowTimesOutWhenPoolIsExhausted() throws SQLException {
+        List<FakeConnection> opened = new ArrayList<>();
+        try (ConnectionPool pool = pool(opened, 2, 50, HOUR_MILLIS, HOUR_MILLIS, 8)) {
+            ConnectionPool.PooledConnection first = pool.borrow();
+            ConnectionPool.PooledConnection second = pool.borrow();
+            assertEquals(2, pool.getActiveConnections());
+            assertThrows(SQLTransientConnectionException.class, pool::borrow);
+
+            pool.release(first);
+            assertSame(first, pool.borrow());
+            pool.release(first);
+            pool.release(second);
+            assertEquals(2, pool.getOpenConnections());
+        }
+    }
+
+    @Test
+    void testInvalidConnectionIsReplacedAfterValidationInterval() throws Exception {
+        List<FakeConnection> opened = new ArrayList<>();
+        try (ConnectionPool pool = pool(opened, 1, 100, HOUR_MILLIS, 20, 8)) {
+            pool.release(pool.borrow());
+            // used again right away - not validated
+            pool.release(pool.borrow());
+            assertEquals(0, opened.get(0).validations.get());
+
+            Thread.sleep(50);
+            opened.get(0).valid.set(false);
+            pool.release(pool.borrow());
+            assertEquals(1, opened.get(0).validations.get());
+            assertTrue(opened.get(0).closed.get());
+            assertEquals(2, opened.size());
+            assertEquals(1, pool.getOpenConnections());
+        }
+    }
+
+    @Test
+    void testIdleConnectionsAreEvicted() throws Exception {
+        List<FakeConnection> opened = new ArrayList<>();
+        try (ConnectionPool pool = pool(opened, 2, 100, 20, HOUR_MILLIS, 8)) {
+            pool.release(pool.borrow());
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (pool.getIdleConnections() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(0, pool.getIdleConnections());
+            assertEquals(0, pool.getOpenConnections());
+            assertTrue(opened.get(0).closed.get());
+        }
+    }
+
+    @Test
+    void testStatementsAreCachedPerConnectionWithLruEviction() throws SQLException {
+        List<FakeConnection> opened = new ArrayList<>();
+        try (ConnectionPool pool = pool(opened, 1, 100, HOUR_MILLIS, HOUR_MILLIS, 2)) {
+            ConnectionPool.PooledConnection pooled = pool.borrow();
+            PreparedStatement a = pooled.prepare("a");
+            assertSame(a, pooled.prepare("a"));
+            pooled.prepare("b");
+            pooled.prepare("a");
+            // b is the least recently used and makes room for c
+            pooled.prepare("c");
+            FakeConnection connection = opened.get(0);
+            assertEquals(3, connection.prepared.get());
+            assertFalse(connection.statementsClosed.get(0).get());
+            assertTrue(connection.statementsClosed.get(1).get());
+            assertEquals(2, pool.getStatementCacheHits());
+            assertEquals(3, pool.getStatementCacheMisses());
+
+            pool.release(pooled);
+            assertSame(a, pool.borrow().prepare("a"));
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package dbms;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import org.bson.BsonBinaryWriter;
+import org.bson.Document;
+import org.bson.codecs.DocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import utils.Benchmark;
+
+import java.io.StringReader;
+import java.util.Map;
+
+/* Per update cost of turning a device payload into the BSON bytes that go to the server: the old path
+ * (int/long/double trial parsing into a Document, then DocumentCodec), the Gson tree walked into a
+ * BsonWriter, and the JSON text streamed into a BsonWriter without a tree */
+public class JsonBsonBenchmark {
+    private static final int WARMUP = 100_000;
+    private static final int ITERATIONS = 1_000_000;
+
+    private static final String PAYLOAD = "{\"iot_id\":\"device-42\",\"temperature\":21.5,\"humidity\":40," +
+            "\"pressure\":1013.25,\"battery\":0.87,\"uptime\":5000000000,\"status\":\"ok\",\"door_open\":false," +
+            "\"rssi\":-67,\"firmware\":\"3.1.4\"}";
+    private static final JsonObject TREE = JsonParser.parseString(PAYLOAD).getAsJsonObject();
+    private static final DocumentCodec DOCUMENT_CODEC = new DocumentCodec();
+
+    private static volatile Object sink;
+
+    private enum Path { OLD, TREE, STREAM }
+
+    public static void main(String[] args) throws Exception {
+        for (Path path : Path.values()) {
+            Benchmark.warmUp(WARMUP, iterations -> run(path, iterations));
+        }
+        for (Path path : Path.values()) {
+            Benchmark.report(path.toString(), "update", ITERATIONS, iterations -> run(path, iterations));
+        }
+    }
+
+    private static void run(Path path, int iterations) throws Exception {
+        for (int i = 0; i < iterations; ++i) {
+            switch (path) {
+                case OLD:
+                    sink = encode(oldConversion(TREE));
+                    break;
+                case TREE:
+                    sink = JsonBsonCodec.toBson(TREE);
+                    break;
+                case STREAM:
+                    sink = JsonBsonCodec.fromJson(new StringReader(PAYLOAD));
+                    break;
+            }
+        }
+    }
+
+    private static byte[] encode(Document document) {
+        BasicOutputBuffer buffer = new BasicOutputBuffer();
+        try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+            DOCUMENT_CODEC.encode(writer, document, EncoderContext.builder().build());
+        }
+        return buffer.toByteArray();
+    }
+
+    /* What UpdateIoT.appendDynamicFields and MongoDBMS.convertJsonToDocument did */
+    private static Document oldConversion(JsonObject object) {
+        Document document = new Document();
+        for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+            JsonPrimitive primitive = entry.getValue().getAsJsonPrimitive();
+            if (primitive.isBoolean()) {
+                document.append(entry.getKey(), primitive.getAsBoolean());
+            } else if (primitive.isNumber()) {
+                try {
+                    document.append(entry.getKey(), primitive.getAsInt());
+                } catch (NumberFormatException e1) {
+                    try {
+                        document.append(entry.getKey(), primitive.getAsLong());
+                    } catch (NumberFormatException e2) {
+                        document.append(entry.getKey(), primitive.getAsDouble());
+                    }
+                }
+            } else {
+                document.append(entry.getKey(), primitive.getAsString());
+            }
+        }
+        return document;
+    }
+}
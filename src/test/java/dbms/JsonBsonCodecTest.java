@@ -0,0 +1,92 @@
+package dbms;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonType;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonBsonCodecTest {
+    private static final String PAYLOAD = "{\"small\":42,\"negative\":-7,\"large\":5000000000," +
+            "\"huge\":123456789012345678901234567890,\"ratio\":21.5,\"exponent\":1e3,\"text\":\"ok\"," +
+            "\"flag\":true,\"missing\":null,\"nested\":{\"level\":{\"depth\":2}}," +
+            "\"readings\":[1,2.5,\"three\",[4],{\"five\":5}]}";
+
+    @Test
+    void testNumbersAreTypedFromTheirLiteral() {
+        BsonDocument bson = JsonBsonCodec.toBson(JsonParser.parseString(PAYLOAD).getAsJsonObject());
+
+        assertEquals(BsonType.INT32, bson.get("small").getBsonType());
+        assertEquals(42, bson.getInt32("small").getValue());
+        assertEquals(-7, bson.getInt32("negative").getValue());
+        assertEquals(5_000_000_000L, bson.getInt64("large").getValue());
+        assertEquals(1.2345678901234568e29, bson.getDouble("huge").getValue());
+        assertEquals(21.5, bson.getDouble("ratio").getValue());
+        assertEquals(1000.0, bson.getDouble("exponent").getValue());
+    }
+
+    @Test
+    void testNestedObjectsAndArraysAreKept() {
+        BsonDocument bson = JsonBsonCodec.toBson(JsonParser.parseString(PAYLOAD).getAsJsonObject());
+
+        assertEquals("ok", bson.getString("text").getValue());
+        assertTrue(bson.getBoolean("flag").getValue());
+        assertTrue(bson.isNull("missing"));
+        assertEquals(2, bson.getDocument("nested").getDocument("level").getInt32("depth").getValue());
+
+        BsonArray readings = bson.getArray("readings");
+        assertEquals(5, readings.size());
+        assertEquals(1, readings.get(0).asInt32().getValue());
+        assertEquals(2.5, readings.get(1).asDouble().getValue());
+        assertEquals("three", readings.get(2).asString().getValue());
+        assertEquals(4, readings.get(3).asArray().get(0).asInt32().getValue());
+        assertEquals(5, readings.get(4).asDocument().getInt32("five").getValue());
+    }
+
+    @Test
+    void testStreamingMatchesTreeConversion() throws IOException {
+        RawBsonDocument streamed = JsonBsonCodec.fromJson(new StringReader(PAYLOAD));
+        RawBsonDocument fromTree = JsonBsonCodec.toBson(JsonParser.parseString(PAYLOAD).getAsJsonObject());
+        assertEquals(fromTree, streamed);
+    }
+
+    @Test
+    void testStreamingRejectsNonObjects() {
+        assertThrows(com.google.gson.JsonSyntaxException.class, () -> JsonBsonCodec.fromJson(new StringReader("[1,2]")));
+    }
+
+    @Test
+    void testProgrammaticNumbersKeepTheirType() {
+        JsonObject object = new JsonObject();
+        object.addProperty("int", 3);
+        object.addProperty("long", 3L);
+        object.addProperty("double", 3.0);
+        JsonArray empty = new JsonArray();
+        object.add("empty", empty);
+
+        BsonDocument bson = JsonBsonCodec.toBson(object);
+        assertEquals(BsonType.INT32, bson.get("int").getBsonType());
+        assertEquals(BsonType.INT64, bson.get("long").getBsonType());
+        assertEquals(BsonType.DOUBLE, bson.get("double").getBsonType());
+        assertTrue(bson.getArray("empty").isEmpty());
+    }
+
+    @Test
+    void testToDocumentDecodesNestedValues() {
+        Document document = JsonBsonCodec.toDocument(JsonParser.parseString(PAYLOAD).getAsJsonObject());
+        assertEquals(42, document.getInteger("small"));
+        assertEquals(2, document.get("nested", Document.class).get("level", Document.class).getInteger("depth"));
+        assertEquals(5, document.getList("readings", Object.class).size());
+        assertEquals(List.of(4), document.getList("readings", Object.class).get(3));
+    }
+}
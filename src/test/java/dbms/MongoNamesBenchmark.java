@@ -0,0 +1,44 @@
+package dbms;
+
+import utils.Benchmark;
+
+/* Per update name resolution cost: the old path (concatenate, two regex replaceAll and toLowerCase for
+ * the database and again for the collection on every update) against a MongoNames lookup */
+public class MongoNamesBenchmark {
+    private static final int WARMUP = 200_000;
+    private static final int ITERATIONS = 2_000_000;
+    private static final int DEVICES = 10_000;
+
+    private static final String COMPANY = "Acme Industries";
+    private static final String COMPANY_ID = "42";
+    private static final String PRODUCT = "Smart Thermostat";
+    private static final String VERSION = "3.1";
+    private static final String[] IOT_IDS = new String[DEVICES];
+
+    private static final MongoNames names = new MongoNames();
+    private static volatile Object sink;
+
+    public static void main(String[] args) throws Exception {
+        for (int i = 0; i < DEVICES; ++i) {
+            IOT_IDS[i] = "Device-" + i;
+        }
+        Benchmark.Workload oldPath = iterations -> {
+            for (int i = 0; i < iterations; ++i) {
+                String iotId = IOT_IDS[i % DEVICES];
+                sink = MongoNamesTest.legacySanitize(COMPANY + "_" + COMPANY_ID);
+                sink = MongoNamesTest.legacySanitize(PRODUCT + "_" + VERSION + "_" + iotId + "_updates");
+            }
+        };
+        Benchmark.Workload mongoNames = iterations -> {
+            for (int i = 0; i < iterations; ++i) {
+                MongoNames.Names resolved = names.resolve(COMPANY, COMPANY_ID, PRODUCT, VERSION, IOT_IDS[i % DEVICES]);
+                sink = resolved.getDatabase();
+                sink = resolved.getDeviceUpdateCollection();
+            }
+        };
+        Benchmark.warmUp(WARMUP, oldPath, mongoNames);
+        Benchmark.report("old path", "update", ITERATIONS, oldPath);
+        Benchmark.report("MongoNames", "update", ITERATIONS, mongoNames);
+        System.out.println(names);
+    }
+}
@@ -0,0 +1,111 @@
+package dbms;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MongoNamesTest {
+    private static final int SAMPLES = 200_000;
+
+    /* Surrogate pairs, lone surrogates, whitespace and look-alikes of the allowed characters */
+    private static final String[] ALPHABET = {
+            "a", "z", "A", "Z", "0", "9", "_", ".", "-", " ", "\t", "\n", "\u00a0", "\u2003",
+            "/", "\\", "$", "\"", "*", "<", ">", ":", "|", "?", "#", "@", "!",
+            "\u00e9", "\u00c9", "\u0130", "\u0131", "\u00df", "\u212a", "\uff21",
+            "\ud83d\ude00", "\ud83c\udf0d", "\ud800", "\udc00"
+    };
+
+    /* The regex sanitizing MongoNames replaced - MongoNamesBenchmark measures against it too */
+    static String legacySanitize(String name) {
+        return name.replaceAll("[^a-zA-Z0-9_.-]", "_")
+                .replaceAll("\\s+", "_")
+                .toLowerCase();
+    }
+
+    private static String randomName(Random random) {
+        int length = random.nextInt(24);
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < length; ++i) {
+            if (random.nextInt(3) == 0) {
+                name.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+            } else {
+                name.append((char) random.nextInt(Character.MAX_VALUE + 1));
+            }
+        }
+        return name.toString();
+    }
+
+    @Test
+    void testSanitizeMatchesLegacyRegexOnRandomNames() {
+        long seed = System.nanoTime();
+        Random random = new Random(seed);
+        for (int i = 0; i < SAMPLES; ++i) {
+            String name = randomName(random);
+            assertEquals(legacySanitize(name), MongoNames.sanitize(name),
+                    () -> "seed " + seed + ", name " + escape(name));
+        }
+    }
+
+    @Test
+    void testSanitizeReturnsCleanNamesUnchanged() {
+        String clean = "acme_42.sensor-v1_updates";
+        assertSame(clean, MongoNames.sanitize(clean));
+        assertEquals("", MongoNames.sanitize(""));
+    }
+
+    @Test
+    void testResolvedNamesMatchLegacyConcatenation() {
+        Random random = new Random(42);
+        MongoNames names = new MongoNames();
+        for (int i = 0; i < 10_000; ++i) {
+            String company = randomName(random);
+            String compId = randomName(random);
+            String product = randomName(random);
+            String version = randomName(random);
+            String iotId = randomName(random);
+
+            MongoNames.Names resolved = names.resolve(company, compId, product, version, iotId);
+            assertEquals(legacySanitize(company + "_" + compId), resolved.getDatabase());
+            assertEquals(legacySanitize(product + "_" + version + "_iots"), resolved.getProductCollection());
+            assertEquals(legacySanitize(product + "_" + version + "_" + iotId + "_updates"),
+                    resolved.getDeviceUpdateCollection());
+            assertEquals(legacySanitize(product + "_" + version + "_updates_ts"), resolved.getTimeSeriesCollection());
+            assertEquals(resolved.getDeviceUpdateCollection(),
+                    resolved.getUpdateCollection(MongoDBMS.StorageMode.COLLECTION_PER_DEVICE));
+            assertEquals(resolved.getTimeSeriesCollection(),
+                    resolved.getUpdateCollection(MongoDBMS.StorageMode.TIME_SERIES));
+        }
+    }
+
+    @Test
+    void testResolveIsCachedAndBounded() {
+        MongoNames names = new MongoNames(4);
+        MongoNames.Names first = names.resolve("Acme", "1", "Sensor", "1.0", "dev-1");
+        assertSame(first, names.resolve("Acme", "1", "Sensor", "1.0", "dev-1"));
+        assertEquals(1, names.getHits());
+        assertEquals(1, names.getMisses());
+
+        for (int i = 0; i < 100; ++i) {
+            names.resolve("Acme", "1", "Sensor", "1.0", "dev-" + i);
+        }
+        assertTrue(names.size() <= 4);
+    }
+
+    @Test
+    void testCompanyOnlyNamesLeaveCollectionsUnset() {
+        MongoNames.Names resolved = new MongoNames().resolve("Acme Inc", "7", null, null, null);
+        assertEquals("acme_inc_7", resolved.getDatabase());
+        assertNull(resolved.getProductCollection());
+        assertNull(resolved.getDeviceUpdateCollection());
+    }
+
+    private static String escape(String name) {
+        StringBuilder escaped = new StringBuilder();
+        for (char c : name.toCharArray()) {
+            escaped.append((c >= 0x20 && c < 0x7f) ? String.valueOf(c) : String.format("\\u%04x", (int) c));
+        }
+        return escaped.toString();
+    }
+}
@@ -0,0 +1,85 @@
+package dbms;
+
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/* Compares the two update layouts against a real server (MONGO_URI): ingest throughput through the
+ * update batcher, and the latency of reading a device's most recent updates. Each layout gets a
+ * throw-away company database that is dropped at the end.
+ * Usage: StorageLayoutBenchmark [devices] [updates per device] */
+public class StorageLayoutBenchmark {
+    private static final String PRODUCT = "bench_sensor";
+    private static final String VERSION = "1.0";
+    private static final int QUERIES = 2_000;
+    private static final int RECENT_UPDATES = 20;
+
+    public static void main(String[] args) {
+        String connectionString = System.getenv("MONGO_URI");
+        if (connectionString == null) {
+            System.err.println("MONGO_URI is not set.");
+            return;
+        }
+        int devices = (args.length > 0) ? Integer.parseInt(args[0]) : 500;
+        int updatesPerDevice = (args.length > 1) ? Integer.parseInt(args[1]) : 100;
+
+        for (MongoDBMS.StorageMode mode : MongoDBMS.StorageMode.values()) {
+            try (MongoDBMS mongoDBMS = new MongoDBMS(connectionString, mode)) {
+                run(mongoDBMS, mode, devices, updatesPerDevice);
+            }
+        }
+    }
+
+    private static void run(MongoDBMS mongoDBMS, MongoDBMS.StorageMode mode, int devices, int updatesPerDevice) {
+        String company = "bench_layout";
+        String companyId = mode.name().toLowerCase();
+        mongoDBMS.registerCompanyDB(company, companyId);
+        mongoDBMS.registerProductCollection(company, companyId, PRODUCT, VERSION);
+
+        long start = System.nanoTime();
+        for (int device = 0; device < devices; ++device) {
+            mongoDBMS.registerIoTDevice(company, companyId, PRODUCT, VERSION, "device-" + device, null);
+        }
+        long registerNanos = System.nanoTime() - start;
+
+        List<CompletableFuture<Boolean>> writes = new ArrayList<>(devices * updatesPerDevice);
+        start = System.nanoTime();
+        for (int update = 0; update < updatesPerDevice; ++update) {
+            for (int device = 0; device < devices; ++device) {
+                String iotId = "device-" + device;
+                Document updateData = new Document("iot_id", iotId)
+                        .append("temperature", 20 + (update % 10))
+                        .append("status", "ok");
+                writes.add(mongoDBMS.updateIoTDeviceAsync(company, companyId, PRODUCT, VERSION, iotId, updateData)
+                        .toCompletableFuture());
+            }
+        }
+        CompletableFuture.allOf(writes.toArray(new CompletableFuture[0])).join();
+        long ingestNanos = System.nanoTime() - start;
+        long failed = writes.stream().filter(write -> !write.join()).count();
+
+        start = System.nanoTime();
+        for (int query = 0; query < QUERIES; ++query) {
+            String iotId = "device-" + (query % devices);
+            mongoDBMS.findRecentUpdates(company, companyId, PRODUCT, VERSION, iotId, RECENT_UPDATES);
+        }
+        long queryNanos = System.nanoTime() - start;
+
+        String dbName = company + "_" + companyId;
+        int collections = mongoDBMS.getDatabase(dbName).listCollectionNames().into(new ArrayList<>()).size();
+
+        System.out.printf("%s: %d collections, register %,d devices/s, ingest %,d updates/s (%d failed), " +
+                        "recent-updates query %,d us avg%n  %s%n",
+                mode, collections,
+                devices * 1_000_000_000L / registerNanos,
+                writes.size() * 1_000_000_000L / ingestNanos, failed,
+                TimeUnit.NANOSECONDS.toMicros(queryNanos) / QUERIES,
+                mongoDBMS.getUpdateBatcher());
+
+        mongoDBMS.getDatabase(dbName).drop();
+        mongoDBMS.getCollectionCache().invalidateDatabase(dbName);
+    }
+}
@@ -0,0 +1,247 @@
+package dbms;
+
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpdateBatcherTest {
+    private static final long TIMEOUT_SECONDS = 5;
+
+    @Test
+    void testFullBatchIsWrittenWithoutWaitingForLinger() throws Exception {
+        List<Integer> batchSizes = new ArrayList<>();
+        try (UpdateBatcher batcher = new UpdateBatcher((db, coll, docs) -> {
+            synchronized (batchSizes) {
+                batchSizes.add(docs.size());
+            }
+        }, 4, 1, TimeUnit.HOURS, 1)) {
+            List<CompletableFuture<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 8; ++i) {
+                results.add(batcher.add("db", "coll", new BsonDocument("i", new BsonInt32(i))).toCompletableFuture());
+            }
+            for (CompletableFuture<Boolean> result : results) {
+                assertTrue(result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            }
+            synchronized (batchSizes) {
+                assertEquals(List.of(4, 4), batchSizes);
+            }
+            assertEquals(2, batcher.getBatchSizes().getCount());
+            assertEquals(4, batcher.getBatchSizes().getMax());
+        }
+    }
+
+    @Test
+    void testPartialBatchIsWrittenAfterLinger() throws Exception {
+        AtomicInteger writes = new AtomicInteger();
+        try (UpdateBatcher batcher = new UpdateBatcher((db, coll, docs) -> writes.incrementAndGet(),
+                100, 20, TimeUnit.MILLISECONDS, 1)) {
+            CompletableFuture<Boolean> first = batcher.add("db", "coll", new BsonDocument("i", new BsonInt32(1))).toCompletableFuture();
+            CompletableFuture<Boolean> second = batcher.add("db", "coll", new BsonDocument("i", new BsonInt32(2))).toCompletableFuture();
+            assertFalse(first.isDone());
+
+            assertTrue(first.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            assertTrue(second.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            assertEquals(1, writes.get());
+            assertEquals(0, batcher.getPendingBatches());
+        }
+    }
+
+    @Test
+    void testDocumentsAreGroupedByNamespace() throws Exception {
+        Map<String, Integer> written = new ConcurrentHashMap<>();
+        try (UpdateBatcher batcher = new UpdateBatcher(
+                (db, coll, docs) -> written.merge(db + "." + coll, docs.size(), Integer::sum),
+                100, 1, TimeUnit.HOURS, 2)) {
+            List<CompletableFuture<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 6; ++i) {
+                results.add(batcher.add("db", "coll" + (i % 3), new BsonDocument("i", new BsonInt32(i))).toCompletableFuture());
+            }
+            assertEquals(3, batcher.getPendingBatches());
+            batcher.flush();
+            for (CompletableFuture<Boolean> result : results) {
+                assertTrue(result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            }
+            assertEquals(Map.of("db.coll0", 2, "db.coll1", 2, "db.coll2", 2), written);
+        }
+    }
+
+    @Test
+    void testFailedBatchCompletesEveryDocumentWithFalse() throws Exception {
+        try (UpdateBatcher batcher = new UpdateBatcher((db, coll, docs) -> {
+            throw new IllegalStateException("server unavailable");
+        }, 2, 1, TimeUnit.HOURS, 1)) {
+            CompletableFuture<Boolean> first = batcher.add("db", "coll", new BsonDocument("i", new BsonInt32(1))).toCompletableFuture();
+            CompletableFuture<Boolean> second = batcher.add("db", "coll", new BsonDocument("i", new BsonInt32(2))).toCompletableFuture();
+            assertFalse(first.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            assertFalse(second.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void testInFlightBatchesAreBounded() throws Exception {
+        int maxInFlight = 2;
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        UpdateBatcher batcher = new UpdateBatcher((db, coll, docs) -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                release.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+        }, 1, 1, TimeUnit.HOURS, maxInFlight);
+
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 5; ++i) {
+                results.add(batcher.add("db", "coll", new BsonDocument("i", new BsonInt32(i))).toCompletableFuture());
+            }
+        });
+        producer.start();
+
+        // the third full batch has to wait for a writer
+        producer.join(200);
+        assertTrue(producer.isAlive());
+        release.countDown();
+        producer.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+        assertFalse(producer.isAlive());
+
+        for (CompletableFuture<Boolean> result : results) {
+            assertTrue(result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        }
+        assertTrue(maxRunning.get() <= maxInFlight);
+        batcher.close();
+    }
+
+    @Test
+    void testAsyncSinkReleasesPermitWhenStageCompletes() throws Exception {
+        List<CompletableFuture<Void>> acknowledgements = new ArrayList<>();
+        List<String> callers = new ArrayList<>();
+        try (UpdateBatcher batcher = UpdateBatcher.async((db, coll, docs) -> {
+            CompletableFuture<Void> acknowledged = new CompletableFuture<>();
+            synchronized (acknowledgements) {
+                acknowledgements.add(acknowledged);
+                callers.add(Thread.currentThread().getName());
+            }
+            return acknowledged;
+        }, 1, 1, TimeUnit.HOURS, 1)) {
+            CompletableFuture<Boolean> first = batcher.add("db", "coll", new BsonDocument("i", new BsonInt32(1))).toCompletableFuture();
+            assertFalse(first.isDone());
+
+            // the only permit is held until the server acknowledges the first batch
+            CompletableFuture<Boolean> second = CompletableFuture.supplyAsync(
+                    () -> batcher.add("db", "coll", new BsonDocument("i", new BsonInt32(2)))).thenCompose(stage -> stage);
+            Thread.sleep(100);
+            synchronized (acknowledgements) {
+                assertEquals(1, acknowledgements.size());
+                acknowledgements.get(0).complete(null);
+            }
+            assertTrue(first.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+            while (true) {
+                synchronized (acknowledgements) {
+                    if (acknowledgements.size() == 2) {
+                        acknowledgements.get(1).completeExceptionally(new IllegalStateException("server unavailable"));
+                        break;
+                    }
+                }
+                assertTrue(System.nanoTime() < deadline);
+                Thread.sleep(10);
+            }
+            assertFalse(second.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            synchronized (acknowledgements) {
+                assertEquals(Thread.currentThread().getName(), callers.get(0));
+                assertFalse(callers.get(1).startsWith("update-batcher-writer"));
+            }
+        }
+    }
+
+    @Test
+    void testLingerTimerDoesNotWaitForAFreeSlot() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try (UpdateBatcher batcher = new UpdateBatcher((db, coll, docs) -> {
+            try {
+                release.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 100, 10, TimeUnit.MILLISECONDS, 1)) {
+            List<CompletableFuture<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 3; ++i) {
+                results.add(batcher.add("db", "coll" + i, new BsonDocument("i", new BsonInt32(i))).toCompletableFuture());
+                Thread.sleep(30);
+            }
+            // the first batch holds the only slot, the other two were still taken off the timer
+            assertEquals(0, batcher.getPendingBatches());
+            assertFalse(results.get(2).isDone());
+
+            release.countDown();
+            for (CompletableFuture<Boolean> result : results) {
+                assertTrue(result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            }
+        }
+    }
+
+    @Test
+    void testCloseAnswersEveryDocumentAddedConcurrently() throws Exception {
+        for (int round = 0; round < 20; ++round) {
+            UpdateBatcher batcher = new UpdateBatcher((db, coll, docs) -> { }, 8, 1, TimeUnit.MILLISECONDS, 2);
+            List<CompletableFuture<Boolean>> results = new ArrayList<>();
+            CountDownLatch started = new CountDownLatch(1);
+            Thread producer = new Thread(() -> {
+                started.countDown();
+                for (int i = 0; i < 2_000; ++i) {
+                    CompletableFuture<Boolean> result = batcher.add("db", "coll" + (i % 4),
+                            new BsonDocument("i", new BsonInt32(i))).toCompletableFuture();
+                    synchronized (results) {
+                        results.add(result);
+                    }
+                }
+            });
+            producer.start();
+            started.await();
+            batcher.close();
+            producer.join();
+
+            synchronized (results) {
+                for (CompletableFuture<Boolean> result : results) {
+                    result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS); // written or refused, never left open
+                }
+            }
+        }
+    }
+    @Test
+    void testCallbackThatFillsABatchDoesNotWaitForItsOwnSlot() throws Exception {
+        try (UpdateBatcher batcher = new UpdateBatcher((db, coll, docs) -> { }, 1, 1, TimeUnit.HOURS, 1)) {
+            CompletableFuture<Boolean> last = new CompletableFuture<>();
+            AtomicInteger remaining = new AtomicInteger(20);
+            addFromCallback(batcher, remaining, last);
+            // every add() fills a batch and needs the only slot, held by the write that answers it
+            assertTrue(last.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        }
+    }
+
+    private static void addFromCallback(UpdateBatcher batcher, AtomicInteger remaining, CompletableFuture<Boolean> last) {
+        batcher.add("db", "coll", new BsonDocument("i", new BsonInt32(remaining.get()))).thenAccept(written -> {
+            if (remaining.decrementAndGet() == 0) {
+                last.complete(written);
+            } else {
+                addFromCallback(batcher, remaining, last);
+            }
+        });
+    }
+}
@@ -0,0 +1,266 @@
+package gateway.RPS;
+
+import com.google.gson.JsonObject;
+import gateway.RPS.command.CommandHandler;
+import gateway.RPS.threadPool.TenantScheduler;
+import gateway.RPS.threadPool.ThreadPool;
+import gateway.connectionService.iConnection.IConnection;
+import gateway.connectionService.request.Request;
+import gateway.connectionService.server.Handler;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RPSAsyncTest {
+    private static class RecordingHandler implements Handler {
+        private final List<JsonObject> sent = new CopyOnWriteArrayList<>();
+
+        @Override
+        public JsonObject onReceive(IConnection connection) {
+            return null;
+        }
+
+        @Override
+        public boolean onAccept(IConnection connection) {
+            return true;
+        }
+
+        @Override
+        public void send(IConnection connection, JsonObject message) {
+            sent.add(message);
+        }
+    }
+
+    private static final IConnection NO_CONNECTION = new IConnection() {
+        @Override
+        public void send(ByteBuffer buffer) {
+        }
+
+        @Override
+        public ByteBuffer receive() {
+            return null;
+        }
+    };
+
+    private static JsonObject payload(String command) {
+        JsonObject payload = new JsonObject();
+        payload.addProperty("command", command);
+        payload.add("data", new JsonObject());
+        return payload;
+    }
+
+    private static JsonObject status(String status) {
+        JsonObject response = new JsonObject();
+        response.addProperty("status", status);
+        return response;
+    }
+
+    @Test
+    void testStageCompletesWhenCommandAnswersFromAnotherThread() throws Exception {
+        RPS<String, ?, ?> rps = new RPS<>(1);
+        rps.addCommand("Async", request -> () -> new Thread(() -> request.sendResponse(status("done"))).start());
+        RecordingHandler handler = new RecordingHandler();
+
+        JsonObject response = rps.handleAsync(new Request(NO_CONNECTION, handler, payload("Async")))
+                .toCompletableFuture().get(2, TimeUnit.SECONDS);
+
+        assertEquals("done", response.get("status").getAsString());
+        assertEquals(List.of(response), handler.sent);
+    }
+
+    @Test
+    void testStageCompletesWhenSendingTheResponseThrows() throws Exception {
+        RPS<String, ?, ?> rps = new RPS<>(1);
+        rps.addCommand("Async", request -> () -> new Thread(() -> {
+            try {
+                request.sendResponse(status("done"));
+            } catch (IllegalStateException expected) {
+                /* the key was cancelled under the send */
+            }
+        }).start());
+        RecordingHandler handler = new RecordingHandler() {
+            @Override
+            public void send(IConnection connection, JsonObject message) {
+                throw new IllegalStateException("connection gone");
+            }
+        };
+
+        JsonObject response = rps.handleAsync(new Request(NO_CONNECTION, handler, payload("Async")))
+                .toCompletableFuture().get(2, TimeUnit.SECONDS);
+        assertEquals("done", response.get("status").getAsString());
+    }
+
+    @Test
+    void testSharedHandlerGetsEachRequestsCommandData() throws Exception {
+        RPS<String, ?, ?> rps = new RPS<>(1);
+        CommandHandler echo = (request, context) ->
+                request.sendResponse(status(context.getCommandName() + ":" + context.getCommandData().get("n").getAsInt()));
+        rps.addHandler("Echo", echo);
+
+        for (int n = 0; n < 3; ++n) {
+            JsonObject payload = payload("Echo");
+            payload.getAsJsonObject("data").addProperty("n", n);
+            JsonObject response = rps.handleAsync(new Request(NO_CONNECTION, new RecordingHandler(), payload))
+                    .toCompletableFuture().get(2, TimeUnit.SECONDS);
+            assertEquals("Echo:" + n, response.get("status").getAsString());
+        }
+    }
+
+    @Test
+    void testKeyedLanesKeepDeviceOrderWhileOtherDevicesProceed() throws Exception {
+        RPS<String, ?, ?> rps = new RPS<>(2, ThreadPool.SchedulingMode.SHARED_QUEUE, RPS.DispatchMode.KEYED_LANES);
+        CountDownLatch firstWriteLanded = new CountDownLatch(1);
+        List<String> ran = new CopyOnWriteArrayList<>();
+        // answers from another thread once its "write" landed, like the async write backend
+        rps.addHandler("Update", (request, context) -> {
+            String device = context.getCommandData().get("iot_id").getAsString();
+            int n = context.getCommandData().get("n").getAsInt();
+            ran.add(device + "#" + n);
+            if (device.equals("a") && n == 0) {
+                new Thread(() -> {
+                    try {
+                        firstWriteLanded.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    request.sendResponse(status("a#0"));
+                }).start();
+            } else {
+                request.sendResponse(status(device + "#" + n));
+            }
+        });
+
+        CompletionStage<JsonObject> a0 = rps.handleAsync(new Request(NO_CONNECTION, new RecordingHandler(), update("a", 0)));
+        CompletionStage<JsonObject> a1 = rps.handleAsync(new Request(NO_CONNECTION, new RecordingHandler(), update("a", 1)));
+        CompletionStage<JsonObject> b0 = rps.handleAsync(new Request(NO_CONNECTION, new RecordingHandler(), update("b", 0)));
+
+        assertEquals("b#0", b0.toCompletableFuture().get(2, TimeUnit.SECONDS).get("status").getAsString());
+        assertFalse(a1.toCompletableFuture().isDone());
+        assertFalse(ran.contains("a#1"), "a#1 must wait until a#0 answered");
+
+        firstWriteLanded.countDown();
+        assertEquals("a#0", a0.toCompletableFuture().get(2, TimeUnit.SECONDS).get("status").getAsString());
+        assertEquals("a#1", a1.toCompletableFuture().get(2, TimeUnit.SECONDS).get("status").getAsString());
+        assertTrue(ran.indexOf("a#0") < ran.indexOf("a#1"));
+    }
+
+    @Test
+    void testTenantOverItsCapIsAnsweredWithAnError() throws Exception {
+        RPS<String, ?, ?> rps = new RPS<>(2, ThreadPool.SchedulingMode.SHARED_QUEUE, RPS.DispatchMode.ANY_WORKER,
+                new TenantScheduler(2, 1));
+        CountDownLatch release = new CountDownLatch(1);
+        rps.addHandler("Update", (request, context) -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            request.sendResponse(status("ok"));
+        });
+
+        CompletionStage<JsonObject> first = rps.handleAsync(new Request(NO_CONNECTION, new RecordingHandler(), update("a", 0)));
+        // requests are parsed on the workers, so wait for the first to be admitted before the second
+        long deadline = System.currentTimeMillis() + 2000;
+        while (rps.getTenantScheduler().getInFlight("42") == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        JsonObject rejected = rps.handleAsync(new Request(NO_CONNECTION, new RecordingHandler(), update("a", 1)))
+                .toCompletableFuture().get(2, TimeUnit.SECONDS);
+
+        assertEquals("error", rejected.get("status").getAsString());
+        assertEquals(1, rps.getTenantScheduler().getRejected("42"));
+        release.countDown();
+        assertEquals("ok", first.toCompletableFuture().get(2, TimeUnit.SECONDS).get("status").getAsString());
+    }
+
+    @Test
+    void testTenantSlotIsHeldUntilTheCommandAnswers() throws Exception {
+        RPS<String, ?, ?> rps = new RPS<>(2, ThreadPool.SchedulingMode.SHARED_QUEUE, RPS.DispatchMode.ANY_WORKER,
+                new TenantScheduler(2, 1));
+        CountDownLatch handled = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // returns at once and answers once its write is done, like the write-behind backends
+        rps.addHandler("Update", (request, context) -> {
+            new Thread(() -> {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                request.sendResponse(status("ok"));
+            }).start();
+            handled.countDown();
+        });
+
+        CompletionStage<JsonObject> first = rps.handleAsync(new Request(NO_CONNECTION, new RecordingHandler(), update("a", 0)));
+        assertTrue(handled.await(2, TimeUnit.SECONDS));
+        Thread.sleep(50); // the handler has returned
+        JsonObject rejected = rps.handleAsync(new Request(NO_CONNECTION, new RecordingHandler(), update("a", 1)))
+                .toCompletableFuture().get(2, TimeUnit.SECONDS);
+
+        assertEquals("error", rejected.get("status").getAsString());
+        release.countDown();
+        assertEquals("ok", first.toCompletableFuture().get(2, TimeUnit.SECONDS).get("status").getAsString());
+        long deadline = System.currentTimeMillis() + 2000;
+        while (rps.getTenantScheduler().getInFlight("42") != 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(0, rps.getTenantScheduler().getInFlight("42"));
+    }
+
+    private static JsonObject update(String device, int n) {
+        JsonObject payload = payload("Update");
+        payload.getAsJsonObject("data").addProperty("iot_id", device);
+        payload.getAsJsonObject("data").addProperty("company_id", "42");
+        payload.getAsJsonObject("data").addProperty("n", n);
+        return payload;
+    }
+
+    @Test
+    void testUnknownCommandCompletesWithError() throws Exception {
+        RPS<String, ?, ?> rps = new RPS<>(1);
+        JsonObject response = rps.handleAsync(new Request(NO_CONNECTION, new RecordingHandler(), payload("Nope")))
+                .toCompletableFuture().get(2, TimeUnit.SECONDS);
+
+        assertEquals("error", response.get("status").getAsString());
+    }
+
+    @Test
+    void testDeadlineAnswersAndDropsQueuedWork() throws Exception {
+        RPS<String, ?, ?> rps = new RPS<>(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean lateCommandRan = new AtomicBoolean(false);
+        rps.addCommand("Block", request -> () -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            request.sendResponse(status("unblocked"));
+        });
+        rps.addCommand("Late", request -> () -> {
+            lateCommandRan.set(true);
+            request.sendResponse(status("late"));
+        });
+
+        // the only worker is busy, so the second request is still queued when its deadline passes
+        rps.handleAsync(new Request(NO_CONNECTION, new RecordingHandler(), payload("Block")));
+        RecordingHandler lateHandler = new RecordingHandler();
+        JsonObject response = rps.handleAsync(new Request(NO_CONNECTION, lateHandler, payload("Late")),
+                100, TimeUnit.MILLISECONDS).toCompletableFuture().get(2, TimeUnit.SECONDS);
+
+        assertEquals("error", response.get("status").getAsString());
+        release.countDown();
+        Thread.sleep(200);
+        assertFalse(lateCommandRan.get(), "work still queued at the deadline should be dropped");
+        assertEquals(1, lateHandler.sent.size());
+    }
+}
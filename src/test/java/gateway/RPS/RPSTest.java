@@ -61,10 +61,10 @@ class RPSTest {
             System.err.println("Failed to initialize MongoDBMS: " + e.getMessage());
         }
 
-        rps.addCommand("Register Company", request -> new RegisterCompany(request, mongoDBMS));
-        rps.addCommand("Register Product", request -> new RegisterProduct(request, mongoDBMS));
-        rps.addCommand("Register IoT", request -> new RegisterIoT(request, mongoDBMS));
-        rps.addCommand("Update IoT", request -> new UpdateIoT(request, mongoDBMS));
+        rps.addHandler("Register Company", new RegisterCompany());
+        rps.addHandler("Register Product", new RegisterProduct());
+        rps.addHandler("Register IoT", new RegisterIoT());
+        rps.addHandler("Update IoT", new UpdateIoT());
     }
 
     @Test
@@ -120,4 +120,4 @@ class RPSTest {
 
         Thread.sleep(1000);
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
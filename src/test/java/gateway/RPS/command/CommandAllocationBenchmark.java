@@ -0,0 +1,89 @@
+package gateway.RPS.command;
+
+import ch.qos.logback.classic.Level;
+import com.google.gson.JsonObject;
+import gateway.RPS.parser.JsonCommandParser;
+import gateway.connectionService.iConnection.IConnection;
+import gateway.connectionService.request.Request;
+import gateway.connectionService.server.Handler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import utils.Benchmark;
+import utils.Pair;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/* Bytes allocated per message by the built-in commands up to the point they would touch MongoDB. The
+ * payload is missing a mandatory field, so every command validates and answers without a database -
+ * which is the part of the work the shared handlers changed */
+public class CommandAllocationBenchmark {
+    private static final int WARMUP = 100_000;
+    private static final int ITERATIONS = 1_000_000;
+
+    private static final Handler DISCARD = new Handler() {
+        @Override
+        public JsonObject onReceive(IConnection connection) {
+            return null;
+        }
+
+        @Override
+        public boolean onAccept(IConnection connection) {
+            return true;
+        }
+
+        @Override
+        public void send(IConnection connection, JsonObject message) {
+        }
+    };
+
+    private static final IConnection NO_CONNECTION = new IConnection() {
+        @Override
+        public void send(ByteBuffer buffer) {
+        }
+
+        @Override
+        public ByteBuffer receive() {
+            return null;
+        }
+    };
+
+    public static void main(String[] args) throws Exception {
+        // the per-message debug logging and UpdateIoT's duplicate-answer warning would dominate the numbers
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.OFF);
+        System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+
+        Map<String, CommandHandler> handlers = Map.of(
+                "Register IoT", new RegisterIoT(),
+                "Update IoT", new UpdateIoT(),
+                "Register Product", new RegisterProduct());
+        for (Map.Entry<String, CommandHandler> entry : handlers.entrySet()) {
+            JsonObject payload = payload(entry.getKey());
+            Benchmark.Workload workload = iterations -> run(entry.getValue(), payload, iterations);
+            Benchmark.warmUp(WARMUP, workload);
+            Benchmark.report(entry.getKey(), "message", ITERATIONS, workload);
+        }
+    }
+
+    private static JsonObject payload(String command) {
+        JsonObject data = new JsonObject();
+        data.addProperty("iot_id", "device-1");
+        data.addProperty("company_id", "42");
+        JsonObject payload = new JsonObject();
+        payload.addProperty("command", command);
+        payload.add("data", data);
+        return payload;
+    }
+
+    /* Mirrors RPS.dispatch: the payload is parsed once and the context built from it */
+    private static void run(CommandHandler handler, JsonObject payload, int iterations) {
+        JsonCommandParser parser = new JsonCommandParser();
+        for (int i = 0; i < iterations; ++i) {
+            Request request = new Request(NO_CONNECTION, DISCARD, payload);
+            Pair<String, JsonObject> command = parser.parse(request.getJsonPayload());
+            handler.handle(request, new CommandContext(command.getKey(), command.getValue(), null));
+        }
+    }
+}
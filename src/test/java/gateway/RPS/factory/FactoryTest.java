@@ -4,6 +4,8 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 public class FactoryTest {
     private Factory<String, String, Integer> stringFactory;
@@ -53,6 +55,23 @@ public class FactoryTest {
         assertEquals(5, result);
     }
 
+    @Test
+    void addInstanceTest() {
+        Factory<String, String, StringLength> handlers = new Factory<>();
+        StringLength shared = new StringLength();
+        handlers.addInstance("length", shared);
+        assertSame(shared, handlers.create("length", "hello"));
+        assertSame(shared, handlers.create("length", "world"));
+
+        handlers.add("length", input -> new StringLength());
+        StringLength created = handlers.create("length", "hello");
+        assertEquals(5, created.length("hello"));
+        assertNotSame(shared, created);
+
+        handlers.addInstance("length", shared);
+        assertSame(shared, handlers.create("length", "hello"));
+    }
+
     private static Integer calcLength(String input) {
         return (input != null) ? input.length() : 0;
     }
@@ -0,0 +1,201 @@
+package gateway.RPS.threadPool;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyedExecutorTest {
+    private ThreadPool pool;
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) {
+            pool.shutDown();
+        }
+    }
+
+    @Test
+    void testTasksOfOneKeyRunInOrderAndNeverOverlap() throws Exception {
+        pool = new ThreadPool(4);
+        KeyedExecutor executor = new KeyedExecutor(pool);
+        int keys = 4;
+        int tasksPerKey = 200;
+        Map<Integer, List<Integer>> order = new ConcurrentHashMap<>();
+        Map<Integer, AtomicInteger> running = new ConcurrentHashMap<>();
+        AtomicBoolean overlapped = new AtomicBoolean(false);
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+
+        for (int i = 0; i < tasksPerKey; ++i) {
+            for (int key = 0; key < keys; ++key) {
+                int k = key;
+                int sequence = i;
+                results.add(executor.submit(k, () -> {
+                    if (running.computeIfAbsent(k, x -> new AtomicInteger()).incrementAndGet() != 1) {
+                        overlapped.set(true);
+                    }
+                    order.computeIfAbsent(k, x -> new CopyOnWriteArrayList<>()).add(sequence);
+                    running.get(k).decrementAndGet();
+                    return CompletableFuture.completedFuture(sequence);
+                }));
+            }
+        }
+        CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+
+        assertFalse(overlapped.get(), "two tasks of one key ran at the same time");
+        for (int key = 0; key < keys; ++key) {
+            List<Integer> sequence = order.get(key);
+            assertEquals(tasksPerKey, sequence.size());
+            for (int i = 0; i < tasksPerKey; ++i) {
+                assertEquals(i, sequence.get(i));
+            }
+        }
+        // a result completes just before its lane moves on, so the last lanes are dropped a moment later
+        long deadline = System.currentTimeMillis() + 1_000;
+        while (executor.getActiveKeys() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(0, executor.getActiveKeys());
+        assertEquals(0, executor.getQueuedTasks());
+    }
+
+    @Test
+    void testKeyWaitingForItsStageDoesNotHoldTheWorker() throws Exception {
+        pool = new ThreadPool(1);
+        KeyedExecutor executor = new KeyedExecutor(pool);
+        CompletableFuture<String> slowWrite = new CompletableFuture<>();
+        AtomicBoolean secondSlowTaskRan = new AtomicBoolean(false);
+
+        CompletableFuture<String> slow = executor.submit("slow", () -> slowWrite);
+        CompletableFuture<String> queuedBehindSlow = executor.submit("slow", () -> {
+            secondSlowTaskRan.set(true);
+            return CompletableFuture.completedFuture("second");
+        });
+        CompletableFuture<String> other = executor.submit("other", () -> CompletableFuture.completedFuture("other"));
+
+        assertEquals("other", other.get(1, TimeUnit.SECONDS));
+        assertFalse(queuedBehindSlow.isDone());
+        assertFalse(secondSlowTaskRan.get());
+        assertEquals(1, executor.getQueuedTasks());
+
+        slowWrite.complete("first");
+        assertEquals("first", slow.get(1, TimeUnit.SECONDS));
+        assertEquals("second", queuedBehindSlow.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testBlockedKeyDelaysOnlyItself() throws Exception {
+        pool = new ThreadPool(2);
+        KeyedExecutor executor = new KeyedExecutor(pool);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.submit("blocked", () -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return CompletableFuture.completedFuture(null);
+        });
+        for (int i = 0; i < 10; ++i) {
+            executor.submit("blocked", () -> CompletableFuture.completedFuture(null));
+        }
+
+        List<CompletableFuture<Integer>> others = new ArrayList<>();
+        for (int i = 0; i < 50; ++i) {
+            int value = i;
+            others.add(executor.submit("other" + (i % 5), () -> CompletableFuture.completedFuture(value)));
+        }
+        CompletableFuture.allOf(others.toArray(new CompletableFuture[0])).get(2, TimeUnit.SECONDS);
+        assertEquals(10, executor.getQueuedTasks());
+        release.countDown();
+    }
+
+    @Test
+    void testFailuresAndCancelledTasksDoNotStallTheKey() throws Exception {
+        pool = new ThreadPool(1);
+        KeyedExecutor executor = new KeyedExecutor(pool);
+        CompletableFuture<Void> hold = new CompletableFuture<>();
+        AtomicBoolean cancelledTaskRan = new AtomicBoolean(false);
+
+        executor.submit("key", () -> hold);
+        CompletableFuture<Void> failing = executor.submit("key", () -> {
+            throw new IllegalStateException("boom");
+        });
+        CompletableFuture<Void> cancelled = executor.submit("key", () -> {
+            cancelledTaskRan.set(true);
+            return CompletableFuture.completedFuture(null);
+        });
+        CompletableFuture<String> last = executor.submit("key", () -> CompletableFuture.completedFuture("last"));
+
+        cancelled.cancel(false);
+        hold.complete(null);
+
+        assertEquals("last", last.get(1, TimeUnit.SECONDS));
+        ExecutionException error = assertThrows(ExecutionException.class, () -> failing.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, error.getCause());
+        assertFalse(cancelledTaskRan.get());
+    }
+
+    @Test
+    void testLongLaneIsDrainedWithoutRecursing() throws Exception {
+        int waiting = 20_000; // far deeper than a recursive advance could go
+        AtomicBoolean rejecting = new AtomicBoolean(false);
+        // runs on the caller like CALLER_RUNS, or rejects like a saturated REJECT pool
+        KeyedExecutor executor = new KeyedExecutor(task -> {
+            if (rejecting.get()) {
+                throw new RejectedExecutionException("saturated");
+            }
+            task.run();
+        });
+
+        for (boolean reject : new boolean[]{false, true}) {
+            CompletableFuture<Void> hold = new CompletableFuture<>();
+            executor.submit("device", () -> hold);
+            List<CompletableFuture<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < waiting; ++i) {
+                int value = i;
+                results.add(executor.submit("device", () -> CompletableFuture.completedFuture(value)));
+            }
+            rejecting.set(reject);
+            hold.complete(null);
+            rejecting.set(false);
+
+            for (CompletableFuture<Integer> result : results) {
+                assertTrue(result.isDone());
+                assertEquals(reject, result.isCompletedExceptionally());
+            }
+            assertEquals(0, executor.getActiveKeys());
+            assertEquals(0, executor.getQueuedTasks());
+        }
+    }
+
+    @Test
+    void testExecutorFailureFailsOnlyThatTask() throws Exception {
+        AtomicBoolean failing = new AtomicBoolean(false);
+        KeyedExecutor executor = new KeyedExecutor(task -> {
+            if (failing.getAndSet(false)) {
+                throw new IllegalStateException("executor broken");
+            }
+            task.run();
+        });
+
+        CompletableFuture<Void> hold = new CompletableFuture<>();
+        executor.submit("device", () -> hold);
+        CompletableFuture<String> refused = executor.submit("device", () -> CompletableFuture.completedFuture("refused"));
+        CompletableFuture<String> next = executor.submit("device", () -> CompletableFuture.completedFuture("next"));
+        failing.set(true);
+        hold.complete(null); // advances inside the stage callback, where an escaping error would be lost
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> refused.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, error.getCause());
+        assertEquals("next", next.get(1, TimeUnit.SECONDS));
+        assertEquals(0, executor.getActiveKeys());
+    }
+}
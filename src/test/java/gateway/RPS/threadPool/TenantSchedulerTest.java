@@ -0,0 +1,117 @@
+package gateway.RPS.threadPool;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TenantSchedulerTest {
+    /* Records the order tasks are released in - every task completes at once */
+    private static CompletableFuture<Void> record(TenantScheduler scheduler, List<String> started, String tenant, String name) {
+        return scheduler.submit(tenant, () -> {
+            started.add(name);
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    @Test
+    void testFloodingTenantIsInterleavedWithOthers() {
+        TenantScheduler scheduler = new TenantScheduler(1);
+        scheduler.setQuota("a", TenantScheduler.DEFAULT_WEIGHT, TenantScheduler.DEFAULT_MAX_REQUESTS_PER_TENANT); // kept once idle
+        List<String> started = new ArrayList<>();
+        CompletableFuture<Void> hold = new CompletableFuture<>();
+        scheduler.submit("a", () -> hold);
+        for (int i = 1; i <= 5; ++i) {
+            record(scheduler, started, "a", "a" + i);
+        }
+        record(scheduler, started, "b", "b1");
+        record(scheduler, started, "b", "b2");
+        record(scheduler, started, "c", "c1");
+        assertEquals(5, scheduler.getQueueDepth("a"));
+        assertEquals(1, scheduler.getInFlight("a"));
+
+        hold.complete(null);
+
+        assertEquals(List.of("a1", "b1", "c1", "a2", "b2", "a3", "a4", "a5"), started);
+        assertEquals(0, scheduler.getQueueDepth("a"));
+        assertEquals(0, scheduler.getInFlight("a"));
+        assertEquals(6, scheduler.getWaitMicros("a").getCount());
+    }
+
+    @Test
+    void testWeightSetsTheShareOfEachRound() {
+        TenantScheduler scheduler = new TenantScheduler(1);
+        scheduler.setQuota("heavy", 3, TenantScheduler.DEFAULT_MAX_REQUESTS_PER_TENANT);
+        List<String> started = new ArrayList<>();
+        CompletableFuture<Void> hold = new CompletableFuture<>();
+        scheduler.submit("other", () -> hold);
+        for (int i = 1; i <= 6; ++i) {
+            record(scheduler, started, "heavy", "h" + i);
+        }
+        for (int i = 1; i <= 2; ++i) {
+            record(scheduler, started, "light", "l" + i);
+        }
+
+        hold.complete(null);
+
+        assertEquals(List.of("h1", "h2", "h3", "l1", "h4", "h5", "h6", "l2"), started);
+    }
+
+    @Test
+    void testTenantOverItsCapIsRejected() {
+        TenantScheduler scheduler = new TenantScheduler(1, 2);
+        CompletableFuture<Void> hold = new CompletableFuture<>();
+        scheduler.submit("a", () -> hold);
+        scheduler.submit("a", () -> CompletableFuture.completedFuture(null));
+
+        assertThrows(RejectedExecutionException.class,
+                () -> scheduler.submit("a", () -> CompletableFuture.completedFuture(null)));
+        assertEquals(1, scheduler.getRejected("a"));
+        scheduler.submit("b", () -> CompletableFuture.completedFuture(null)); // other tenants are unaffected
+
+        hold.complete(null);
+        assertDoesNotThrow(() -> scheduler.submit("a", () -> CompletableFuture.completedFuture(null)));
+    }
+
+    @Test
+    void testCancelledTasksAreDroppedOrCancelled() {
+        TenantScheduler scheduler = new TenantScheduler(1);
+        CompletableFuture<Void> running = new CompletableFuture<>();
+        AtomicBoolean queuedTaskRan = new AtomicBoolean(false);
+
+        CompletableFuture<Void> first = scheduler.submit("a", () -> running);
+        CompletableFuture<Void> queued = scheduler.submit("a", () -> {
+            queuedTaskRan.set(true);
+            return CompletableFuture.completedFuture(null);
+        });
+        queued.cancel(false);
+        first.cancel(false);
+
+        assertTrue(running.isCancelled());
+        assertFalse(queuedTaskRan.get());
+        assertEquals(0, scheduler.getInFlight("a"));
+        assertEquals(0, scheduler.getQueueDepth("a"));
+    }
+
+    @Test
+    void testIdleTenantsAreForgottenUnlessConfigured() {
+        TenantScheduler scheduler = new TenantScheduler(4);
+        scheduler.setQuota("configured", 2, 10);
+        CompletableFuture<Void> hold = new CompletableFuture<>();
+        scheduler.submit("busy", () -> hold);
+        for (int i = 0; i < 1_000; ++i) {
+            scheduler.submit("company" + i, () -> CompletableFuture.completedFuture(null));
+        }
+        scheduler.submit("configured", () -> CompletableFuture.completedFuture(null));
+
+        assertEquals(List.of("busy", "configured"), scheduler.getTenants().stream().sorted().collect(Collectors.toList()));
+        hold.complete(null);
+        assertEquals(List.of("configured"), scheduler.getTenants());
+    }
+}
@@ -0,0 +1,42 @@
+package gateway.RPS.threadPool;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/* Measures what an idle pool costs (process CPU time while nothing is submitted) and how fast
+ * an idle worker picks up a task (submit to start latency) */
+public class ThreadPoolIdleBenchmark {
+    private static final int NUM_OF_THREADS = 8;
+    private static final long IDLE_MILLIS = 2000;
+    private static final int WAKE_UPS = 500;
+
+    public static void main(String[] args) throws Exception {
+        com.sun.management.OperatingSystemMXBean os =
+                (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        ThreadPool pool = new ThreadPool(NUM_OF_THREADS);
+        Thread.sleep(200); // let the workers start
+
+        long cpuBefore = os.getProcessCpuTime();
+        Thread.sleep(IDLE_MILLIS);
+        long cpuUsed = os.getProcessCpuTime() - cpuBefore;
+        System.out.printf("idle: %d workers used %.2f cores over %d ms%n",
+                NUM_OF_THREADS, (double) cpuUsed / TimeUnit.MILLISECONDS.toNanos(IDLE_MILLIS), IDLE_MILLIS);
+
+        long[] latencies = new long[WAKE_UPS];
+        for (int i = 0; i < WAKE_UPS; ++i) {
+            Thread.sleep(2); // the pool is idle again before every submit
+            long submitted = System.nanoTime();
+            Future<Long> started = pool.submit(System::nanoTime);
+            latencies[i] = started.get() - submitted;
+        }
+        Arrays.sort(latencies);
+        System.out.printf("wake up latency: p50 %d us, p99 %d us, max %d us%n",
+                latencies[WAKE_UPS / 2] / 1000, latencies[WAKE_UPS * 99 / 100] / 1000, latencies[WAKE_UPS - 1] / 1000);
+
+        pool.shutDown();
+        pool.awaitTermination(1, TimeUnit.SECONDS);
+        System.exit(0);
+    }
+}
@@ -62,9 +62,11 @@ class ThreadPoolTest {
         Callable<String> high = () -> { order.add("High"); return "High"; };
         Callable<String> medium = () -> { order.add("Medium"); return "Medium"; };
         Callable<String> low = () -> { order.add("Low"); return "Low"; };
+        singleThreadPool.pause(); // an idle worker wakes up on the first submit - queue all three before it runs
         Future<String> lowFuture = singleThreadPool.submit(low, ThreadPool.TaskPriority.LOW);
         Future<String> highFuture = singleThreadPool.submit(high, ThreadPool.TaskPriority.HIGH);
         Future<String> mediumFuture = singleThreadPool.submit(medium, ThreadPool.TaskPriority.MEDIUM);
+        singleThreadPool.resume();
 
         highFuture.get();
         mediumFuture.get();
@@ -317,4 +319,213 @@ class ThreadPoolTest {
         pool.shutDown();
         assertFalse(pool.awaitTermination(100, TimeUnit.MILLISECONDS));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testWorkStealingNestedTasksAreStolen() throws Exception {
+        ThreadPool stealingPool = new ThreadPool(4, ThreadPool.SchedulingMode.WORK_STEALING);
+        int numOfTasks = 100;
+        CountDownLatch done = new CountDownLatch(numOfTasks);
+
+        stealingPool.execute(() -> {
+            for (int i = 0; i < numOfTasks; ++i) {
+                stealingPool.execute(() -> {
+                    try {
+                        Thread.sleep(2);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    done.countDown();
+                });
+            }
+        });
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(stealingPool.getStealCount() > 0, "Idle workers should steal the nested tasks");
+        stealingPool.shutDown();
+        assertTrue(stealingPool.awaitTermination(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testWorkStealingKeepsPriorityOrder() throws Exception {
+        ThreadPool stealingPool = new ThreadPool(1, ThreadPool.SchedulingMode.WORK_STEALING);
+        List<String> order = new CopyOnWriteArrayList<>();
+
+        Future<Future<?>> last = stealingPool.submit(() -> {
+            stealingPool.submit(() -> order.add("LOW"), ThreadPool.TaskPriority.LOW);
+            stealingPool.submit(() -> order.add("MEDIUM"), ThreadPool.TaskPriority.MEDIUM);
+            return stealingPool.submit(() -> order.add("HIGH"), ThreadPool.TaskPriority.HIGH);
+        });
+        last.get(1, TimeUnit.SECONDS).get(1, TimeUnit.SECONDS);
+        Thread.sleep(100);
+
+        assertEquals(List.of("HIGH", "MEDIUM", "LOW"), order);
+        stealingPool.shutDown();
+    }
+
+    @Test
+    void testWorkStealingCancelLocalTask() throws Exception {
+        ThreadPool stealingPool = new ThreadPool(1, ThreadPool.SchedulingMode.WORK_STEALING);
+        AtomicBoolean ran = new AtomicBoolean(false);
+
+        Future<Boolean> cancelled = stealingPool.submit(() -> {
+            Future<?> nested = stealingPool.submit(() -> ran.set(true), ThreadPool.TaskPriority.LOW);
+            return nested.cancel(false);
+        });
+
+        assertTrue(cancelled.get(1, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertFalse(ran.get());
+        stealingPool.shutDown();
+    }
+
+    @Test
+    void testSubmitAsyncCompletes() throws Exception {
+        CompletableFuture<Integer> stage = pool.submitAsync(() -> 6 * 7, ThreadPool.TaskPriority.HIGH);
+        assertEquals(43, stage.thenApply(value -> value + 1).get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testSubmitAsyncCompletesExceptionally() {
+        CompletableFuture<Object> stage = pool.submitAsync(() -> {
+            throw new IllegalStateException("boom");
+        }, ThreadPool.TaskPriority.MEDIUM);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> stage.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+    }
+
+    @Test
+    void testSubmitAsyncTimeoutDropsQueuedTask() throws Exception {
+        ThreadPool singleThreadPool = new ThreadPool(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean ran = new AtomicBoolean(false);
+        singleThreadPool.execute(() -> {
+            try {
+                release.await(2, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        CompletableFuture<Boolean> stage = singleThreadPool.submitAsync(() -> ran.getAndSet(true),
+                ThreadPool.TaskPriority.LOW, 50, TimeUnit.MILLISECONDS);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> stage.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, e.getCause());
+
+        release.countDown();
+        Thread.sleep(100);
+        assertFalse(ran.get());
+        singleThreadPool.shutDown();
+    }
+
+    /* A single worker blocked on the returned latch, so everything submitted afterwards stays queued */
+    private static CountDownLatch occupyOnlyWorker(ThreadPool pool) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        pool.execute(() -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        return release;
+    }
+
+    @Test
+    void testFullQueueRejectsAndReportsSaturation() throws Exception {
+        ThreadPool bounded = new ThreadPool(1, ThreadPool.SchedulingMode.SHARED_QUEUE, 2, ThreadPool.RejectionPolicy.REJECT);
+        CountDownLatch release = occupyOnlyWorker(bounded);
+        bounded.execute(() -> {});
+        bounded.execute(() -> {});
+
+        assertThrows(RejectedExecutionException.class, () -> bounded.execute(() -> {}));
+        assertEquals(2, bounded.getQueuedTasks());
+        assertEquals(1, bounded.getRejectedCount());
+        assertTrue(bounded.isSaturated());
+
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 1_000;
+        while (bounded.getQueuedTasks() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertFalse(bounded.isSaturated());
+        bounded.shutDown();
+    }
+
+    @Test
+    void testCallerRunsWhenFull() throws Exception {
+        ThreadPool bounded = new ThreadPool(1, ThreadPool.SchedulingMode.SHARED_QUEUE, 1, ThreadPool.RejectionPolicy.CALLER_RUNS);
+        CountDownLatch release = occupyOnlyWorker(bounded);
+        bounded.execute(() -> {});
+
+        CompletableFuture<Thread> ranOn = bounded.submitAsync(Thread::currentThread, ThreadPool.TaskPriority.HIGH);
+        assertTrue(ranOn.isDone());
+        assertSame(Thread.currentThread(), ranOn.get());
+        assertEquals(1, bounded.getCallerRunsCount());
+        release.countDown();
+        bounded.shutDown();
+    }
+
+    @Test
+    void testDropOldestLowMakesRoom() throws Exception {
+        ThreadPool bounded = new ThreadPool(1, ThreadPool.SchedulingMode.SHARED_QUEUE, 2, ThreadPool.RejectionPolicy.DROP_OLDEST_LOW);
+        CountDownLatch release = occupyOnlyWorker(bounded);
+        CompletableFuture<String> oldLow = bounded.submitAsync(() -> "old", ThreadPool.TaskPriority.LOW);
+        CompletableFuture<String> medium = bounded.submitAsync(() -> "medium", ThreadPool.TaskPriority.MEDIUM);
+
+        CompletableFuture<String> high = bounded.submitAsync(() -> "high", ThreadPool.TaskPriority.HIGH);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> oldLow.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        assertEquals(1, bounded.getDroppedCount());
+
+        // no LOW task left to drop
+        assertThrows(RejectedExecutionException.class,
+                () -> bounded.submitAsync(() -> "rejected", ThreadPool.TaskPriority.MEDIUM));
+
+        release.countDown();
+        assertEquals("high", high.get(1, TimeUnit.SECONDS));
+        assertEquals("medium", medium.get(1, TimeUnit.SECONDS));
+        bounded.shutDown();
+    }
+
+    @Test
+    void testBlockWaitsForRoomThenRejects() throws Exception {
+        ThreadPool bounded = new ThreadPool(1, ThreadPool.SchedulingMode.SHARED_QUEUE, 1,
+                ThreadPool.RejectionPolicy.BLOCK, 100, TimeUnit.MILLISECONDS);
+        CountDownLatch release = occupyOnlyWorker(bounded);
+        bounded.execute(() -> {});
+
+        long start = System.nanoTime();
+        assertThrows(RejectedExecutionException.class, () -> bounded.execute(() -> {}));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(90));
+
+        new Thread(() -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            release.countDown();
+        }).start();
+        AtomicBoolean ran = new AtomicBoolean(false);
+        Future<?> admitted = bounded.submit(() -> ran.set(true), ThreadPool.TaskPriority.MEDIUM);
+        admitted.get(1, TimeUnit.SECONDS);
+        assertTrue(ran.get());
+        bounded.shutDown();
+    }
+
+    @Test
+    void testCancelledTaskFreesItsSlot() throws Exception {
+        ThreadPool bounded = new ThreadPool(1, ThreadPool.SchedulingMode.SHARED_QUEUE, 1, ThreadPool.RejectionPolicy.REJECT);
+        CountDownLatch release = occupyOnlyWorker(bounded);
+        CompletableFuture<Integer> queued = bounded.submitAsync(() -> 1, ThreadPool.TaskPriority.MEDIUM);
+        queued.cancel(false);
+
+        assertEquals(0, bounded.getQueuedTasks());
+        assertDoesNotThrow(() -> bounded.execute(() -> {}));
+        release.countDown();
+        bounded.shutDown();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,119 @@
+package gateway.RPS.threadPool.waitablePQ;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WaitableLevelPQTest {
+    private static WaitableLevelPQ<Integer> newQueue() {
+        // the tens digit is the level: 0..29 -> levels 0..2
+        return new WaitableLevelPQ<>(3, element -> element / 10);
+    }
+
+    @Test
+    void testHigherLevelFirstAndFifoWithinLevel() throws InterruptedException {
+        WaitableLevelPQ<Integer> pq = newQueue();
+        pq.enqueue(1);
+        pq.enqueue(21);
+        pq.enqueue(11);
+        pq.enqueue(20);
+        pq.enqueue(2);
+
+        assertEquals(5, pq.size());
+        assertEquals(21, pq.peek());
+        assertEquals(21, pq.dequeue());
+        assertEquals(20, pq.dequeue());
+        assertEquals(11, pq.dequeue());
+        assertEquals(1, pq.dequeue());
+        assertEquals(2, pq.dequeue());
+        assertTrue(pq.isEmpty());
+    }
+
+    @Test
+    void testRemove() throws InterruptedException {
+        WaitableLevelPQ<Integer> pq = newQueue();
+        pq.enqueue(5);
+        pq.enqueue(15);
+
+        assertTrue(pq.remove(15));
+        assertFalse(pq.remove(15));
+        assertEquals(1, pq.size());
+        assertEquals(5, pq.dequeue());
+        assertNull(pq.dequeue(20, TimeUnit.MILLISECONDS), "the removed element's permit must not be handed out");
+    }
+
+    @Test
+    void testLevelOutOfRange() {
+        WaitableLevelPQ<Integer> pq = newQueue();
+        assertThrows(IllegalArgumentException.class, () -> pq.enqueue(30));
+    }
+
+    @Test
+    void testTimedDequeueWakesOnEnqueue() throws InterruptedException {
+        WaitableLevelPQ<Integer> pq = newQueue();
+        Thread producer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            pq.enqueue(7);
+        });
+        producer.start();
+
+        assertEquals(7, pq.dequeue(5, TimeUnit.SECONDS));
+        producer.join();
+    }
+
+    @Test
+    void testConcurrentProducersConsumersAndRemovers() throws InterruptedException {
+        WaitableLevelPQ<Integer> pq = newQueue();
+        int perProducer = 10_000;
+        int numOfProducers = 4;
+        Set<Integer> seen = ConcurrentHashMap.newKeySet();
+        List<Thread> threads = new ArrayList<>();
+
+        for (int p = 0; p < numOfProducers; ++p) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < perProducer; ++i) {
+                    pq.enqueue(i % 30);
+                }
+            }));
+        }
+        for (int c = 0; c < 4; ++c) {
+            threads.add(new Thread(() -> {
+                try {
+                    Integer element;
+                    while ((element = pq.dequeue(200, TimeUnit.MILLISECONDS)) != null) {
+                        seen.add(element);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+        Thread remover = new Thread(() -> {
+            for (int i = 0; i < perProducer; ++i) {
+                pq.remove(i % 30);
+            }
+        });
+        threads.add(remover);
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(pq.isEmpty());
+        assertEquals(0, pq.size());
+        assertNull(pq.dequeue(20, TimeUnit.MILLISECONDS));
+    }
+}
@@ -3,6 +3,8 @@ package gateway.RPS.threadPool.waitablePQ;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.concurrent.TimeUnit;
+
 public class WaitablePQ1Test {
     @Test
     void testEnqueueDequeueSingleThread() throws InterruptedException {
@@ -17,6 +19,32 @@ public class WaitablePQ1Test {
         assertTrue(pq.isEmpty());
     }
 
+    @Test
+    void testTimedDequeueReturnsNullWhenEmpty() throws InterruptedException {
+        WaitablePQ1<Integer> pq = new WaitablePQ1<>();
+        long start = System.nanoTime();
+        assertNull(pq.dequeue(50, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    void testTimedDequeueWakesOnEnqueue() throws InterruptedException {
+        WaitablePQ1<Integer> pq = new WaitablePQ1<>();
+        Thread producer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+                pq.enqueue(7);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+
+        assertEquals(7, pq.dequeue(5, TimeUnit.SECONDS));
+        producer.join();
+        assertTrue(pq.isEmpty());
+    }
+
     @Test
     void testRemove() throws InterruptedException {
         WaitablePQ1<Integer> pq = new WaitablePQ1<>();
@@ -239,4 +267,4 @@ public class WaitablePQ1Test {
 
         assertTrue(pq.isEmpty());
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
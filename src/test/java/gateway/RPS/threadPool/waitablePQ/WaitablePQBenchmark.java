@@ -0,0 +1,138 @@
+package gateway.RPS.threadPool.waitablePQ;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* Throughput of WaitablePQ1, WaitablePQ2 and WaitableLevelPQ with the same number of producer and consumer
+ * threads (1 to 64). Elements carry one of 6 priorities, like the ThreadPool's InternalTaskPriority.
+ * At most MAX_QUEUED elements are queued at once for every implementation, so producers cannot just
+ * run away from the consumers (WaitablePQ2's own bound is set above that and never kicks in) */
+public class WaitablePQBenchmark {
+    private static final int NUM_OF_LEVELS = 6;
+    private static final long RUN_MILLIS = 1000;
+    private static final int MAX_QUEUED = 1024;
+    private static final int PQ2_CAPACITY = MAX_QUEUED * 2;
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32, 64};
+
+    private interface Queue {
+        void enqueue(Integer element) throws InterruptedException;
+        Integer dequeue(long timeout, TimeUnit unit) throws InterruptedException;
+
+        /* Lets consumers blocked without a timeout return once the producers are done */
+        default void releaseConsumers(int consumers) throws InterruptedException {
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        System.out.printf("%-8s %15s %15s %15s%n", "threads", "WaitablePQ1", "WaitablePQ2", "WaitableLevelPQ");
+        for (int threads : THREAD_COUNTS) {
+            System.out.printf("%-8d %,15d %,15d %,15d%n", threads,
+                    measure(threads, pq1()), measure(threads, pq2()), measure(threads, levelPQ()));
+        }
+        System.out.println("(operations per second, one operation = one enqueue + one dequeue)");
+    }
+
+    private static Queue pq1() {
+        WaitablePQ1<Integer> pq = new WaitablePQ1<>();
+        return new Queue() {
+            public void enqueue(Integer element) throws InterruptedException {
+                pq.enqueue(element);
+            }
+
+            public Integer dequeue(long timeout, TimeUnit unit) throws InterruptedException {
+                return pq.dequeue(timeout, unit);
+            }
+        };
+    }
+
+    /* WaitablePQ2 has no timed dequeue - consumers are released with poison values at the end */
+    private static Queue pq2() {
+        WaitablePQ2<Integer> pq = new WaitablePQ2<>(PQ2_CAPACITY, (a, b) -> Integer.compare(b, a));
+        return new Queue() {
+            public void enqueue(Integer element) throws InterruptedException {
+                pq.enqueue(element);
+            }
+
+            public Integer dequeue(long timeout, TimeUnit unit) throws InterruptedException {
+                Integer element = pq.dequeue();
+                return element < 0 ? null : element;
+            }
+
+            public void releaseConsumers(int consumers) throws InterruptedException {
+                for (int i = 0; i < consumers; ++i) {
+                    pq.enqueue(-1);
+                }
+            }
+        };
+    }
+
+    private static Queue levelPQ() {
+        WaitableLevelPQ<Integer> pq = new WaitableLevelPQ<>(NUM_OF_LEVELS, element -> element);
+        return new Queue() {
+            public void enqueue(Integer element) {
+                pq.enqueue(element);
+            }
+
+            public Integer dequeue(long timeout, TimeUnit unit) throws InterruptedException {
+                return pq.dequeue(timeout, unit);
+            }
+        };
+    }
+
+    private static long measure(int threads, Queue queue) throws InterruptedException {
+        AtomicLong dequeued = new AtomicLong();
+        Semaphore queued = new Semaphore(MAX_QUEUED);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads * 2);
+        long[] stopAt = new long[1];
+        Thread[] workers = new Thread[threads * 2];
+
+        for (int i = 0; i < threads; ++i) {
+            workers[i] = new Thread(() -> {
+                try {
+                    start.await();
+                    int level = 0;
+                    while (System.nanoTime() < stopAt[0]) {
+                        if (queued.tryAcquire(10, TimeUnit.MILLISECONDS)) {
+                            queue.enqueue(level);
+                            level = (level + 1) % NUM_OF_LEVELS;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            });
+            workers[threads + i] = new Thread(() -> {
+                try {
+                    start.await();
+                    long count = 0;
+                    while (queue.dequeue(100, TimeUnit.MILLISECONDS) != null) {
+                        queued.release();
+                        if (System.nanoTime() < stopAt[0]) {
+                            ++count; // the drain after the producers stop is not measured
+                        }
+                    }
+                    dequeued.addAndGet(count);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            });
+        }
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        stopAt[0] = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RUN_MILLIS);
+        start.countDown();
+
+        for (int i = 0; i < threads; ++i) {
+            workers[i].join();
+        }
+        queue.releaseConsumers(threads);
+        done.await();
+        return dequeued.get() * 1000 / RUN_MILLIS;
+    }
+}
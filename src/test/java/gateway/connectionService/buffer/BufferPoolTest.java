@@ -0,0 +1,105 @@
+package gateway.connectionService.buffer;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BufferPoolTest {
+    @Test
+    void testLeaseRoundsUpToSizeClassAndReuses() {
+        BufferPool pool = new BufferPool();
+        ByteBuffer first = pool.lease(1500);
+        assertTrue(first.isDirect());
+        assertEquals(4096, first.capacity());
+        assertEquals(4096, pool.getOutstandingBytes());
+
+        pool.release(first);
+        assertEquals(0, pool.getOutstandingBytes());
+
+        ByteBuffer second = pool.lease(3000);
+        assertSame(first, second);
+        assertEquals(0, second.position());
+        assertEquals(1, pool.getHits());
+        assertEquals(1, pool.getMisses());
+    }
+
+    @Test
+    void testReleasedBufferIsSharedAcrossThreadsOnceLocalCacheIsFull() throws InterruptedException {
+        BufferPool pool = new BufferPool(BufferPool.UNLIMITED, 0);
+        ByteBuffer buffer = pool.lease(100);
+        pool.release(buffer);
+
+        AtomicReference<ByteBuffer> leasedElsewhere = new AtomicReference<>();
+        Thread other = new Thread(() -> leasedElsewhere.set(pool.lease(100)));
+        other.start();
+        other.join();
+
+        assertSame(buffer, leasedElsewhere.get());
+    }
+
+    @Test
+    void testDirectCapFallsBackToHeap() {
+        BufferPool pool = new BufferPool(1024, BufferPool.DEFAULT_LOCAL_CACHE_SIZE);
+        ByteBuffer direct = pool.lease(1024);
+        ByteBuffer heap = pool.lease(1024);
+
+        assertTrue(direct.isDirect());
+        assertFalse(heap.isDirect());
+        assertEquals(1, pool.getHeapFallbacks());
+        assertEquals(1024, pool.getDirectBytes());
+
+        pool.release(heap);
+        pool.release(direct);
+        assertEquals(0, pool.getOutstandingBytes());
+    }
+
+    @Test
+    void testCacheOfFinishedThreadReturnsToSharedList() throws InterruptedException {
+        BufferPool pool = new BufferPool(1024, BufferPool.DEFAULT_LOCAL_CACHE_SIZE);
+        Thread worker = new Thread(() -> pool.release(pool.lease(1024))); // left in the worker's cache
+        worker.start();
+        worker.join();
+        worker = null;
+
+        ByteBuffer buffer = null;
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            System.gc();
+            buffer = pool.lease(1024);
+            if (buffer.isDirect()) {
+                break;
+            }
+            pool.release(buffer);
+            Thread.sleep(20);
+        }
+        assertTrue(buffer.isDirect(), "the stranded buffer should be leased again instead of falling back to heap");
+        assertEquals(1024, pool.getDirectBytes());
+        pool.release(buffer);
+    }
+
+    @Test
+    void testOversizedLeaseIsNotPooled() {
+        BufferPool pool = new BufferPool();
+        ByteBuffer large = pool.lease(1024 * 1024);
+        assertFalse(large.isDirect());
+        pool.release(large);
+        assertEquals(0, pool.getOutstandingBytes());
+        assertEquals(0, pool.getDirectBytes());
+    }
+
+    @Test
+    void testUtf8RoundTrip() {
+        BufferPool pool = new BufferPool();
+        String text = "{\"name\":\"\u05e9\u05dc\u05d5\u05dd\",\"emoji\":\"\ud83d\ude00\"}\n";
+        ByteBuffer encoded = pool.encodeUtf8(text);
+        assertEquals(text, BufferPool.decodeUtf8(encoded));
+        assertEquals(0, encoded.position(), "decode must not consume the buffer");
+        assertTrue(encoded.isDirect());
+        ByteBuffer slice = encoded.duplicate().position(1).slice();
+        assertEquals(text.substring(1), BufferPool.decodeUtf8(slice));
+        pool.release(encoded);
+    }
+}
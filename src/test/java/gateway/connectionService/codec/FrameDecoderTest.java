@@ -0,0 +1,181 @@
+package gateway.connectionService.codec;
+
+import org.junit.jupiter.api.Test;
+
+import gateway.connectionService.buffer.BufferPool;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrameDecoderTest {
+    @Test
+    void testNewlineSplitsPipelinedMessages() throws IOException {
+        FrameDecoder decoder = new FrameDecoder(new NewlineDelimitedCodec());
+        decoder.append(bytes("{\"a\":1}\n{\"b\":2}\r\n\n{\"c\":"));
+
+        assertEquals("{\"a\":1}", text(decoder.nextFrame()));
+        assertEquals("{\"b\":2}", text(decoder.nextFrame()));
+        assertNull(decoder.nextFrame());
+
+        decoder.append(bytes("3}\n"));
+        assertEquals("{\"c\":3}", text(decoder.nextFrame()));
+        assertNull(decoder.nextFrame());
+        assertEquals(0, decoder.bufferedBytes());
+    }
+
+    @Test
+    void testNewlineJoinsMessageSplitOverManyReads() throws IOException {
+        FrameDecoder decoder = new FrameDecoder(new NewlineDelimitedCodec(), 16, 1024 * 1024);
+        StringBuilder expected = new StringBuilder("{\"payload\":\"");
+        for (int i = 0; i < 5000; ++i) {
+            expected.append('x');
+        }
+        expected.append("\"}");
+
+        String message = expected + "\n";
+        for (int i = 0; i < message.length(); i += 100) {
+            assertNull(decoder.nextFrame());
+            decoder.append(bytes(message.substring(i, Math.min(message.length(), i + 100))));
+        }
+        assertEquals(expected.toString(), text(decoder.nextFrame()));
+    }
+
+    @Test
+    void testNewlineRejectsOversizedFrame() throws IOException {
+        FrameDecoder decoder = new FrameDecoder(new NewlineDelimitedCodec(8));
+        decoder.append(bytes("0123456789"));
+        assertThrows(IOException.class, decoder::nextFrame);
+    }
+
+    @Test
+    void testLengthPrefixRoundTrip() throws IOException {
+        LengthPrefixedCodec codec = new LengthPrefixedCodec();
+        FrameDecoder decoder = new FrameDecoder(codec);
+        ByteBuffer first = codec.encode(bytes("{\"a\":1}"));
+        ByteBuffer second = codec.encode(bytes("{\"b\":\"with\\nnewline\"}"));
+
+        ByteBuffer stream = ByteBuffer.allocate(first.remaining() + second.remaining());
+        stream.put(first).put(second).flip();
+
+        ByteBuffer partial = stream.duplicate();
+        partial.limit(6);
+        decoder.append(partial);
+        assertNull(decoder.nextFrame());
+
+        stream.position(6);
+        decoder.append(stream);
+        assertEquals("{\"a\":1}", text(decoder.nextFrame()));
+        assertEquals("{\"b\":\"with\\nnewline\"}", text(decoder.nextFrame()));
+        assertNull(decoder.nextFrame());
+    }
+
+    @Test
+    void testLengthPrefixRejectsInvalidLength() throws IOException {
+        FrameDecoder decoder = new FrameDecoder(new LengthPrefixedCodec(16));
+        ByteBuffer header = ByteBuffer.allocate(4);
+        header.putInt(17).flip();
+        decoder.append(header);
+        assertThrows(IOException.class, decoder::nextFrame);
+    }
+
+    @Test
+    void testDecoderRejectsBufferOverflow() {
+        FrameDecoder decoder = new FrameDecoder(new LengthPrefixedCodec(), 4, 8);
+        assertThrows(IOException.class, () -> decoder.append(bytes("0123456789")));
+    }
+
+    @Test
+    void testNewlineEncodeAddsSingleDelimiter() {
+        NewlineDelimitedCodec codec = new NewlineDelimitedCodec();
+        assertEquals("{}\n", text(codec.encode(bytes("{}"))));
+        assertEquals("{}\n", text(codec.encode(bytes("{}\n"))));
+    }
+
+    @Test
+    void testJsonStreamCutsUnterminatedObjects() throws IOException {
+        FrameDecoder decoder = new FrameDecoder(new JsonStreamCodec());
+        decoder.append(bytes("{\"a\":{\"b\":\"}\\\"{\"}}{\"c\":[1,"));
+
+        assertEquals("{\"a\":{\"b\":\"}\\\"{\"}}", text(decoder.nextFrame()));
+        assertNull(decoder.nextFrame());
+
+        decoder.append(bytes("2]}\n  {\"d\":4}"));
+        assertEquals("{\"c\":[1,2]}", text(decoder.nextFrame()));
+        assertEquals("{\"d\":4}", text(decoder.nextFrame()));
+        assertNull(decoder.nextFrame());
+        assertEquals(0, decoder.bufferedBytes());
+    }
+
+    @Test
+    void testJsonStreamHandsOnGarbageAndRejectsOversizedFrame() throws IOException {
+        FrameDecoder decoder = new FrameDecoder(new JsonStreamCodec(8));
+        decoder.append(bytes("oops{}"));
+        assertEquals("oops", text(decoder.nextFrame()));
+        assertEquals("{}", text(decoder.nextFrame()));
+
+        decoder.append(bytes("{\"open\":\"forever"));
+        assertThrows(IOException.class, decoder::nextFrame);
+    }
+
+    @Test
+    void testJsonStreamAnswersUnterminatedGarbageAtOnce() throws IOException {
+        FrameDecoder decoder = new FrameDecoder(new JsonStreamCodec());
+        decoder.append(bytes("hello"));
+        assertEquals("hello", text(decoder.nextFrame()));
+        assertNull(decoder.nextFrame());
+
+        decoder.append(bytes(" 42"));
+        assertEquals("42", text(decoder.nextFrame()));
+        assertEquals(0, decoder.bufferedBytes());
+    }
+
+    @Test
+    void testPooledDecoderReadsInPlaceAndHandsOutViews() throws IOException {
+        BufferPool pool = new BufferPool();
+        FrameDecoder decoder = new FrameDecoder(new NewlineDelimitedCodec(), pool);
+        ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream(
+                "{\"a\":1}\n{\"b\":2}\n".getBytes(StandardCharsets.UTF_8)));
+
+        assertTrue(decoder.readFrom(channel) > 0);
+        ByteBuffer first = decoder.nextFrame();
+        assertTrue(first.isDirect(), "a frame is a view of the leased buffer, not a heap copy");
+        assertEquals("{\"a\":1}", BufferPool.decodeUtf8(first));
+        assertEquals("{\"b\":2}", BufferPool.decodeUtf8(decoder.nextFrame()));
+        assertNull(decoder.nextFrame());
+
+        decoder.release();
+        assertEquals(0, pool.getOutstandingBytes());
+    }
+
+    @Test
+    void testEncodeIntoPoolCopiesOnlyWhenFraming() {
+        BufferPool pool = new BufferPool();
+        ByteBuffer terminated = pool.encodeUtf8("{}\n");
+        assertSame(terminated, new NewlineDelimitedCodec().encode(terminated, pool));
+        assertSame(terminated, new JsonStreamCodec().encode(terminated, pool));
+
+        ByteBuffer framed = new LengthPrefixedCodec().encode(terminated, pool);
+        assertNotSame(terminated, framed);
+        assertTrue(framed.isDirect());
+        assertEquals(3, framed.getInt(0));
+        assertEquals(3, terminated.remaining(), "the payload is left for its owner");
+        pool.release(framed);
+        pool.release(terminated);
+        assertEquals(0, pool.getOutstandingBytes());
+    }
+
+    private static ByteBuffer bytes(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String text(ByteBuffer buffer) {
+        assertNotNull(buffer);
+        return StandardCharsets.UTF_8.decode(buffer).toString();
+    }
+}
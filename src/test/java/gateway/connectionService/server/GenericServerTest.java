@@ -0,0 +1,306 @@
+package gateway.connectionService.server;
+
+import com.google.gson.JsonObject;
+import gateway.connectionService.buffer.BufferPool;
+import gateway.connectionService.codec.NewlineDelimitedCodec;
+import gateway.connectionService.iConnection.IConnection;
+import gateway.connectionService.iConnection.IConnectionTCP;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GenericServerTest {
+    private static class CountingHandler implements Handler {
+        private final AtomicInteger received = new AtomicInteger();
+
+        @Override
+        public JsonObject onReceive(IConnection connection) throws IOException {
+            while (connection.receive() != null) {
+                received.incrementAndGet();
+            }
+            return null;
+        }
+
+        @Override
+        public boolean onAccept(IConnection connection) {
+            return true;
+        }
+
+        @Override
+        public void send(IConnection connection, JsonObject message) {
+        }
+    }
+
+    @Test
+    void testConnectionsAreSpreadOverReactors() throws Exception {
+        int port = findFreePort();
+        int numOfReactors = 4;
+        CountingHandler handler = new CountingHandler();
+        GenericServer server = new GenericServer(handler, numOfReactors, GenericServer.ReactorSelection.ROUND_ROBIN);
+        server.registerTCP(port, "localhost");
+
+        Thread serverThread = new Thread(server::start);
+        serverThread.setDaemon(true);
+        serverThread.start();
+
+        List<SocketChannel> clients = new ArrayList<>();
+        try {
+            for (int i = 0; i < numOfReactors * 2; ++i) {
+                clients.add(connect(port));
+            }
+            for (SocketChannel client : clients) {
+                client.write(ByteBuffer.wrap("{\"command\":\"ping\"}\n".getBytes(StandardCharsets.UTF_8)));
+            }
+
+            long deadline = System.currentTimeMillis() + 2000;
+            while (handler.received.get() < clients.size() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+
+            assertEquals(clients.size(), handler.received.get());
+            List<GenericServer.ReactorStats> stats = server.getReactorStats();
+            assertEquals(numOfReactors, stats.size());
+            for (GenericServer.ReactorStats reactorStats : stats) {
+                assertEquals(2, reactorStats.getAccepted(), "Round robin should give every reactor two connections");
+                assertTrue(reactorStats.getReads() >= 2);
+            }
+        } finally {
+            for (SocketChannel client : clients) {
+                client.close();
+            }
+        }
+    }
+
+    private static class EchoHandler implements Handler {
+        private final AtomicReference<IConnectionTCP> connection = new AtomicReference<>();
+
+        @Override
+        public JsonObject onReceive(IConnection connection) throws IOException {
+            ByteBuffer frame;
+            while ((frame = connection.receive()) != null) {
+                connection.send(frame);
+            }
+            return null;
+        }
+
+        @Override
+        public boolean onAccept(IConnection connection) {
+            this.connection.set((IConnectionTCP) connection);
+            return true;
+        }
+
+        @Override
+        public void send(IConnection connection, JsonObject message) {
+        }
+    }
+
+    @Test
+    void testSlowReaderPausesReadsAndReceivesEveryResponse() throws Exception {
+        int port = findFreePort();
+        EchoHandler handler = new EchoHandler();
+        GenericServer server = new GenericServer(handler, 1, GenericServer.ReactorSelection.ROUND_ROBIN);
+        server.setWriteHighWaterMark(16 * 1024);
+        server.setFrameCodec(NewlineDelimitedCodec::new); // the lines are not JSON
+        server.registerTCP(port, "localhost");
+
+        Thread serverThread = new Thread(server::start);
+        serverThread.setDaemon(true);
+        serverThread.start();
+
+        int numOfLines = 8000;
+        String padding = "x".repeat(1000);
+        SocketChannel client = connect(port, 32 * 1024);
+        try {
+            Thread writer = new Thread(() -> {
+                try {
+                    for (int i = 0; i < numOfLines; ++i) {
+                        ByteBuffer line = ByteBuffer.wrap((i + ":" + padding + "\n").getBytes(StandardCharsets.UTF_8));
+                        while (line.hasRemaining()) {
+                            client.write(line);
+                        }
+                    }
+                } catch (IOException e) {
+                    /* reported by the missing responses */
+                }
+            });
+            writer.setDaemon(true);
+            writer.start();
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while ((handler.connection.get() == null || !handler.connection.get().isReadPaused())
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(handler.connection.get().isReadPaused(), "Reading should pause while responses back up");
+
+            ByteBuffer readBuffer = ByteBuffer.allocate(64 * 1024);
+            StringBuilder pending = new StringBuilder();
+            int receivedLines = 0;
+            deadline = System.currentTimeMillis() + 10000;
+            while (receivedLines < numOfLines && System.currentTimeMillis() < deadline) {
+                readBuffer.clear();
+                if (client.read(readBuffer) == -1) {
+                    break;
+                }
+                readBuffer.flip();
+                pending.append(StandardCharsets.UTF_8.decode(readBuffer));
+                int newline;
+                while ((newline = pending.indexOf("\n")) != -1) {
+                    assertEquals(receivedLines + ":" + padding, pending.substring(0, newline));
+                    pending.delete(0, newline + 1);
+                    ++receivedLines;
+                }
+            }
+            assertEquals(numOfLines, receivedLines);
+            assertFalse(handler.connection.get().isReadPaused());
+            assertEquals(0, handler.connection.get().getQueuedBytes());
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    void testOverloadSignalSuspendsReads() throws Exception {
+        int port = findFreePort();
+        CountingHandler handler = new CountingHandler();
+        AtomicBoolean overloaded = new AtomicBoolean(false);
+        GenericServer server = new GenericServer(handler, 1, GenericServer.ReactorSelection.ROUND_ROBIN);
+        server.setOverloadSignal(overloaded::get);
+        server.registerTCP(port, "localhost");
+
+        Thread serverThread = new Thread(server::start);
+        serverThread.setDaemon(true);
+        serverThread.start();
+
+        SocketChannel client = connect(port);
+        SocketChannel lateClient = null;
+        try {
+            ByteBuffer ping = ByteBuffer.wrap("{\"command\":\"ping\"}\n".getBytes(StandardCharsets.UTF_8));
+            client.write(ping.duplicate());
+            awaitReceived(handler, 1);
+
+            overloaded.set(true);
+            client.write(ping.duplicate());
+            lateClient = connect(port); // accepted while suspended, starts suspended
+            lateClient.write(ping.duplicate());
+            Thread.sleep(200);
+            assertEquals(1, handler.received.get());
+            assertEquals(2, server.getReadSuspensions()); // the reactor's selector and the acceptor's
+
+            overloaded.set(false);
+            awaitReceived(handler, 3);
+        } finally {
+            client.close();
+            if (lateClient != null) {
+                lateClient.close();
+            }
+        }
+    }
+
+    @Test
+    void testDefaultCodecAcceptsUnterminatedJson() throws Exception {
+        int port = findFreePort();
+        CountingHandler handler = new CountingHandler();
+        GenericServer server = new GenericServer(handler, 1, GenericServer.ReactorSelection.ROUND_ROBIN);
+        server.registerTCP(port, "localhost");
+
+        Thread serverThread = new Thread(server::start);
+        serverThread.setDaemon(true);
+        serverThread.start();
+
+        SocketChannel client = connect(port);
+        try {
+            // one object per write and no terminator, as clients wrote before framing existed
+            client.write(ByteBuffer.wrap("{\"command\":\"ping\"}".getBytes(StandardCharsets.UTF_8)));
+            awaitReceived(handler, 1);
+            client.write(ByteBuffer.wrap("{\"command\":\"ping\"}".getBytes(StandardCharsets.UTF_8)));
+            awaitReceived(handler, 2);
+        } finally {
+            client.close();
+        }
+    }
+
+    private static void awaitReceived(CountingHandler handler, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (handler.received.get() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, handler.received.get());
+    }
+
+    @Test
+    void testSendOnCancelledKeyReleasesTheResponse() throws Exception {
+        BufferPool pool = new BufferPool();
+        try (ServerSocketChannel listener = ServerSocketChannel.open();
+             Selector selector = Selector.open()) {
+            listener.bind(new InetSocketAddress("localhost", 0));
+            try (SocketChannel client = SocketChannel.open(listener.getLocalAddress());
+                 SocketChannel accepted = listener.accept()) {
+                accepted.configureBlocking(false);
+                IConnectionTCP connection = new IConnectionTCP(accepted, new NewlineDelimitedCodec(), pool);
+                SelectionKey key = accepted.register(selector, SelectionKey.OP_READ);
+                connection.attach(key, IConnectionTCP.DEFAULT_HIGH_WATER_MARK);
+                long decoderBytes = pool.getOutstandingBytes();
+
+                key.cancel(); // closing - the reactor may already have discarded what was queued
+                assertThrows(IOException.class, () -> connection.sendLeased(pool.encodeUtf8("{}\n"), pool));
+                assertEquals(decoderBytes, pool.getOutstandingBytes());
+                assertEquals(0, connection.getQueuedBytes());
+            }
+        }
+    }
+
+    @Test
+    void testSingleSelectorModeHasNoReactors() throws IOException {
+        GenericServer server = new GenericServer(new CountingHandler());
+        assertEquals(0, server.getNumOfReactors());
+        assertTrue(server.getReactorStats().isEmpty());
+    }
+
+    private static SocketChannel connect(int port) throws Exception {
+        return connect(port, 0);
+    }
+
+    /* receiveBufferSize of 0 keeps the system default */
+    private static SocketChannel connect(int port, int receiveBufferSize) throws Exception {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (true) {
+            SocketChannel client = SocketChannel.open();
+            try {
+                if (receiveBufferSize > 0) {
+                    client.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+                }
+                client.connect(new InetSocketAddress("localhost", port));
+                return client;
+            } catch (IOException e) {
+                client.close();
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(20);
+            }
+        }
+    }
+
+    private static int findFreePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
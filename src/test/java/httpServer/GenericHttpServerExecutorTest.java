@@ -0,0 +1,77 @@
+package httpServer;
+
+import com.google.gson.JsonObject;
+import gateway.connectionService.iConnection.IConnectionJson;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GenericHttpServerExecutorTest {
+    private static final int NUM_OF_REQUESTS = 4;
+
+    @Test
+    void testPlatformPoolRunsExchangesConcurrently() throws Exception {
+        assertConcurrent(GenericHttpServer.ExecutorMode.PLATFORM_POOL);
+    }
+
+    @Test
+    void testVirtualThreadsRunExchangesConcurrently() throws Exception {
+        assertConcurrent(GenericHttpServer.ExecutorMode.VIRTUAL_THREADS);
+    }
+
+    @Test
+    void testVirtualThreadsFallBackBeforeJdk21() {
+        GenericHttpServer server = new GenericHttpServer("localhost", 0, GenericHttpServer.ExecutorMode.VIRTUAL_THREADS);
+        try {
+            boolean supported = Runtime.version().feature() >= 21;
+            assertEquals(supported ? GenericHttpServer.ExecutorMode.VIRTUAL_THREADS : GenericHttpServer.ExecutorMode.PLATFORM_POOL,
+                    server.getExecutorMode());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    /* Every exchange blocks until all of them have arrived - that only completes if they run in parallel */
+    private static void assertConcurrent(GenericHttpServer.ExecutorMode mode) throws Exception {
+        CountDownLatch allArrived = new CountDownLatch(NUM_OF_REQUESTS);
+        Pair pair = new Pair(connection -> true, connection -> {
+            allArrived.countDown();
+            JsonObject response = new JsonObject();
+            try {
+                response.addProperty("concurrent", allArrived.await(5, TimeUnit.SECONDS));
+                ((IConnectionJson) connection).sendJson(response);
+            } catch (InterruptedException | IOException e) {
+                fail(e);
+            }
+        });
+
+        GenericHttpServer server = new GenericHttpServer("localhost", 0, mode, NUM_OF_REQUESTS, 16);
+        server.addRoute("/test", Map.of(Method.GET, pair));
+        server.start();
+        try {
+            HttpClient client = HttpClient.newHttpClient();
+            URI uri = URI.create("http://localhost:" + server.getAddress().getPort() + "/test");
+            List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+            for (int i = 0; i < NUM_OF_REQUESTS; ++i) {
+                responses.add(client.sendAsync(HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.ofString()));
+            }
+            for (CompletableFuture<HttpResponse<String>> response : responses) {
+                assertTrue(response.get(10, TimeUnit.SECONDS).body().contains("\"concurrent\":true"));
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package httpServer;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import utils.Benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+/* Compares the per request JSON work of the old HTTP ingest path (parse, re-serialize, parse again in the
+ * validator, re-serialize and parse a third time in the protocol, parse the response for its content type)
+ * with the current one (a single streaming parse, the response serialized once) */
+public class JsonIngestBenchmark {
+    private static final int WARMUP = 50_000;
+    private static final int ITERATIONS = 200_000;
+
+    private static final byte[] BODY = ("{\"command\":\"update_iot\",\"data\":{\"company_id\":\"acme\"," +
+            "\"product_id\":\"thermo\",\"version\":\"1.2\",\"iot_id\":\"device-42\"," +
+            "\"update\":{\"temperature\":21.5,\"humidity\":40,\"status\":\"ok\"}}}").getBytes(StandardCharsets.UTF_8);
+
+    private static volatile Object sink;
+
+    public static void main(String[] args) throws Exception {
+        Benchmark.Workload oldPath = iterations -> {
+            for (int i = 0; i < iterations; ++i) {
+                sink = oldPath();
+            }
+        };
+        Benchmark.Workload newPath = iterations -> {
+            for (int i = 0; i < iterations; ++i) {
+                sink = newPath();
+            }
+        };
+        Benchmark.warmUp(WARMUP, oldPath, newPath);
+        Benchmark.report("old path", "request", ITERATIONS, oldPath);
+        Benchmark.report("new path", "request", ITERATIONS, newPath);
+    }
+
+    private static String oldPath() throws IOException {
+        JsonObject parsed = JsonParser.parseString(readBody()).getAsJsonObject();     // HttpRequestHandler
+        JsonObject request = new JsonObject();
+        parsed.entrySet().forEach(entry -> request.add(entry.getKey(), entry.getValue()));
+        String received = request.toString();                                          // IConnectionHTTP.receive
+        JsonObject validated = JsonParser.parseString(received).getAsJsonObject();     // POST validator
+        sink = validated;
+        JsonObject payload = JsonParser.parseString(request.toString()).getAsJsonObject(); // ConnectionProtocol
+        String response = response(payload).toString() + "\n";
+        sink = JsonParser.parseString(response).getAsJsonObject();                     // IConnectionHTTP.send
+        return response;
+    }
+
+    private static String newPath() throws IOException {
+        JsonObject payload;
+        try (Reader reader = new InputStreamReader(new ByteArrayInputStream(BODY), StandardCharsets.UTF_8)) {
+            payload = JsonParser.parseReader(reader).getAsJsonObject();
+        }
+        return response(payload).toString() + "\n";
+    }
+
+    private static String readBody() throws IOException {
+        StringBuilder body = new StringBuilder();
+        try (Reader reader = new InputStreamReader(new ByteArrayInputStream(BODY), StandardCharsets.UTF_8)) {
+            char[] chunk = new char[512];
+            int read;
+            while ((read = reader.read(chunk)) != -1) {
+                body.append(chunk, 0, read);
+            }
+        }
+        return body.toString();
+    }
+
+    private static JsonObject response(JsonObject request) {
+        JsonObject response = new JsonObject();
+        response.addProperty("status", "success");
+        response.addProperty("iot_id", request.getAsJsonObject("data").get("iot_id").getAsString());
+        return response;
+    }
+}
@@ -0,0 +1,101 @@
+package mediator;
+
+import com.google.gson.JsonObject;
+import dbms.MongoDBMS;
+import gateway.RPS.command.Command;
+import gateway.connectionService.request.Request;
+import org.junit.jupiter.api.Test;
+
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandConstructorsTest {
+    private static final Request REQUEST = new Request(null, null, new JsonObject());
+
+    public static class WithDbms implements Command {
+        final Request request;
+        final MongoDBMS mongoDBMS;
+
+        public WithDbms(Request request, MongoDBMS mongoDBMS) {
+            this.request = request;
+            this.mongoDBMS = mongoDBMS;
+        }
+
+        // never preferred over the (Request, MongoDBMS) constructor
+        public WithDbms(Request request) {
+            this(null, null);
+        }
+
+        @Override
+        public void execute() {
+        }
+    }
+
+    public static class RequestOnly implements Command {
+        final Request request;
+
+        public RequestOnly(Request request) {
+            this.request = request;
+        }
+
+        @Override
+        public void execute() {
+        }
+    }
+
+    public static class NoArgs implements Command {
+        @Override
+        public void execute() {
+        }
+    }
+
+    public static class Failing implements Command {
+        public Failing(Request request) {
+            throw new IllegalStateException("bad request");
+        }
+
+        @Override
+        public void execute() {
+        }
+    }
+
+    public static class WrongConstructor implements Command {
+        public WrongConstructor(String name) {
+        }
+
+        @Override
+        public void execute() {
+        }
+    }
+
+    @Test
+    void testEveryStrategyPicksTheRichestConstructor() {
+        for (CommandConstructors.Strategy strategy : CommandConstructors.Strategy.values()) {
+            Function<Request, Command> create = CommandConstructors.compile(WithDbms.class, null, strategy);
+            Command command = create.apply(REQUEST);
+            assertTrue(command instanceof WithDbms, strategy.name());
+            assertSame(REQUEST, ((WithDbms) command).request, strategy.name());
+
+            RequestOnly requestOnly = (RequestOnly) CommandConstructors.compile(RequestOnly.class, null, strategy).apply(REQUEST);
+            assertSame(REQUEST, requestOnly.request, strategy.name());
+
+            Function<Request, Command> noArgs = CommandConstructors.compile(NoArgs.class, null, strategy);
+            assertNotSame(noArgs.apply(REQUEST), noArgs.apply(REQUEST), strategy.name());
+        }
+    }
+
+    @Test
+    void testConstructorExceptionsReachTheCaller() {
+        Function<Request, Command> create = CommandConstructors.compile(Failing.class, null);
+        assertThrows(IllegalStateException.class, () -> create.apply(REQUEST));
+        Function<Request, Command> handle = CommandConstructors.compile(Failing.class, null, CommandConstructors.Strategy.METHOD_HANDLE);
+        assertThrows(IllegalStateException.class, () -> handle.apply(REQUEST));
+    }
+
+    @Test
+    void testUnsupportedClassesAreRejectedWhenCompiled() {
+        assertThrows(IllegalArgumentException.class, () -> CommandConstructors.compile(WrongConstructor.class, null));
+        assertThrows(IllegalArgumentException.class, () -> CommandConstructors.compile(String.class, null));
+    }
+}
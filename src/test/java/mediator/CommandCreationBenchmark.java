@@ -0,0 +1,75 @@
+package mediator;
+
+import com.google.gson.JsonObject;
+import gateway.RPS.command.Command;
+import gateway.connectionService.request.Request;
+import utils.Benchmark;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/* Per request cost of creating a plugin command: the former per-request getConstructor with its
+ * NoSuchMethodException fallback chain, and the factories CommandConstructors binds once - reflective
+ * newInstance, MethodHandle and LambdaMetafactory. The built-in path (a plain constructor lambda as in
+ * RPS.initializeFactoryCommands) is the baseline */
+public class CommandCreationBenchmark {
+    private static final int WARMUP = 2_000_000;
+    private static final int ITERATIONS = 20_000_000;
+    private static final Request REQUEST = new Request(null, null, new JsonObject());
+
+    private static volatile Object sink;
+
+    /* Only has the (Request) constructor, so the old lookup threw once before finding it */
+    public static class PluginCommand implements Command {
+        private final Request request;
+
+        public PluginCommand(Request request) {
+            this.request = request;
+        }
+
+        @Override
+        public void execute() {
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, Function<Request, Command>> factories = new LinkedHashMap<>();
+        factories.put("built-in lambda", PluginCommand::new);
+        for (CommandConstructors.Strategy strategy : CommandConstructors.Strategy.values()) {
+            factories.put(strategy.name(), CommandConstructors.compile(PluginCommand.class, null, strategy));
+        }
+        Benchmark.Workload lookup = iterations -> run(CommandCreationBenchmark::lookupPerRequest, iterations);
+        Map<String, Benchmark.Workload> workloads = new LinkedHashMap<>();
+        for (Map.Entry<String, Function<Request, Command>> factory : factories.entrySet()) {
+            workloads.put(factory.getKey(), iterations -> run(factory.getValue(), iterations));
+        }
+
+        // every factory goes through run()'s one call site - warm them all before measuring any
+        Benchmark.warmUp(WARMUP / 20, lookup);
+        Benchmark.warmUp(WARMUP, workloads.values().toArray(new Benchmark.Workload[0]));
+        Benchmark.report("per-request lookup", "command", ITERATIONS / 20, lookup);
+        for (Map.Entry<String, Benchmark.Workload> workload : workloads.entrySet()) {
+            Benchmark.report(workload.getKey(), "command", ITERATIONS, workload.getValue());
+        }
+    }
+
+    private static void run(Function<Request, Command> create, int iterations) {
+        for (int i = 0; i < iterations; ++i) {
+            sink = create.apply(REQUEST);
+        }
+    }
+
+    /* What Mediator.add registered before */
+    private static Command lookupPerRequest(Request request) {
+        try {
+            try {
+                return (Command) PluginCommand.class.getConstructor(Request.class, dbms.MongoDBMS.class).newInstance(request, null);
+            } catch (NoSuchMethodException e) {
+                return (Command) PluginCommand.class.getConstructor(Request.class).newInstance(request);
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package utils;
+
+import java.lang.management.ManagementFactory;
+
+/* Shared harness of the main-based benchmarks under src/test - the build has no JMH. A benchmark
+ * supplies its workloads, warms every one of them up first and then reports each, so the JIT has
+ * seen all of them before any is measured. CPU time and allocation are read for the calling thread
+ * only, so a workload that hands work to other threads is not measured fully */
+public final class Benchmark {
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @FunctionalInterface
+    public interface Workload {
+        void run(int iterations) throws Exception;
+    }
+
+    private Benchmark() {
+    }
+
+    public static void warmUp(int iterations, Workload... workloads) throws Exception {
+        for (Workload workload : workloads) {
+            workload.run(iterations);
+        }
+    }
+
+    /* Runs the workload and prints its CPU time and allocated bytes per iteration, e.g.
+     * "old path: 1,234 ns CPU and 567 bytes allocated per update" */
+    public static void report(String name, String unit, int iterations, Workload workload) throws Exception {
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+        long cpuBefore = THREADS.getCurrentThreadCpuTime();
+        workload.run(iterations);
+        long cpu = THREADS.getCurrentThreadCpuTime() - cpuBefore;
+        long allocated = THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        System.out.printf("%s: %,d ns CPU and %,d bytes allocated per %s%n",
+                name, cpu / iterations, allocated / iterations, unit);
+    }
+}
@@ -0,0 +1,126 @@
+package website_backend;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GatewayNotifierTest {
+    private static final long TIMEOUT_MILLIS = 5_000;
+
+    /* Transport whose responses the test completes by hand */
+    private static class ManualTransport implements GatewayNotifier.Transport {
+        final List<String> payloads = new ArrayList<>();
+        final List<CompletableFuture<Integer>> responses = new ArrayList<>();
+
+        @Override
+        public synchronized CompletableFuture<Integer> post(String payload) {
+            CompletableFuture<Integer> response = new CompletableFuture<>();
+            payloads.add(payload);
+            responses.add(response);
+            return response;
+        }
+
+        synchronized int posted() {
+            return payloads.size();
+        }
+
+        synchronized void respond(int index, int status) {
+            responses.get(index).complete(status);
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not met in time");
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void testInFlightRequestsAreBoundedAndQueuedKeysCoalesce() throws InterruptedException {
+        ManualTransport transport = new ManualTransport();
+        try (GatewayNotifier notifier = new GatewayNotifier(transport, 16, 1, 3, 1, 10, TimeUnit.MILLISECONDS)) {
+            assertTrue(notifier.enqueue("a", "a1"));
+            assertTrue(notifier.enqueue("b", "b1"));
+            assertTrue(notifier.enqueue("b", "b2"));
+            assertEquals(1, transport.posted());
+            assertEquals(2, notifier.getQueueDepth());
+            assertEquals(1, notifier.getCoalesced());
+
+            transport.respond(0, 200);
+            await(() -> transport.posted() == 2);
+            transport.respond(1, 201);
+            await(() -> notifier.getQueueDepth() == 0);
+
+            assertEquals(List.of("a1", "b2"), transport.payloads);
+            assertEquals(2, notifier.getDelivered());
+        }
+    }
+
+    @Test
+    void testFullQueueRejectsNewKeys() {
+        ManualTransport transport = new ManualTransport();
+        try (GatewayNotifier notifier = new GatewayNotifier(transport, 2, 1, 3, 1, 10, TimeUnit.MILLISECONDS)) {
+            assertTrue(notifier.enqueue("a", "a"));
+            assertTrue(notifier.enqueue("b", "b"));
+            assertFalse(notifier.enqueue("c", "c"));
+            assertTrue(notifier.enqueue("b", "b2"));
+            assertEquals(1, notifier.getRejected());
+        }
+    }
+
+    @Test
+    void testTransientFailuresAreRetriedWithBackoff() throws InterruptedException {
+        AtomicInteger attempts = new AtomicInteger();
+        GatewayNotifier.Transport downThenUp = payload -> {
+            switch (attempts.incrementAndGet()) {
+                case 1:
+                    return CompletableFuture.failedFuture(new IOException("connection refused"));
+                case 2:
+                    return CompletableFuture.completedFuture(503);
+                default:
+                    return CompletableFuture.completedFuture(200);
+            }
+        };
+        try (GatewayNotifier notifier = new GatewayNotifier(downThenUp, 16, 4, 5, 1, 10, TimeUnit.MILLISECONDS)) {
+            notifier.enqueue("a", "a");
+            await(() -> notifier.getDelivered() == 1);
+            assertEquals(3, attempts.get());
+            assertEquals(2, notifier.getRetried());
+            assertEquals(0, notifier.getQueueDepth());
+        }
+    }
+
+    @Test
+    void testClientErrorsAndExhaustedRetriesFail() throws InterruptedException {
+        AtomicInteger attempts = new AtomicInteger();
+        try (GatewayNotifier rejecting = new GatewayNotifier(payload -> {
+            attempts.incrementAndGet();
+            return CompletableFuture.completedFuture(400);
+        }, 16, 4, 5, 1, 10, TimeUnit.MILLISECONDS)) {
+            rejecting.enqueue("a", "a");
+            await(() -> rejecting.getFailed() == 1);
+            assertEquals(1, attempts.get());
+        }
+
+        attempts.set(0);
+        try (GatewayNotifier down = new GatewayNotifier(payload -> {
+            attempts.incrementAndGet();
+            return CompletableFuture.completedFuture(500);
+        }, 16, 4, 3, 1, 10, TimeUnit.MILLISECONDS)) {
+            down.enqueue("a", "a");
+            await(() -> down.getFailed() == 1);
+            assertEquals(3, attempts.get());
+            assertEquals(0, down.getQueueDepth());
+        }
+    }
+}
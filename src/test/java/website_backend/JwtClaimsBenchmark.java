@@ -0,0 +1,39 @@
+package website_backend;
+
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import utils.Benchmark;
+
+import javax.crypto.SecretKey;
+
+/* Per request cost of authenticating a /company/* request with a session token: full parse and HMAC
+ * verification as before, against the claims cache that serves repeat requests of the session */
+public class JwtClaimsBenchmark {
+    private static final int WARMUP = 50_000;
+    private static final int ITERATIONS = 500_000;
+
+    private static volatile Object sink;
+
+    public static void main(String[] args) throws Exception {
+        SecretKey key = Keys.secretKeyFor(SignatureAlgorithm.HS256);
+        AuthService.rotateSigningKey(key);
+        JwtParser parser = Jwts.parser().verifyWith(key).build();
+        String token = AuthService.generateJwtToken("user@example.com", "7", 42, "Acme Devices");
+
+        Benchmark.Workload verifyEveryRequest = iterations -> {
+            for (int i = 0; i < iterations; ++i) {
+                sink = parser.parseSignedClaims(token).getPayload();
+            }
+        };
+        Benchmark.Workload claimsCache = iterations -> {
+            for (int i = 0; i < iterations; ++i) {
+                sink = AuthService.verifyAndGetClaims(token);
+            }
+        };
+        Benchmark.warmUp(WARMUP, verifyEveryRequest, claimsCache);
+        Benchmark.report("verify every request", "request", ITERATIONS, verifyEveryRequest);
+        Benchmark.report("claims cache", "request", ITERATIONS, claimsCache);
+    }
+}
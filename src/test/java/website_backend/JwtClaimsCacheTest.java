@@ -0,0 +1,79 @@
+package website_backend;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtClaimsCacheTest {
+    private static final Object KEY = new Object();
+
+    private static Claims claimsExpiringAt(long expiresAtMillis) {
+        return Jwts.claims().subject("user@example.com").expiration(new Date(expiresAtMillis)).build();
+    }
+
+    @Test
+    void testClaimsAreServedUntilExpiration() {
+        JwtClaimsCache cache = new JwtClaimsCache(8);
+        Claims claims = claimsExpiringAt(10_000);
+        assertNull(cache.get("token", KEY, 0));
+        cache.put("token", claims, KEY);
+
+        assertSame(claims, cache.get("token", KEY, 9_999));
+        assertNull(cache.get("token", KEY, 10_000));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    void testEntriesVerifiedWithAnotherKeyMiss() {
+        JwtClaimsCache cache = new JwtClaimsCache(8);
+        cache.put("token", claimsExpiringAt(Long.MAX_VALUE), KEY);
+        assertNull(cache.get("token", new Object(), 0));
+        assertNull(cache.get("token", KEY, 0));
+    }
+
+    @Test
+    void testTokensWithoutExpirationAreNotCached() {
+        JwtClaimsCache cache = new JwtClaimsCache(8);
+        cache.put("token", Jwts.claims().subject("user@example.com").build(), KEY);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testCacheIsBounded() {
+        JwtClaimsCache cache = new JwtClaimsCache(4);
+        long now = System.currentTimeMillis();
+        cache.put("expired", claimsExpiringAt(now - 1), KEY);
+        for (int i = 0; i < 10; ++i) {
+            cache.put("token" + i, claimsExpiringAt(now + 60_000), KEY);
+            assertTrue(cache.size() <= 4);
+        }
+        assertNotNull(cache.get("token9", KEY, now));
+    }
+
+    @Test
+    void testAuthServiceCachesVerifiedTokensAndHonorsRotation() {
+        String token = AuthService.generateJwtToken("user@example.com", "7", 42, "Acme");
+        long hitsBefore = AuthService.getClaimsCache().getHits();
+
+        Claims first = AuthService.verifyAndGetClaims(token);
+        Claims second = AuthService.verifyAndGetClaims(token);
+        assertSame(first, second);
+        assertEquals("42", second.get("comp_id", String.class));
+        assertEquals(hitsBefore + 1, AuthService.getClaimsCache().getHits());
+
+        AuthService.rotateSigningKey(Keys.secretKeyFor(SignatureAlgorithm.HS256));
+        assertThrows(SignatureException.class, () -> AuthService.verifyAndGetClaims(token));
+
+        String rotated = AuthService.generateJwtToken("user@example.com", "7", 42, "Acme");
+        assertEquals("user@example.com", AuthService.verifyAndGetClaims(rotated).getSubject());
+    }
+}
@@ -0,0 +1,83 @@
+package website_backend;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ListingCacheTest {
+
+    @Test
+    void testListingIsLoadedOnceUntilInvalidated() throws SQLException {
+        ListingCache cache = new ListingCache("test", 8);
+        AtomicInteger loads = new AtomicInteger();
+        ListingCache.Loader loader = () -> "[{\"name\":\"p" + loads.incrementAndGet() + "\"}]";
+
+        ListingCache.Listing first = cache.get(1, loader);
+        assertSame(first, cache.get(1, loader));
+        assertEquals(1, loads.get());
+        assertEquals("[{\"name\":\"p1\"}]", new String(first.getBody(), StandardCharsets.UTF_8));
+
+        cache.invalidate(1);
+        ListingCache.Listing second = cache.get(1, loader);
+        assertEquals(2, loads.get());
+        assertNotEquals(first.getETag(), second.getETag());
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    void testLeastRecentlyUsedCompanyIsEvicted() throws SQLException {
+        ListingCache cache = new ListingCache("test", 2);
+        AtomicInteger loads = new AtomicInteger();
+        ListingCache.Loader loader = () -> "[" + loads.incrementAndGet() + "]";
+
+        cache.get(1, loader);
+        cache.get(2, loader);
+        cache.get(1, loader);
+        cache.get(3, loader);
+        assertEquals(2, cache.size());
+        assertEquals(3, loads.get());
+
+        cache.get(1, loader);
+        assertEquals(3, loads.get());
+        cache.get(2, loader);
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    void testLoadRacingWithInvalidationIsNotCached() throws SQLException {
+        ListingCache cache = new ListingCache("test", 8);
+        ListingCache.Listing stale = cache.get(1, () -> {
+            cache.invalidate(1);
+            return "[]";
+        });
+        assertEquals("[]", new String(stale.getBody(), StandardCharsets.UTF_8));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testFailedLoadIsNotCached() {
+        ListingCache cache = new ListingCache("test", 8);
+        assertThrows(SQLException.class, () -> cache.get(1, () -> {
+            throw new SQLException("down");
+        }));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testIfNoneMatch() throws SQLException {
+        String etag = new ListingCache("test", 1).get(1, () -> "[]").getETag();
+        assertTrue(etag.startsWith("\"") && etag.endsWith("\""));
+
+        assertTrue(ListingCache.matches(etag, etag));
+        assertTrue(ListingCache.matches("W/" + etag, etag));
+        assertTrue(ListingCache.matches("\"other\", " + etag, etag));
+        assertTrue(ListingCache.matches("*", etag));
+        assertFalse(ListingCache.matches("\"other\"", etag));
+        assertFalse(ListingCache.matches(null, etag));
+    }
+}